@@ -14,6 +14,7 @@
  */
 package cloud.grabsky.azure.api;
 
+import cloud.grabsky.azure.api.chat.ChatFilterRegistry;
 import cloud.grabsky.azure.api.user.UserCache;
 
 public interface AzureAPI {
@@ -23,4 +24,9 @@ public interface AzureAPI {
      */
     UserCache getUserCache();
 
+    /**
+     * Returns the {@link ChatFilterRegistry} instance.
+     */
+    ChatFilterRegistry getChatFilters();
+
 }
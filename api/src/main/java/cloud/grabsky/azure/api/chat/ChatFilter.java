@@ -0,0 +1,88 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.api.chat;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * {@link ChatFilter} is a single stage of chat filtering pipeline. Stages are invoked in order, until one of them denies the message.
+ * <p>
+ * Stages are invoked on the chat thread, which is <b>not</b> the main thread.
+ */
+public interface ChatFilter {
+
+    /**
+     * Returns unique name of this stage. Name is used to order stages and to identify them in metrics.
+     */
+    @NotNull String getName();
+
+    /**
+     * Checks message sent by specified {@link Player}. Message is provided as plain text.
+     */
+    @NotNull Result filter(final @NotNull Player sender, final @NotNull String message);
+
+    /**
+     * Result of a single {@link ChatFilter} invocation.
+     */
+    final class Result {
+
+        private static final Result ALLOW = new Result(true, null);
+        private static final Result DENY = new Result(false, null);
+
+        @Getter(AccessLevel.PUBLIC)
+        private final boolean isAllowed;
+
+        /**
+         * Message to be sent to the sender when their message has been denied, or {@code null} if nothing should be sent.
+         */
+        @Getter(AccessLevel.PUBLIC)
+        private final @Nullable Component reason;
+
+        private Result(final boolean isAllowed, final @Nullable Component reason) {
+            this.isAllowed = isAllowed;
+            this.reason = reason;
+        }
+
+        /**
+         * Returns {@link Result} which lets the message through to the next stage.
+         */
+        public static @NotNull Result allow() {
+            return ALLOW;
+        }
+
+        /**
+         * Returns {@link Result} which denies the message. Remaining stages are not invoked.
+         */
+        public static @NotNull Result deny() {
+            return DENY;
+        }
+
+        /**
+         * Returns {@link Result} which denies the message and sends specified reason to the sender. Remaining stages are not invoked.
+         */
+        public static @NotNull Result deny(final @NotNull Component reason) {
+            return new Result(false, reason);
+        }
+
+    }
+
+}
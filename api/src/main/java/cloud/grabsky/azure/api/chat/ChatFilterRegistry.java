@@ -0,0 +1,44 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.api.chat;
+
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+/**
+ * {@link ChatFilterRegistry} holds stages of chat filtering pipeline.
+ * <p>
+ * Stages are ordered as configured by server owner. Stages missing from the configuration are invoked afterwards, in order they were registered.
+ */
+public interface ChatFilterRegistry {
+
+    /**
+     * Registers specified {@link ChatFilter}. Throws {@link IllegalArgumentException} if stage with the same name is already registered.
+     */
+    void register(final @NotNull ChatFilter filter) throws IllegalArgumentException;
+
+    /**
+     * Unregisters stage with specified name. Returns {@code true} if stage was registered, {@code false} otherwise.
+     */
+    boolean unregister(final @NotNull String name);
+
+    /**
+     * Returns unmodifiable {@link List} of registered stages, in order they are invoked.
+     */
+    @NotNull @Unmodifiable List<ChatFilter> getFilters();
+
+}
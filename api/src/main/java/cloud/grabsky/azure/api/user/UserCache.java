@@ -19,6 +19,8 @@ import org.bukkit.entity.Player;
 import java.util.Collection;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import org.jetbrains.annotations.ApiStatus.Internal;
 import org.jetbrains.annotations.NotNull;
@@ -31,43 +33,77 @@ import org.jetbrains.annotations.Unmodifiable;
 public interface UserCache {
 
     /**
-     * Returns unmodifiable {@link Collection} of users currently held in cache.
+     * Returns unmodifiable {@link Collection} of users currently held in memory.
+     * <p>
+     * When tiered mode is enabled, users who have not been active recently are not included. Use {@link #getUserIds()} or {@link #streamUsers()} to access all known users.
      */
     @NotNull @Unmodifiable Collection<User> getUsers();
 
     /**
-     * Returns unmodifiable {@link Map} of users currently held in cache.
+     * Returns unmodifiable {@link Map} of users currently held in memory.
+     * <p>
+     * When tiered mode is enabled, users who have not been active recently are not included. Use {@link #getUserIds()} or {@link #streamUsers()} to access all known users.
      */
     @NotNull @Unmodifiable Map<UUID, User> getUsersMap();
 
     /**
-     * Returns {@link User} if currently in cache, {@code null} otherwise.
+     * Returns unmodifiable {@link Collection} of unique ids of all known users, including ones not currently held in memory.
+     */
+    default @NotNull @Unmodifiable Collection<UUID> getUserIds() {
+        return this.getUsersMap().keySet();
+    }
+
+    /**
+     * Returns sequential {@link Stream} of all known users. Users not currently held in memory are read lazily, one by one, as the stream is consumed, and are not kept in memory afterwards.
+     * <p>
+     * This may involve blocking I/O and should not be consumed on the main thread.
+     */
+    default @NotNull Stream<User> streamUsers() {
+        return this.getUsers().stream();
+    }
+
+    /**
+     * Returns {@link User} if known, {@code null} otherwise.
+     * <p>
+     * When tiered mode is enabled and user is not currently held in memory, {@code null} is returned. Use {@link #loadUser(UUID)} for offline lookups.
      */
     default @Nullable User getUser(final @NotNull UUID uniqueId) {
         return this.getUsersMap().get(uniqueId);
     }
 
     /**
-     * Returns {@link User} if currently in cache, {@code null} otherwise.
+     * Returns {@link CompletableFuture} completed with {@link User} if known, or {@code null} otherwise.
+     * <p>
+     * Future is already completed when user is held in memory. Otherwise, user is loaded in the background.
+     * Dependent actions may therefore be executed on any thread.
+     */
+    default @NotNull CompletableFuture<User> loadUser(final @NotNull UUID uniqueId) {
+        return CompletableFuture.completedFuture(this.getUser(uniqueId));
+    }
+
+    /**
+     * Returns {@link User} if known, {@code null} otherwise.
+     * <p>
+     * When tiered mode is enabled and user is not currently held in memory, {@code null} is returned.
      */
     default @Nullable User getUser(final @NotNull String name) {
         return this.getUsers().stream().filter(user -> user.getName().equalsIgnoreCase(name) == true).findFirst().orElse(null);
     }
 
     /**
-     * Returns {@link User} if currently in cache, {@code null} otherwise.
+     * Returns {@link User} of specified online {@link Player}, creating it if does not exist yet.
      */
     @NotNull User getUser(final @NotNull Player player);
 
     /**
-     * Returns {@code true} if user with provided {@link UUID} (uniqueId) is currently in cache.
+     * Returns {@code true} if user with provided {@link UUID} (uniqueId) is known.
      */
     default boolean hasUser(final @NotNull UUID uniqueId) {
         return this.getUsersMap().containsKey(uniqueId);
     }
 
     /**
-     * Returns {@code true} if user with provided {@link String} (name) is currently in cache.
+     * Returns {@code true} if user with provided {@link String} (name) is known.
      */
     default boolean hasUser(final @NotNull String name) {
         return this.getUsers().stream().anyMatch(user -> user.getName().equalsIgnoreCase(name));
@@ -75,11 +111,27 @@ public interface UserCache {
 
     /**
      * Returns matching {@link User} for the specified discord identifier.
+     * <p>
+     * When tiered mode is enabled and user is not currently held in memory, {@code null} is returned.
      */
     default @Nullable User fromDiscord(final String discordId) {
         return getUsers().stream().filter(user -> user.getDiscordId() != null && user.getDiscordId().equals(discordId) == true).findFirst().orElse(null);
     }
 
+    /**
+     * Returns unmodifiable {@link Collection} of users which are currently banned.
+     */
+    default @NotNull @Unmodifiable Collection<User> getBannedUsers() {
+        return this.getUsers().stream().filter(User::isBanned).toList();
+    }
+
+    /**
+     * Returns unmodifiable {@link Collection} of users which are currently muted.
+     */
+    default @NotNull @Unmodifiable Collection<User> getMutedUsers() {
+        return this.getUsers().stream().filter(User::isMuted).toList();
+    }
+
     @Internal
     default <T extends UserCache> T as(final Class<T> clazz) {
         return (T) this;
@@ -0,0 +1,140 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import cloud.grabsky.azure.template.MessageTemplate;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+
+import static net.kyori.adventure.text.Component.empty;
+import static net.kyori.adventure.text.Component.text;
+import static net.kyori.adventure.text.event.HoverEvent.showText;
+import static net.kyori.adventure.text.format.NamedTextColor.RED;
+
+/**
+ * Compares rendering of a single chat message broadcast to many viewers.
+ * <ul>
+ *     <li>{@code perViewer} parses the format once per viewer, which is how messages used to be rendered.</li>
+ *     <li>{@code renderOnce} renders the compiled format once and shares the result between viewers of the same kind, like {@link ChatManager} does now.</li>
+ * </ul>
+ * Mentioned viewers are viewers of a separate kind, as they receive the message with their mentions highlighted.
+ * PlaceholderAPI is not available outside of the server, so its cost is not included in either of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ChatRenderBenchmark {
+
+    // Number of players receiving the message.
+    @Param({ "200" })
+    public int viewers;
+
+    // Every n-th viewer is a moderator and receives the line with a "DELETE MESSAGE" button.
+    @Param({ "20" })
+    public int moderatorEvery;
+
+    // Every n-th viewer is mentioned in the message and receives the line with highlighted mentions.
+    @Param({ "50" })
+    public int mentionedEvery;
+
+    // Format similar to per-permission formats found in the default configuration.
+    private static final String FORMAT = "<gold>(Donator)<white> <prefix><player><suffix><dark_gray>: <white><message>";
+
+    private static final String PREFIX = "<gray>[<yellow>VIP<gray>] ";
+    private static final String SUFFIX = " <dark_gray>✦";
+
+    private static final String MENTION_FORMAT = "<yellow><mention></yellow>";
+
+    private Component displayName;
+    private Component message;
+    private Component highlightedMessage;
+    private Component button;
+
+    @Setup
+    public void setup() {
+        this.displayName = text("Steve");
+        this.message = text("Hey everyone, is anyone up for a trip to the nether? Bring some food and a few blocks of obsidian.");
+        // Message with highlighted mention is built once per message, so it's cost is negligible and not measured.
+        this.highlightedMessage = text("Hey ").append(MessageTemplate.of(MENTION_FORMAT).render(null, MessageTemplate.unparsed("mention", "everyone"))).append(text(", is anyone up for a trip to the nether? Bring some food and a few blocks of obsidian."));
+        // Clicking requires a running server, so button has only the hover.
+        this.button = text("[X] ", RED).hoverEvent(showText(text("Click to delete this message.")));
+        // Compiling the template ahead of time, just like it is done on reload.
+        MessageTemplate.precompile(List.of(FORMAT, MENTION_FORMAT));
+    }
+
+    @Benchmark
+    public void perViewer(final @NotNull Blackhole blackhole) {
+        for (int i = 0; i < viewers; i++) {
+            final Component line = MiniMessage.miniMessage().deserialize(FORMAT,
+                    Placeholder.unparsed("player", "Steve"),
+                    Placeholder.unparsed("group", "donator"),
+                    Placeholder.parsed("prefix", PREFIX),
+                    Placeholder.parsed("suffix", SUFFIX),
+                    Placeholder.component("displayname", displayName),
+                    Placeholder.component("message", (i % mentionedEvery == 0) ? highlightedMessage : message)
+            );
+            // Appending the button for moderators.
+            blackhole.consume((i % moderatorEvery == 0) ? empty().append(button).append(line) : line);
+        }
+    }
+
+    @Benchmark
+    public void renderOnce(final @NotNull Blackhole blackhole) {
+        // Lines are built lazily, when first requested by the renderer. Index 0 holds lines of regular viewers, index 1 lines of mentioned viewers.
+        final Component[] regular = new Component[2];
+        final Component[] moderator = new Component[2];
+        // ...
+        for (int i = 0; i < viewers; i++) {
+            final int kind = (i % mentionedEvery == 0) ? 1 : 0;
+            // Building line of this kind once, when first viewer of this kind is rendered.
+            if (regular[kind] == null)
+                regular[kind] = MessageTemplate.of(FORMAT).render(null,
+                        MessageTemplate.unparsed("player", "Steve"),
+                        MessageTemplate.unparsed("group", "donator"),
+                        MessageTemplate.parsed("prefix", PREFIX),
+                        MessageTemplate.parsed("suffix", SUFFIX),
+                        MessageTemplate.component("displayname", displayName),
+                        MessageTemplate.component("message", (kind == 1) ? highlightedMessage : message)
+                );
+            // Building line with the button once, when first moderator of this kind is rendered.
+            if (i % moderatorEvery == 0 && moderator[kind] == null)
+                moderator[kind] = empty().append(button).append(regular[kind]);
+            // ...
+            blackhole.consume((i % moderatorEvery == 0) ? moderator[kind] : regular[kind]);
+        }
+    }
+
+}
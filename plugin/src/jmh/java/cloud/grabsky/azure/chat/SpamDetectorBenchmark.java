@@ -0,0 +1,125 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import cloud.grabsky.azure.configuration.PluginConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures cost of {@link SpamDetector} per chat message, which must stay below 10µs.
+ * <ul>
+ *     <li>{@code fingerprint} normalizes the message and computes it's fingerprint.</li>
+ *     <li>{@code isSpam} performs the whole check, with windows of the default size kept full. Roughly one in five messages is a variation of the same advertisement.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SpamDetectorBenchmark {
+
+    private static final int MESSAGES = 1024;
+    private static final int SENDERS = 50;
+
+    private static final String ADVERTISEMENT = "join the best survival server today at play.example.net free ranks for everyone";
+
+    private static final String[] VOCABULARY = (
+            "hey hi hello anyone up for a trip to the nether end village base farm build house castle " +
+            "diamonds iron gold redstone sell buy trade shop price cheap how much is that anybody online " +
+            "thanks lol gg nice wow come here tp me please where are you going to sleep night day rain"
+    ).split(" ");
+
+    private final WordNormalizer normalizer = new WordNormalizer(true, true, true, true, true);
+
+    private SpamDetector detector;
+    private String[] messages;
+    private UUID[] senders;
+
+    // Index of the next message. Benchmark runs on a single thread.
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Using values from the default configuration.
+        PluginConfig.CHAT_FILTERING_SPAM_ENABLED = true;
+        PluginConfig.CHAT_FILTERING_SPAM_MIN_LENGTH = 12;
+        PluginConfig.CHAT_FILTERING_SPAM_SIMILARITY_THRESHOLD = 0.9;
+        PluginConfig.CHAT_FILTERING_SPAM_WINDOW_DURATION = 60;
+        PluginConfig.CHAT_FILTERING_SPAM_PLAYER_WINDOW = 8;
+        PluginConfig.CHAT_FILTERING_SPAM_PLAYER_MATCHES = 2;
+        PluginConfig.CHAT_FILTERING_SPAM_GLOBAL_WINDOW = 64;
+        PluginConfig.CHAT_FILTERING_SPAM_GLOBAL_MATCHES = 3;
+        // ...
+        this.detector = new SpamDetector();
+        // Generating messages and their senders.
+        final SplittableRandom random = new SplittableRandom(42L);
+        this.messages = new String[MESSAGES];
+        this.senders = new UUID[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            senders[i] = new UUID(0L, random.nextInt(SENDERS));
+            // Varying the advertisement by changing a single character, like spam bots do.
+            if (random.nextInt(5) == 0) {
+                final char[] characters = ADVERTISEMENT.toCharArray();
+                characters[random.nextInt(characters.length)] = (char) ('a' + random.nextInt(26));
+                messages[i] = new String(characters);
+                continue;
+            }
+            // Otherwise, generating a regular message.
+            final StringBuilder builder = new StringBuilder();
+            final int length = 6 + random.nextInt(14);
+            // ...
+            for (int j = 0; j < length; j++)
+                builder.append((j > 0) ? " " : "").append(VOCABULARY[random.nextInt(VOCABULARY.length)]);
+            // ...
+            messages[i] = builder.toString();
+        }
+        // Filling the windows, so each check compares against as many fingerprints as it would on a busy server.
+        for (int i = 0; i < MESSAGES; i++)
+            detector.isSpam(senders[i], messages[i]);
+    }
+
+    @Benchmark
+    public long fingerprint() {
+        final String message = messages[next];
+        next = (next + 1) % MESSAGES;
+        // ...
+        return SpamDetector.fingerprint(normalizer.normalize(message));
+    }
+
+    @Benchmark
+    public boolean isSpam() {
+        final int index = next;
+        next = (next + 1) % MESSAGES;
+        // ...
+        return detector.isSpam(senders[index], messages[index]);
+    }
+
+}
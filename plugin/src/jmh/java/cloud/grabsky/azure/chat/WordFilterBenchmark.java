@@ -0,0 +1,154 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Measures {@link WordFilter} compiled from a large list of inappropriate words.
+ * <ul>
+ *     <li>{@code hashSet} splits message on spaces and looks up each token, which is how messages used to be checked. It finds far less than the automaton does.</li>
+ *     <li>{@code automaton} normalizes the message and scans it with the compiled automaton, with all normalization steps enabled.</li>
+ *     <li>{@code compile} builds the automaton, which happens each time the list is reloaded.</li>
+ * </ul>
+ * Each invocation checks a batch of messages, roughly one in ten of which contains a listed word.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WordFilterBenchmark {
+
+    // Number of entries in the list.
+    @Param({ "10000" })
+    public int words;
+
+    private static final int MESSAGES = 100;
+
+    private static final String[] VOCABULARY = (
+            "hey hi hello anyone up for a trip to the nether end village base farm build house castle " +
+            "diamonds iron gold redstone sell buy trade shop price cheap how much is that anybody online " +
+            "thanks lol gg nice wow come here tp me please where are you going to sleep night day rain"
+    ).split(" ");
+
+    private final WordNormalizer normalizer = new WordNormalizer(true, true, true, true, true);
+
+    private List<String> entries;
+    private Set<String> hashSet;
+    private WordFilter filter;
+    private String[] messages;
+
+    @Setup
+    public void setup() {
+        final SplittableRandom random = new SplittableRandom(42L);
+        // Generating entries. Some of them are allowed to be part of a longer word.
+        this.entries = new ArrayList<>(words);
+        for (int i = 0; i < words; i++) {
+            final String word = randomWord(random);
+            // ...
+            entries.add(switch (random.nextInt(10)) {
+                case 0 -> "*" + word;
+                case 1 -> word + "*";
+                default -> word;
+            });
+        }
+        // Preparing both structures.
+        this.hashSet = new HashSet<>(entries);
+        this.filter = WordFilter.compile(normalizer, entries);
+        // Generating messages. Every tenth contains an entry, written in a way only the automaton can tell.
+        this.messages = new String[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            final StringBuilder builder = new StringBuilder();
+            final int length = 8 + random.nextInt(12);
+            // ...
+            for (int j = 0; j < length; j++) {
+                if (j > 0)
+                    builder.append(' ');
+                // Capitalizing some of the words.
+                final String word = VOCABULARY[random.nextInt(VOCABULARY.length)];
+                builder.append((random.nextInt(8) == 0) ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+            }
+            // Inserting a listed word, followed by punctuation and with some letters replaced by digits.
+            if (i % 10 == 0)
+                builder.append(' ').append(entries.get(random.nextInt(words)).replace("*", "").replace('o', '0').replace('e', '3').toUpperCase()).append("!!");
+            // ...
+            messages[i] = builder.toString();
+        }
+    }
+
+    @Benchmark
+    public void hashSet(final @NotNull Blackhole blackhole) {
+        for (final String message : messages) {
+            String found = null;
+            // ...
+            for (final String token : message.split(" "))
+                if (hashSet.contains(token) == true) {
+                    found = token;
+                    break;
+                }
+            // ...
+            blackhole.consume(found);
+        }
+    }
+
+    @Benchmark
+    public void automaton(final @NotNull Blackhole blackhole) {
+        for (final String message : messages)
+            blackhole.consume(filter.find(message));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public @NotNull WordFilter compile() {
+        return WordFilter.compile(normalizer, entries);
+    }
+
+    /**
+     * Returns random lowercase word. Words are long enough not to collide with the vocabulary.
+     */
+    private static @NotNull String randomWord(final @NotNull SplittableRandom random) {
+        final String letters = "abcdefghijklmnopqrstuvwxyz";
+        final StringBuilder builder = new StringBuilder();
+        final int length = 4 + random.nextInt(7);
+        // ...
+        for (int i = 0; i < length; i++)
+            builder.append(letters.charAt(random.nextInt(letters.length())));
+        // ...
+        return builder.toString();
+    }
+
+}
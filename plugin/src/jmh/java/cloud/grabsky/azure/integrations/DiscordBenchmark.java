@@ -0,0 +1,462 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.integrations;
+
+import club.minnced.discord.webhook.WebhookClient;
+import club.minnced.discord.webhook.WebhookClientBuilder;
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.api.user.User;
+import cloud.grabsky.azure.api.user.UserCache;
+import cloud.grabsky.azure.chat.ChatManager;
+import cloud.grabsky.azure.chat.channel.ChannelManager;
+import cloud.grabsky.azure.chat.channel.ChatChannel;
+import cloud.grabsky.azure.configuration.PluginConfig;
+import cloud.grabsky.azure.metrics.MetricsRegistry;
+import io.papermc.paper.event.player.AsyncChatEvent;
+import me.clip.placeholderapi.PlaceholderAPI;
+import net.kyori.adventure.chat.SignedMessage;
+import net.kyori.adventure.text.Component;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.bukkit.damage.DamageSource;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.mockito.Answers;
+import org.mockito.MockedStatic;
+import org.mockito.invocation.InvocationOnMock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Measures throughput, latency and loss of Discord forwarding, without connecting to Discord.
+ * <p>
+ * Simulated players chat, join, quit and die on a fixed tick rate. Events they produce are passed to listeners of {@link DiscordIntegration},
+ * which forward them through it's {@link WebhookDispatcher WebhookDispatchers} to a {@link DiscordStandIn} running on the loopback interface.
+ * Each forwarded line is then compared with what listeners are expected to produce, including channel and vanish filtering, Markdown
+ * sanitization and replacement of Xaero's waypoints. Workload is generated from a fixed seed, so results of two runs can be compared.
+ * <p>
+ * Workload runs in real time, so it is measured once, without warm-up. Primary result is the time it took to generate the workload and deliver all lines.
+ * Remaining results are printed once the workload has finished. Run fails in case any line has been lost, duplicated or forwarded with unexpected contents.
+ * Parameters can be overridden using {@code -Pjmh.params=players=100;seconds=60}. Mockito attaches it's agent at runtime, which has to be allowed in the forked JVM.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-XX:+EnableDynamicAgentLoading")
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class DiscordBenchmark {
+
+    // Seed used to generate the workload.
+    private static final long SEED = 42L;
+
+    // Length of a single simulated tick.
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(50);
+
+    // Chance of each event happening to a single player during a single tick.
+    private static final double CHAT_CHANCE = 0.02D;
+    private static final double DEATH_CHANCE = 0.001D;
+    private static final double JOIN_QUIT_CHANCE = 0.0005D;
+
+    // Chance of chat message being a Xaero's waypoint, or not being seen by anyone.
+    private static final double WAYPOINT_CHANCE = 0.05D;
+    private static final double NO_VIEWERS_CHANCE = 0.05D;
+
+    // Maximum time to wait for queued lines to be delivered after the workload has finished.
+    private static final long DRAIN_TIMEOUT = 30L;
+
+    // Sample chat messages along with what they are expected to look like after Markdown has been removed.
+    private static final String[][] CHAT_MESSAGES = {
+            { "hi", "hi" },
+            { "anyone want to **trade**?", "anyone want to trade?" },
+            { "where is the ~~nether~~ portal", "where is the nether portal" },
+            { "lol", "lol" },
+            { "does anyone have spare iron? need a few stacks for the farm near spawn", "does anyone have spare iron? need a few stacks for the farm near spawn" },
+            { "gg", "gg" },
+            { "who is *online* tonight?", "who is online tonight?" }
+    };
+
+    // Sample Xaero's waypoint shared in chat.
+    private static final String WAYPOINT = "xaero-waypoint:Base:B:120:64:-340:6:false:0:Internal-overworld-waypoints";
+
+    // Number of simulated players.
+    @Param({ "50" })
+    public int players;
+
+    // Duration of the workload, in seconds.
+    @Param({ "30" })
+    public int seconds;
+
+    private Azure plugin;
+    private Player[] simulatedPlayers;
+    private boolean[] isVanished;
+    private ChatChannel[] channels;
+
+    // Sequence number of the line currently being produced. Substituted by the PlaceholderAPI stand-in.
+    private int current = 0;
+
+    @Setup
+    public void setup() {
+        // Creating plugin. Only parts accessed by the integration are provided.
+        this.plugin = mock(Azure.class, withSettings().stubOnly());
+        final MetricsRegistry metrics = new MetricsRegistry();
+        final UserCache userCache = mock(UserCache.class, withSettings().stubOnly());
+        final ChatManager chatManager = mock(ChatManager.class, withSettings().stubOnly());
+        final ChannelManager channelManager = mock(ChannelManager.class, withSettings().stubOnly());
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("Azure"));
+        when(plugin.getMetricsRegistry()).thenReturn(metrics);
+        when(plugin.getUserCache()).thenReturn(userCache);
+        when(plugin.getChatManager()).thenReturn(chatManager);
+        when(chatManager.getChannels()).thenReturn(channelManager);
+        // Configuring forwarding the same way as default configuration does. Chat lines are sent under player's name.
+        PluginConfig.DISCORD_INTEGRATIONS_ENABLED = true;
+        PluginConfig.DISCORD_INTEGRATIONS_WEBHOOKS_MERGE_WINDOW = 250L;
+        PluginConfig.DISCORD_INTEGRATIONS_WEBHOOKS_MIN_INTERVAL = 400L;
+        PluginConfig.CHAT_MODERATION_HISTORY_CAPACITY = 2048;
+        PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_ENABLED = true;
+        PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_WEBHOOK_URL = "https://discord.com/api/webhooks/1/benchmark";
+        PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_WEBHOOK_USERNAME = "%player_name%";
+        PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_WEBHOOK_AVATAR = "";
+        PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_ENABLED = true;
+        PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_URL = "https://discord.com/api/webhooks/2/benchmark";
+        PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_USERNAME = "";
+        PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_AVATAR = "";
+        PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_JOIN_MESSAGE_FORMAT = "#%benchmark_sequence% %player_name% joined the game.";
+        PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_QUIT_MESSAGE_FORMAT = "#%benchmark_sequence% %player_name% left the game.";
+        PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_ENABLED = true;
+        PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_WEBHOOK_URL = "https://discord.com/api/webhooks/3/benchmark";
+        PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_WEBHOOK_USERNAME = "";
+        PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_WEBHOOK_AVATAR = "";
+        // Creating players. Some of them have underscores in their names, some are vanished and some are talking on channels which are not forwarded.
+        this.simulatedPlayers = new Player[players];
+        this.isVanished = new boolean[players];
+        this.channels = new ChatChannel[players];
+        for (int i = 0; i < players; i++) {
+            final Player player = mock(Player.class, withSettings().stubOnly());
+            final User user = mock(User.class, withSettings().stubOnly());
+            // ...
+            simulatedPlayers[i] = player;
+            isVanished[i] = (i % 20 == 3);
+            channels[i] = (i % 10 == 9) ? ChatChannel.LOCAL : (i % 25 == 12) ? ChatChannel.STAFF : ChatChannel.GLOBAL;
+            // ...
+            when(player.getName()).thenReturn((i % 7 == 0) ? "Player_" + i : "Player" + i);
+            when(user.isVanished()).thenReturn(isVanished[i]);
+            when(userCache.getUser(player)).thenReturn(user);
+            when(channelManager.getChannel(player)).thenReturn(channels[i]);
+        }
+    }
+
+    @Benchmark
+    public void forwarding() throws InterruptedException {
+        final int ticks = seconds * 20;
+        // Each player produces at most one line per tick.
+        final int capacity = Math.multiplyExact(players, ticks);
+        // Time each line has been produced at, and contents it is expected to be received with, indexed by line sequence number. Lines which should not be forwarded are expected to be null.
+        final long[] sentAt = new long[capacity];
+        final String[] expected = new String[capacity];
+        final List<CompletableFuture<?>> futures = new ArrayList<>();
+        int waypoints = 0;
+        // Starting the stand-ins of Discord and PlaceholderAPI, and preparing HTTP client that redirects all requests to the former.
+        try (final DiscordStandIn standIn = new DiscordStandIn(capacity); final MockedStatic<PlaceholderAPI> _ = mockStatic(PlaceholderAPI.class, this::setPlaceholders)) {
+            final OkHttpClient httpClient = new OkHttpClient.Builder().addInterceptor(chain -> {
+                final Request request = chain.request();
+                final String path = request.url().encodedPath();
+                // Rewriting the URL. API version prefix is stripped as the stand-in does not care about it.
+                final HttpUrl url = request.url().newBuilder()
+                        .scheme("http")
+                        .host("127.0.0.1")
+                        .port(standIn.getPort())
+                        .encodedPath(path.substring(Math.max(0, path.indexOf("/webhooks/"))))
+                        .build();
+                // ...
+                return chain.proceed(request.newBuilder().url(url).build());
+            }).build();
+            // Creating webhook clients. Plugin has no outbox, so nothing is persisted and lines that could not be sent are never received.
+            final Map<String, WebhookClient> clients = new LinkedHashMap<>();
+            long webhookId = 1L;
+            for (final String name : List.of("CHAT", "JOIN_QUIT", "DEATHS"))
+                clients.put(name, new WebhookClientBuilder(webhookId++, "benchmark").setHttpClient(httpClient).setDaemon(true).setWait(true).build());
+            // Creating the integration. It does not connect to Discord and forwards lines through clients created above.
+            final DiscordIntegration integration = new DiscordIntegration(plugin, clients);
+            try {
+                final SplittableRandom random = new SplittableRandom(SEED);
+                final boolean[] isOnline = new boolean[players];
+                Arrays.fill(isOnline, true);
+                // Generating the workload.
+                final long startedAt = System.nanoTime();
+                for (int tick = 0; tick < ticks; tick++) {
+                    for (int i = 0; i < players; i++) {
+                        final Player player = simulatedPlayers[i];
+                        final String username = player.getName().replace("_", "\\_");
+                        final double roll = random.nextDouble();
+                        // Picking the event. Players that are offline can only join, and come back sooner than they leave.
+                        if (isOnline[i] == false && roll < JOIN_QUIT_CHANCE * 20) {
+                            final PlayerJoinEvent event = mock(PlayerJoinEvent.class, withSettings().stubOnly());
+                            when(event.getPlayer()).thenReturn(player);
+                            // ...
+                            isOnline[i] = true;
+                            this.produce(sentAt, expected, (isVanished[i] == false) ? username + " joined the game." : null);
+                            integration.onPlayerJoinForward(event);
+                        } else if (isOnline[i] == false) {
+                            continue;
+                        } else if (roll < CHAT_CHANCE) {
+                            final boolean isWaypoint = (random.nextDouble() < WAYPOINT_CHANCE);
+                            final boolean hasViewers = (random.nextDouble() >= NO_VIEWERS_CHANCE);
+                            final String[] message = CHAT_MESSAGES[random.nextInt(CHAT_MESSAGES.length)];
+                            final boolean isForwarded = (channels[i] == ChatChannel.GLOBAL && hasViewers == true);
+                            // Waypoints are replaced entirely, so they cannot carry the sequence number. Only their number is compared.
+                            final String content = (isWaypoint == true) ? WAYPOINT : "#" + current + " " + message[0];
+                            final AsyncChatEvent event = this.createChatEvent(player, content, hasViewers);
+                            // ...
+                            if (isWaypoint == true && isForwarded == true)
+                                waypoints++;
+                            // ...
+                            this.produce(sentAt, expected, (isWaypoint == false && isForwarded == true) ? message[1] : null);
+                            integration.onPlayerChat(event);
+                        } else if (roll < CHAT_CHANCE + DEATH_CHANCE) {
+                            final boolean hasAttacker = random.nextBoolean();
+                            final PlayerDeathEvent event = this.createDeathEvent(player, hasAttacker);
+                            final String text = "<dark_gray>› <gray>#" + current + " " + ((hasAttacker == true) ? "<victim> was slain by <attacker>." : "<victim> fell from a high place.");
+                            // ...
+                            this.produce(sentAt, expected, (isVanished[i] == false) ? "**" + player.getName() + "**" + ((hasAttacker == true) ? " was slain by **Skeleton**." : " fell from a high place.") : null);
+                            integration.onPlayerDeathForward(event, text);
+                        } else if (roll < CHAT_CHANCE + DEATH_CHANCE + JOIN_QUIT_CHANCE) {
+                            final PlayerQuitEvent event = mock(PlayerQuitEvent.class, withSettings().stubOnly());
+                            when(event.getPlayer()).thenReturn(player);
+                            // ...
+                            isOnline[i] = false;
+                            this.produce(sentAt, expected, (isVanished[i] == false) ? username + " left the game." : null);
+                            integration.onPlayerQuitForward(event);
+                        }
+                    }
+                    // Waiting for the next tick.
+                    LockSupport.parkNanos(startedAt + (tick + 1) * TICK - System.nanoTime());
+                }
+                // Waiting for queued lines to be delivered. Lines are sent in order, so it's enough to queue one more line and wait for it. It's sequence number is outside of the recorded range.
+                integration.getWebhookDispatchers().values().forEach(dispatcher -> futures.add(dispatcher.send(null, "#" + capacity + " end", null, null)));
+                try {
+                    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(DRAIN_TIMEOUT, TimeUnit.SECONDS);
+                } catch (final ExecutionException | TimeoutException _) {
+                    // Lines that could not be delivered are reported as dropped.
+                }
+                // Collecting and printing the results.
+                final Result result = this.collect(standIn, integration, sentAt, expected, startedAt);
+                result.asEntries().forEach((name, value) -> System.out.println(name + ": " + value));
+                // Verifying that every line has been forwarded exactly once, and only in case it should be.
+                check(standIn.getDuplicates() == 0L, "Some lines have been delivered more than once.");
+                for (int sequence = 0; sequence < current; sequence++)
+                    if (expected[sequence] == null)
+                        check(standIn.getReceivedAt(sequence) == 0L, "Line #" + sequence + " should not have been forwarded.");
+                    else check(expected[sequence].equals(standIn.getContents(sequence)) == true, "Line #" + sequence + " has not been delivered or has unexpected contents.");
+                // Verifying that waypoints have been replaced.
+                check(standIn.getUntagged("[Xaero's Waypoint]") == waypoints, "Some waypoints have not been delivered.");
+                check(standIn.getUntaggedContaining("xaero-waypoint:") == 0, "Some waypoints have not been replaced.");
+            } finally {
+                // Shutting down the integration and closing clients. Lines that are still queued are not included in the results.
+                integration.shutdown();
+                clients.values().forEach(WebhookClient::close);
+                httpClient.dispatcher().executorService().shutdown();
+                httpClient.connectionPool().evictAll();
+            }
+        }
+    }
+
+    // Fails the benchmark run with specified message, in case condition is not met.
+    private static void check(final boolean condition, final @NotNull String message) {
+        if (condition == false)
+            throw new IllegalStateException(message);
+    }
+
+    // Records line of the current sequence number as produced and advances the sequence number.
+    private void produce(final long[] sentAt, final String[] expected, final @Nullable String contents) {
+        sentAt[current] = System.nanoTime();
+        expected[current] = contents;
+        current++;
+    }
+
+    // Stands in for PlaceholderAPI, which cannot be loaded outside of the server. Supports only placeholders used by this benchmark.
+    private @Nullable Object setPlaceholders(final @NotNull InvocationOnMock invocation) throws Throwable {
+        if (invocation.getMethod().getName().equals("setPlaceholders") == true && invocation.getArgument(0) instanceof Player player && invocation.getArgument(1) instanceof String text)
+            // Line is produced before it's passed to the listener, so the sequence number has already been advanced.
+            return text.replace("%player_name%", player.getName()).replace("%benchmark_sequence%", Integer.toString(current - 1));
+        // ...
+        return Answers.RETURNS_DEFAULTS.answer(invocation);
+    }
+
+    private @NotNull AsyncChatEvent createChatEvent(final @NotNull Player player, final @NotNull String content, final boolean hasViewers) {
+        final AsyncChatEvent event = mock(AsyncChatEvent.class, withSettings().stubOnly());
+        final SignedMessage signedMessage = mock(SignedMessage.class, withSettings().stubOnly());
+        when(event.getPlayer()).thenReturn(player);
+        when(event.message()).thenReturn(Component.text(content));
+        doReturn((hasViewers == true) ? Set.of(player) : Set.of()).when(event).viewers();
+        // Messages are not signed, so they are never stored in the chat history.
+        when(event.signedMessage()).thenReturn(signedMessage);
+        // ...
+        return event;
+    }
+
+    private @NotNull PlayerDeathEvent createDeathEvent(final @NotNull Player player, final boolean hasAttacker) {
+        final PlayerDeathEvent event = mock(PlayerDeathEvent.class, withSettings().stubOnly());
+        final DamageSource source = mock(DamageSource.class, withSettings().stubOnly());
+        when(event.getPlayer()).thenReturn(player);
+        when(event.getDamageSource()).thenReturn(source);
+        // Attacker is never a Mob, as these require translations to be loaded.
+        if (hasAttacker == true) {
+            final Entity attacker = mock(Entity.class, withSettings().stubOnly());
+            when(attacker.getName()).thenReturn("Skeleton");
+            when(source.getCausingEntity()).thenReturn(attacker);
+        }
+        return event;
+    }
+
+    private @NotNull Result collect(final @NotNull DiscordStandIn standIn, final @NotNull DiscordIntegration integration, final long[] sentAt, final String[] expected, final long startedAt) {
+        final long[] latencies = new long[current];
+        int sent = 0;
+        int received = 0;
+        long lastReceivedAt = startedAt;
+        // Calculating latency of each delivered line. Lines which should not have been forwarded are skipped.
+        for (int sequence = 0; sequence < current; sequence++) {
+            if (expected[sequence] == null)
+                continue;
+            // ...
+            sent++;
+            final long receivedAt = standIn.getReceivedAt(sequence);
+            // Skipping lines that were not delivered.
+            if (receivedAt == 0L)
+                continue;
+            // ...
+            latencies[received++] = receivedAt - sentAt[sequence];
+            lastReceivedAt = Math.max(lastReceivedAt, receivedAt);
+        }
+        Arrays.sort(latencies, 0, received);
+        // Counting lines that were still queued when the benchmark has finished.
+        int pending = 0;
+        for (final WebhookDispatcher dispatcher : integration.getWebhookDispatchers().values())
+            pending += dispatcher.getQueueSize();
+        // ...
+        final long messages = standIn.getRequests() - standIn.getRateLimited() - standIn.getEdits();
+        final double elapsed = (lastReceivedAt - startedAt) / 1_000_000_000.0D;
+        return new Result(
+                players,
+                seconds,
+                sent,
+                received,
+                sent - received,
+                pending,
+                standIn.getDuplicates(),
+                standIn.getRequests(),
+                standIn.getRateLimited(),
+                (elapsed > 0.0D) ? received / elapsed : 0.0D,
+                received / (double) Math.max(1L, messages),
+                percentile(latencies, received, 0.50D),
+                percentile(latencies, received, 0.95D),
+                percentile(latencies, received, 0.99D),
+                percentile(latencies, received, 1.00D)
+        );
+    }
+
+    // Returns specified percentile of the first 'count' sorted values, in milliseconds.
+    private static double percentile(final long[] sorted, final int count, final double percentile) {
+        if (count == 0)
+            return 0.0D;
+        // Using the nearest-rank method.
+        final int index = Math.clamp((long) Math.ceil(percentile * count) - 1, 0, count - 1);
+        return sorted[index] / 1_000_000.0D;
+    }
+
+    /**
+     * Represents results of a single benchmark run. Latencies are expressed in milliseconds.
+     */
+    private record Result(
+            int players,
+            int seconds,
+            int sent,
+            int received,
+            int dropped,
+            int pending,
+            long duplicates,
+            long requests,
+            long rateLimited,
+            double throughput,
+            double mergeRatio,
+            double latencyP50,
+            double latencyP95,
+            double latencyP99,
+            double latencyMax
+    ) {
+
+        /**
+         * Returns results as ordered name-value pairs, ready to be displayed.
+         */
+        public @NotNull Map<String, String> asEntries() {
+            final Map<String, String> entries = new LinkedHashMap<>();
+            entries.put("players", Integer.toString(players));
+            entries.put("duration", seconds + "s");
+            entries.put("lines.sent", Integer.toString(sent));
+            entries.put("lines.received", Integer.toString(received));
+            entries.put("lines.dropped", Integer.toString(dropped));
+            entries.put("lines.pending", Integer.toString(pending));
+            entries.put("lines.duplicates", Long.toString(duplicates));
+            entries.put("requests", Long.toString(requests));
+            entries.put("requests.rate_limited", Long.toString(rateLimited));
+            entries.put("throughput", String.format(Locale.ROOT, "%.2f lines/s", throughput));
+            entries.put("merge_ratio", String.format(Locale.ROOT, "%.2f", mergeRatio));
+            entries.put("latency.p50", String.format(Locale.ROOT, "%.1f ms", latencyP50));
+            entries.put("latency.p95", String.format(Locale.ROOT, "%.1f ms", latencyP95));
+            entries.put("latency.p99", String.format(Locale.ROOT, "%.1f ms", latencyP99));
+            entries.put("latency.max", String.format(Locale.ROOT, "%.1f ms", latencyMax));
+            return entries;
+        }
+
+    }
+
+}
@@ -0,0 +1,302 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.integrations;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import com.squareup.moshi.Types;
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Local stand-in for Discord webhook endpoints, used by {@link DiscordBenchmark}.
+ * <p>
+ * Server is bound to the loopback interface only and accepts requests the same way Discord does. Each webhook has it's own rate-limit bucket
+ * of {@link #BUCKET_LIMIT} requests per {@link #BUCKET_WINDOW} milliseconds. Requests exceeding the limit are rejected with HTTP 429 and the
+ * same headers Discord responds with. Every accepted line starting with {@code #<sequence>} is recorded along with it's contents and the time it has been received.
+ * Remaining lines are counted by their contents.
+ */
+final class DiscordStandIn implements AutoCloseable {
+
+    // Rate-limit applied to each webhook. Matches limits observed on Discord webhooks.
+    private static final int BUCKET_LIMIT = 5;
+    private static final long BUCKET_WINDOW = 2000L;
+
+    // Pattern of a single line sent by the benchmark driver.
+    private static final Pattern SEQUENCE_PATTERN = Pattern.compile("^#(\\d+) (.*)$");
+
+    // Adapter used to read request bodies and write response bodies.
+    private static final JsonAdapter<Map<String, Object>> JSON_ADAPTER = new Moshi.Builder().build().adapter(Types.newParameterizedType(Map.class, String.class, Object.class));
+
+    private final Javalin server;
+
+    // Time each line has been received at, indexed by line sequence number. Zero means line has not been received yet. Guarded by (receivedAt).
+    private final long[] receivedAt;
+
+    // Contents of each line (without the sequence number), indexed by line sequence number. Guarded by (receivedAt).
+    private final String[] contents;
+
+    // Number of times each line without a sequence number has been received, by it's contents. Guarded by (receivedAt).
+    private final Map<String, Integer> untagged = new HashMap<>();
+
+    // Rate-limit buckets, by webhook identifier. Guarded by (this).
+    private final Map<String, Bucket> buckets = new HashMap<>();
+
+    // Counters.
+    private final AtomicLong nextMessageId = new AtomicLong(1L);
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder edits = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+
+    /**
+     * Starts the stand-in on a random port of the loopback interface. Lines with sequence number of up to {@code capacity - 1} are recorded.
+     */
+    public DiscordStandIn(final int capacity) {
+        this.receivedAt = new long[capacity];
+        this.contents = new String[capacity];
+        // Creating and configuring Javalin (web-server) instance, and starting it afterward.
+        this.server = Javalin.create(config -> {
+            config.startup.showJavalinBanner = false;
+            config.startup.startupWatcherEnabled = false;
+            // NOTE: Virtual Threads can cause the internal web-server to hang indefinitely. Something yet to figure out.
+            config.concurrency.useVirtualThreads = false;
+            // Registering webhook endpoints. Version prefix of the path is stripped by the client.
+            config.routes.post("/webhooks/{id}/{token}", this::onExecute);
+            config.routes.patch("/webhooks/{id}/{token}/messages/{message}", this::onEdit);
+            config.routes.delete("/webhooks/{id}/{token}/messages/{message}", this::onDelete);
+        });
+        // Starting the server. Port is chosen by the operating system.
+        server.start("127.0.0.1", 0);
+    }
+
+    /**
+     * Returns port this stand-in is listening on.
+     */
+    public int getPort() {
+        return server.port();
+    }
+
+    /**
+     * Returns time (as in {@link System#nanoTime()}) line of specified sequence number has been received at, or {@code 0} if it was not received.
+     */
+    public long getReceivedAt(final int sequence) {
+        synchronized (receivedAt) {
+            return receivedAt[sequence];
+        }
+    }
+
+    /**
+     * Returns contents of line of specified sequence number (without the sequence number itself), or {@code null} if it was not received.
+     */
+    public @Nullable String getContents(final int sequence) {
+        synchronized (receivedAt) {
+            return contents[sequence];
+        }
+    }
+
+    /**
+     * Returns number of times line of specified contents has been received. Only lines without a sequence number are counted.
+     */
+    public int getUntagged(final @NotNull String line) {
+        synchronized (receivedAt) {
+            return untagged.getOrDefault(line, 0);
+        }
+    }
+
+    /**
+     * Returns number of received lines without a sequence number which contents contains specified text.
+     */
+    public int getUntaggedContaining(final @NotNull String text) {
+        synchronized (receivedAt) {
+            return untagged.entrySet().stream().filter(entry -> entry.getKey().contains(text) == true).mapToInt(Map.Entry::getValue).sum();
+        }
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    public long getEdits() {
+        return edits.sum();
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop();
+    }
+
+    // Handles "Execute Webhook" requests.
+    private void onExecute(final @NotNull Context context) throws IOException {
+        final long now = System.nanoTime();
+        requests.increment();
+        // Rejecting the request if rate-limit has been exceeded.
+        if (this.consume(context) == false)
+            return;
+        // Reading contents of the message.
+        final @Nullable Map<String, Object> body = JSON_ADAPTER.fromJson(context.body());
+        final String content = (body != null && body.get("content") instanceof String string) ? string : "";
+        // Recording each line of the message.
+        synchronized (receivedAt) {
+            for (final String line : content.split("\n")) {
+                final Matcher matcher = SEQUENCE_PATTERN.matcher(line);
+                // Counting lines without a sequence number by their contents.
+                if (matcher.matches() == false) {
+                    untagged.merge(line, 1, Integer::sum);
+                    continue;
+                }
+                final int sequence = Integer.parseInt(matcher.group(1));
+                // Skipping lines outside of the recorded range.
+                if (sequence < 0 || sequence >= receivedAt.length)
+                    continue;
+                // Counting lines that have been delivered more than once.
+                if (receivedAt[sequence] != 0L)
+                    duplicates.increment();
+                else {
+                    receivedAt[sequence] = now;
+                    contents[sequence] = matcher.group(2);
+                }
+            }
+        }
+        // Responding with the created message. Client expects full message object because it always waits for the response.
+        final @Nullable Object username = (body != null) ? body.get("username") : null;
+        final @Nullable Object avatar = (body != null) ? body.get("avatar_url") : null;
+        this.respond(context, Long.toString(nextMessageId.getAndIncrement()), content, username, avatar);
+    }
+
+    // Handles "Edit Webhook Message" requests.
+    private void onEdit(final @NotNull Context context) throws IOException {
+        requests.increment();
+        // Rejecting the request if rate-limit has been exceeded.
+        if (this.consume(context) == false)
+            return;
+        // ...
+        edits.increment();
+        // Reading contents of the message.
+        final @Nullable Map<String, Object> body = JSON_ADAPTER.fromJson(context.body());
+        final String content = (body != null && body.get("content") instanceof String string) ? string : "";
+        // Responding with the edited message.
+        this.respond(context, context.pathParam("message"), content, null, null);
+    }
+
+    // Handles "Delete Webhook Message" requests.
+    private void onDelete(final @NotNull Context context) {
+        requests.increment();
+        // Rejecting the request if rate-limit has been exceeded.
+        if (this.consume(context) == false)
+            return;
+        // ...
+        context.status(204);
+    }
+
+    /**
+     * Takes a single request from the bucket of requested webhook and sets rate-limit headers. Returns {@code false} and rejects the request if bucket is empty.
+     */
+    private boolean consume(final @NotNull Context context) {
+        final String webhook = context.pathParam("id");
+        final long now = System.currentTimeMillis();
+        final boolean isAllowed;
+        final int remaining;
+        final long resetAfter;
+        synchronized (this) {
+            final Bucket bucket = buckets.computeIfAbsent(webhook, _ -> new Bucket());
+            // Resetting the bucket once window has passed.
+            if (now - bucket.windowStart >= BUCKET_WINDOW) {
+                bucket.windowStart = now;
+                bucket.used = 0;
+            }
+            // Taking the request from the bucket, if possible.
+            isAllowed = (bucket.used < BUCKET_LIMIT);
+            // ...
+            if (isAllowed == true)
+                bucket.used++;
+            // ...
+            remaining = BUCKET_LIMIT - bucket.used;
+            resetAfter = Math.max(1L, bucket.windowStart + BUCKET_WINDOW - now);
+        }
+        // Setting rate-limit headers. Client uses them to delay requests until the bucket resets.
+        context.header("X-RateLimit-Bucket", webhook);
+        context.header("X-RateLimit-Limit", Integer.toString(BUCKET_LIMIT));
+        context.header("X-RateLimit-Remaining", Integer.toString(remaining));
+        context.header("X-RateLimit-Reset", String.format(Locale.ROOT, "%.3f", (now + resetAfter) / 1000.0D));
+        context.header("X-RateLimit-Reset-After", String.format(Locale.ROOT, "%.3f", resetAfter / 1000.0D));
+        // Rejecting the request in case rate-limit has been exceeded.
+        if (isAllowed == false) {
+            rateLimited.increment();
+            // Retry-After header is expressed in whole seconds.
+            context.header("Retry-After", Long.toString(TimeUnit.MILLISECONDS.toSeconds(resetAfter + 999L)));
+            context.status(429).contentType("application/json").result(JSON_ADAPTER.toJson(Map.of("message", "You are being rate limited.", "retry_after", resetAfter / 1000.0D, "global", false)));
+            return false;
+        }
+        return true;
+    }
+
+    // Writes message object to the response.
+    private void respond(final @NotNull Context context, final @NotNull String id, final @NotNull String content, final @Nullable Object username, final @Nullable Object avatar) {
+        final Map<String, Object> author = new HashMap<>();
+        author.put("id", context.pathParam("id"));
+        author.put("username", (username != null) ? username : "Benchmark");
+        author.put("discriminator", "0000");
+        author.put("avatar", avatar);
+        author.put("bot", true);
+        // ...
+        final Map<String, Object> message = new HashMap<>();
+        message.put("id", id);
+        message.put("type", 0);
+        message.put("channel_id", "1");
+        message.put("webhook_id", context.pathParam("id"));
+        message.put("content", content);
+        message.put("author", author);
+        message.put("embeds", List.of());
+        message.put("attachments", List.of());
+        message.put("mentions", List.of());
+        message.put("mention_roles", List.of());
+        message.put("mention_everyone", false);
+        message.put("tts", false);
+        // ...
+        context.status(200).contentType("application/json").result(JSON_ADAPTER.toJson(message));
+    }
+
+    /**
+     * Represents rate-limit bucket of a single webhook.
+     */
+    private static final class Bucket {
+        private long windowStart = 0L;
+        private int used = 0;
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.template;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+
+import static net.kyori.adventure.text.Component.text;
+
+/**
+ * Compares {@link MessageTemplate} with parsing the format using {@link MiniMessage} on every send, which is how formats used to be rendered.
+ * <ul>
+ *     <li>{@code join*} renders the join message. Prefix and suffix are substituted into the format before it is parsed, which means
+ *         templates are compiled once per distinct prefix and suffix. Number of distinct prefixes is controlled by {@link #prefixes}.</li>
+ *     <li>{@code death*} renders a death message, which has no parsed placeholders and always uses the compiled template.</li>
+ * </ul>
+ * PlaceholderAPI is not available outside of the server, so formats containing its placeholders are not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MessageTemplateBenchmark {
+
+    // Number of distinct prefixes, as if players of this many groups were joining in turns.
+    @Param({ "1", "16" })
+    public int prefixes;
+
+    private static final String JOIN_FORMAT = "<dark_gray>› <gray><prefix><player><reset><gray> dołączył do gry.";
+    private static final String DEATH_FORMAT = "<dark_gray>› <gray><victim_displayname> <gray>został zabity przez <red><attacker_displayname> <gray>(<mob>)";
+
+    private String[] prefixValues;
+    private Component displayName;
+
+    // Index of the next prefix. Benchmark runs on a single thread.
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        this.prefixValues = new String[prefixes];
+        // Prefixes are left unclosed, like LuckPerms prefixes usually are.
+        for (int i = 0; i < prefixes; i++)
+            prefixValues[i] = "<gray>[<yellow>Group" + i + "<gray>] <white>";
+        // ...
+        this.displayName = text("Steve");
+        // Compiling templates ahead of time, just like it is done on reload.
+        MessageTemplate.precompile(List.of(JOIN_FORMAT, DEATH_FORMAT));
+    }
+
+    @Benchmark
+    public @NotNull Component joinMiniMessage() {
+        final String prefix = this.nextPrefix();
+        // ...
+        return MiniMessage.miniMessage().deserialize(JOIN_FORMAT.replace("<prefix>", prefix).replace("<suffix>", ""),
+                Placeholder.unparsed("player", "Steve"),
+                Placeholder.unparsed("group", "default"),
+                Placeholder.component("displayname", displayName)
+        );
+    }
+
+    @Benchmark
+    public @NotNull Component joinTemplate() {
+        final String prefix = this.nextPrefix();
+        // ...
+        return MessageTemplate.of(JOIN_FORMAT).render(null,
+                MessageTemplate.unparsed("player", "Steve"),
+                MessageTemplate.unparsed("group", "default"),
+                MessageTemplate.parsed("prefix", prefix),
+                MessageTemplate.parsed("suffix", ""),
+                MessageTemplate.component("displayname", displayName)
+        );
+    }
+
+    @Benchmark
+    public @NotNull Component deathMiniMessage() {
+        return MiniMessage.miniMessage().deserialize(DEATH_FORMAT,
+                Placeholder.unparsed("victim", "Steve"),
+                Placeholder.component("victim_displayname", displayName),
+                Placeholder.unparsed("attacker", "Zombie"),
+                Placeholder.component("attacker_displayname", text("Zombie")),
+                Placeholder.unparsed("mob", "Zombie")
+        );
+    }
+
+    @Benchmark
+    public @NotNull Component deathTemplate() {
+        return MessageTemplate.of(DEATH_FORMAT).render(null,
+                MessageTemplate.unparsed("victim", "Steve"),
+                MessageTemplate.component("victim_displayname", displayName),
+                MessageTemplate.unparsed("attacker", "Zombie"),
+                MessageTemplate.component("attacker_displayname", text("Zombie")),
+                MessageTemplate.unparsed("mob", "Zombie")
+        );
+    }
+
+    private @NotNull String nextPrefix() {
+        final String prefix = prefixValues[next];
+        next = (next + 1) % prefixes;
+        // ...
+        return prefix;
+    }
+
+}
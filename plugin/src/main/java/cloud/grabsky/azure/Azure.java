@@ -16,13 +16,18 @@ package cloud.grabsky.azure;
 
 import cloud.grabsky.azure.api.AzureAPI;
 import cloud.grabsky.azure.api.AzureProvider;
+import cloud.grabsky.azure.api.chat.ChatFilterRegistry;
 import cloud.grabsky.azure.api.user.User;
 import cloud.grabsky.azure.api.user.UserCache;
+import cloud.grabsky.azure.audience.AudienceRegistry;
 import cloud.grabsky.azure.chat.ChatManager;
+import cloud.grabsky.azure.chat.channel.ChatChannel;
 import cloud.grabsky.azure.commands.AdminChatCommand;
 import cloud.grabsky.azure.commands.AzureCommand;
 import cloud.grabsky.azure.commands.BackCommand;
 import cloud.grabsky.azure.commands.BanCommand;
+import cloud.grabsky.azure.commands.ChannelCommand;
+import cloud.grabsky.azure.commands.ChatLogCommand;
 import cloud.grabsky.azure.commands.DefeatCommand;
 import cloud.grabsky.azure.commands.DeleteCommand;
 import cloud.grabsky.azure.commands.EnderchestCommand;
@@ -60,11 +65,18 @@ import cloud.grabsky.azure.configuration.PluginLocale;
 import cloud.grabsky.azure.configuration.adapters.BossBarAdapterFactory;
 import cloud.grabsky.azure.configuration.adapters.TagResolverAdapter;
 import cloud.grabsky.azure.integrations.DiscordIntegration;
+import cloud.grabsky.azure.integrations.DiscordOutbox;
 import cloud.grabsky.azure.integrations.ExcellentShopIntegration;
 import cloud.grabsky.azure.listener.PlayerListener;
+import cloud.grabsky.azure.metrics.MetricsRegistry;
 import cloud.grabsky.azure.resourcepack.ResourcePackManager;
+import cloud.grabsky.azure.template.MessageTemplate;
 import cloud.grabsky.azure.user.AzureUserCache;
+import cloud.grabsky.azure.user.geoip.CountryResolver;
+import cloud.grabsky.azure.user.storage.UserCodec;
+import cloud.grabsky.azure.user.storage.UserStorage;
 import cloud.grabsky.azure.util.FileLogger;
+import cloud.grabsky.azure.visibility.VisibilityService;
 import cloud.grabsky.bedrock.BedrockScheduler;
 import cloud.grabsky.bedrock.helpers.Conditions;
 import cloud.grabsky.commands.RootCommandManager;
@@ -84,6 +96,7 @@ import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
 import net.kyori.adventure.text.minimessage.tag.standard.StandardTags;
 import net.luckperms.api.LuckPerms;
 import net.luckperms.api.LuckPermsProvider;
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.Registry;
@@ -102,11 +115,13 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
@@ -128,12 +143,28 @@ public final class Azure extends JavaPlugin implements AzureAPI, Listener {
     @Getter(AccessLevel.PUBLIC)
     private BedrockScheduler bedrockScheduler;
 
+    /**
+     * {@link Executor} which runs tasks on the main thread. Tasks submitted from the main thread are executed immediately.
+     */
+    @Getter(AccessLevel.PUBLIC)
+    private final Executor mainThreadExecutor = (task) -> {
+        if (Bukkit.isPrimaryThread() == true)
+            task.run();
+        else bedrockScheduler.run(1L, (_) -> task.run());
+    };
+
     @Getter(AccessLevel.PUBLIC)
     private UserCache userCache;
 
     @Getter(AccessLevel.PUBLIC)
     private LuckPerms luckPerms;
 
+    @Getter(AccessLevel.PUBLIC)
+    private VisibilityService visibilityService;
+
+    @Getter(AccessLevel.PUBLIC)
+    private AudienceRegistry audienceRegistry;
+
     @Getter(AccessLevel.PUBLIC)
     private ChatManager chatManager;
 
@@ -149,6 +180,12 @@ public final class Azure extends JavaPlugin implements AzureAPI, Listener {
     @Getter(AccessLevel.PUBLIC)
     private DiscordIntegration discordIntegration;
 
+    @Getter(AccessLevel.PUBLIC)
+    private @Nullable DiscordOutbox discordOutbox;
+
+    @Getter(AccessLevel.PUBLIC)
+    private MetricsRegistry metricsRegistry;
+
     private ConfigurationMapper mapper;
 
     @Override
@@ -160,8 +197,25 @@ public final class Azure extends JavaPlugin implements AzureAPI, Listener {
         this.mapper = PaperConfigurationMapper.create(moshi -> {
             moshi.add(TagResolver.class, TagResolverAdapter.INSTANCE);
             moshi.add(DeleteButton.Position.class, new AbstractEnumJsonAdapter<>(DeleteButton.Position.class, false) { /* DEFAULT */ });
+            moshi.add(UserStorage.Type.class, new AbstractEnumJsonAdapter<>(UserStorage.Type.class, false) { /* DEFAULT */ });
+            moshi.add(UserCodec.Type.class, new AbstractEnumJsonAdapter<>(UserCodec.Type.class, false) { /* DEFAULT */ });
+            moshi.add(CountryResolver.Type.class, new AbstractEnumJsonAdapter<>(CountryResolver.Type.class, false) { /* DEFAULT */ });
+            moshi.add(ChatChannel.class, new AbstractEnumJsonAdapter<>(ChatChannel.class, false) { /* DEFAULT */ });
             moshi.add(BossBarAdapterFactory.INSTANCE);
         });
+        // Creating new instance of MetricsRegistry. Must be done before any of the components which expose metrics is created. (including DiscordIntegration, which is created on reload)
+        this.metricsRegistry = new MetricsRegistry();
+        // Registering MessageTemplate metrics. Templates are compiled statically, so there is no component to register them.
+        metricsRegistry.register("templates.cached", MessageTemplate::getTemplateCount);
+        metricsRegistry.register("templates.renders.compiled", MessageTemplate::getCompiledRenders);
+        metricsRegistry.register("templates.renders.parsed", MessageTemplate::getParsedRenders);
+        // Creating new instance of DiscordOutbox. Messages left from previous run are delivered once Discord integration is started.
+        try {
+            this.discordOutbox = new DiscordOutbox(this, new File(this.getDataFolder(), "outbox"));
+        } catch (final IOException e) {
+            this.getLogger().severe("Could not open Discord outbox. Messages will be sent directly instead.");
+            this.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
         // ResourcePackManager has to be initialized before configuration is reloaded.
         this.resourcePackManager = new ResourcePackManager(this);
         // Reloading and stopping the server in case of failure.
@@ -174,6 +228,11 @@ public final class Azure extends JavaPlugin implements AzureAPI, Listener {
         this.getServer().getPluginManager().registerEvents((AzureUserCache) userCache, this);
         // Getting LuckPerms API from the provider.
         this.luckPerms = LuckPermsProvider.get();
+        // Creating new instance of VisibilityService and registering it's event listeners.
+        this.visibilityService = new VisibilityService(this, luckPerms);
+        this.getServer().getPluginManager().registerEvents(visibilityService, this);
+        // Creating new instance of AudienceRegistry. Event listeners are registered by the constructor.
+        this.audienceRegistry = new AudienceRegistry(this);
         // Creating new instance of ChatManager.
         this.chatManager = new ChatManager(this);
         // Loading list of inappropriate words.
@@ -190,10 +249,13 @@ public final class Azure extends JavaPlugin implements AzureAPI, Listener {
                 .registerDependency(LuckPerms.class, luckPerms)
                 .registerDependency(ChatManager.class, chatManager)
                 .registerDependency(UserCache.class, userCache)
+                .registerDependency(AudienceRegistry.class, audienceRegistry)
                 // Registering commands...
                 .registerCommand(AdminChatCommand.class)
                 .registerCommand(AzureCommand.class)
                 .registerCommand(BanCommand.class)
+                .registerCommand(ChannelCommand.class)
+                .registerCommand(ChatLogCommand.class)
                 .registerCommand(DefeatCommand.class)
                 .registerCommand(DeleteCommand.class)
                 .registerCommand(EnderchestCommand.class)
@@ -241,8 +303,43 @@ public final class Azure extends JavaPlugin implements AzureAPI, Listener {
     public void onDisable() {
         if (PluginConfig.DISCORD_INTEGRATIONS_ENABLED == true) {
             this.getDiscordIntegration().onServerShutdown();
-            this.getDiscordIntegration().shutdown();
+            this.getDiscordIntegration().closeDispatchers();
         }
+        // Closing Discord outbox. Remaining messages are given a few seconds to be delivered, so it must be done before Discord integration is shut down. Undelivered messages are delivered after next start.
+        if (this.discordOutbox != null)
+            discordOutbox.close();
+        // Shutting down Discord integration.
+        if (PluginConfig.DISCORD_INTEGRATIONS_ENABLED == true)
+            this.getDiscordIntegration().shutdown();
+        // Closing user storage. Segmented storage persists it's index here.
+        if (this.userCache != null)
+            ((AzureUserCache) userCache).close();
+    }
+
+    // Returns list of configured formats that are rendered using MessageTemplate.
+    private static @NotNull List<String> collectTemplateSources() {
+        final List<String> sources = new ArrayList<>();
+        // Chat formats...
+        sources.add(PluginConfig.CHAT_FORMATS_DEFAULT);
+        sources.add(PluginConfig.CHAT_FORMATS_CONSOLE);
+        PluginConfig.CHAT_FORMATS_EXTRA.forEach(holder -> sources.add(holder.getFormat()));
+        // Server messages...
+        sources.add(PluginConfig.CHAT_SERVER_JOIN_MESSAGE);
+        sources.add(PluginConfig.CHAT_SERVER_QUIT_MESSAGE);
+        sources.add(PluginConfig.CHAT_ADVANCEMENT_MESSAGE_FORMAT);
+        // Death messages...
+        sources.add(PluginLocale.DEATH_MESSAGES_DEFAULT);
+        sources.addAll(PluginLocale.DEATH_MESSAGES.values());
+        // Mention format is optional.
+        if (PluginConfig.CHAT_MENTION_FORMAT != null)
+            sources.add(PluginConfig.CHAT_MENTION_FORMAT);
+        // Returning the list.
+        return sources;
+    }
+
+    @Override
+    public @NotNull ChatFilterRegistry getChatFilters() {
+        return chatManager.getFilters();
     }
 
     public boolean onReload() {
@@ -256,11 +353,23 @@ public final class Azure extends JavaPlugin implements AzureAPI, Listener {
                     ConfigurationHolder.of(PluginLocale.Commands.class, localeCommands),
                     ConfigurationHolder.of(PluginConfig.class, config)
             );
+            // Compiling configured message formats again, as they might have changed.
+            MessageTemplate.invalidateAll();
+            MessageTemplate.precompile(collectTemplateSources());
             // Reloading ResourcePackManager.
             resourcePackManager.reload();
             // Reloading filtered words.
-            if (this.chatManager != null)
+            if (this.chatManager != null) {
                 chatManager.loadInappropriateWords();
+                // Resolving chat formats and tags of online players again, as they might have changed.
+                chatManager.getProfileCache().refreshAll();
+                // Removing rate limiter buckets, as limits might have changed.
+                chatManager.getRateLimiter().invalidateAll();
+                // Removing remembered messages, as spam detection settings might have changed.
+                chatManager.getSpamDetector().invalidateAll();
+                // Sorting filter stages, as their order might have changed.
+                chatManager.getFilters().reorder();
+            }
             // Unregistering PAPI expansion if already registered.
             if (Placeholders.INSTANCE.isRegistered() == true)
                 Placeholders.INSTANCE.unregister();
@@ -424,13 +533,19 @@ public final class Azure extends JavaPlugin implements AzureAPI, Listener {
                     yield null;
                 }
                 // Placeholder: %azure_is_verified%
-                case "is_verified" -> (Azure.getInstance().getUserCache() != null && Azure.getInstance().getUserCache().hasUser(uniqueId) == true)
-                        ? String.valueOf(Azure.getInstance().getUserCache().getUser(uniqueId).getDiscordId() != null)
-                        : "N/A";
+                case "is_verified" -> {
+                    // Getting the User instance. Can be null if user is not held in memory.
+                    final @Nullable User user = (Azure.getInstance().getUserCache() != null) ? Azure.getInstance().getUserCache().getUser(uniqueId) : null;
+                    // ...
+                    yield (user != null) ? String.valueOf(user.getDiscordId() != null) : "N/A";
+                }
                 // Placeholder: %azure_max_level%
-                case "max_level" -> (Azure.getInstance().getUserCache() != null && Azure.getInstance().getUserCache().hasUser(uniqueId) == true)
-                        ? String.valueOf(Azure.getInstance().getUserCache().getUser(uniqueId).getMaxLevel())
-                        : "N/A";
+                case "max_level" -> {
+                    // Getting the User instance. Can be null if user is not held in memory.
+                    final @Nullable User user = (Azure.getInstance().getUserCache() != null) ? Azure.getInstance().getUserCache().getUser(uniqueId) : null;
+                    // ...
+                    yield (user != null) ? String.valueOf(user.getMaxLevel()) : "N/A";
+                }
                 // Anything else is not a valid placeholder.
                 default -> null;
             };
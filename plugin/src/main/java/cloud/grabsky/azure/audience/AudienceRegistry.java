@@ -0,0 +1,189 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.audience;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.api.user.User;
+import cloud.grabsky.azure.chat.ChatManager;
+import cloud.grabsky.azure.chat.channel.ChannelManager;
+import net.kyori.adventure.audience.Audience;
+import net.luckperms.api.event.group.GroupDataRecalculateEvent;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.UnmodifiableView;
+
+/**
+ * {@link AudienceRegistry} keeps live sets of online players belonging to each {@link Type} of audience.
+ * <p>
+ * Memberships are resolved when player joins, when LuckPerms recalculates data of the player (or any group) and when
+ * state of the player (eg. spying) changes. Broadcasts can then iterate only actual members, instead of checking every online player.
+ */
+public final class AudienceRegistry implements Listener {
+
+    private final Azure plugin;
+
+    // Members of each audience.
+    private final Map<Type, Set<Player>> members = new EnumMap<>(Type.class);
+
+    public AudienceRegistry(final @NotNull Azure plugin) {
+        this.plugin = plugin;
+        // Creating member sets of each audience.
+        for (final Type type : Type.values())
+            members.put(type, ConcurrentHashMap.newKeySet());
+        // Resolving memberships again when LuckPerms recalculates user or group data. Events are called asynchronously, so work is moved onto the main thread.
+        plugin.getLuckPerms().getEventBus().subscribe(plugin, UserDataRecalculateEvent.class, (event) -> plugin.getMainThreadExecutor().execute(() -> {
+            final @Nullable Player player = Bukkit.getPlayer(event.getUser().getUniqueId());
+            // ...
+            if (player != null)
+                this.refresh(player);
+        }));
+        plugin.getLuckPerms().getEventBus().subscribe(plugin, GroupDataRecalculateEvent.class, (_) -> plugin.getMainThreadExecutor().execute(this::refreshAll));
+        // Resolving memberships of players that are already online. (reload)
+        this.refreshAll();
+        // Registering event listeners.
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        // Registering metrics.
+        for (final Type type : Type.values())
+            plugin.getMetricsRegistry().register("audiences." + type.name().toLowerCase(), members.get(type)::size);
+    }
+
+    /**
+     * Returns unmodifiable view of online players belonging to specified {@link Type} of audience.
+     */
+    public @NotNull @UnmodifiableView Set<Player> getMembers(final @NotNull Type type) {
+        return Collections.unmodifiableSet(members.get(type));
+    }
+
+    /**
+     * Returns {@link Audience} forwarding to all online players belonging to specified {@link Type} of audience.
+     */
+    public @NotNull Audience getAudience(final @NotNull Type type) {
+        return Audience.audience(members.get(type));
+    }
+
+    /**
+     * Returns {@link Audience} forwarding to all online players belonging to specified {@link Type} of audience and the server console.
+     */
+    public @NotNull Audience getAudienceWithConsole(final @NotNull Type type) {
+        return Audience.audience(Bukkit.getConsoleSender(), Audience.audience(members.get(type)));
+    }
+
+    /**
+     * Returns {@code true} if specified {@link Player} belongs to specified {@link Type} of audience.
+     */
+    public boolean isMember(final @NotNull Player player, final @NotNull Type type) {
+        return members.get(type).contains(player);
+    }
+
+    /**
+     * Resolves memberships of specified {@link Player}. Should be called whenever state that memberships depend on changes.
+     */
+    public void refresh(final @NotNull Player player) {
+        // Skipping offline players, as they would never be removed.
+        if (player.isOnline() == false)
+            return;
+        // ...
+        for (final Type type : Type.values()) {
+            if (this.test(player, type) == true)
+                members.get(type).add(player);
+            else members.get(type).remove(player);
+        }
+    }
+
+    /**
+     * Resolves memberships of all online players.
+     */
+    public void refreshAll() {
+        Bukkit.getOnlinePlayers().forEach(this::refresh);
+    }
+
+    private boolean test(final @NotNull Player player, final @NotNull Type type) {
+        return switch (type) {
+            case STAFF_CHAT -> player.hasPermission("azure.command.adminchat") == true;
+            case STAFF_CHANNEL -> player.hasPermission(ChannelManager.STAFF_CHANNEL_PERMISSION) == true;
+            case SPIES -> {
+                final @Nullable User user = plugin.getUserCache().getUser(player.getUniqueId());
+                // ...
+                yield user != null && user.isSpying() == true;
+            }
+            case BAN_NOTIFICATIONS -> player.hasPermission("azure.command.ban") == true;
+            case MUTE_NOTIFICATIONS -> player.hasPermission("azure.command.mute") == true;
+            case MESSAGE_DELETION -> player.hasPermission(ChatManager.CHAT_MODERATION_PERMISSION) == true;
+        };
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(final @NotNull PlayerJoinEvent event) {
+        this.refresh(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(final @NotNull PlayerQuitEvent event) {
+        members.values().forEach(set -> set.remove(event.getPlayer()));
+    }
+
+    /**
+     * Types of audiences tracked by {@link AudienceRegistry}.
+     */
+    public enum Type {
+
+        /**
+         * Players who can see (and send) admin chat messages.
+         */
+        STAFF_CHAT,
+
+        /**
+         * Players who can see (and send) messages of the staff chat channel.
+         */
+        STAFF_CHANNEL,
+
+        /**
+         * Players who are currently spying on private messages.
+         */
+        SPIES,
+
+        /**
+         * Players who can see silent ban, unban and kick notifications.
+         */
+        BAN_NOTIFICATIONS,
+
+        /**
+         * Players who can see silent mute notifications.
+         */
+        MUTE_NOTIFICATIONS,
+
+        /**
+         * Players who can delete chat messages of other players.
+         */
+        MESSAGE_DELETION
+
+    }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import net.kyori.adventure.chat.SignedMessage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link ChatHistory} is a fixed-capacity ring buffer of recent chat messages. Once full, the oldest message is overwritten.
+ * <p>
+ * Slots are allocated once, when history is created. Messages of the same sender are linked together through their
+ * sequence numbers, so messages of a single player can be listed (and deleted) without scanning the whole buffer.
+ */
+public final class ChatHistory {
+
+    // Preallocated slots. Message with sequence number N is stored at index N % capacity. Guarded by (this).
+    private final Slot[] slots;
+
+    // Sequence number of the most recent message of each sender. Entry is removed once the message is overwritten. Guarded by (this).
+    private final Map<UUID, Sender> senders = new HashMap<>();
+
+    // Most significant bits of every message identifier. Random, so identifiers from before restart do not point to different messages.
+    private final long instance = ThreadLocalRandom.current().nextLong();
+
+    // Sequence number of the next message. Guarded by (this).
+    private long next = 0;
+
+    public ChatHistory(final int capacity) {
+        this.slots = new Slot[Math.max(capacity, 1)];
+        // Allocating all slots upfront.
+        for (int i = 0; i < slots.length; i++)
+            slots[i] = new Slot();
+    }
+
+    /**
+     * Returns maximum number of messages stored in this history.
+     */
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Returns number of messages currently stored in this history.
+     */
+    public synchronized int size() {
+        return (int) Math.min(next, slots.length);
+    }
+
+    /**
+     * Adds message to the history, overwriting the oldest one if full. Returns {@link UUID} identifying the message.
+     */
+    public synchronized @NotNull UUID add(final @NotNull UUID sender, final @NotNull String senderName, final @NotNull String text, final @Nullable SignedMessage.Signature signature) {
+        final long sequence = next++;
+        final Slot slot = slots[(int) (sequence % slots.length)];
+        // Removing sender of the overwritten message, in case it was their most recent one. All their older messages are gone by now too.
+        if (slot.sequence != -1) {
+            final @Nullable Sender previous = senders.get(slot.sender);
+            // ...
+            if (previous != null && previous.last == slot.sequence)
+                senders.remove(slot.sender);
+        }
+        // Getting (or creating) sender of this message.
+        final Sender current = senders.computeIfAbsent(sender, (_) -> new Sender());
+        // Overwriting the slot.
+        slot.sequence = sequence;
+        slot.previous = current.last;
+        slot.sender = sender;
+        slot.senderName = senderName;
+        slot.timestamp = System.currentTimeMillis();
+        slot.text = text;
+        slot.signature = signature;
+        slot.discordMessageId = 0L;
+        slot.deleted = false;
+        // Updating most recent message of the sender.
+        current.last = sequence;
+        // ...
+        return new UUID(instance, sequence);
+    }
+
+    /**
+     * Returns {@link Entry} of message identified by specified {@link UUID}, or {@code null} if it's no longer stored.
+     */
+    public synchronized @Nullable Entry get(final @NotNull UUID id) {
+        final @Nullable Slot slot = find(id);
+        // ...
+        return (slot != null) ? slot.toEntry(instance) : null;
+    }
+
+    /**
+     * Returns up to {@code limit} most recent messages of specified sender, starting from the newest one.
+     */
+    public synchronized @NotNull List<Entry> getMessages(final @NotNull UUID sender, final int limit) {
+        final List<Entry> entries = new ArrayList<>();
+        // Following links between messages of the sender.
+        for (@Nullable Slot slot = last(sender); slot != null && entries.size() < limit; slot = previous(slot))
+            entries.add(slot.toEntry(instance));
+        // ...
+        return entries;
+    }
+
+    /**
+     * Marks message identified by specified {@link UUID} as deleted. Returns its {@link Entry}, or {@code null} if it's no longer stored or has already been deleted.
+     */
+    public synchronized @Nullable Entry delete(final @NotNull UUID id) {
+        final @Nullable Slot slot = find(id);
+        // Returning null for unknown or already deleted messages.
+        if (slot == null || slot.deleted == true)
+            return null;
+        // ...
+        slot.deleted = true;
+        return slot.toEntry(instance);
+    }
+
+    /**
+     * Marks up to {@code limit} most recent, not yet deleted, messages of specified sender as deleted. Returns their entries, starting from the newest one.
+     */
+    public synchronized @NotNull List<Entry> delete(final @NotNull UUID sender, final int limit) {
+        final List<Entry> entries = new ArrayList<>();
+        // Following links between messages of the sender.
+        for (@Nullable Slot slot = last(sender); slot != null && entries.size() < limit; slot = previous(slot)) {
+            // Skipping messages that have already been deleted.
+            if (slot.deleted == true)
+                continue;
+            // ...
+            slot.deleted = true;
+            entries.add(slot.toEntry(instance));
+        }
+        return entries;
+    }
+
+    /**
+     * Associates Discord message identifier with the most recent message of specified {@link SignedMessage.Signature}.
+     */
+    public synchronized void setDiscordMessageId(final @NotNull SignedMessage.Signature signature, final long discordMessageId) {
+        // Iterating from the newest message, as that's almost always the one being looked for.
+        for (long sequence = next - 1; sequence >= 0 && sequence >= next - slots.length; sequence--) {
+            final Slot slot = slots[(int) (sequence % slots.length)];
+            // ...
+            if (signature.equals(slot.signature) == true) {
+                slot.discordMessageId = discordMessageId;
+                return;
+            }
+        }
+    }
+
+    private @Nullable Slot find(final @NotNull UUID id) {
+        // Skipping identifiers created by other instances.
+        if (id.getMostSignificantBits() != instance)
+            return null;
+        // ...
+        final long sequence = id.getLeastSignificantBits();
+        return slot(sequence);
+    }
+
+    private @Nullable Slot last(final @NotNull UUID sender) {
+        final @Nullable Sender current = senders.get(sender);
+        // ...
+        return (current != null) ? slot(current.last) : null;
+    }
+
+    private @Nullable Slot previous(final @NotNull Slot slot) {
+        return slot(slot.previous);
+    }
+
+    private @Nullable Slot slot(final long sequence) {
+        // Returning null for sequence numbers that were never assigned.
+        if (sequence < 0 || sequence >= next)
+            return null;
+        // Returning null in case message has already been overwritten.
+        final Slot slot = slots[(int) (sequence % slots.length)];
+        return (slot.sequence == sequence) ? slot : null;
+    }
+
+    /**
+     * Mutable, reusable storage of a single message.
+     */
+    private static final class Slot {
+
+        private long sequence = -1;
+        private long previous = -1;
+
+        private UUID sender;
+        private String senderName;
+        private long timestamp;
+        private String text;
+        private @Nullable SignedMessage.Signature signature;
+        private long discordMessageId;
+        private boolean deleted;
+
+        private @NotNull Entry toEntry(final long instance) {
+            return new Entry(new UUID(instance, sequence), sender, senderName, timestamp, text, signature, (discordMessageId != 0L) ? discordMessageId : null, deleted);
+        }
+
+    }
+
+    private static final class Sender {
+
+        // Sequence number of the most recent message.
+        private long last = -1;
+
+    }
+
+    /**
+     * Snapshot of a single message stored in {@link ChatHistory}.
+     */
+    public record Entry(
+            @NotNull UUID id,
+            @NotNull UUID sender,
+            @NotNull String senderName,
+            long timestamp,
+            @NotNull String text,
+            @Nullable SignedMessage.Signature signature,
+            @Nullable Long discordMessageId,
+            boolean deleted
+    ) { /* DATA */ }
+
+}
@@ -15,28 +15,36 @@
 package cloud.grabsky.azure.chat;
 
 import cloud.grabsky.azure.Azure;
-import cloud.grabsky.azure.api.Punishment;
-import cloud.grabsky.azure.api.user.User;
+import cloud.grabsky.azure.api.chat.ChatFilter;
+import cloud.grabsky.azure.audience.AudienceRegistry;
+import cloud.grabsky.azure.chat.ChatHistory.Entry;
+import cloud.grabsky.azure.chat.MentionIndex.Mentions;
+import cloud.grabsky.azure.chat.channel.ChannelManager;
+import cloud.grabsky.azure.chat.channel.ChatChannel;
+import cloud.grabsky.azure.chat.filter.ChatFilterPipeline;
+import cloud.grabsky.azure.chat.filter.InappropriateWordsFilter;
+import cloud.grabsky.azure.chat.filter.InvalidCharactersFilter;
+import cloud.grabsky.azure.chat.filter.MuteFilter;
+import cloud.grabsky.azure.chat.filter.RateLimitFilter;
+import cloud.grabsky.azure.chat.filter.SpamFilter;
 import cloud.grabsky.azure.configuration.PluginConfig;
 import cloud.grabsky.azure.configuration.PluginConfig.DeleteButton.Position;
 import cloud.grabsky.azure.configuration.PluginConfig.FormatHolder;
 import cloud.grabsky.azure.configuration.PluginConfig.TagsHolder;
 import cloud.grabsky.azure.configuration.PluginLocale;
+import cloud.grabsky.azure.integrations.WebhookDispatcher;
+import cloud.grabsky.azure.template.MessageTemplate;
 import cloud.grabsky.bedrock.components.ComponentBuilder;
 import cloud.grabsky.bedrock.components.Message;
-import cloud.grabsky.bedrock.helpers.Conditions;
-import cloud.grabsky.bedrock.util.Interval;
-import cloud.grabsky.bedrock.util.Interval.Unit;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.squareup.moshi.JsonReader;
 import com.squareup.moshi.Moshi;
 import com.squareup.moshi.Types;
 import io.papermc.paper.datacomponent.DataComponentTypes;
 import io.papermc.paper.event.player.AsyncChatDecorateEvent;
 import io.papermc.paper.event.player.AsyncChatEvent;
-import me.clip.placeholderapi.PlaceholderAPI;
+import net.kyori.adventure.chat.SignedMessage;
 import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextReplacementConfig;
 import net.kyori.adventure.text.event.ClickCallback.Options;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.format.TextColor;
@@ -60,14 +68,14 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.time.Duration;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.jetbrains.annotations.ApiStatus.Internal;
@@ -79,7 +87,6 @@ import lombok.Getter;
 
 import static cloud.grabsky.bedrock.helpers.Conditions.requirePresent;
 import static cloud.grabsky.configuration.paper.util.Resources.ensureResourceExistence;
-import static java.lang.System.currentTimeMillis;
 import static net.kyori.adventure.text.Component.empty;
 import static net.kyori.adventure.text.event.ClickEvent.callback;
 import static net.kyori.adventure.text.event.HoverEvent.showText;
@@ -92,20 +99,36 @@ public final class ChatManager implements Listener {
     private final Azure plugin;
 
     private final UserManager luckPermsUserManager;
-    private final Map<UUID, Long> chatCooldowns;
     private final Map<UUID, UUID> lastRecipients;
 
     @Getter(value = AccessLevel.PUBLIC, onMethod_ = @Internal)
-    private final Cache<UUID, MessageInfo> signatureCache;
+    private final ChatHistory history;
 
-    // Contains list of inappropriate words that are not allowed in chat.
-    private Set<String> inappropriateWords;
+    @Getter(AccessLevel.PUBLIC)
+    private final ChatProfileCache profileCache;
+
+    @Getter(AccessLevel.PUBLIC)
+    private final ChatRateLimiter rateLimiter;
+
+    @Getter(AccessLevel.PUBLIC)
+    private final SpamDetector spamDetector;
+
+    @Getter(AccessLevel.PUBLIC)
+    private final MentionIndex mentionIndex;
+
+    @Getter(AccessLevel.PUBLIC)
+    private final ChatFilterPipeline filters;
+
+    @Getter(AccessLevel.PUBLIC)
+    private final ChannelManager channels;
+
+    // Compiled list of inappropriate words that are not allowed in chat.
+    private WordFilter inappropriateWords;
 
     private static final MiniMessage EMPTY_MINIMESSAGE = MiniMessage.builder().tags(TagResolver.empty()).build();
     private static final PlainTextComponentSerializer PLAIN_SERIALIZER = PlainTextComponentSerializer.plainText();
 
-    private static final String CHAT_MODERATION_PERMISSION = "azure.plugin.chat.can_delete_messages";
-    private static final String CHAT_COOLDOWN_BYPASS_PERMISSION = "azure.plugin.chat.can_bypass_cooldown";
+    public static final String CHAT_MODERATION_PERMISSION = "azure.plugin.chat.can_delete_messages";
 
     public static List<FormatHolder> CHAT_FORMATS_REVERSED;
     public static List<TagsHolder> CHAT_TAGS_REVERSED;
@@ -123,12 +146,26 @@ public final class ChatManager implements Listener {
     public ChatManager(final Azure plugin) {
         this.plugin = plugin;
         this.luckPermsUserManager = plugin.getLuckPerms().getUserManager();
-        this.signatureCache = CacheBuilder.newBuilder()
-                .expireAfterWrite(PluginConfig.CHAT_MODERATION_MESSAGE_DELETION_CACHE_EXPIRATION_RATE, TimeUnit.MINUTES)
-                .build();
-        this.chatCooldowns = new HashMap<>();
+        this.history = new ChatHistory(PluginConfig.CHAT_MODERATION_HISTORY_CAPACITY);
         this.lastRecipients = new HashMap<>();
-        this.inappropriateWords = new HashSet<>();
+        this.inappropriateWords = WordFilter.compile(createWordNormalizer(), List.of());
+        this.profileCache = new ChatProfileCache(plugin);
+        this.rateLimiter = new ChatRateLimiter(plugin);
+        this.spamDetector = new SpamDetector(plugin);
+        this.mentionIndex = new MentionIndex(plugin);
+        this.channels = new ChannelManager(plugin);
+        this.filters = new ChatFilterPipeline(plugin);
+        // Registering built-in filter stages. Order is defined in the configuration.
+        filters.register(new MuteFilter(plugin));
+        filters.register(new RateLimitFilter(rateLimiter));
+        filters.register(new InvalidCharactersFilter());
+        filters.register(new InappropriateWordsFilter(plugin, this));
+        filters.register(new SpamFilter(plugin, spamDetector));
+        // Registering metrics.
+        plugin.getMetricsRegistry().register("chat.history.size", history::size);
+        plugin.getMetricsRegistry().register("chat.history.capacity", history::getCapacity);
+        plugin.getMetricsRegistry().register("chat.filter.entries", () -> inappropriateWords.getEntryCount());
+        plugin.getMetricsRegistry().register("chat.filter.states", () -> inappropriateWords.getStateCount());
     }
 
     /**
@@ -163,7 +200,7 @@ public final class ChatManager implements Listener {
     }
 
     /**
-     * Loads list of inappropriate words.
+     * Loads and compiles list of inappropriate words.
      */
     @SuppressWarnings("unchecked")
     public void loadInappropriateWords() {
@@ -180,8 +217,11 @@ public final class ChatManager implements Listener {
             // Throwing exception in case list ended up being null. Unlikely to happen, but possible.
             if (set == null)
                 throw new IllegalStateException("Deserialization of " + file.getPath() + " failed: " + null);
-            // Updating the filtered words list.
-            inappropriateWords = Collections.unmodifiableSet(set);
+            // Compiling and updating the filtered words list.
+            final long start = System.nanoTime();
+            inappropriateWords = WordFilter.compile(createWordNormalizer(), set);
+            // Logging number of entries and time it took to compile them.
+            plugin.getLogger().info("Compiled " + inappropriateWords.getEntryCount() + " inappropriate word(s) into " + inappropriateWords.getStateCount() + " state(s) in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms.");
         } catch (final IllegalStateException | IOException e) {
             plugin.getLogger().severe("Reloading of '" + file.getName() + "' failed due to following error(s):");
             plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
@@ -190,23 +230,72 @@ public final class ChatManager implements Listener {
         }
     }
 
+    /**
+     * Returns the first inappropriate word found in specified message, or {@code null} if message contains none of them.
+     */
+    public @Nullable String findInappropriateWord(final @NotNull String message) {
+        return inappropriateWords.find(message);
+    }
+
+    private static @NotNull WordNormalizer createWordNormalizer() {
+        return new WordNormalizer(
+                PluginConfig.CHAT_FILTERING_NORMALIZATION_CASE_FOLDING,
+                PluginConfig.CHAT_FILTERING_NORMALIZATION_STRIP_DIACRITICS,
+                PluginConfig.CHAT_FILTERING_NORMALIZATION_HOMOGLYPHS,
+                PluginConfig.CHAT_FILTERING_NORMALIZATION_LEET_SPEAK,
+                PluginConfig.CHAT_FILTERING_NORMALIZATION_SQUASH_REPEATED_CHARACTERS
+        );
+    }
+
     /**
      * Requests deletion of a message associated with provided {@link UUID} (signatureUUID).
      */
     public boolean deleteMessage(final @NotNull UUID signatureUUID) {
-        final @Nullable MessageInfo messageInfo = signatureCache.getIfPresent(signatureUUID);
-        // Returning 'false' if signature for this message is not set.
-        if (messageInfo == null)
+        final @Nullable Entry entry = history.delete(signatureUUID);
+        // Returning 'false' if message is no longer stored or has already been deleted.
+        if (entry == null)
             return false;
         // Requesting deletion of this message.
-        plugin.getServer().deleteMessage(messageInfo.getSignature());
-        // If Discord message id is present, modifying "deleting" it there as well.
-        if (messageInfo.getDiscordMessageId() != null)
-            plugin.getDiscordIntegration().getWebhookClients().get("CHAT").edit(messageInfo.getDiscordMessageId(), PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_DELETED_MESSAGE_TEXT);
+        this.deleteMessages(List.of(entry));
         // Returning 'true' as message deletion has been requested.
         return true;
     }
 
+    /**
+     * Requests deletion of up to {@code amount} most recent messages sent by specified player. Returns number of messages deleted.
+     */
+    public int deleteMessages(final @NotNull UUID sender, final int amount) {
+        final List<Entry> entries = history.delete(sender, amount);
+        // Requesting deletion of these messages.
+        if (entries.isEmpty() == false)
+            this.deleteMessages(entries);
+        // ...
+        return entries.size();
+    }
+
+    private void deleteMessages(final @NotNull List<Entry> entries) {
+        // Signatures of messages forwarded to Discord, grouped by identifier of the Discord message. Multiple lines may have been merged into a single message.
+        final Map<Long, List<SignedMessage.Signature>> discordMessages = new HashMap<>();
+        // Requesting deletion of signed messages, and collecting identifiers of messages forwarded to Discord.
+        for (final Entry entry : entries) {
+            if (entry.signature() != null)
+                plugin.getServer().deleteMessage(entry.signature());
+            if (entry.discordMessageId() != null && entry.signature() != null)
+                discordMessages.computeIfAbsent(entry.discordMessageId(), (_) -> new ArrayList<>()).add(entry.signature());
+        }
+        // Modifying ("deleting") all collected messages on Discord, as a single batch.
+        if (discordMessages.isEmpty() == false && plugin.getDiscordIntegration() != null) {
+            final @Nullable WebhookDispatcher dispatcher = plugin.getDiscordIntegration().getWebhookDispatchers().get("CHAT");
+            // ...
+            if (dispatcher != null)
+                CompletableFuture.allOf(discordMessages.entrySet().stream().map(it -> dispatcher.delete(it.getKey(), it.getValue(), PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_DELETED_MESSAGE_TEXT)).toArray(CompletableFuture[]::new)).exceptionally(e -> {
+                    plugin.getLogger().warning("Could not delete " + discordMessages.size() + " message(s) on Discord due to following error(s):");
+                    plugin.getLogger().warning(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+                    return null;
+                });
+        }
+    }
+
     @EventHandler @SuppressWarnings({"UnstableApiUsage", "DataFlowIssue"})
     public void onChatDecorate(final AsyncChatDecorateEvent event) {
         // Skipping cancelled and non-player events
@@ -217,7 +306,7 @@ public final class ChatManager implements Listener {
         // ...
         final ItemStack item = event.player().getInventory().getItemInMainHand();
         // Creating result Component using serializers player has access to
-        final TagResolver matchingResolvers = this.findSuitableTagsCollection(event.player(), PluginConfig.CHAT_MESSAGE_TAGS_DEFAULT);
+        final TagResolver matchingResolvers = profileCache.getProfile(event.player()).tags();
         // Replacing all occurrences of <i>, [item] and [i] with <item>.
         message = message.replace("<i>", "<item>").replace("[item]", "<item>").replace("[i]", "<item>");
         // Preparing the result component.
@@ -253,119 +342,47 @@ public final class ChatManager implements Listener {
             return;
         // ...
         final Player player = event.getPlayer();
-        final User user = plugin.getUserCache().getUser(player);
-        // Mute handling...
-        if (user.isMuted() == true) {
-            // Cancelling the event, so message won't go through.
-            event.setCancelled(true);
-            // Getting the current mute punishment.
-            final Punishment punishment = user.getMostRecentMute();
-            // Preparing the message.
-            final Component message = (punishment.isPermanent() == true)
-                    ? PluginLocale.CHAT_MUTED_PERMANENT
-                    : Message.of(PluginLocale.CHAT_MUTED)
-                            .placeholder("duration_left", punishment.getDurationLeft().toString())
-                            .parse();
-            // Sending mute information to the player.
-            Message.of(message).send(player);
-            // Exiting the code block.
-            return;
-        }
-        // Cooldown handling... if enabled and player does not have bypass permission.
-        if (PluginConfig.CHAT_COOLDOWN > 0 && player.hasPermission(CHAT_COOLDOWN_BYPASS_PERMISSION) == false) {
-            if (Interval.between(currentTimeMillis(), chatCooldowns.getOrDefault(player.getUniqueId(), 0L), Unit.MILLISECONDS).as(Unit.MILLISECONDS) < PluginConfig.CHAT_COOLDOWN) {
-                event.setCancelled(true);
-                Message.of(PluginLocale.CHAT_ON_COOLDOWN).send(player);
-                return;
-            }
-            // ...setting cooldown
-            chatCooldowns.put(player.getUniqueId(), currentTimeMillis());
-        }
         final String message = PlainTextComponentSerializer.plainText().serialize(event.message());
-        // Cancelling messages containing invalid characters. Mostly to ensure players are not using resource-pack-reserved characters in chat. (E000-F8FF)
-        if (PluginConfig.CHAT_FILTERING_DISALLOW_INVALID_CHARACTERS == true && message.chars().anyMatch(it -> Conditions.inRange(it, 57344, 63743) == true) == true) {
+        // Passing the message through all filter stages. (mute, rate limit, invalid characters, inappropriate words, spam, third-party stages, ...)
+        final ChatFilter.Result result = filters.filter(player, message);
+        // Cancelling the event, so message won't go through, in case any of the stages denied it.
+        if (result.isAllowed() == false) {
             event.setCancelled(true);
-            Message.of(PluginLocale.CHAT_MESSAGE_CONTAINS_INVALID_CHARACTERS).send(player);
+            // Sending reason to the player, if specified.
+            if (result.getReason() != null)
+                Message.of(result.getReason()).send(player);
+            // Returning...
             return;
         }
-        // Cancelling messages containing inappropriate words.
-        if (PluginConfig.CHAT_FILTERING_DISALLOW_INAPPROPRIATE_WORDS == true && inappropriateWords != null && inappropriateWords.isEmpty() == false) {
-            final String[] words = message.split(" ");
-            // Iterating over all words in a message.
-            for (final String word : words) {
-                // Cancelling message if the current word is in the list of inappropriate words.
-                if (inappropriateWords.contains(word) == true) {
-                    event.setCancelled(true);
-                    Message.of(PluginLocale.CHAT_MESSAGE_CONTAINS_INAPPROPRIATE_WORDS).send(player);
-                    // Executing punishment commands.
-                    if (PluginConfig.CHAT_FILTERING_PUNISHMENT_COMMANDS.isEmpty() == false)
-                        plugin.getBedrockScheduler().run(1L, (_) -> {
-                            PluginConfig.CHAT_FILTERING_PUNISHMENT_COMMANDS.forEach(it -> Bukkit.dispatchCommand(Bukkit.getConsoleSender(), it.replace("<player>", player.getName())));
-                        });
-                    // Returning...
-                    return;
-                }
-            }
-        }
+        // Narrowing viewers to recipients of the channel selected by the player. Done before rendering, so lines are not built for players who won't see them.
+        final ChatChannel channel = channels.getChannel(player);
+        channels.narrow(event, channel);
         // ...
-        final UUID signatureUUID = (event.signedMessage().signature() != null) ? UUID.nameUUIDFromBytes(event.signedMessage().signature().bytes()) : null;
-        // Caching signatures...
-        if (signatureUUID != null) {
-            signatureCache.put(signatureUUID, new MessageInfo(event.signedMessage().signature()));
-        }
+        // Storing message in the history. Returned identifier is used to delete the message later.
+        final UUID signatureUUID = history.add(player.getUniqueId(), player.getName(), message, event.signedMessage().signature());
+        // Finding players mentioned in the message. Message is scanned once, no matter how many players are going to see it.
+        final Mentions mentions = mentionIndex.find(message);
+        // Preparing lines shared by all viewers. Each of them is built at most once, when first requested by the renderer.
+        final ChatLine line = new ChatLine(player, signatureUUID, event, mentions, switch (channel) {
+            case GLOBAL -> empty();
+            case LOCAL -> PluginConfig.CHAT_CHANNELS_LOCAL_PREFIX;
+            case STAFF -> PluginConfig.CHAT_CHANNELS_STAFF_PREFIX;
+        });
         // Customizing renderer...
         event.renderer((source, sourceDisplayName, msg, viewer) -> {
-            // Getting the luckperms primary group
-            final CachedMetaData metaData = luckPermsUserManager.getUser(source.getUniqueId()).getCachedData().getMetaData();
             // Console...
-            if (viewer instanceof ConsoleCommandSender) {
-                return MiniMessage.miniMessage().deserialize(
-                        PlaceholderAPI.setPlaceholders(player, PluginConfig.CHAT_FORMATS_CONSOLE),
-                        Placeholder.unparsed("signature_uuid", (signatureUUID != null) ? signatureUUID.toString() : "N/A"),
-                        Placeholder.unparsed("player", source.getName()),
-                        Placeholder.unparsed("group", requirePresent(metaData.getPrimaryGroup(), "")),
-                        Placeholder.parsed("prefix", requirePresent(metaData.getPrefix(), "")),
-                        Placeholder.parsed("suffix", requirePresent(metaData.getSuffix(), "")),
-                        Placeholder.component("displayname", sourceDisplayName),
-                        Placeholder.component("message", event.message())
-                );
-            }
+            if (viewer instanceof ConsoleCommandSender)
+                return line.console(source, sourceDisplayName);
             // Player...
             if (viewer instanceof Player receiver) {
-                final String matchingChatFormat = this.findSuitableChatFormat(source, PluginConfig.CHAT_FORMATS_DEFAULT);
-                // ...
-                final Component formattedChat = MiniMessage.miniMessage().deserialize(
-                        PlaceholderAPI.setPlaceholders(player, matchingChatFormat),
-                        Placeholder.unparsed("player", source.getName()),
-                        Placeholder.unparsed("group", requirePresent(metaData.getPrimaryGroup(), "")),
-                        Placeholder.parsed("prefix", requirePresent(metaData.getPrefix(), "")),
-                        Placeholder.parsed("suffix", requirePresent(metaData.getSuffix(), "")),
-                        Placeholder.component("displayname", sourceDisplayName),
-                        Placeholder.component("message", event.message())
-                );
-                // Adding "DELETE MESSAGE" button for allowed viewers
-                if (PluginConfig.CHAT_MODERATION_MESSAGE_DELETION_ENABLED == true && receiver.hasPermission(CHAT_MODERATION_PERMISSION) == true) {
-                    final PluginConfig.DeleteButton buttonConfig = (source.hasPermission(CHAT_MODERATION_PERMISSION) == false)
-                            ? PluginConfig.CHAT_MODERATION_MESSAGE_DELETION_BUTTON_ACTIVE
-                            : PluginConfig.CHAT_MODERATION_MESSAGE_DELETION_BUTTON_INACTIVE;
-                    // Creating the button component.
-                    final Component button = (source.hasPermission(CHAT_MODERATION_PERMISSION) == false)
-                            // Creating button with delete option. (Moderator seeing non-moderator's message)
-                            ? buttonConfig.getText()
-                                    .clickEvent(callback((_) -> this.deleteMessage(signatureUUID), Options.builder().uses(1).lifetime(Duration.ofMinutes(PluginConfig.CHAT_MODERATION_MESSAGE_DELETION_CACHE_EXPIRATION_RATE)).build()))
-                                    .hoverEvent(showText(PluginConfig.CHAT_MODERATION_MESSAGE_DELETION_BUTTON_ACTIVE.getHover()))
-                            // Creating button without delete option. (Moderator seeing self or other moderator's message)
-                            : buttonConfig.getText().hoverEvent(showText(PluginConfig.CHAT_MODERATION_MESSAGE_DELETION_BUTTON_INACTIVE.getHover()));
-                    // Appending the button to the chat format.
-                    return (buttonConfig.getPosition() == Position.BEFORE)
-                            ? empty().append(button).append(formattedChat)
-                            : empty().append(formattedChat).append(button);
-                }
-                // Playing sound if message mentions player name.
-                if (PluginConfig.CHAT_MENTION_SOUND != null && message.contains(player.getName()) == true)
-                    player.playSound(PluginConfig.CHAT_MENTION_SOUND);
-                // Returning the formatted chat.
-                return formattedChat;
+                final boolean isMentioned = (receiver != source && mentions.players().contains(receiver.getUniqueId()) == true);
+                // Playing sound if message mentions name of the viewer.
+                if (PluginConfig.CHAT_MENTION_SOUND != null && isMentioned == true)
+                    receiver.playSound(PluginConfig.CHAT_MENTION_SOUND);
+                // Returning line with "DELETE MESSAGE" button to allowed viewers, and regular line to everyone else. Mentions are highlighted only for mentioned viewers.
+                return (PluginConfig.CHAT_MODERATION_MESSAGE_DELETION_ENABLED == true && plugin.getAudienceRegistry().isMember(receiver, AudienceRegistry.Type.MESSAGE_DELETION) == true)
+                        ? line.moderator(source, sourceDisplayName, isMentioned)
+                        : line.regular(source, sourceDisplayName, isMentioned);
             }
             // Anything else...
             return msg;
@@ -382,22 +399,6 @@ public final class ChatManager implements Listener {
         return lastRecipients.get(uniqueId);
     }
 
-    private @NotNull TagResolver findSuitableTagsCollection(final @NotNull Player player, final @NotNull TagResolver def) {
-        return CHAT_TAGS_REVERSED.stream()
-                .filter(holder -> player.hasPermission(holder.getPermission()) == true)
-                .map(TagsHolder::getTags)
-                .findFirst()
-                .orElse(def);
-    }
-
-    private @NotNull String findSuitableChatFormat(final @NotNull Player player, final @NotNull String def) {
-        return CHAT_FORMATS_REVERSED.stream()
-                .filter(holder -> player.hasPermission(holder.getPermission()) == true)
-                .map(FormatHolder::getFormat)
-                .findFirst()
-                .orElse(def);
-    }
-
     /* UTILITY METHODS */
 
     @SuppressWarnings("UnstableApiUsage")
@@ -415,4 +416,125 @@ public final class ChatManager implements Listener {
         else return NamedTextColor.WHITE;
     }
 
+    /**
+     * Lazily built, formatted lines of a single chat message. Rendering is the same for every viewer of the same kind, so each line is built at most once.
+     * Mentioned viewers get separate lines, with their mentions highlighted. Message of the event itself is never modified.
+     */
+    private final class ChatLine {
+
+        private final Player player;
+        private final UUID signatureUUID;
+        private final AsyncChatEvent event;
+        private final Mentions mentions;
+        private final Component prefix;
+
+        // Lines, built on first request. Guarded by (this).
+        private @Nullable Component console;
+        private @Nullable Component regular;
+        private @Nullable Component moderator;
+
+        // Lines with highlighted mentions, built on first request. Guarded by (this).
+        private @Nullable Component highlightedMessage;
+        private @Nullable Component highlightedRegular;
+        private @Nullable Component highlightedModerator;
+
+        public ChatLine(final @NotNull Player player, final @NotNull UUID signatureUUID, final @NotNull AsyncChatEvent event, final @NotNull Mentions mentions, final @NotNull Component prefix) {
+            this.player = player;
+            this.signatureUUID = signatureUUID;
+            this.event = event;
+            this.mentions = mentions;
+            this.prefix = prefix;
+        }
+
+        public synchronized @NotNull Component console(final @NotNull Player source, final @NotNull Component sourceDisplayName) {
+            if (console == null) {
+                // Getting the luckperms primary group
+                final CachedMetaData metaData = luckPermsUserManager.getUser(source.getUniqueId()).getCachedData().getMetaData();
+                // ...
+                console = prefix.append(MessageTemplate.of(PluginConfig.CHAT_FORMATS_CONSOLE).render(player,
+                        MessageTemplate.unparsed("signature_uuid", signatureUUID.toString()),
+                        MessageTemplate.unparsed("player", source.getName()),
+                        MessageTemplate.unparsed("group", requirePresent(metaData.getPrimaryGroup(), "")),
+                        MessageTemplate.parsed("prefix", requirePresent(metaData.getPrefix(), "")),
+                        MessageTemplate.parsed("suffix", requirePresent(metaData.getSuffix(), "")),
+                        MessageTemplate.component("displayname", sourceDisplayName),
+                        MessageTemplate.component("message", event.message())
+                ));
+            }
+            return console;
+        }
+
+        public synchronized @NotNull Component regular(final @NotNull Player source, final @NotNull Component sourceDisplayName, final boolean isMentioned) {
+            // Returning line with highlighted mentions to mentioned viewers, if configured.
+            if (isMentioned == true && PluginConfig.CHAT_MENTION_FORMAT != null) {
+                if (highlightedRegular == null)
+                    highlightedRegular = this.format(source, sourceDisplayName, this.highlight());
+                return highlightedRegular;
+            }
+            // Returning regular line to everyone else.
+            if (regular == null)
+                regular = this.format(source, sourceDisplayName, event.message());
+            return regular;
+        }
+
+        public synchronized @NotNull Component moderator(final @NotNull Player source, final @NotNull Component sourceDisplayName, final boolean isMentioned) {
+            // Returning line with highlighted mentions to mentioned viewers, if configured.
+            if (isMentioned == true && PluginConfig.CHAT_MENTION_FORMAT != null) {
+                if (highlightedModerator == null)
+                    highlightedModerator = this.withButton(source, this.regular(source, sourceDisplayName, true));
+                return highlightedModerator;
+            }
+            // Returning regular line to everyone else.
+            if (moderator == null)
+                moderator = this.withButton(source, this.regular(source, sourceDisplayName, false));
+            return moderator;
+        }
+
+        // Returns message with mentions highlighted. Changes only the style, so plain text of the message stays the same. Must be called while holding the lock.
+        private @NotNull Component highlight() {
+            if (highlightedMessage == null) {
+                highlightedMessage = event.message().replaceText(TextReplacementConfig.builder()
+                        .match(mentionIndex.getPattern(mentions))
+                        .replacement((result, _) -> MessageTemplate.of(PluginConfig.CHAT_MENTION_FORMAT).render(null, MessageTemplate.unparsed("mention", result.group())))
+                        .build()
+                );
+            }
+            return highlightedMessage;
+        }
+
+        private @NotNull Component format(final @NotNull Player source, final @NotNull Component sourceDisplayName, final @NotNull Component message) {
+            // Getting the luckperms primary group
+            final CachedMetaData metaData = luckPermsUserManager.getUser(source.getUniqueId()).getCachedData().getMetaData();
+            // ...
+            return prefix.append(MessageTemplate.of(profileCache.getProfile(source).format()).render(player,
+                    MessageTemplate.unparsed("player", source.getName()),
+                    MessageTemplate.unparsed("group", requirePresent(metaData.getPrimaryGroup(), "")),
+                    MessageTemplate.parsed("prefix", requirePresent(metaData.getPrefix(), "")),
+                    MessageTemplate.parsed("suffix", requirePresent(metaData.getSuffix(), "")),
+                    MessageTemplate.component("displayname", sourceDisplayName),
+                    MessageTemplate.component("message", message)
+            ));
+        }
+
+        private @NotNull Component withButton(final @NotNull Player source, final @NotNull Component formattedChat) {
+            // ...
+            final PluginConfig.DeleteButton buttonConfig = (plugin.getAudienceRegistry().isMember(source, AudienceRegistry.Type.MESSAGE_DELETION) == false)
+                    ? PluginConfig.CHAT_MODERATION_MESSAGE_DELETION_BUTTON_ACTIVE
+                    : PluginConfig.CHAT_MODERATION_MESSAGE_DELETION_BUTTON_INACTIVE;
+            // Creating the button component.
+            final Component button = (plugin.getAudienceRegistry().isMember(source, AudienceRegistry.Type.MESSAGE_DELETION) == false)
+                    // Creating button with delete option. (Moderator seeing non-moderator's message)
+                    ? buttonConfig.getText()
+                            .clickEvent(callback((_) -> deleteMessage(signatureUUID), Options.builder().uses(1).lifetime(Duration.ofMinutes(PluginConfig.CHAT_MODERATION_MESSAGE_DELETION_CACHE_EXPIRATION_RATE)).build()))
+                            .hoverEvent(showText(PluginConfig.CHAT_MODERATION_MESSAGE_DELETION_BUTTON_ACTIVE.getHover()))
+                    // Creating button without delete option. (Moderator seeing self or other moderator's message)
+                    : buttonConfig.getText().hoverEvent(showText(PluginConfig.CHAT_MODERATION_MESSAGE_DELETION_BUTTON_INACTIVE.getHover()));
+            // Appending the button to the chat format.
+            return (buttonConfig.getPosition() == Position.BEFORE)
+                    ? empty().append(button).append(formattedChat)
+                    : empty().append(formattedChat).append(button);
+        }
+
+    }
+
 }
@@ -0,0 +1,143 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.configuration.PluginConfig;
+import cloud.grabsky.azure.configuration.PluginConfig.FormatHolder;
+import cloud.grabsky.azure.configuration.PluginConfig.TagsHolder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import net.luckperms.api.event.group.GroupDataRecalculateEvent;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link ChatProfileCache} holds chat format and message tags each online player is allowed to use.
+ * <p>
+ * Profiles are resolved when player joins, when LuckPerms recalculates data of the player (or any group) and when
+ * configuration is reloaded. Chat threads only read the profile, without checking any permissions.
+ */
+public final class ChatProfileCache implements Listener {
+
+    private final Azure plugin;
+
+    // Profiles of online players.
+    private final Map<UUID, Profile> profiles = new ConcurrentHashMap<>();
+
+    private final LongAdder resolves = new LongAdder();
+
+    public ChatProfileCache(final @NotNull Azure plugin) {
+        this.plugin = plugin;
+        // Resolving profiles again when LuckPerms recalculates user or group data. Events are called asynchronously, so work is moved onto the main thread.
+        plugin.getLuckPerms().getEventBus().subscribe(plugin, UserDataRecalculateEvent.class, (event) -> plugin.getMainThreadExecutor().execute(() -> {
+            final @Nullable Player player = Bukkit.getPlayer(event.getUser().getUniqueId());
+            // ...
+            if (player != null)
+                this.refresh(player);
+        }));
+        plugin.getLuckPerms().getEventBus().subscribe(plugin, GroupDataRecalculateEvent.class, (_) -> plugin.getMainThreadExecutor().execute(this::refreshAll));
+        // Registering event listeners.
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        // Registering metrics.
+        plugin.getMetricsRegistry().register("chat.profiles.cached", profiles::size);
+        plugin.getMetricsRegistry().register("chat.profiles.resolves", resolves::sum);
+    }
+
+    /**
+     * Returns {@link Profile} of specified {@link Player}. Profile is resolved in case it's not cached yet, which should only happen for players who joined before this cache was created.
+     */
+    public @NotNull Profile getProfile(final @NotNull Player player) {
+        final @Nullable Profile profile = profiles.get(player.getUniqueId());
+        // Returning cached profile. This is by far the most common path.
+        if (profile != null)
+            return profile;
+        // Otherwise, resolving the profile.
+        return this.refresh(player);
+    }
+
+    /**
+     * Resolves and caches {@link Profile} of specified {@link Player}.
+     */
+    public @NotNull Profile refresh(final @NotNull Player player) {
+        final Profile profile = resolve(player);
+        // Caching only profiles of online players, others would never be removed.
+        if (player.isOnline() == true)
+            profiles.put(player.getUniqueId(), profile);
+        // ...
+        return profile;
+    }
+
+    /**
+     * Resolves and caches profiles of all online players. Called after configuration is reloaded.
+     */
+    public void refreshAll() {
+        // Removing profiles of all players, in case some of them are no longer online.
+        profiles.clear();
+        // Resolving profiles of online players.
+        Bukkit.getOnlinePlayers().forEach(this::refresh);
+    }
+
+    private @NotNull Profile resolve(final @NotNull Player player) {
+        // Increasing number of resolves.
+        resolves.increment();
+        // Finding the first format and tags collection player has permission to. Lists are reversed, so entries defined last take precedence.
+        String format = PluginConfig.CHAT_FORMATS_DEFAULT;
+        for (final FormatHolder holder : ChatManager.CHAT_FORMATS_REVERSED) {
+            if (player.hasPermission(holder.getPermission()) == true) {
+                format = holder.getFormat();
+                break;
+            }
+        }
+        TagResolver tags = PluginConfig.CHAT_MESSAGE_TAGS_DEFAULT;
+        for (final TagsHolder holder : ChatManager.CHAT_TAGS_REVERSED) {
+            if (player.hasPermission(holder.getPermission()) == true) {
+                tags = holder.getTags();
+                break;
+            }
+        }
+        // Creating and returning the profile.
+        return new Profile(format, tags);
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(final @NotNull PlayerJoinEvent event) {
+        this.refresh(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(final @NotNull PlayerQuitEvent event) {
+        profiles.remove(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Chat format and message tags resolved for a player.
+     */
+    public record Profile(@NotNull String format, @NotNull TagResolver tags) { /* DATA */ }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.configuration.PluginConfig;
+import cloud.grabsky.azure.configuration.PluginConfig.RateLimitHolder;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link ChatRateLimiter} limits how often players can send chat messages, private messages and admin chat messages.
+ * All of them share the same per-player token bucket.
+ * <p>
+ * Each bucket holds up to {@code burst} tokens and regains one token every {@code refill} milliseconds. Bucket is kept as a single
+ * timestamp (theoretical arrival time of the next token) and updated with compare-and-set, so checks neither lock nor allocate.
+ * Limits are resolved from permission tiers when bucket is created, and buckets are removed when player leaves the server.
+ */
+public final class ChatRateLimiter implements Listener {
+
+    // Buckets of players who sent at least one message since they joined.
+    private final Map<UUID, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+
+    private static final String BYPASS_PERMISSION = "azure.plugin.chat.can_bypass_cooldown";
+
+    // Bucket shared by all players who are not limited.
+    private static final Bucket UNLIMITED = new Bucket(0, 1);
+
+    public ChatRateLimiter(final @NotNull Azure plugin) {
+        // Removing bucket when LuckPerms recalculates data of the player, so limits are resolved again with the next message.
+        plugin.getLuckPerms().getEventBus().subscribe(plugin, UserDataRecalculateEvent.class, (event) -> buckets.remove(event.getUser().getUniqueId()));
+        // Registering event listeners.
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        // Registering metrics.
+        plugin.getMetricsRegistry().register("chat.rate_limiter.buckets", buckets::size);
+        plugin.getMetricsRegistry().register("chat.rate_limiter.allowed", allowed::sum);
+        plugin.getMetricsRegistry().register("chat.rate_limiter.denied", denied::sum);
+    }
+
+    /**
+     * Takes a token from the bucket of specified {@link Player}. Returns {@code false} if the bucket is empty and message should not be sent.
+     */
+    public boolean tryAcquire(final @NotNull Player player) {
+        @Nullable Bucket bucket = buckets.get(player.getUniqueId());
+        // Creating the bucket in case player has not sent any message yet.
+        if (bucket == null) {
+            final Bucket created = resolve(player);
+            // Caching only buckets of online players, others would never be removed.
+            bucket = (player.isOnline() == true) ? buckets.computeIfAbsent(player.getUniqueId(), (_) -> created) : created;
+        }
+        // Taking a token and updating counters.
+        if (bucket.tryAcquire(System.nanoTime()) == true) {
+            allowed.increment();
+            return true;
+        }
+        denied.increment();
+        return false;
+    }
+
+    /**
+     * Removes all buckets. Called after configuration is reloaded, so limits are resolved again with the next message.
+     */
+    public void invalidateAll() {
+        buckets.clear();
+    }
+
+    private static @NotNull Bucket resolve(final @NotNull Player player) {
+        // Players with bypass permission are not limited.
+        if (player.hasPermission(BYPASS_PERMISSION) == true)
+            return UNLIMITED;
+        // Finding the tier player has permission to. Iterating in reverse order, so tiers defined last take precedence.
+        final List<RateLimitHolder> tiers = PluginConfig.CHAT_RATE_LIMIT_TIERS;
+        for (int i = tiers.size() - 1; i >= 0; i--) {
+            final RateLimitHolder tier = tiers.get(i);
+            // ...
+            if (player.hasPermission(tier.getPermission()) == true)
+                return Bucket.of(tier.getBurst(), tier.getRefill());
+        }
+        // Falling back to default limits.
+        return Bucket.of(PluginConfig.CHAT_RATE_LIMIT_BURST, PluginConfig.CHAT_RATE_LIMIT_REFILL);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(final @NotNull PlayerQuitEvent event) {
+        buckets.remove(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Token bucket stored as theoretical arrival time of the next token. (GCRA)
+     */
+    static final class Bucket {
+
+        // Time, in nanoseconds, it takes to regain one token. Zero means bucket is unlimited.
+        private final long interval;
+
+        // How far ahead of current time the arrival time can be, before bucket is considered empty.
+        private final long tolerance;
+
+        private final AtomicLong arrival = new AtomicLong(Long.MIN_VALUE);
+
+        private Bucket(final long interval, final int burst) {
+            this.interval = interval;
+            this.tolerance = interval * (burst - 1);
+        }
+
+        static @NotNull Bucket of(final int burst, final long refill) {
+            return (burst <= 0 || refill <= 0) ? UNLIMITED : new Bucket(TimeUnit.MILLISECONDS.toNanos(refill), burst);
+        }
+
+        boolean tryAcquire(final long now) {
+            // Unlimited buckets are never empty.
+            if (interval == 0)
+                return true;
+            // Retrying until arrival time is updated without interference from other threads.
+            while (true) {
+                final long current = arrival.get();
+                final long base = Math.max(current, now);
+                // Returning 'false' if there are no tokens left.
+                if (base - now > tolerance)
+                    return false;
+                // Taking a token.
+                if (arrival.compareAndSet(current, base + interval) == true)
+                    return true;
+            }
+        }
+
+    }
+
+}
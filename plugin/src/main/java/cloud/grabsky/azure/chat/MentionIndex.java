@@ -0,0 +1,236 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import cloud.grabsky.azure.Azure;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link MentionIndex} finds names and display names of online players mentioned in chat messages.
+ * <p>
+ * Names are kept in a case-insensitive trie, which is updated when player joins, leaves or changes their display name.
+ * Each message is scanned once, starting only at word boundaries, so the cost depends on length of the message and not
+ * on number of online players or viewers of the message.
+ */
+public final class MentionIndex implements Listener {
+
+    // Root of the trie. Modified on the main thread, read by chat threads.
+    private final Node root = new Node();
+
+    // Names each player is indexed by, so they can be removed later. Guarded by (this).
+    private final Map<UUID, List<String>> names = new HashMap<>();
+
+    // Patterns matching mentions of recent messages, by the exact text players were mentioned by. Most messages mention the same few players, so each pattern is compiled once.
+    private final Cache<Set<String>, Pattern> patterns = CacheBuilder.newBuilder().maximumSize(256).build();
+
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder mentions = new LongAdder();
+
+    // Shorter names are not indexed, as they would match too many regular words.
+    private static final int MIN_NAME_LENGTH = 3;
+
+    public MentionIndex(final @NotNull Azure plugin) {
+        // Indexing players that are already online. (reload)
+        Bukkit.getOnlinePlayers().forEach(this::update);
+        // Registering event listeners.
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        // Registering metrics.
+        plugin.getMetricsRegistry().register("chat.mentions.indexed", this::size);
+        plugin.getMetricsRegistry().register("chat.mentions.scans", scans::sum);
+        plugin.getMetricsRegistry().register("chat.mentions.found", mentions::sum);
+    }
+
+    /**
+     * Returns number of indexed players.
+     */
+    public synchronized int size() {
+        return names.size();
+    }
+
+    /**
+     * (Re)indexes name and display name of specified {@link Player}. Should be called whenever display name changes.
+     */
+    public synchronized void update(final @NotNull Player player) {
+        this.remove(player.getUniqueId());
+        // Collecting lower-case names. Display name is skipped when it's the same as regular name.
+        final Set<String> keys = new LinkedHashSet<>();
+        keys.add(lowerCase(player.getName()));
+        keys.add(lowerCase(PlainTextComponentSerializer.plainText().serialize(player.displayName()).strip()));
+        keys.removeIf(it -> it.length() < MIN_NAME_LENGTH);
+        // Inserting names into the trie.
+        for (final String key : keys) {
+            Node node = root;
+            for (int i = 0; i < key.length(); i++)
+                node = node.children.computeIfAbsent(key.charAt(i), (_) -> new Node());
+            node.owners.add(player.getUniqueId());
+        }
+        names.put(player.getUniqueId(), List.copyOf(keys));
+    }
+
+    /**
+     * Removes names of specified player from the index.
+     */
+    public synchronized void remove(final @NotNull UUID uniqueId) {
+        final @Nullable List<String> keys = names.remove(uniqueId);
+        // Returning in case player is not indexed.
+        if (keys == null)
+            return;
+        // Removing player from the trie, and pruning nodes that are no longer needed.
+        for (final String key : keys) {
+            final Deque<Node> path = new ArrayDeque<>(key.length() + 1);
+            Node node = root;
+            path.push(node);
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+                if (node != null)
+                    path.push(node);
+            }
+            // Skipping in case key is (for some reason) not present.
+            if (node == null)
+                continue;
+            node.owners.remove(uniqueId);
+            // Walking back up and removing empty leaves.
+            for (int i = key.length() - 1; i >= 0; i--) {
+                final Node child = path.pop();
+                if (child.owners.isEmpty() == false || child.children.isEmpty() == false)
+                    break;
+                path.peek().children.remove(key.charAt(i));
+            }
+        }
+    }
+
+    /**
+     * Returns players mentioned in specified message, along with the exact text they were mentioned by.
+     */
+    public @NotNull Mentions find(final @NotNull String message) {
+        scans.increment();
+        // Lazily created, as most messages do not mention anyone.
+        Set<UUID> players = null;
+        Set<String> matches = null;
+        // Iterating over all positions where a word starts.
+        for (int start = 0; start < message.length(); start++) {
+            if (start > 0 && isNameCharacter(message.charAt(start - 1)) == true)
+                continue;
+            // Walking the trie as long as characters match.
+            @Nullable Node node = root;
+            for (int end = start; end < message.length() && node != null; end++) {
+                node = node.children.get(Character.toLowerCase(message.charAt(end)));
+                // Name must end at a word boundary to be considered a mention.
+                if (node != null && node.owners.isEmpty() == false && (end + 1 == message.length() || isNameCharacter(message.charAt(end + 1)) == false)) {
+                    if (players == null) {
+                        players = new HashSet<>();
+                        matches = new HashSet<>();
+                    }
+                    players.addAll(node.owners);
+                    matches.add(message.substring(start, end + 1));
+                }
+            }
+        }
+        // Returning empty result in case no mentions were found.
+        if (players == null)
+            return Mentions.EMPTY;
+        // ...
+        mentions.add(players.size());
+        return new Mentions(players, Set.copyOf(matches));
+    }
+
+    /**
+     * Returns {@link Pattern} matching text of specified mentions, but only as whole words, the same way {@link #find(String)} does.
+     */
+    public @NotNull Pattern getPattern(final @NotNull Mentions mentions) {
+        return patterns.asMap().computeIfAbsent(mentions.matches(), (matches) -> {
+            // Longer names are tried first, so display names are not cut short by names they contain.
+            final String alternatives = matches.stream()
+                    .sorted(Comparator.comparingInt(String::length).reversed())
+                    .map(Pattern::quote)
+                    .collect(Collectors.joining("|"));
+            // Name must start and end at word boundaries. Characters are the same as ones checked by isNameCharacter(char) method.
+            return Pattern.compile("(?<![\\p{L}\\p{Nd}_])(?:" + alternatives + ")(?![\\p{L}\\p{Nd}_])");
+        });
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(final @NotNull PlayerJoinEvent event) {
+        this.update(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(final @NotNull PlayerQuitEvent event) {
+        this.remove(event.getPlayer().getUniqueId());
+    }
+
+    private static boolean isNameCharacter(final char ch) {
+        return Character.isLetterOrDigit(ch) == true || ch == '_';
+    }
+
+    // Lower-cases each character separately, so indexes of lower-cased text match indexes of the original text.
+    private static @NotNull String lowerCase(final @NotNull String text) {
+        final char[] chars = text.toCharArray();
+        // ...
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = Character.toLowerCase(chars[i]);
+        // ...
+        return new String(chars);
+    }
+
+    private static final class Node {
+
+        private final Map<Character, Node> children = new ConcurrentHashMap<>();
+
+        private final Set<UUID> owners = ConcurrentHashMap.newKeySet();
+
+    }
+
+    /**
+     * Players mentioned in a message, and exact text they were mentioned by.
+     */
+    public record Mentions(@NotNull Set<UUID> players, @NotNull Set<String> matches) {
+
+        public static final Mentions EMPTY = new Mentions(Set.of(), Set.of());
+
+        public boolean isEmpty() {
+            return players.isEmpty() == true;
+        }
+
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.configuration.PluginConfig;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link SpamDetector} detects messages that are (nearly) the same as recent messages of the same player, or of other players.
+ * <p>
+ * Each message is reduced to a 64-bit SimHash fingerprint of its normalized character shingles. Similar messages have fingerprints
+ * that differ only by a few bits, so comparing two messages is a single XOR and bit count. Fingerprints are compared against a small,
+ * fixed-size window of recent messages of the player and a fixed-size window of recent messages of everyone, so the cost does not
+ * depend on chat activity.
+ */
+public final class SpamDetector implements Listener {
+
+    // Recent fingerprints of each player who sent at least one message since they joined.
+    private final Map<UUID, Window> players = new ConcurrentHashMap<>();
+
+    // Recent fingerprints of all players. Recreated when configuration is reloaded.
+    private Window global;
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+
+    // Every character is normalized, as spam bots tend to vary messages using look-alike characters and repeated letters.
+    private static final WordNormalizer NORMALIZER = new WordNormalizer(true, true, true, true, true);
+
+    // Number of characters in a single shingle.
+    private static final int SHINGLE_SIZE = 3;
+
+    public SpamDetector(final @NotNull Azure plugin) {
+        this();
+        // Registering event listeners.
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        // Registering metrics.
+        plugin.getMetricsRegistry().register("chat.spam.checked", checked::sum);
+        plugin.getMetricsRegistry().register("chat.spam.blocked", blocked::sum);
+    }
+
+    /**
+     * Creates {@link SpamDetector} which is not registered as a listener and exposes no metrics. Used by benchmarks.
+     */
+    SpamDetector() {
+        this.global = new Window(PluginConfig.CHAT_FILTERING_SPAM_GLOBAL_WINDOW);
+    }
+
+    /**
+     * Returns {@code true} if message should be considered as spam. Message is remembered only if it was not considered as spam.
+     */
+    public boolean isSpam(final @NotNull UUID sender, final @NotNull String message) {
+        // Returning early if detection is disabled.
+        if (PluginConfig.CHAT_FILTERING_SPAM_ENABLED == false)
+            return false;
+        // ...
+        final String text = NORMALIZER.normalize(message);
+        // Skipping short messages, as those tend to be similar to each other anyway. (greetings, reactions, etc.)
+        if (countLetters(text) < PluginConfig.CHAT_FILTERING_SPAM_MIN_LENGTH)
+            return false;
+        // ...
+        checked.increment();
+        // Computing fingerprint of the message.
+        final long fingerprint = fingerprint(text);
+        final long now = System.nanoTime();
+        final long expiration = now - TimeUnit.SECONDS.toNanos(PluginConfig.CHAT_FILTERING_SPAM_WINDOW_DURATION);
+        // Maximum number of different bits for two messages to be considered similar.
+        final int distance = (int) Math.floor((1.0 - PluginConfig.CHAT_FILTERING_SPAM_SIMILARITY_THRESHOLD) * 64);
+        // Getting (or creating) window of the player.
+        final Window window = players.computeIfAbsent(sender, (_) -> new Window(PluginConfig.CHAT_FILTERING_SPAM_PLAYER_WINDOW));
+        final Window global = this.global;
+        // Checking recent messages of the player first, then recent messages of other players.
+        if (window.count(fingerprint, distance, expiration, null) >= PluginConfig.CHAT_FILTERING_SPAM_PLAYER_MATCHES
+                || global.count(fingerprint, distance, expiration, sender) >= PluginConfig.CHAT_FILTERING_SPAM_GLOBAL_MATCHES) {
+            blocked.increment();
+            return true;
+        }
+        // Remembering the message.
+        window.add(fingerprint, now, sender);
+        global.add(fingerprint, now, sender);
+        // ...
+        return false;
+    }
+
+    /**
+     * Removes all remembered messages. Called after configuration is reloaded, so window sizes are applied.
+     */
+    public void invalidateAll() {
+        players.clear();
+        global = new Window(PluginConfig.CHAT_FILTERING_SPAM_GLOBAL_WINDOW);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(final @NotNull PlayerQuitEvent event) {
+        players.remove(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Computes SimHash fingerprint of specified (normalized) text. Only letters and digits are taken into account.
+     */
+    static long fingerprint(final @NotNull String text) {
+        // Sum of weights of each bit. Positive value means bit is set in the fingerprint.
+        final int[] weights = new int[64];
+        // Characters of the current shingle.
+        long shingle = 0;
+        int length = 0;
+        // ...
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            // Skipping whitespaces and punctuation.
+            if (Character.isLetterOrDigit(ch) == false)
+                continue;
+            // Shifting the character into the shingle. Each character takes 16 bits, so the shingle holds up to 4 characters.
+            shingle = (shingle << 16) | ch;
+            // Skipping until the first shingle is complete.
+            if (++length < SHINGLE_SIZE)
+                continue;
+            // Hashing the shingle and updating weights of each bit.
+            final long hash = mix(shingle & 0xFFFFFFFFFFFFL);
+            for (int bit = 0; bit < 64; bit++)
+                weights[bit] += (int) (((hash >>> bit) & 1L) << 1) - 1;
+        }
+        // Building fingerprint from weights.
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++)
+            if (weights[bit] > 0)
+                fingerprint |= (1L << bit);
+        // ...
+        return fingerprint;
+    }
+
+    // Finalization step of MurmurHash3. Spreads bits of the input across the whole output.
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static int countLetters(final @NotNull String text) {
+        int count = 0;
+        // ...
+        for (int i = 0; i < text.length(); i++)
+            if (Character.isLetterOrDigit(text.charAt(i)) == true)
+                count++;
+        // ...
+        return count;
+    }
+
+    /**
+     * Fixed-size ring of recent fingerprints.
+     */
+    private static final class Window {
+
+        private final long[] fingerprints;
+        private final long[] timestamps;
+        private final UUID[] senders;
+
+        // Index of the next slot to be overwritten. Guarded by (this).
+        private int next = 0;
+
+        private Window(final int size) {
+            this.fingerprints = new long[Math.max(size, 0)];
+            this.timestamps = new long[Math.max(size, 0)];
+            this.senders = new UUID[Math.max(size, 0)];
+        }
+
+        /**
+         * Returns number of non-expired fingerprints that differ from specified one by at most {@code distance} bits. Fingerprints of {@code excluded} sender are not counted.
+         */
+        synchronized int count(final long fingerprint, final int distance, final long expiration, final @Nullable UUID excluded) {
+            int count = 0;
+            // ...
+            for (int i = 0; i < fingerprints.length; i++) {
+                // Skipping empty and expired slots.
+                if (senders[i] == null || timestamps[i] - expiration < 0)
+                    continue;
+                // Skipping messages of excluded sender.
+                if (excluded != null && excluded.equals(senders[i]) == true)
+                    continue;
+                // ...
+                if (Long.bitCount(fingerprints[i] ^ fingerprint) <= distance)
+                    count++;
+            }
+            return count;
+        }
+
+        synchronized void add(final long fingerprint, final long timestamp, final @NotNull UUID sender) {
+            // Skipping in case window is disabled.
+            if (fingerprints.length == 0)
+                return;
+            // ...
+            fingerprints[next] = fingerprint;
+            timestamps[next] = timestamp;
+            senders[next] = sender;
+            next = (next + 1) % fingerprints.length;
+        }
+
+    }
+
+}
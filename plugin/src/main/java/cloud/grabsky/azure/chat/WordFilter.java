@@ -0,0 +1,225 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link WordFilter} finds inappropriate words in a message using an Aho-Corasick automaton, compiled once from all entries.
+ * Each message is normalized and then scanned in a single pass, regardless of number of entries.
+ * <p>
+ * Entries match whole words only, unless they start and/or end with an asterisk, which allows them to be part of a longer
+ * word on that side. For example, {@code *word} matches {@code badword}, but not {@code wordy}.
+ */
+public final class WordFilter {
+
+    private final WordNormalizer normalizer;
+
+    // Entries as defined in the file. Indexed by pattern id.
+    private final String[] entries;
+
+    // Whether pattern must start, or end, at word boundary. Indexed by pattern id.
+    private final boolean[] wordStart;
+    private final boolean[] wordEnd;
+
+    // Lengths of normalized patterns. Indexed by pattern id.
+    private final int[] lengths;
+
+    // Outgoing transitions of each state. Characters are sorted to allow binary search.
+    private final char[][] edgeCharacters;
+    private final int[][] edgeTargets;
+
+    // Failure link of each state; the longest proper suffix of the state which is also a state.
+    private final int[] failure;
+
+    // Nearest state reachable through failure links that ends any pattern, or -1 if there is none.
+    private final int[] output;
+
+    // Patterns ending at each state, or null if there are none.
+    private final int[][] patterns;
+
+    private static final char WILDCARD = '*';
+
+    private static final char[] NO_CHARACTERS = new char[0];
+    private static final int[] NO_TARGETS = new int[0];
+
+    private WordFilter(final @NotNull WordNormalizer normalizer, final @NotNull List<String> entries, final @NotNull List<String> normalized, final boolean[] wordStart, final boolean[] wordEnd) {
+        this.normalizer = normalizer;
+        this.entries = entries.toArray(String[]::new);
+        this.wordStart = wordStart;
+        this.wordEnd = wordEnd;
+        this.lengths = normalized.stream().mapToInt(String::length).toArray();
+        // Building the trie. Transitions are stored in maps until the automaton is compiled.
+        final List<Map<Character, Integer>> trie = new ArrayList<>();
+        final Map<Integer, List<Integer>> ends = new HashMap<>();
+        trie.add(new HashMap<>());
+        for (int id = 0; id < normalized.size(); id++) {
+            int state = 0;
+            for (final char ch : normalized.get(id).toCharArray()) {
+                @Nullable Integer next = trie.get(state).get(ch);
+                // Creating new state if there is no transition for this character yet.
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new HashMap<>());
+                    trie.get(state).put(ch, next);
+                }
+                state = next;
+            }
+            ends.computeIfAbsent(state, (_) -> new ArrayList<>()).add(id);
+        }
+        // Compiling transitions into sorted arrays.
+        final int size = trie.size();
+        this.edgeCharacters = new char[size][];
+        this.edgeTargets = new int[size][];
+        this.patterns = new int[size][];
+        for (int state = 0; state < size; state++) {
+            final Map<Character, Integer> edges = trie.get(state);
+            final char[] characters = new char[edges.size()];
+            int i = 0;
+            for (final char ch : edges.keySet())
+                characters[i++] = ch;
+            Arrays.sort(characters);
+            final int[] targets = new int[characters.length];
+            for (i = 0; i < characters.length; i++)
+                targets[i] = edges.get(characters[i]);
+            // Sharing empty arrays between leaf states.
+            edgeCharacters[state] = (characters.length != 0) ? characters : NO_CHARACTERS;
+            edgeTargets[state] = (targets.length != 0) ? targets : NO_TARGETS;
+            // ...
+            final @Nullable List<Integer> ids = ends.get(state);
+            if (ids != null)
+                patterns[state] = ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+        // Computing failure and output links, in breadth-first order, so links of shorter states are always computed first.
+        this.failure = new int[size];
+        this.output = new int[size];
+        output[0] = -1;
+        final int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        for (final int target : edgeTargets[0]) {
+            failure[target] = 0;
+            output[target] = -1;
+            queue[tail++] = target;
+        }
+        while (head < tail) {
+            final int state = queue[head++];
+            for (int i = 0; i < edgeCharacters[state].length; i++) {
+                final char ch = edgeCharacters[state][i];
+                final int target = edgeTargets[state][i];
+                // Following failure links of the parent until a state with transition for this character is found.
+                int fallback = failure[state];
+                while (fallback != 0 && next(fallback, ch) == -1)
+                    fallback = failure[fallback];
+                final int link = next(fallback, ch);
+                failure[target] = (link != -1 && link != target) ? link : 0;
+                output[target] = (patterns[failure[target]] != null) ? failure[target] : output[failure[target]];
+                queue[tail++] = target;
+            }
+        }
+    }
+
+    /**
+     * Compiles {@link WordFilter} from specified entries. Entries that are empty after normalization are skipped.
+     */
+    public static @NotNull WordFilter compile(final @NotNull WordNormalizer normalizer, final @NotNull Collection<String> entries) {
+        final List<String> accepted = new ArrayList<>(entries.size());
+        final List<String> normalized = new ArrayList<>(entries.size());
+        final boolean[] wordStart = new boolean[entries.size()];
+        final boolean[] wordEnd = new boolean[entries.size()];
+        for (final String entry : entries) {
+            final boolean leadingWildcard = entry.length() > 1 && entry.charAt(0) == WILDCARD;
+            final boolean trailingWildcard = entry.length() > 1 && entry.charAt(entry.length() - 1) == WILDCARD;
+            // Stripping wildcards and normalizing the entry.
+            final String pattern = normalizer.normalize(entry.substring(leadingWildcard ? 1 : 0, trailingWildcard ? entry.length() - 1 : entry.length()).strip());
+            // Skipping entries that would match everything.
+            if (pattern.isEmpty() == true)
+                continue;
+            // ...
+            wordStart[accepted.size()] = (leadingWildcard == false);
+            wordEnd[accepted.size()] = (trailingWildcard == false);
+            accepted.add(entry);
+            normalized.add(pattern);
+        }
+        return new WordFilter(normalizer, accepted, normalized, wordStart, wordEnd);
+    }
+
+    /**
+     * Returns number of entries this filter was compiled from.
+     */
+    public int getEntryCount() {
+        return entries.length;
+    }
+
+    /**
+     * Returns number of states of the compiled automaton.
+     */
+    public int getStateCount() {
+        return failure.length;
+    }
+
+    /**
+     * Returns the first entry found in specified message, or {@code null} if message contains none of the entries.
+     */
+    public @Nullable String find(final @NotNull String message) {
+        // Returning early for an empty filter.
+        if (entries.length == 0)
+            return null;
+        // ...
+        final String text = normalizer.normalize(message);
+        int state = 0;
+        // Iterating over all characters of the normalized message.
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+            // Following failure links until a state with transition for this character is found, or root is reached.
+            int next;
+            while ((next = next(state, ch)) == -1 && state != 0)
+                state = failure[state];
+            state = (next != -1) ? next : 0;
+            // Checking all patterns ending at this position.
+            for (int match = (patterns[state] != null) ? state : output[state]; match != -1; match = output[match]) {
+                for (final int id : patterns[match]) {
+                    final int start = i - lengths[id] + 1;
+                    // Skipping matches that are part of a longer word, unless entry allows that.
+                    if (wordStart[id] == true && start > 0 && isWordCharacter(text.charAt(start - 1)) == true)
+                        continue;
+                    if (wordEnd[id] == true && i + 1 < text.length() && isWordCharacter(text.charAt(i + 1)) == true)
+                        continue;
+                    // ...
+                    return entries[id];
+                }
+            }
+        }
+        return null;
+    }
+
+    private int next(final int state, final char ch) {
+        final int index = Arrays.binarySearch(edgeCharacters[state], ch);
+        return (index >= 0) ? edgeTargets[state][index] : -1;
+    }
+
+    private static boolean isWordCharacter(final char ch) {
+        return Character.isLetterOrDigit(ch) == true;
+    }
+
+}
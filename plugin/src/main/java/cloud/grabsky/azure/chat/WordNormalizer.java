@@ -0,0 +1,112 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import java.text.Normalizer;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link WordNormalizer} maps text to a canonical form, making it harder to bypass {@link WordFilter} by using different
+ * casing, accents, look-alike characters or repeated letters. Entries and messages must be normalized the same way.
+ * <p>
+ * Each character is mapped to at most one character, in the following order: diacritics stripping, case folding,
+ * homoglyph and leet-speak mapping, repeated characters squashing.
+ */
+public final class WordNormalizer {
+
+    private final boolean caseFolding;
+    private final boolean stripDiacritics;
+    private final boolean mapHomoglyphs;
+    private final boolean mapLeetSpeak;
+    private final boolean squashRepeated;
+
+    // Characters that are not decomposed by NFD normalization, but still are commonly considered as letters with diacritics.
+    private static final String DIACRITICS_FROM = "łŁđĐøØħĦıß";
+    private static final String DIACRITICS_TO   = "lLdDoOhHis";
+
+    // Cyrillic and Greek characters that look (almost) exactly like latin ones. Applied after case folding, so only lower-case variants are needed.
+    private static final String HOMOGLYPHS_FROM = "аеорсхуікјѕԁһԛԝαβεικνορτυχ";
+    private static final String HOMOGLYPHS_TO   = "aeopcxyikjsdhqwabeiknoptux";
+
+    // Digits and symbols commonly used in place of letters. Punctuation like '!' is deliberately left out, as it would merge with preceding word.
+    private static final String LEET_FROM = "0134578@$";
+    private static final String LEET_TO   = "oieastbas";
+
+    // Lookup tables indexed by character. Characters outside of these tables are not mapped.
+    private static final char[] DIACRITICS = table(DIACRITICS_FROM, DIACRITICS_TO, 0x180);
+    private static final char[] HOMOGLYPHS = table(HOMOGLYPHS_FROM, HOMOGLYPHS_TO, 0x530);
+    private static final char[] LEET = table(LEET_FROM, LEET_TO, 0x80);
+
+    public WordNormalizer(final boolean caseFolding, final boolean stripDiacritics, final boolean mapHomoglyphs, final boolean mapLeetSpeak, final boolean squashRepeated) {
+        this.caseFolding = caseFolding;
+        this.stripDiacritics = stripDiacritics;
+        this.mapHomoglyphs = mapHomoglyphs;
+        this.mapLeetSpeak = mapLeetSpeak;
+        this.squashRepeated = squashRepeated;
+    }
+
+    /**
+     * Returns normalized form of specified {@link String}.
+     */
+    public @NotNull String normalize(final @NotNull String text) {
+        // Decomposing characters, so diacritical marks become separate characters that can be skipped.
+        final String source = (stripDiacritics == true && Normalizer.isNormalized(text, Normalizer.Form.NFD) == false) ? Normalizer.normalize(text, Normalizer.Form.NFD) : text;
+        // ...
+        final StringBuilder builder = new StringBuilder(source.length());
+        // Last appended character. Used to squash repeated characters.
+        char last = 0;
+        // Iterating over all characters of the text.
+        for (int i = 0; i < source.length(); i++) {
+            char ch = source.charAt(i);
+            // Skipping diacritical marks.
+            if (stripDiacritics == true) {
+                if (Character.getType(ch) == Character.NON_SPACING_MARK)
+                    continue;
+                ch = map(DIACRITICS, ch);
+            }
+            // Folding case.
+            if (caseFolding == true)
+                ch = Character.toLowerCase(ch);
+            // Mapping look-alike characters.
+            if (mapHomoglyphs == true)
+                ch = map(HOMOGLYPHS, ch);
+            // Mapping leet-speak characters.
+            if (mapLeetSpeak == true)
+                ch = map(LEET, ch);
+            // Skipping character if it's the same as previous one.
+            if (squashRepeated == true && ch == last)
+                continue;
+            // ...
+            builder.append(ch);
+            last = ch;
+        }
+        return builder.toString();
+    }
+
+    private static char map(final char[] table, final char ch) {
+        return (ch < table.length && table[ch] != 0) ? table[ch] : ch;
+    }
+
+    private static char @NotNull [] table(final @NotNull String from, final @NotNull String to, final int size) {
+        final char[] table = new char[size];
+        // ...
+        for (int i = 0; i < from.length(); i++)
+            table[from.charAt(i)] = to.charAt(i);
+        // ...
+        return table;
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat.channel;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.audience.AudienceRegistry;
+import cloud.grabsky.azure.configuration.PluginConfig;
+import io.papermc.paper.event.player.AsyncChatEvent;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * {@link ChannelManager} keeps track of chat channel selected by each player and narrows recipients of chat messages accordingly.
+ */
+public final class ChannelManager implements Listener {
+
+    private final Azure plugin;
+
+    @Getter(AccessLevel.PUBLIC)
+    private final PlayerGrid grid;
+
+    // Channels selected by online players. Players not present in this map are using the default channel.
+    private final Map<UUID, ChatChannel> channels = new ConcurrentHashMap<>();
+
+    public static final String STAFF_CHANNEL_PERMISSION = "azure.plugin.chat.channel.staff";
+
+    public ChannelManager(final @NotNull Azure plugin) {
+        this.plugin = plugin;
+        this.grid = new PlayerGrid(plugin);
+        // Registering event listeners.
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+    }
+
+    /**
+     * Returns {@link ChatChannel} currently selected by specified {@link Player}.
+     */
+    public @NotNull ChatChannel getChannel(final @NotNull Player player) {
+        final ChatChannel channel = channels.getOrDefault(player.getUniqueId(), PluginConfig.CHAT_CHANNELS_DEFAULT);
+        // Falling back to global channel in case player can no longer use selected (or default) channel.
+        return (this.canUse(player, channel) == true) ? channel : ChatChannel.GLOBAL;
+    }
+
+    /**
+     * Selects {@link ChatChannel} for specified {@link Player}. Returns {@code false} if player is not allowed to use this channel.
+     */
+    public boolean setChannel(final @NotNull Player player, final @NotNull ChatChannel channel) {
+        // Returning 'false' in case player is not allowed to use this channel.
+        if (this.canUse(player, channel) == false)
+            return false;
+        // ...
+        channels.put(player.getUniqueId(), channel);
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if specified {@link Player} is allowed to send messages to specified {@link ChatChannel}.
+     */
+    public boolean canUse(final @NotNull Player player, final @NotNull ChatChannel channel) {
+        return switch (channel) {
+            case GLOBAL -> true;
+            case LOCAL -> PluginConfig.CHAT_CHANNELS_LOCAL_RADIUS > 0;
+            case STAFF -> plugin.getAudienceRegistry().isMember(player, AudienceRegistry.Type.STAFF_CHANNEL) == true;
+        };
+    }
+
+    /**
+     * Removes viewers of specified {@link AsyncChatEvent} that should not receive message sent to specified {@link ChatChannel}. Non-player viewers (eg. console) are kept.
+     */
+    public void narrow(final @NotNull AsyncChatEvent event, final @NotNull ChatChannel channel) {
+        switch (channel) {
+            case GLOBAL -> { /* EVERYONE */ }
+            case LOCAL -> {
+                final @Nullable PlayerGrid.Position position = grid.getPosition(event.getPlayer().getUniqueId());
+                // Finding players within the radius. Only players in nearby chunks are checked.
+                final Set<UUID> nearby = (position != null && position.getWorld() != null)
+                        ? new HashSet<>(grid.getNearby(position.getWorld(), position.getX(), position.getZ(), PluginConfig.CHAT_CHANNELS_LOCAL_RADIUS))
+                        : Set.of(event.getPlayer().getUniqueId());
+                // ...
+                event.viewers().removeIf(viewer -> viewer instanceof Player player && nearby.contains(player.getUniqueId()) == false);
+            }
+            case STAFF -> event.viewers().removeIf(viewer -> viewer instanceof Player player && plugin.getAudienceRegistry().isMember(player, AudienceRegistry.Type.STAFF_CHANNEL) == false);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(final @NotNull PlayerQuitEvent event) {
+        channels.remove(event.getPlayer().getUniqueId());
+    }
+
+}
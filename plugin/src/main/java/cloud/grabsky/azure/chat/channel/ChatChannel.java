@@ -0,0 +1,37 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat.channel;
+
+/**
+ * Channels chat messages can be sent to.
+ */
+public enum ChatChannel {
+
+    /**
+     * Messages are visible to everyone.
+     */
+    GLOBAL,
+
+    /**
+     * Messages are visible only to players within configured radius from the sender.
+     */
+    LOCAL,
+
+    /**
+     * Messages are visible only to players with staff channel permission.
+     */
+    STAFF
+
+}
@@ -0,0 +1,246 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat.channel;
+
+import cloud.grabsky.azure.Azure;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.Vehicle;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.vehicle.VehicleMoveEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link PlayerGrid} is a spatial index of online players, grouped by world and chunk they are currently in.
+ * <p>
+ * Index is updated on the main thread, when player moves to a different chunk, teleports, changes world, respawns, joins or leaves.
+ * {@link PlayerMoveEvent} is not called for passengers, so these are updated when their vehicle moves, and once per second in case
+ * they are riding an entity which is not a {@link Vehicle}. Positions are copied into the index, so it can be safely queried from other
+ * threads, without touching {@link Player#getLocation()}.
+ */
+public final class PlayerGrid implements Listener {
+
+    // Players in each chunk of each world. Chunk key is composed of chunk X and chunk Z coordinates.
+    private final Map<UUID, Map<Long, Set<Position>>> worlds = new ConcurrentHashMap<>();
+
+    // Current position of each online player.
+    private final Map<UUID, Position> positions = new ConcurrentHashMap<>();
+
+    public PlayerGrid(final @NotNull Azure plugin) {
+        // Indexing players that are already online. (reload)
+        Bukkit.getOnlinePlayers().forEach(player -> this.update(player, player.getLocation()));
+        // Scheduling the task which updates positions of players riding entities that do not call VehicleMoveEvent.
+        plugin.getBedrockScheduler().repeat(20L, 20L, Long.MAX_VALUE, (_) -> {
+            for (final Player player : Bukkit.getOnlinePlayers())
+                if (player.getVehicle() != null && player.getVehicle() instanceof Vehicle == false)
+                    this.update(player, player.getLocation());
+            // ...
+            return true;
+        });
+        // Registering event listeners.
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        // Registering metrics.
+        plugin.getMetricsRegistry().register("chat.grid.players", positions::size);
+        plugin.getMetricsRegistry().register("chat.grid.cells", () -> worlds.values().stream().mapToInt(Map::size).sum());
+    }
+
+    /**
+     * Returns unique ids of players within specified radius (in blocks) from specified point of specified world. Height is not taken into account. Can be called from any thread.
+     */
+    public @NotNull List<UUID> getNearby(final @NotNull UUID world, final double x, final double z, final double radius) {
+        final @Nullable Map<Long, Set<Position>> cells = worlds.get(world);
+        // Returning empty list in case there are no players in this world.
+        if (cells == null)
+            return List.of();
+        // ...
+        final List<UUID> result = new ArrayList<>();
+        final double radiusSquared = radius * radius;
+        // Chunks which intersect with the square around the circle.
+        final int minX = (int) Math.floor(x - radius) >> 4;
+        final int maxX = (int) Math.floor(x + radius) >> 4;
+        final int minZ = (int) Math.floor(z - radius) >> 4;
+        final int maxZ = (int) Math.floor(z + radius) >> 4;
+        // Iterating over occupied chunks instead, in case there are fewer of them than chunks in range. (very large radius)
+        if ((long) (maxX - minX + 1) * (maxZ - minZ + 1) > cells.size()) {
+            for (final Set<Position> cell : cells.values())
+                collect(cell, x, z, radiusSquared, result);
+            return result;
+        }
+        for (int chunkX = minX; chunkX <= maxX; chunkX++) {
+            for (int chunkZ = minZ; chunkZ <= maxZ; chunkZ++) {
+                final @Nullable Set<Position> cell = cells.get(key(chunkX, chunkZ));
+                // Skipping empty chunks.
+                if (cell != null)
+                    collect(cell, x, z, radiusSquared, result);
+            }
+        }
+        return result;
+    }
+
+    private static void collect(final @NotNull Set<Position> cell, final double x, final double z, final double radiusSquared, final @NotNull List<UUID> result) {
+        // Checking exact distance of players in this chunk.
+        for (final Position position : cell) {
+            final double dx = position.x - x;
+            final double dz = position.z - z;
+            if (dx * dx + dz * dz <= radiusSquared)
+                result.add(position.uniqueId);
+        }
+    }
+
+    /**
+     * Returns last indexed position of specified player, or {@code null} if player is not indexed.
+     */
+    public @Nullable Position getPosition(final @NotNull UUID uniqueId) {
+        return positions.get(uniqueId);
+    }
+
+    private void update(final @NotNull Player player, final @NotNull Location location) {
+        final Position position = positions.computeIfAbsent(player.getUniqueId(), Position::new);
+        final UUID world = location.getWorld().getUID();
+        final long key = key(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        // Moving player to a different cell, in case world or chunk has changed.
+        if (world.equals(position.world) == false || key != position.key) {
+            this.removeFromCell(position);
+            worlds.computeIfAbsent(world, (_) -> new ConcurrentHashMap<>()).computeIfAbsent(key, (_) -> ConcurrentHashMap.newKeySet()).add(position);
+            position.world = world;
+            position.key = key;
+        }
+        // Updating coordinates.
+        position.x = location.getX();
+        position.z = location.getZ();
+    }
+
+    private void remove(final @NotNull UUID uniqueId) {
+        final @Nullable Position position = positions.remove(uniqueId);
+        // ...
+        if (position != null)
+            this.removeFromCell(position);
+    }
+
+    private void removeFromCell(final @NotNull Position position) {
+        // Skipping positions that are not in any cell yet.
+        if (position.world == null)
+            return;
+        // ...
+        final @Nullable Map<Long, Set<Position>> cells = worlds.get(position.world);
+        if (cells != null) {
+            // Removing cell entirely once it becomes empty. Index is modified only on the main thread, so this does not race with other modifications.
+            cells.computeIfPresent(position.key, (_, cell) -> (cell.remove(position) == true && cell.isEmpty() == true) ? null : cell);
+        }
+    }
+
+    private static long key(final int chunkX, final int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(final @NotNull PlayerJoinEvent event) {
+        this.update(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(final @NotNull PlayerQuitEvent event) {
+        this.remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(final @NotNull PlayerMoveEvent event) {
+        // Skipping in case player has only rotated their head.
+        if (event.hasChangedPosition() == false)
+            return;
+        // ...
+        this.update(event.getPlayer(), event.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onVehicleMove(final @NotNull VehicleMoveEvent event) {
+        // Updating positions of all players riding this vehicle, including these riding other passengers.
+        this.updatePassengers(event.getVehicle());
+    }
+
+    private void updatePassengers(final @NotNull Entity vehicle) {
+        for (final Entity passenger : vehicle.getPassengers()) {
+            if (passenger instanceof Player player)
+                this.update(player, player.getLocation());
+            // ...
+            this.updatePassengers(passenger);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(final @NotNull PlayerTeleportEvent event) {
+        this.update(event.getPlayer(), event.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(final @NotNull PlayerChangedWorldEvent event) {
+        this.update(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(final @NotNull PlayerRespawnEvent event) {
+        this.update(event.getPlayer(), event.getRespawnLocation());
+    }
+
+    /**
+     * Last indexed position of a player. Written on the main thread, read from any thread.
+     */
+    public static final class Position {
+
+        private final UUID uniqueId;
+
+        private volatile @Nullable UUID world;
+        private volatile long key;
+        private volatile double x;
+        private volatile double z;
+
+        private Position(final @NotNull UUID uniqueId) {
+            this.uniqueId = uniqueId;
+        }
+
+        public @Nullable UUID getWorld() {
+            return world;
+        }
+
+        public double getX() {
+            return x;
+        }
+
+        public double getZ() {
+            return z;
+        }
+
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat.filter;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.api.chat.ChatFilter;
+import cloud.grabsky.azure.api.chat.ChatFilterRegistry;
+import cloud.grabsky.azure.configuration.PluginConfig;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+/**
+ * {@link ChatFilterPipeline} invokes registered {@link ChatFilter} stages in configured order, until one of them denies the message.
+ * <p>
+ * Number of invocations, number of rejections and total time spent are tracked for each stage and exposed as metrics.
+ */
+public final class ChatFilterPipeline implements ChatFilterRegistry {
+
+    private final Azure plugin;
+
+    // Stages in order they were registered. Guarded by (this).
+    private final List<Stage> registered = new ArrayList<>();
+
+    // Stages in order they are invoked. Replaced as a whole whenever stages or their order change.
+    private volatile Stage[] stages = new Stage[0];
+
+    public ChatFilterPipeline(final @NotNull Azure plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public synchronized void register(final @NotNull ChatFilter filter) throws IllegalArgumentException {
+        // Throwing exception in case stage with the same name is already registered.
+        if (this.find(filter.getName()) != null)
+            throw new IllegalArgumentException("Chat filter named '" + filter.getName() + "' is already registered.");
+        // ...
+        final Stage stage = new Stage(filter);
+        registered.add(stage);
+        // Registering metrics.
+        final String prefix = "chat.filters." + filter.getName();
+        plugin.getMetricsRegistry().register(prefix + ".invocations", stage.invocations::sum);
+        plugin.getMetricsRegistry().register(prefix + ".rejections", stage.rejections::sum);
+        plugin.getMetricsRegistry().register(prefix + ".nanos", stage.nanos::sum);
+        // Updating order of the stages.
+        this.reorder();
+    }
+
+    @Override
+    public synchronized boolean unregister(final @NotNull String name) {
+        final @Nullable Stage stage = this.find(name);
+        // Returning 'false' in case stage is not registered.
+        if (stage == null)
+            return false;
+        // ...
+        registered.remove(stage);
+        // Unregistering metrics. Trailing dot prevents removing metrics of stages which name starts with the same text.
+        plugin.getMetricsRegistry().unregister("chat.filters." + name + ".");
+        // Updating order of the stages.
+        this.reorder();
+        return true;
+    }
+
+    @Override
+    public @NotNull @Unmodifiable List<ChatFilter> getFilters() {
+        return Arrays.stream(stages).map(Stage::filter).toList();
+    }
+
+    /**
+     * Sorts stages according to the configuration. Stages missing from the configuration are invoked last, in order they were registered.
+     */
+    public synchronized void reorder() {
+        final List<String> order = PluginConfig.CHAT_FILTERING_ORDER;
+        // Sorting a copy, which is then published as a whole. Sorting is stable, so registration order is kept for equal elements.
+        this.stages = registered.stream()
+                .sorted(Comparator.comparingInt(stage -> (order.contains(stage.filter.getName()) == true) ? order.indexOf(stage.filter.getName()) : Integer.MAX_VALUE))
+                .toArray(Stage[]::new);
+    }
+
+    /**
+     * Invokes all stages in order, returning the first result that denies the message, or {@link ChatFilter.Result#allow()} if none of them did.
+     */
+    public @NotNull ChatFilter.Result filter(final @NotNull Player sender, final @NotNull String message) {
+        for (final Stage stage : stages) {
+            final long start = System.nanoTime();
+            final ChatFilter.Result result;
+            // Invoking the stage. Exceptions thrown by (most likely third-party) stages are logged and treated as if message was allowed.
+            try {
+                result = stage.filter.filter(sender, message);
+            } catch (final RuntimeException e) {
+                plugin.getLogger().severe("Chat filter '" + stage.filter.getName() + "' failed due to following error(s):");
+                plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+                continue;
+            } finally {
+                stage.nanos.add(System.nanoTime() - start);
+                stage.invocations.increment();
+            }
+            // Returning in case stage denied the message.
+            if (result.isAllowed() == false) {
+                stage.rejections.increment();
+                return result;
+            }
+        }
+        return ChatFilter.Result.allow();
+    }
+
+    private @Nullable Stage find(final @NotNull String name) {
+        return registered.stream().filter(stage -> stage.filter.getName().equals(name) == true).findFirst().orElse(null);
+    }
+
+    private record Stage(@NotNull ChatFilter filter, @NotNull LongAdder invocations, @NotNull LongAdder rejections, @NotNull LongAdder nanos) {
+
+        private Stage(final @NotNull ChatFilter filter) {
+            this(filter, new LongAdder(), new LongAdder(), new LongAdder());
+        }
+
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat.filter;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.api.chat.ChatFilter;
+import cloud.grabsky.azure.chat.ChatManager;
+import cloud.grabsky.azure.configuration.PluginConfig;
+import cloud.grabsky.azure.configuration.PluginLocale;
+import org.bukkit.entity.Player;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Denies messages containing inappropriate words and executes configured punishment commands. See {@link ChatManager#findInappropriateWord(String)}.
+ */
+public final class InappropriateWordsFilter implements ChatFilter {
+
+    private final Azure plugin;
+    private final ChatManager chat;
+
+    public InappropriateWordsFilter(final @NotNull Azure plugin, final @NotNull ChatManager chat) {
+        this.plugin = plugin;
+        this.chat = chat;
+    }
+
+    @Override
+    public @NotNull String getName() {
+        return "inappropriate_words";
+    }
+
+    @Override
+    public @NotNull Result filter(final @NotNull Player sender, final @NotNull String message) {
+        // Letting the message through in case this check is disabled, or message does not contain any inappropriate words.
+        if (PluginConfig.CHAT_FILTERING_DISALLOW_INAPPROPRIATE_WORDS == false || chat.findInappropriateWord(message) == null)
+            return Result.allow();
+        // Executing punishment commands.
+        PunishmentCommands.schedule(plugin, sender, PluginConfig.CHAT_FILTERING_PUNISHMENT_COMMANDS);
+        // ...
+        return Result.deny(PluginLocale.CHAT_MESSAGE_CONTAINS_INAPPROPRIATE_WORDS);
+    }
+
+}
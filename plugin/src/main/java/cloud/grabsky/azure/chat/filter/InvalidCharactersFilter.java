@@ -0,0 +1,63 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat.filter;
+
+import cloud.grabsky.azure.api.chat.ChatFilter;
+import cloud.grabsky.azure.configuration.PluginConfig;
+import cloud.grabsky.azure.configuration.PluginLocale;
+import org.bukkit.entity.Player;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Denies messages containing invalid characters. Mostly to ensure players are not using resource-pack-reserved characters in chat.
+ * <p>
+ * Invalid characters are precompiled into a bit set covering the whole Basic Multilingual Plane, so each character is checked with a single lookup.
+ */
+public final class InvalidCharactersFilter implements ChatFilter {
+
+    // Ranges of invalid characters. Each pair of values is an inclusive range. (Private Use Area, E000-F8FF)
+    private static final int[] INVALID_RANGES = { 0xE000, 0xF8FF };
+
+    // One bit for each character of the Basic Multilingual Plane.
+    private static final long[] INVALID = new long[(Character.MAX_VALUE + 1) >>> 6];
+
+    static {
+        for (int i = 0; i < INVALID_RANGES.length; i += 2)
+            for (int ch = INVALID_RANGES[i]; ch <= INVALID_RANGES[i + 1]; ch++)
+                INVALID[ch >>> 6] |= (1L << ch);
+    }
+
+    @Override
+    public @NotNull String getName() {
+        return "invalid_characters";
+    }
+
+    @Override
+    public @NotNull Result filter(final @NotNull Player sender, final @NotNull String message) {
+        // Letting the message through in case this check is disabled.
+        if (PluginConfig.CHAT_FILTERING_DISALLOW_INVALID_CHARACTERS == false)
+            return Result.allow();
+        // Iterating over all characters of the message.
+        for (int i = 0; i < message.length(); i++) {
+            final char ch = message.charAt(i);
+            // Denying the message in case character is invalid.
+            if ((INVALID[ch >>> 6] & (1L << ch)) != 0)
+                return Result.deny(PluginLocale.CHAT_MESSAGE_CONTAINS_INVALID_CHARACTERS);
+        }
+        return Result.allow();
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat.filter;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.api.Punishment;
+import cloud.grabsky.azure.api.chat.ChatFilter;
+import cloud.grabsky.azure.api.user.User;
+import cloud.grabsky.azure.configuration.PluginLocale;
+import cloud.grabsky.bedrock.components.Message;
+import org.bukkit.entity.Player;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Denies messages of muted players.
+ */
+public final class MuteFilter implements ChatFilter {
+
+    private final Azure plugin;
+
+    public MuteFilter(final @NotNull Azure plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public @NotNull String getName() {
+        return "mute";
+    }
+
+    @Override
+    public @NotNull Result filter(final @NotNull Player sender, final @NotNull String message) {
+        final User user = plugin.getUserCache().getUser(sender);
+        // Letting the message through in case player is not muted.
+        if (user.isMuted() == false)
+            return Result.allow();
+        // Getting the current mute punishment.
+        final Punishment punishment = user.getMostRecentMute();
+        // Denying the message with mute information.
+        return Result.deny((punishment.isPermanent() == true)
+                ? PluginLocale.CHAT_MUTED_PERMANENT
+                : Message.of(PluginLocale.CHAT_MUTED)
+                        .placeholder("duration_left", punishment.getDurationLeft().toString())
+                        .parse()
+        );
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat.filter;
+
+import cloud.grabsky.azure.Azure;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+final class PunishmentCommands {
+
+    private PunishmentCommands() { /* UTILITY CLASS */ }
+
+    /**
+     * Schedules specified console commands to be executed on the main thread. Occurrences of {@code <player>} are replaced with name of the player.
+     */
+    static void schedule(final @NotNull Azure plugin, final @NotNull Player player, final @NotNull List<String> commands) {
+        // Skipping in case there is nothing to execute.
+        if (commands.isEmpty() == true)
+            return;
+        // ...
+        plugin.getBedrockScheduler().run(1L, (_) -> {
+            commands.forEach(it -> Bukkit.dispatchCommand(Bukkit.getConsoleSender(), it.replace("<player>", player.getName())));
+        });
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat.filter;
+
+import cloud.grabsky.azure.api.chat.ChatFilter;
+import cloud.grabsky.azure.chat.ChatRateLimiter;
+import cloud.grabsky.azure.configuration.PluginLocale;
+import org.bukkit.entity.Player;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Denies messages of players who are sending messages too quickly. See {@link ChatRateLimiter}.
+ */
+public final class RateLimitFilter implements ChatFilter {
+
+    private final ChatRateLimiter rateLimiter;
+
+    public RateLimitFilter(final @NotNull ChatRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public @NotNull String getName() {
+        return "rate_limit";
+    }
+
+    @Override
+    public @NotNull Result filter(final @NotNull Player sender, final @NotNull String message) {
+        return (rateLimiter.tryAcquire(sender) == true) ? Result.allow() : Result.deny(PluginLocale.CHAT_ON_COOLDOWN);
+    }
+
+}
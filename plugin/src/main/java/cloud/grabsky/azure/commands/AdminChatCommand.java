@@ -15,6 +15,7 @@
 package cloud.grabsky.azure.commands;
 
 import cloud.grabsky.azure.api.user.UserCache;
+import cloud.grabsky.azure.audience.AudienceRegistry;
 import cloud.grabsky.azure.chat.ChatManager;
 import cloud.grabsky.azure.configuration.PluginConfig;
 import cloud.grabsky.azure.configuration.PluginLocale;
@@ -43,6 +44,9 @@ public final class AdminChatCommand extends RootCommand {
     @Dependency
     private @UnknownNullability UserCache userCache;
 
+    @Dependency
+    private @UnknownNullability AudienceRegistry audiences;
+
     private static final ExceptionHandler.Factory ADMINCHAT_USAGE = (exception) -> {
         if (exception instanceof MissingInputException)
             return (ExceptionHandler<CommandLogicException>) (e, context) -> Message.of(PluginLocale.COMMAND_ADMINCHAT_USAGE).send(context.getExecutor());
@@ -55,12 +59,18 @@ public final class AdminChatCommand extends RootCommand {
         final Player sender = context.getExecutor().asPlayer();
         // Getting the rest of user input as a message.
         final String message = arguments.next(String.class, StringArgument.GREEDY).asRequired(ADMINCHAT_USAGE);
+        // Sending error message when sender is sending messages too quickly.
+        if (chat.getRateLimiter().tryAcquire(sender) == false) {
+            Message.of(PluginLocale.CHAT_ON_COOLDOWN).send(sender);
+            return;
+        }
         // Sending message.
         Message.of(PluginConfig.CHAT_FORMATS_ADMIN)
                 .placeholder("player", sender)
                 .placeholder("displayname", sender.displayName())
                 .placeholder("message", message)
-                .broadcast(player -> player.hasPermission("azure.command.adminchat") == true);
+                // Sending to members of the staff chat audience and the console.
+                .send(audiences.getAudienceWithConsole(AudienceRegistry.Type.STAFF_CHAT));
     }
 
 }
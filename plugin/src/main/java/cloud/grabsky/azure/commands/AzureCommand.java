@@ -25,6 +25,8 @@ import cloud.grabsky.commands.component.CompletionsProvider;
 import cloud.grabsky.commands.exception.CommandLogicException;
 import org.bukkit.command.CommandSender;
 
+import java.util.stream.Stream;
+
 import org.jetbrains.annotations.NotNull;
 
 @Command(name = "azure", permission = "azure.command.azure", usage = "/azure (...)")
@@ -32,11 +34,12 @@ public final class AzureCommand extends RootCommand {
 
     @Override
     public @NotNull CompletionsProvider onTabComplete(final @NotNull RootCommandContext context, final int index) {
-        return (index == 0)
-                ? (context.getExecutor().asCommandSender().hasPermission(this.getPermission() + ".reload") == true)
-                        ? CompletionsProvider.of("reload")
-                        : CompletionsProvider.EMPTY
-                : CompletionsProvider.EMPTY;
+        if (index == 0) {
+            final CommandSender sender = context.getExecutor().asCommandSender();
+            // Returning list of sub-commands sender has permissions to use.
+            return CompletionsProvider.of(Stream.of("metrics", "reload").filter(literal -> sender.hasPermission(this.getPermission() + "." + literal) == true).toList());
+        }
+        return CompletionsProvider.EMPTY;
     }
 
     @Override
@@ -46,7 +49,11 @@ public final class AzureCommand extends RootCommand {
             // Sending message to command sender.
             Message.of(PluginLocale.COMMAND_AZURE_HELP).send(sender);
             return;
-        } else if (queue.next(String.class).asRequired().equalsIgnoreCase("reload") == true && sender.hasPermission(this.getPermission() + ".reload") == true) {
+        }
+        // Getting the sub-command literal.
+        final String literal = queue.next(String.class).asRequired();
+        // Handling "reload" sub-command.
+        if (literal.equalsIgnoreCase("reload") == true && sender.hasPermission(this.getPermission() + ".reload") == true) {
             if (Azure.getInstance().onReload() == true) {
                 // Sending success message to command sender.
                 Message.of(PluginLocale.RELOAD_SUCCESS).send(sender);
@@ -55,6 +62,15 @@ public final class AzureCommand extends RootCommand {
             // Sending error message to command sender.
             Message.of(PluginLocale.RELOAD_FAILURE).send(sender);
             return;
+        // Handling "metrics" sub-command.
+        } else if (literal.equalsIgnoreCase("metrics") == true && sender.hasPermission(this.getPermission() + ".metrics") == true) {
+            // Sending header to command sender.
+            Message.of(PluginLocale.COMMAND_AZURE_METRICS_HEADER).send(sender);
+            // Sending current value of each registered metric to command sender.
+            Azure.getInstance().getMetricsRegistry().snapshot().forEach((name, value) -> {
+                Message.of(PluginLocale.COMMAND_AZURE_METRICS_ENTRY).placeholder("name", name).placeholder("value", value).send(sender);
+            });
+            return;
         }
         // Sending error message to command sender.
         Message.of(PluginLocale.MISSING_PERMISSIONS).send(sender);
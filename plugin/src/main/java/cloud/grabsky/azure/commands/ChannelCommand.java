@@ -0,0 +1,82 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.commands;
+
+import cloud.grabsky.azure.chat.ChatManager;
+import cloud.grabsky.azure.chat.channel.ChatChannel;
+import cloud.grabsky.azure.configuration.PluginLocale;
+import cloud.grabsky.bedrock.components.Message;
+import cloud.grabsky.commands.ArgumentQueue;
+import cloud.grabsky.commands.RootCommand;
+import cloud.grabsky.commands.RootCommandContext;
+import cloud.grabsky.commands.annotation.Command;
+import cloud.grabsky.commands.annotation.Dependency;
+import cloud.grabsky.commands.component.CompletionsProvider;
+import cloud.grabsky.commands.component.ExceptionHandler;
+import cloud.grabsky.commands.exception.CommandLogicException;
+import cloud.grabsky.commands.exception.MissingInputException;
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.UnknownNullability;
+
+@Command(name = "channel", aliases = "ch", permission = "azure.command.channel", usage = "/channel (global|local|staff)")
+public final class ChannelCommand extends RootCommand {
+
+    @Dependency
+    private @UnknownNullability ChatManager chat;
+
+
+    private static final ExceptionHandler.Factory CHANNEL_USAGE = (exception) -> {
+        if (exception instanceof MissingInputException)
+            return (ExceptionHandler<CommandLogicException>) (e, context) -> Message.of(PluginLocale.COMMAND_CHANNEL_USAGE).send(context.getExecutor());
+        // Let other exceptions be handled internally.
+        return null;
+    };
+
+    @Override
+    public @NotNull CompletionsProvider onTabComplete(final @NotNull RootCommandContext context, final int index) throws CommandLogicException {
+        if (index != 0)
+            return CompletionsProvider.EMPTY;
+        // Suggesting channels sender is allowed to use.
+        final Player sender = context.getExecutor().asPlayer();
+        return CompletionsProvider.of(Arrays.stream(ChatChannel.values()).filter(it -> chat.getChannels().canUse(sender, it) == true).map(it -> it.name().toLowerCase()).toList());
+    }
+
+    @Override
+    public void onCommand(final @NotNull RootCommandContext context, final @NotNull ArgumentQueue arguments) throws CommandLogicException {
+        final Player sender = context.getExecutor().asPlayer();
+        // Getting channel name.
+        final String name = arguments.next(String.class).asRequired(CHANNEL_USAGE);
+        // Finding channel with specified name.
+        final @Nullable ChatChannel channel = Arrays.stream(ChatChannel.values()).filter(it -> it.name().equalsIgnoreCase(name) == true).findFirst().orElse(null);
+        // Sending usage in case channel does not exist.
+        if (channel == null) {
+            Message.of(PluginLocale.COMMAND_CHANNEL_USAGE).send(sender);
+            return;
+        }
+        // Sending error message in case sender is not allowed to use this channel.
+        if (chat.getChannels().setChannel(sender, channel) == false) {
+            Message.of(PluginLocale.Commands.MISSING_PERMISSIONS).send(sender);
+            return;
+        }
+        // Sending success message to the sender.
+        Message.of(PluginLocale.COMMAND_CHANNEL_SUCCESS).placeholder("channel", channel.name().toLowerCase()).send(sender);
+    }
+
+}
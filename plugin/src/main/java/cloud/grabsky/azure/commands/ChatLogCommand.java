@@ -0,0 +1,106 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.commands;
+
+import cloud.grabsky.azure.chat.ChatHistory.Entry;
+import cloud.grabsky.azure.chat.ChatManager;
+import cloud.grabsky.azure.configuration.PluginLocale;
+import cloud.grabsky.bedrock.components.Message;
+import cloud.grabsky.commands.ArgumentQueue;
+import cloud.grabsky.commands.RootCommand;
+import cloud.grabsky.commands.RootCommandContext;
+import cloud.grabsky.commands.annotation.Command;
+import cloud.grabsky.commands.annotation.Dependency;
+import cloud.grabsky.commands.argument.IntegerArgument;
+import cloud.grabsky.commands.component.CompletionsProvider;
+import cloud.grabsky.commands.component.ExceptionHandler;
+import cloud.grabsky.commands.exception.CommandLogicException;
+import cloud.grabsky.commands.exception.MissingInputException;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.UnknownNullability;
+
+@Command(name = "chatlog", permission = "azure.command.chatlog", usage = "/chatlog (player) [amount] [--delete]")
+public final class ChatLogCommand extends RootCommand {
+
+    @Dependency
+    private @UnknownNullability ChatManager chat;
+
+
+    private final static SimpleDateFormat HH_MM_SS = new SimpleDateFormat("HH:mm:ss");
+
+    private static final ExceptionHandler.Factory CHATLOG_USAGE = (exception) -> {
+        if (exception instanceof MissingInputException)
+            return (ExceptionHandler<CommandLogicException>) (e, context) -> Message.of(PluginLocale.COMMAND_CHATLOG_USAGE).send(context.getExecutor().asCommandSender());
+        // Let other exceptions be handled internally.
+        return null;
+    };
+
+    @Override
+    public @NotNull CompletionsProvider onTabComplete(final @NotNull RootCommandContext context, final int index) {
+        return switch (index) {
+            case 0 -> CompletionsProvider.of(Player.class);
+            case 1 -> CompletionsProvider.of("5", "10", "20");
+            case 2 -> CompletionsProvider.of("--delete");
+            default -> CompletionsProvider.EMPTY;
+        };
+    }
+
+    @Override
+    public void onCommand(final @NotNull RootCommandContext context, final @NotNull ArgumentQueue arguments) throws CommandLogicException {
+        final CommandSender sender = context.getExecutor().asCommandSender();
+        // Getting OfflinePlayer argument, this can be either a player name or their unique id.
+        final OfflinePlayer target = arguments.next(OfflinePlayer.class).asRequired(CHATLOG_USAGE);
+        // Getting number of messages to list (or delete).
+        final int amount = arguments.next(Integer.class, IntegerArgument.ofRange(1, 100)).asOptional(10);
+        // Whether messages should be deleted instead of listed.
+        final boolean isDelete = arguments.next(String.class).asOptional("").equalsIgnoreCase("--delete");
+        // Deleting most recent messages of the player.
+        if (isDelete == true) {
+            final int deleted = chat.deleteMessages(target.getUniqueId(), amount);
+            // Sending error message in case there was nothing to delete.
+            if (deleted == 0) {
+                Message.of(PluginLocale.COMMAND_CHATLOG_FAILURE_NO_MESSAGES).placeholder("player", String.valueOf(target.getName())).send(sender);
+                return;
+            }
+            // Sending success message to the sender.
+            Message.of(PluginLocale.COMMAND_CHATLOG_DELETE_SUCCESS).placeholder("player", String.valueOf(target.getName())).placeholder("amount", deleted).send(sender);
+            return;
+        }
+        // Getting most recent messages of the player.
+        final List<Entry> entries = chat.getHistory().getMessages(target.getUniqueId(), amount);
+        // Sending error message in case player has no stored messages.
+        if (entries.isEmpty() == true) {
+            Message.of(PluginLocale.COMMAND_CHATLOG_FAILURE_NO_MESSAGES).placeholder("player", String.valueOf(target.getName())).send(sender);
+            return;
+        }
+        // Sending header to the sender.
+        Message.of(PluginLocale.COMMAND_CHATLOG_HEADER).placeholder("player", entries.getFirst().senderName()).send(sender);
+        // Sending messages to the sender, from the oldest to the newest one.
+        for (final Entry entry : entries.reversed())
+            Message.of(entry.deleted() == false ? PluginLocale.COMMAND_CHATLOG_ENTRY : PluginLocale.COMMAND_CHATLOG_ENTRY_DELETED)
+                    .placeholder("time", HH_MM_SS.format(new Date(entry.timestamp())))
+                    .placeholder("message", entry.text())
+                    .send(sender);
+    }
+
+}
@@ -15,8 +15,10 @@
 package cloud.grabsky.azure.commands;
 
 import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.audience.AudienceRegistry;
 import cloud.grabsky.azure.configuration.PluginConfig;
 import cloud.grabsky.azure.configuration.PluginLocale;
+import cloud.grabsky.azure.visibility.VisibilityService;
 import cloud.grabsky.bedrock.components.Message;
 import cloud.grabsky.commands.ArgumentQueue;
 import cloud.grabsky.commands.RootCommand;
@@ -28,10 +30,8 @@ import cloud.grabsky.commands.component.CompletionsProvider;
 import cloud.grabsky.commands.component.ExceptionHandler;
 import cloud.grabsky.commands.exception.CommandLogicException;
 import cloud.grabsky.commands.exception.MissingInputException;
-import net.luckperms.api.LuckPerms;
-import net.luckperms.api.model.group.Group;
+import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
-import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.entity.Player;
 
 import java.util.UUID;
@@ -46,9 +46,6 @@ public final class KickCommand extends RootCommand {
     @Dependency
     private @UnknownNullability Azure plugin;
 
-    @Dependency
-    private @UnknownNullability LuckPerms luckperms;
-
 
     private static final ExceptionHandler.Factory KICK_USAGE = (exception) -> {
         if (exception instanceof MissingInputException)
@@ -74,13 +71,12 @@ public final class KickCommand extends RootCommand {
         // ...
         if (sender instanceof Player senderOnline) {
             final UUID targetUniqueId = target.getUniqueId();
-            // Getting group of the sender.
-            final @Nullable Group senderGroup = luckperms.getGroupManager().getGroup(luckperms.getPlayerAdapter(Player.class).getUser(senderOnline).getPrimaryGroup());
-            // Loading the target User.
-            luckperms.getUserManager().loadUser(targetUniqueId).thenAccept(user -> {
-                final @Nullable Group targetGroup = luckperms.getGroupManager().getGroup(user.getPrimaryGroup());
+            // Getting weight of the sender.
+            final int senderWeight = plugin.getVisibilityService().getWeight(senderOnline);
+            // Getting weight of the target. Online targets are answered from the snapshot, offline ones are loaded from LuckPerms.
+            plugin.getVisibilityService().getWeight(targetUniqueId).thenAccept(targetWeight -> {
                 // Comparing group weights.
-                if (senderGroup == null || targetGroup == null || senderGroup.getWeight().orElse(0) <= targetGroup.getWeight().orElse(0)) {
+                if (VisibilityService.outranks(senderWeight, targetWeight) == false) {
                     Message.of(PluginLocale.MISSING_PERMISSIONS).send(sender);
                     return;
                 }
@@ -103,8 +99,8 @@ public final class KickCommand extends RootCommand {
         Message.of(PluginLocale.COMMAND_KICK_SUCCESS)
                 .placeholder("player", target)
                 .placeholder("reason", (reason != null) ? reason : PluginConfig.PUNISHMENT_SETTINGS_DEFAULT_REASON)
-                // Sending to all players with specific permission.
-                .broadcast(receiver -> isSilent == false || receiver instanceof ConsoleCommandSender || receiver.hasPermission("azure.command.ban") == true);
+                // Sending to all players, or only to the notification audience when silent.
+                .send((isSilent == false) ? Bukkit.getServer() : plugin.getAudienceRegistry().getAudienceWithConsole(AudienceRegistry.Type.BAN_NOTIFICATIONS));
         // Logging...
         plugin.getPunishmentsFileLogger().log("Player " + target.getName() + " (" + target.getUniqueId() + ") has been KICKED by " + sender.getName() + " with a reason: " + reason);
         // Forwarding to Discord...
@@ -116,7 +112,7 @@ public final class KickCommand extends RootCommand {
                     .replace("<reason>", (reason != null) ? reason : PluginConfig.PUNISHMENT_SETTINGS_DEFAULT_REASON);
             // Forwarding the message through configured webhook.
             if (message.isEmpty() == false)
-                plugin.getDiscordIntegration().getWebhookClients().get("PUNISHMENTS").send(message);
+                plugin.getDiscordIntegration().forward("PUNISHMENTS", message, null, null);
         }
 
     }
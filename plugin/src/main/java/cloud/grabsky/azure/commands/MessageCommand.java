@@ -15,6 +15,7 @@
 package cloud.grabsky.azure.commands;
 
 import cloud.grabsky.azure.api.user.UserCache;
+import cloud.grabsky.azure.audience.AudienceRegistry;
 import cloud.grabsky.azure.chat.ChatManager;
 import cloud.grabsky.azure.configuration.PluginLocale;
 import cloud.grabsky.bedrock.components.Message;
@@ -28,6 +29,7 @@ import cloud.grabsky.commands.component.CompletionsProvider;
 import cloud.grabsky.commands.component.ExceptionHandler;
 import cloud.grabsky.commands.exception.CommandLogicException;
 import cloud.grabsky.commands.exception.MissingInputException;
+import net.kyori.adventure.audience.Audience;
 import org.bukkit.Bukkit;
 import org.bukkit.NamespacedKey;
 import org.bukkit.entity.Player;
@@ -46,6 +48,9 @@ public final class MessageCommand extends RootCommand {
     @Dependency
     private @UnknownNullability UserCache userCache;
 
+    @Dependency
+    private @UnknownNullability AudienceRegistry audiences;
+
 
     public static final NamespacedKey KEY_WARNING = new NamespacedKey("azure", "seen_private_message_warning");
 
@@ -78,6 +83,11 @@ public final class MessageCommand extends RootCommand {
         }
         // Getting the rest of user input as a message.
         final String message = arguments.next(String.class, StringArgument.GREEDY).asRequired(MESSAGE_USAGE);
+        // Sending error message when sender is sending messages too quickly.
+        if (chat.getRateLimiter().tryAcquire(sender) == false) {
+            Message.of(PluginLocale.CHAT_ON_COOLDOWN).send(sender);
+            return;
+        }
         // Sending warning to the sender, in case they did not see one before.
         if (sender.getPersistentDataContainer().getOrDefault(KEY_WARNING, PersistentDataType.BOOLEAN, false) == false) {
             Message.of(PluginLocale.COMMAND_MESSAGE_WARNING).send(sender);
@@ -92,13 +102,8 @@ public final class MessageCommand extends RootCommand {
                 .placeholder("sender", sender)
                 .placeholder("target", target)
                 .placeholder("message", message)
-                .broadcast(player -> {
-                    // Preventing duplicated messages.
-                    if (player.equals(sender) == true || player.equals(target) == true)
-                        return false;
-                    // Returning 'false' for players that are currently not spying.
-                    return userCache.getUser(player).isSpying() == true;
-                });
+                // Sending to players that are currently spying, except sender and target to prevent duplicated messages.
+                .send(Audience.audience(audiences.getMembers(AudienceRegistry.Type.SPIES).stream().filter(player -> player.equals(sender) == false && player.equals(target) == false).toList()));
         // Sending message to the console...
         Message.of(PluginLocale.COMMAND_SPY_MESSAGE_FORMAT_CONSOLE).placeholder("sender", sender).placeholder("target", target).placeholder("message", message).send(Bukkit.getConsoleSender());
         // Updating recipients...
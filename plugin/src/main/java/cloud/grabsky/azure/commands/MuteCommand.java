@@ -16,10 +16,13 @@ package cloud.grabsky.azure.commands;
 
 import cloud.grabsky.azure.Azure;
 import cloud.grabsky.azure.api.user.User;
+import cloud.grabsky.azure.audience.AudienceRegistry;
 import cloud.grabsky.azure.commands.arguments.IntervalArgument;
 import cloud.grabsky.azure.configuration.PluginConfig;
 import cloud.grabsky.azure.configuration.PluginLocale;
 import cloud.grabsky.azure.user.AzurePunishment;
+import cloud.grabsky.azure.util.LoadFailures;
+import cloud.grabsky.azure.visibility.VisibilityService;
 import cloud.grabsky.bedrock.components.Message;
 import cloud.grabsky.bedrock.util.Interval;
 import cloud.grabsky.bedrock.util.Interval.Unit;
@@ -33,11 +36,9 @@ import cloud.grabsky.commands.component.CompletionsProvider;
 import cloud.grabsky.commands.component.ExceptionHandler;
 import cloud.grabsky.commands.exception.CommandLogicException;
 import cloud.grabsky.commands.exception.MissingInputException;
-import net.luckperms.api.LuckPerms;
-import net.luckperms.api.model.group.Group;
+import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
-import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.entity.Player;
 
 import java.util.UUID;
@@ -53,9 +54,6 @@ public final class MuteCommand extends RootCommand {
     @Dependency
     private @UnknownNullability Azure plugin;
 
-    @Dependency
-    private @UnknownNullability LuckPerms luckperms;
-
 
     private static final ExceptionHandler.Factory MUTE_USAGE = (exception) -> {
         if (exception instanceof MissingInputException)
@@ -80,38 +78,38 @@ public final class MuteCommand extends RootCommand {
         final OfflinePlayer target = arguments.next(OfflinePlayer.class).asRequired(MUTE_USAGE);
         // Getting UUID.
         final UUID targetUniqueId = target.getUniqueId();
-        // Getting User object from UUID - can be null.
-        final @Nullable User targetUser = plugin.getUserCache().getUser(targetUniqueId);
-        // Leaving the command block in case that User object for provided player does not exist.
-        if (targetUser == null) {
-            Message.of(PluginLocale.Commands.INVALID_OFFLINE_PLAYER).placeholder("input", targetUniqueId).send(sender);
-            return;
-        }
         // Getting duration.
         final Interval duration = arguments.next(Interval.class, IntervalArgument.DEFAULT_RANGE).asRequired(MUTE_USAGE);
         // (optional) Getting the punishment reason.
         final String reason = arguments.next(String.class, StringArgument.GREEDY).asOptional(PluginConfig.PUNISHMENT_SETTINGS_DEFAULT_REASON);
         // Checking whether punishment should be silent.
         final boolean isSilent = reason.contains("--silent");
-        // ...
-        if (sender instanceof Player senderOnline) {
-            // Getting group of the sender.
-            final @Nullable Group senderGroup = luckperms.getGroupManager().getGroup(luckperms.getPlayerAdapter(Player.class).getUser(senderOnline).getPrimaryGroup());
-            // Loading the target User.
-            luckperms.getUserManager().loadUser(targetUniqueId).thenAccept(user -> {
-                final @Nullable Group targetGroup = luckperms.getGroupManager().getGroup(user.getPrimaryGroup());
-                // Comparing group weights.
-                if (senderGroup == null || targetGroup == null || senderGroup.getWeight().orElse(0) <= targetGroup.getWeight().orElse(0)) {
-                    Message.of(PluginLocale.MISSING_PERMISSIONS).send(sender);
-                    return;
-                }
-                // Continuing... scheduling the rest of the logic onto the main thread.
-                plugin.getBedrockScheduler().run(1L, (_) -> mute(sender, targetUser, reason.split("--silent")[0].trim(), duration, isSilent));
-            });
-            return;
-        }
-        // Otherwise, just muting.
-        mute(sender, targetUser, reason.split("--silent")[0].trim(), duration, isSilent);
+        // Loading User object from UUID. Users not held in memory are loaded in the background, so the rest of the logic continues on the main thread.
+        plugin.getUserCache().loadUser(targetUniqueId).thenAcceptAsync(targetUser -> {
+            // Leaving the command block in case that User object for provided player does not exist.
+            if (targetUser == null) {
+                Message.of(PluginLocale.Commands.INVALID_OFFLINE_PLAYER).placeholder("input", targetUniqueId).send(sender);
+                return;
+            }
+            // ...
+            if (sender instanceof Player senderOnline) {
+                // Getting weight of the sender.
+                final int senderWeight = plugin.getVisibilityService().getWeight(senderOnline);
+                // Getting weight of the target. Online targets are answered from the snapshot, offline ones are loaded from LuckPerms.
+                plugin.getVisibilityService().getWeight(targetUniqueId).thenAccept(targetWeight -> {
+                    // Comparing group weights.
+                    if (VisibilityService.outranks(senderWeight, targetWeight) == false) {
+                        Message.of(PluginLocale.MISSING_PERMISSIONS).send(sender);
+                        return;
+                    }
+                    // Continuing... scheduling the rest of the logic onto the main thread.
+                    plugin.getBedrockScheduler().run(1L, (_) -> mute(sender, targetUser, reason.split("--silent")[0].trim(), duration, isSilent));
+                });
+                return;
+            }
+            // Otherwise, just muting.
+            mute(sender, targetUser, reason.split("--silent")[0].trim(), duration, isSilent);
+        }, plugin.getMainThreadExecutor()).exceptionally(LoadFailures.report(plugin, sender, target));
     }
 
     private void mute(final @NotNull CommandSender sender, final @NotNull User targetUser, final @Nullable String reason, final @NotNull Interval duration, final boolean isSilent) {
@@ -124,8 +122,8 @@ public final class MuteCommand extends RootCommand {
             Message.of(PluginLocale.COMMAND_MUTE_SUCCESS_PERMANENT)
                     .placeholder("player", targetUser.getName())
                     .placeholder("reason", finalReason)
-                    // Sending to all players with specific permission.
-                    .broadcast(receiver -> isSilent == false || receiver instanceof ConsoleCommandSender || receiver.hasPermission("azure.command.mute") == true);
+                    // Sending to all players, or only to the notification audience when silent.
+                    .send((isSilent == false) ? Bukkit.getServer() : plugin.getAudienceRegistry().getAudienceWithConsole(AudienceRegistry.Type.MUTE_NOTIFICATIONS));
             // Forwarding to Discord...
             if (isSilent == false && PluginConfig.DISCORD_INTEGRATIONS_ENABLED == true && PluginConfig.DISCORD_INTEGRATIONS_PUNISHMENTS_FORWARDING_ENABLED == true && PluginConfig.DISCORD_INTEGRATIONS_PUNISHMENTS_FORWARDING_WEBHOOK_URL.isEmpty() == false) {
                 // Constructing the message.
@@ -135,7 +133,7 @@ public final class MuteCommand extends RootCommand {
                         .replace("<reason>", finalReason);
                 // Forwarding the message through configured webhook.
                 if (message.isEmpty() == false)
-                    plugin.getDiscordIntegration().getWebhookClients().get("PUNISHMENTS").send(message);
+                    plugin.getDiscordIntegration().forward("PUNISHMENTS", message, null, null);
             }
 
         // Otherwise, banning player temporarily.
@@ -146,8 +144,8 @@ public final class MuteCommand extends RootCommand {
                     .placeholder("player", targetUser.getName())
                     .placeholder("duration_left", duration)
                     .placeholder("reason", finalReason)
-                    // Sending to all players with specific permission.
-                    .broadcast(receiver -> isSilent == false || receiver instanceof ConsoleCommandSender || receiver.hasPermission("azure.command.mute") == true);
+                    // Sending to all players, or only to the notification audience when silent.
+                    .send((isSilent == false) ? Bukkit.getServer() : plugin.getAudienceRegistry().getAudienceWithConsole(AudienceRegistry.Type.MUTE_NOTIFICATIONS));
             // Forwarding to Discord...
             if (isSilent == false && PluginConfig.DISCORD_INTEGRATIONS_ENABLED == true && PluginConfig.DISCORD_INTEGRATIONS_PUNISHMENTS_FORWARDING_ENABLED == true && PluginConfig.DISCORD_INTEGRATIONS_PUNISHMENTS_FORWARDING_WEBHOOK_URL.isEmpty() == false) {
                 // Constructing the message.
@@ -158,7 +156,7 @@ public final class MuteCommand extends RootCommand {
                         .replace("<reason>", finalReason);
                 // Forwarding the message through configured webhook.
                 if (message.isEmpty() == false)
-                    plugin.getDiscordIntegration().getWebhookClients().get("PUNISHMENTS").send(message);
+                    plugin.getDiscordIntegration().forward("PUNISHMENTS", message, null, null);
             }
         }
     }
@@ -17,6 +17,8 @@ package cloud.grabsky.azure.commands;
 import cloud.grabsky.azure.Azure;
 import cloud.grabsky.azure.api.user.User;
 import cloud.grabsky.azure.configuration.PluginLocale;
+import cloud.grabsky.azure.util.LoadFailures;
+import cloud.grabsky.azure.visibility.VisibilityService;
 import cloud.grabsky.bedrock.components.Message;
 import cloud.grabsky.bedrock.util.Interval;
 import cloud.grabsky.bedrock.util.Interval.Unit;
@@ -31,8 +33,6 @@ import cloud.grabsky.commands.exception.CommandLogicException;
 import cloud.grabsky.commands.exception.MissingInputException;
 import net.kyori.adventure.nbt.CompoundBinaryTag;
 import net.kyori.adventure.text.Component;
-import net.luckperms.api.LuckPerms;
-import net.luckperms.api.model.group.Group;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
 import org.bukkit.OfflinePlayer;
@@ -47,7 +47,6 @@ import java.text.SimpleDateFormat;
 import java.util.UUID;
 
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.UnknownNullability;
 
 import static net.kyori.adventure.text.format.NamedTextColor.GREEN;
@@ -60,9 +59,6 @@ public final class PlayerCommand extends RootCommand {
     @Dependency
     private @UnknownNullability Azure plugin;
 
-    @Dependency
-    private @UnknownNullability LuckPerms luckperms;
-
 
     private final static DecimalFormat ONE_DECIMAL_PLACE = new DecimalFormat("#.#");
     private final static SimpleDateFormat DD_MM_YYYY = new SimpleDateFormat("dd.MM.yyyy HH:mm");
@@ -99,75 +95,73 @@ public final class PlayerCommand extends RootCommand {
         }
         // Getting UUID.
         final UUID targetUniqueId = target.getUniqueId();
-        // Getting User object from UUID - can be null.
-        final @Nullable User targetUser = plugin.getUserCache().getUser(targetUniqueId);
-        // Leaving the command block in case User object for provided player does not exist.
-        if (targetUser == null) {
-            Message.of(PluginLocale.Commands.INVALID_OFFLINE_PLAYER).placeholder("input", targetUniqueId).send(sender);
-            return;
-        }
-        // Displaying information about player that is currently online.
-        if (target instanceof Player targetOnline && targetOnline.isOnline() == true) {
-            // Leaving the command block in case target is immune to this command check.
-            if (sender instanceof Player senderOnline && sender != target) {
-                final @Nullable Group senderGroup = luckperms.getGroupManager().getGroup(luckperms.getPlayerAdapter(Player.class).getUser(senderOnline).getPrimaryGroup());
-                final @Nullable Group targetGroup = luckperms.getGroupManager().getGroup(luckperms.getPlayerAdapter(Player.class).getUser(targetOnline).getPrimaryGroup());
-                // Comparing group weights.
-                if (senderGroup == null || targetGroup == null || senderGroup.getWeight().orElse(0) <= targetGroup.getWeight().orElse(0)) {
-                    Message.of(PluginLocale.MISSING_PERMISSIONS).send(sender);
-                    return;
-                }
+        // Loading User object from UUID. Users not held in memory are loaded in the background, so the rest of the logic continues on the main thread.
+        plugin.getUserCache().loadUser(targetUniqueId).thenAcceptAsync(targetUser -> {
+            // Leaving the command block in case User object for provided player does not exist.
+            if (targetUser == null) {
+                Message.of(PluginLocale.Commands.INVALID_OFFLINE_PLAYER).placeholder("input", targetUniqueId).send(sender);
+                return;
             }
-            // Continuing...
-            final Location location = targetOnline.getLocation();
-            // Preparing and sending the message.
-            Message.of(PluginLocale.COMMAND_PLAYER_SUCCESS_ONLINE)
-                    .placeholder("name", targetUser.getName())
-                    .placeholder("uuid", targetUniqueId.toString().substring(0, 13))
-                    .placeholder("ip", (isSensitive == true) ? Component.text(targetUser.getLastAddress()) : PluginLocale.COMMAND_PLAYER_HIDDEN_ENTRY)
-                    .placeholder("country", (isSensitive == true) ? Component.text(targetUser.getLastCountryCode()) : PluginLocale.COMMAND_PLAYER_HIDDEN_ENTRY)
-                    .placeholder("ping", getColoredPing(targetOnline.getPing()))
-                    .placeholder("first_join", DD_MM_YYYY.format(targetOnline.getFirstPlayed()))
-                    .placeholder("time_played", (long) Math.floor(Interval.of(target.getStatistic(Statistic.PLAY_ONE_MINUTE), Unit.TICKS).as(Unit.HOURS)) + "h")
-                    .placeholder("client", (targetOnline.getClientBrandName() != null) ? targetOnline.getClientBrandName() : "N/A")
-                    .placeholder("version", getVersionFromProtocol(targetOnline.getProtocolVersion()))
-                    .placeholder("online_since", Interval.between(System.currentTimeMillis(), targetOnline.getLastLogin(), Unit.MILLISECONDS))
-                    .placeholder("x", location.blockX())
-                    .placeholder("y", location.blockY())
-                    .placeholder("z", location.blockZ())
-                    .placeholder("world", location.getWorld())
-                    .placeholder("gamemode", PluginLocale.getGameMode(targetOnline.getGameMode()))
-                    .placeholder("is_flying", getColoredBooleanShort(targetOnline.isFlying() == true))
-                    .placeholder("is_invulnerable", getColoredBooleanShort(targetOnline.isInvulnerable() == true))
-                    .placeholder("health", ONE_DECIMAL_PLACE.format(targetOnline.getHealth() / 2.0D))
-                    .placeholder("hunger", ONE_DECIMAL_PLACE.format(targetOnline.getFoodLevel() / 2.0D))
-                    .placeholder("xp_level", targetOnline.getLevel())
-                    .placeholder("xp_progress", Math.round(targetOnline.getExp() * 100))
-                    .placeholder("is_banned", getColoredBooleanShort(targetUser.isBanned() == true))
-                    .placeholder("is_muted", getColoredBooleanShort(targetUser.isMuted() == true))
-                    .send(sender);
-            // Returning...
-            return;
-        }
-        // Leaving the command block in case target is "immune" to this command check.
-        if (sender instanceof Player senderOnline && sender != target) {
-            // Getting group of the sender.
-            final @Nullable Group senderGroup = luckperms.getGroupManager().getGroup(luckperms.getPlayerAdapter(Player.class).getUser(senderOnline).getPrimaryGroup());
-            // Loading the target User.
-            luckperms.getUserManager().loadUser(targetUniqueId).thenAccept(user -> {
-                final @Nullable Group targetGroup = luckperms.getGroupManager().getGroup(user.getPrimaryGroup());
-                // Comparing group weights.
-                if (senderGroup == null || targetGroup == null || senderGroup.getWeight().orElse(0) <= targetGroup.getWeight().orElse(0)) {
-                    Message.of(PluginLocale.MISSING_PERMISSIONS).send(sender);
-                    return;
+            // Displaying information about player that is currently online.
+            if (target instanceof Player targetOnline && targetOnline.isOnline() == true) {
+                // Leaving the command block in case target is immune to this command check.
+                if (sender instanceof Player senderOnline && sender != target) {
+                    // Comparing group weights.
+                    if (VisibilityService.outranks(plugin.getVisibilityService().getWeight(senderOnline), plugin.getVisibilityService().getWeight(targetOnline)) == false) {
+                        Message.of(PluginLocale.MISSING_PERMISSIONS).send(sender);
+                        return;
+                    }
                 }
-                // Continuing... scheduling the rest of the logic onto the main thread.
-                plugin.getBedrockScheduler().run(1L, (task) -> showOfflinePlayerInfo(sender, target, targetUser, isSensitive));
-            });
-            return;
-        }
-        // Displaying information to the console (or self) otherwise.
-        showOfflinePlayerInfo(sender, target, targetUser, isSensitive);
+                // Continuing...
+                final Location location = targetOnline.getLocation();
+                // Preparing and sending the message.
+                Message.of(PluginLocale.COMMAND_PLAYER_SUCCESS_ONLINE)
+                        .placeholder("name", targetUser.getName())
+                        .placeholder("uuid", targetUniqueId.toString().substring(0, 13))
+                        .placeholder("ip", (isSensitive == true) ? Component.text(targetUser.getLastAddress()) : PluginLocale.COMMAND_PLAYER_HIDDEN_ENTRY)
+                        .placeholder("country", (isSensitive == true) ? Component.text(targetUser.getLastCountryCode()) : PluginLocale.COMMAND_PLAYER_HIDDEN_ENTRY)
+                        .placeholder("ping", getColoredPing(targetOnline.getPing()))
+                        .placeholder("first_join", DD_MM_YYYY.format(targetOnline.getFirstPlayed()))
+                        .placeholder("time_played", (long) Math.floor(Interval.of(target.getStatistic(Statistic.PLAY_ONE_MINUTE), Unit.TICKS).as(Unit.HOURS)) + "h")
+                        .placeholder("client", (targetOnline.getClientBrandName() != null) ? targetOnline.getClientBrandName() : "N/A")
+                        .placeholder("version", getVersionFromProtocol(targetOnline.getProtocolVersion()))
+                        .placeholder("online_since", Interval.between(System.currentTimeMillis(), targetOnline.getLastLogin(), Unit.MILLISECONDS))
+                        .placeholder("x", location.blockX())
+                        .placeholder("y", location.blockY())
+                        .placeholder("z", location.blockZ())
+                        .placeholder("world", location.getWorld())
+                        .placeholder("gamemode", PluginLocale.getGameMode(targetOnline.getGameMode()))
+                        .placeholder("is_flying", getColoredBooleanShort(targetOnline.isFlying() == true))
+                        .placeholder("is_invulnerable", getColoredBooleanShort(targetOnline.isInvulnerable() == true))
+                        .placeholder("health", ONE_DECIMAL_PLACE.format(targetOnline.getHealth() / 2.0D))
+                        .placeholder("hunger", ONE_DECIMAL_PLACE.format(targetOnline.getFoodLevel() / 2.0D))
+                        .placeholder("xp_level", targetOnline.getLevel())
+                        .placeholder("xp_progress", Math.round(targetOnline.getExp() * 100))
+                        .placeholder("is_banned", getColoredBooleanShort(targetUser.isBanned() == true))
+                        .placeholder("is_muted", getColoredBooleanShort(targetUser.isMuted() == true))
+                        .send(sender);
+                // Returning...
+                return;
+            }
+            // Leaving the command block in case target is "immune" to this command check.
+            if (sender instanceof Player senderOnline && sender != target) {
+                // Getting weight of the sender.
+                final int senderWeight = plugin.getVisibilityService().getWeight(senderOnline);
+                // Getting weight of the target. Online targets are answered from the snapshot, offline ones are loaded from LuckPerms.
+                plugin.getVisibilityService().getWeight(targetUniqueId).thenAccept(targetWeight -> {
+                    // Comparing group weights.
+                    if (VisibilityService.outranks(senderWeight, targetWeight) == false) {
+                        Message.of(PluginLocale.MISSING_PERMISSIONS).send(sender);
+                        return;
+                    }
+                    // Continuing... scheduling the rest of the logic onto the main thread.
+                    plugin.getBedrockScheduler().run(1L, (task) -> showOfflinePlayerInfo(sender, target, targetUser, isSensitive));
+                });
+                return;
+            }
+            // Displaying information to the console (or self) otherwise.
+            showOfflinePlayerInfo(sender, target, targetUser, isSensitive);
+        }, plugin.getMainThreadExecutor()).exceptionally(LoadFailures.report(plugin, sender, target));
     }
 
     // Displays information about player that is currently offline.
@@ -16,8 +16,10 @@ package cloud.grabsky.azure.commands;
 
 import cloud.grabsky.azure.Azure;
 import cloud.grabsky.azure.api.user.User;
+import cloud.grabsky.azure.audience.AudienceRegistry;
 import cloud.grabsky.azure.configuration.PluginConfig;
 import cloud.grabsky.azure.configuration.PluginLocale;
+import cloud.grabsky.azure.util.LoadFailures;
 import cloud.grabsky.bedrock.components.Message;
 import cloud.grabsky.commands.ArgumentQueue;
 import cloud.grabsky.commands.RootCommand;
@@ -28,9 +30,9 @@ import cloud.grabsky.commands.component.CompletionsProvider;
 import cloud.grabsky.commands.component.ExceptionHandler;
 import cloud.grabsky.commands.exception.CommandLogicException;
 import cloud.grabsky.commands.exception.MissingInputException;
+import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
-import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.entity.Player;
 
 import org.jetbrains.annotations.NotNull;
@@ -46,7 +48,7 @@ public final class UnmuteCommand extends RootCommand {
     @Override
     public @NotNull CompletionsProvider onTabComplete(final @NotNull RootCommandContext context, final int index) {
         return switch (index) {
-            case 0 -> (_) -> plugin.getUserCache().getUsers().stream().filter(User::isMuted).map(User::getName).toList();
+            case 0 -> (_) -> plugin.getUserCache().getMutedUsers().stream().map(User::getName).toList();
             case 1 -> context.getInput().getInput().trim().endsWith("--silent") == false ? CompletionsProvider.of("--silent") : CompletionsProvider.EMPTY;
             default -> CompletionsProvider.EMPTY;
         };
@@ -64,37 +66,38 @@ public final class UnmuteCommand extends RootCommand {
         final CommandSender sender = context.getExecutor().asCommandSender();
         // Getting OfflinePlayer argument, this can be either a player name or their unique id.
         final OfflinePlayer target = arguments.next(OfflinePlayer.class).asRequired(UNMUTE_USAGE);
-        // ...
-        final User targetUser = plugin.getUserCache().getUser(target.getUniqueId());
         // Whether the action is silent.
         final boolean isSilent = arguments.next(String.class).asOptional("--non-silent").equalsIgnoreCase("--silent");
-        // ...
-        if (targetUser != null) {
-            // Checking if player is muted.
-            if (targetUser.isMuted() == true) {
-                // Unmuting the player.
-                targetUser.unmute(sender);
-                // Sending success message to the sender.
-                Message.of(PluginLocale.COMMAND_UNMUTE_SUCCESS)
-                        .placeholder("player", targetUser.getName())
-                        .broadcast(receiver -> isSilent == false || receiver instanceof ConsoleCommandSender || receiver.hasPermission("azure.command.ban") == true);
-                // Forwarding to Discord...
-                if (isSilent == false && PluginConfig.DISCORD_INTEGRATIONS_ENABLED == true && PluginConfig.DISCORD_INTEGRATIONS_PUNISHMENTS_FORWARDING_ENABLED == true && PluginConfig.DISCORD_INTEGRATIONS_PUNISHMENTS_FORWARDING_WEBHOOK_URL.isEmpty() == false) {
-                    // Constructing the message.
-                    final String message = PluginConfig.DISCORD_INTEGRATIONS_PUNISHMENTS_FORWARDING_UNMUTE_FORMAT
-                            .replace("<name>", targetUser.getName())
-                            .replace("<issuer>", sender instanceof Player ? sender.getName() : "Console");
-                    // Forwarding the message through configured webhook.
-                    if (message.isEmpty() == false)
-                        plugin.getDiscordIntegration().getWebhookClients().get("PUNISHMENTS").send(message);
+        // Loading User object from UUID. Users not held in memory are loaded in the background, so the rest of the logic continues on the main thread.
+        plugin.getUserCache().loadUser(target.getUniqueId()).thenAcceptAsync(targetUser -> {
+            // ...
+            if (targetUser != null) {
+                // Checking if player is muted.
+                if (targetUser.isMuted() == true) {
+                    // Unmuting the player.
+                    targetUser.unmute(sender);
+                    // Sending success message to the sender.
+                    Message.of(PluginLocale.COMMAND_UNMUTE_SUCCESS)
+                            .placeholder("player", targetUser.getName())
+                            .send((isSilent == false) ? Bukkit.getServer() : plugin.getAudienceRegistry().getAudienceWithConsole(AudienceRegistry.Type.BAN_NOTIFICATIONS));
+                    // Forwarding to Discord...
+                    if (isSilent == false && PluginConfig.DISCORD_INTEGRATIONS_ENABLED == true && PluginConfig.DISCORD_INTEGRATIONS_PUNISHMENTS_FORWARDING_ENABLED == true && PluginConfig.DISCORD_INTEGRATIONS_PUNISHMENTS_FORWARDING_WEBHOOK_URL.isEmpty() == false) {
+                        // Constructing the message.
+                        final String message = PluginConfig.DISCORD_INTEGRATIONS_PUNISHMENTS_FORWARDING_UNMUTE_FORMAT
+                                .replace("<name>", targetUser.getName())
+                                .replace("<issuer>", sender instanceof Player ? sender.getName() : "Console");
+                        // Forwarding the message through configured webhook.
+                        if (message.isEmpty() == false)
+                            plugin.getDiscordIntegration().forward("PUNISHMENTS", message, null, null);
+                    }
+                    return;
                 }
+                // Sending failure message to the sender.
+                Message.of(PluginLocale.COMMAND_UNMUTE_FAILURE_PLAYER_NOT_BANNED).send(sender);
                 return;
             }
-            // Sending failure message to the sender.
-            Message.of(PluginLocale.COMMAND_UNMUTE_FAILURE_PLAYER_NOT_BANNED).send(sender);
-            return;
-        }
-        Message.of(PluginLocale.Commands.INVALID_OFFLINE_PLAYER).send(sender);
+            Message.of(PluginLocale.Commands.INVALID_OFFLINE_PLAYER).send(sender);
+        }, plugin.getMainThreadExecutor()).exceptionally(LoadFailures.report(plugin, sender, target));
     }
 
 }
@@ -14,7 +14,12 @@
  */
 package cloud.grabsky.azure.configuration;
 
+import cloud.grabsky.azure.Azure;
 import cloud.grabsky.azure.chat.ChatManager;
+import cloud.grabsky.azure.chat.channel.ChatChannel;
+import cloud.grabsky.azure.user.geoip.CountryResolver;
+import cloud.grabsky.azure.user.storage.UserCodec;
+import cloud.grabsky.azure.user.storage.UserStorage;
 import cloud.grabsky.configuration.JsonConfiguration;
 import cloud.grabsky.configuration.JsonNullable;
 import cloud.grabsky.configuration.JsonPath;
@@ -64,11 +69,98 @@ public final class PluginConfig implements JsonConfiguration {
     @JsonPath("general_settings.disable_end_platform_generation")
     public static boolean GENERAL_DISABLE_END_PLATFORM_GENERATION;
 
+    // User Cache
+
+    @JsonPath("user_cache.loading_parallelism")
+    public static int USER_CACHE_LOADING_PARALLELISM;
+
+    @JsonPath("user_cache.storage.type")
+    public static UserStorage.Type USER_CACHE_STORAGE_TYPE;
+
+    @JsonPath("user_cache.storage.files_codec")
+    public static UserCodec.Type USER_CACHE_STORAGE_FILES_CODEC;
+
+    @JsonPath("user_cache.storage.segmented_codec")
+    public static UserCodec.Type USER_CACHE_STORAGE_SEGMENTED_CODEC;
+
+    @JsonPath("user_cache.storage.segment_size")
+    public static int USER_CACHE_STORAGE_SEGMENT_SIZE;
+
+    @JsonPath("user_cache.storage.compaction_threshold")
+    public static double USER_CACHE_STORAGE_COMPACTION_THRESHOLD;
+
+    @JsonPath("user_cache.storage.compaction_interval")
+    public static long USER_CACHE_STORAGE_COMPACTION_INTERVAL;
+
+    @JsonPath("user_cache.save_queue.coalesce_window")
+    public static long USER_CACHE_SAVE_QUEUE_COALESCE_WINDOW;
+
+    @JsonPath("user_cache.tiered.enabled")
+    public static boolean USER_CACHE_TIERED_ENABLED;
+
+    @JsonPath("user_cache.tiered.max_resident_users")
+    public static int USER_CACHE_TIERED_MAX_RESIDENT_USERS;
+
+    @JsonPath("user_cache.geoip.provider")
+    public static CountryResolver.Type USER_CACHE_GEOIP_PROVIDER;
+
+    @JsonPath("user_cache.geoip.database_file")
+    public static String USER_CACHE_GEOIP_DATABASE_FILE;
+
+    @JsonPath("user_cache.geoip.database_reload_interval")
+    public static long USER_CACHE_GEOIP_DATABASE_RELOAD_INTERVAL;
+
+    @JsonPath("user_cache.geoip.remote_fallback")
+    public static boolean USER_CACHE_GEOIP_REMOTE_FALLBACK;
+
+    @JsonPath("user_cache.geoip.remote_url")
+    public static String USER_CACHE_GEOIP_REMOTE_URL;
+
+    @JsonPath("user_cache.geoip.remote_timeout")
+    public static long USER_CACHE_GEOIP_REMOTE_TIMEOUT;
+
+    @JsonPath("user_cache.geoip.remote_retries")
+    public static int USER_CACHE_GEOIP_REMOTE_RETRIES;
+
+    @JsonPath("user_cache.geoip.remote_cache_ttl")
+    public static long USER_CACHE_GEOIP_REMOTE_CACHE_TTL;
+
+    @JsonPath("user_cache.geoip.remote_cache_max_entries")
+    public static int USER_CACHE_GEOIP_REMOTE_CACHE_MAX_ENTRIES;
+
     // Chat Settings
 
-    @JsonPath("chat_settings.cooldown")
+    // Replaced by 'chat_settings.rate_limit'. Still read, so configurations created before rate limit was introduced keep working. See PluginConfig#onReload.
+    @Deprecated
+    @JsonNullable @JsonPath("chat_settings.cooldown")
     public static Long CHAT_COOLDOWN;
 
+    // Never null after configuration has been loaded. See PluginConfig#onReload.
+    @JsonNullable @JsonPath("chat_settings.rate_limit.burst")
+    public static Integer CHAT_RATE_LIMIT_BURST;
+
+    // Never null after configuration has been loaded. See PluginConfig#onReload.
+    @JsonNullable @JsonPath("chat_settings.rate_limit.refill")
+    public static Long CHAT_RATE_LIMIT_REFILL;
+
+    // Never null after configuration has been loaded. See PluginConfig#onReload.
+    @JsonNullable @JsonPath("chat_settings.rate_limit.tiers")
+    public static List<RateLimitHolder> CHAT_RATE_LIMIT_TIERS;
+
+    // Chat Settings > Channels
+
+    @JsonPath("chat_settings.channels.default")
+    public static ChatChannel CHAT_CHANNELS_DEFAULT;
+
+    @JsonPath("chat_settings.channels.local.radius")
+    public static double CHAT_CHANNELS_LOCAL_RADIUS;
+
+    @JsonPath("chat_settings.channels.local.prefix")
+    public static Component CHAT_CHANNELS_LOCAL_PREFIX;
+
+    @JsonPath("chat_settings.channels.staff.prefix")
+    public static Component CHAT_CHANNELS_STAFF_PREFIX;
+
     @JsonPath("chat_settings.server_join_message")
     public static String CHAT_SERVER_JOIN_MESSAGE;
 
@@ -93,17 +185,67 @@ public final class PluginConfig implements JsonConfiguration {
     @JsonNullable @JsonPath("chat_settings.mention_sound")
     public static @Nullable Sound CHAT_MENTION_SOUND;
 
+    @JsonNullable @JsonPath("chat_settings.mention_format")
+    public static @Nullable String CHAT_MENTION_FORMAT;
+
     // Chat Settings > Filtering
 
+    @JsonPath("chat_settings.filtering.order")
+    public static List<String> CHAT_FILTERING_ORDER;
+
     @JsonPath("chat_settings.filtering.disallow_invalid_characters")
     public static boolean CHAT_FILTERING_DISALLOW_INVALID_CHARACTERS;
 
     @JsonPath("chat_settings.filtering.disallow_inappropriate_words")
     public static boolean CHAT_FILTERING_DISALLOW_INAPPROPRIATE_WORDS;
 
+    @JsonPath("chat_settings.filtering.normalization.case_folding")
+    public static boolean CHAT_FILTERING_NORMALIZATION_CASE_FOLDING;
+
+    @JsonPath("chat_settings.filtering.normalization.strip_diacritics")
+    public static boolean CHAT_FILTERING_NORMALIZATION_STRIP_DIACRITICS;
+
+    @JsonPath("chat_settings.filtering.normalization.homoglyphs")
+    public static boolean CHAT_FILTERING_NORMALIZATION_HOMOGLYPHS;
+
+    @JsonPath("chat_settings.filtering.normalization.leet_speak")
+    public static boolean CHAT_FILTERING_NORMALIZATION_LEET_SPEAK;
+
+    @JsonPath("chat_settings.filtering.normalization.squash_repeated_characters")
+    public static boolean CHAT_FILTERING_NORMALIZATION_SQUASH_REPEATED_CHARACTERS;
+
     @JsonPath("chat_settings.filtering.punishment_commands")
     public static List<String> CHAT_FILTERING_PUNISHMENT_COMMANDS;
 
+    // Chat Settings > Filtering > Spam
+
+    @JsonPath("chat_settings.filtering.spam.enabled")
+    public static boolean CHAT_FILTERING_SPAM_ENABLED;
+
+    @JsonPath("chat_settings.filtering.spam.min_length")
+    public static int CHAT_FILTERING_SPAM_MIN_LENGTH;
+
+    @JsonPath("chat_settings.filtering.spam.similarity_threshold")
+    public static double CHAT_FILTERING_SPAM_SIMILARITY_THRESHOLD;
+
+    @JsonPath("chat_settings.filtering.spam.window_duration")
+    public static long CHAT_FILTERING_SPAM_WINDOW_DURATION;
+
+    @JsonPath("chat_settings.filtering.spam.player_window")
+    public static int CHAT_FILTERING_SPAM_PLAYER_WINDOW;
+
+    @JsonPath("chat_settings.filtering.spam.player_matches")
+    public static int CHAT_FILTERING_SPAM_PLAYER_MATCHES;
+
+    @JsonPath("chat_settings.filtering.spam.global_window")
+    public static int CHAT_FILTERING_SPAM_GLOBAL_WINDOW;
+
+    @JsonPath("chat_settings.filtering.spam.global_matches")
+    public static int CHAT_FILTERING_SPAM_GLOBAL_MATCHES;
+
+    @JsonPath("chat_settings.filtering.spam.punishment_commands")
+    public static List<String> CHAT_FILTERING_SPAM_PUNISHMENT_COMMANDS;
+
     // Chat Settings > Chat Format
 
     @JsonPath("chat_settings.chat_format.default")
@@ -128,6 +270,9 @@ public final class PluginConfig implements JsonConfiguration {
 
     // Chat Settings > Moderation > Message Deletion
 
+    @JsonPath("chat_settings.moderation.history_capacity")
+    public static int CHAT_MODERATION_HISTORY_CAPACITY;
+
     @JsonPath("chat_settings.moderation.message_deletion.enabled")
     public static boolean CHAT_MODERATION_MESSAGE_DELETION_ENABLED;
 
@@ -246,6 +391,19 @@ public final class PluginConfig implements JsonConfiguration {
 
     @JsonPath("discord_integrations.verification.permission")
     public static String DISCORD_INTEGRATIONS_VERIFICATION_PERMISSION;
+
+    // Discord Integrations > Webhooks
+
+    @JsonPath("discord_integrations.webhooks.merge_window")
+    public static long DISCORD_INTEGRATIONS_WEBHOOKS_MERGE_WINDOW;
+
+    @JsonPath("discord_integrations.webhooks.min_interval")
+    public static long DISCORD_INTEGRATIONS_WEBHOOKS_MIN_INTERVAL;
+
+    // Discord Integrations > Outbox
+
+    @JsonPath("discord_integrations.outbox.max_size")
+    public static long DISCORD_INTEGRATIONS_OUTBOX_MAX_SIZE;
     
     // Discord Integrations > Chat Forwarding
 
@@ -392,6 +550,23 @@ public final class PluginConfig implements JsonConfiguration {
 
     @Override
     public void onReload() {
+        // Falling back to the legacy cooldown, which translates to a bucket of a single message refilled after the cooldown.
+        if (CHAT_COOLDOWN != null) {
+            Azure.getInstance().getLogger().warning("Option 'chat_settings.cooldown' is deprecated and will be removed in the future. Replace it with 'chat_settings.rate_limit' section.");
+            // Using the cooldown only when rate limit is not configured.
+            if (CHAT_RATE_LIMIT_BURST == null && CHAT_RATE_LIMIT_REFILL == null) {
+                CHAT_RATE_LIMIT_BURST = 1;
+                CHAT_RATE_LIMIT_REFILL = CHAT_COOLDOWN;
+            }
+        }
+        // Disabling rate limit in case it is not configured at all.
+        if (CHAT_RATE_LIMIT_BURST == null)
+            CHAT_RATE_LIMIT_BURST = 0;
+        if (CHAT_RATE_LIMIT_REFILL == null)
+            CHAT_RATE_LIMIT_REFILL = 0L;
+        if (CHAT_RATE_LIMIT_TIERS == null)
+            CHAT_RATE_LIMIT_TIERS = List.of();
+        // ...
         ChatManager.CHAT_FORMATS_REVERSED = reversed(PluginConfig.CHAT_FORMATS_EXTRA);
         ChatManager.CHAT_TAGS_REVERSED = reversed(PluginConfig.CHAT_MESSAGE_TAGS_EXTRA);
         // Copying the automated messages list.
@@ -431,6 +606,21 @@ public final class PluginConfig implements JsonConfiguration {
 
     }
 
+    // Moshi should be able to create instance of the object despite the constructor being private.
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class RateLimitHolder {
+
+        @Getter(AccessLevel.PUBLIC)
+        private final String permission;
+
+        @Getter(AccessLevel.PUBLIC)
+        private final int burst;
+
+        @Getter(AccessLevel.PUBLIC)
+        private final long refill;
+
+    }
+
     // Moshi should be able to create instance of the object despite the constructor being private.
     @AllArgsConstructor(access = AccessLevel.PRIVATE)
     public static final class CommandsHolder {
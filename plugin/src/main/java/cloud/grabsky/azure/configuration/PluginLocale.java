@@ -37,6 +37,12 @@ public final class PluginLocale implements JsonConfiguration {
     @JsonPath("reload_failure")
     public static Component RELOAD_FAILURE;
 
+    @JsonPath("user_load_failure")
+    public static String USER_LOAD_FAILURE;
+
+    @JsonPath("user_load_failure_disconnect")
+    public static Component USER_LOAD_FAILURE_DISCONNECT;
+
     // ...
 
     @JsonPath("yes")
@@ -121,6 +127,9 @@ public final class PluginLocale implements JsonConfiguration {
     @JsonPath("chat.message_contains_inappropriate_words")
     public static Component CHAT_MESSAGE_CONTAINS_INAPPROPRIATE_WORDS;
 
+    @JsonPath("chat.message_is_spam")
+    public static Component CHAT_MESSAGE_IS_SPAM;
+
     @JsonPath("chat.on_cooldown")
     public static Component CHAT_ON_COOLDOWN;
 
@@ -141,6 +150,12 @@ public final class PluginLocale implements JsonConfiguration {
     @JsonPath("commands.azure_help")
     public static Component COMMAND_AZURE_HELP;
 
+    @JsonPath("commands.azure_metrics_header")
+    public static Component COMMAND_AZURE_METRICS_HEADER;
+
+    @JsonPath("commands.azure_metrics_entry")
+    public static String COMMAND_AZURE_METRICS_ENTRY;
+
     // Commands > Ban
 
     @JsonPath("commands.ban_usage")
@@ -213,6 +228,34 @@ public final class PluginLocale implements JsonConfiguration {
     @JsonPath("commands.delete_failure")
     public static Component COMMAND_DELETE_FAILURE;
 
+    // Commands > Channel
+
+    @JsonPath("commands.channel_usage")
+    public static Component COMMAND_CHANNEL_USAGE;
+
+    @JsonPath("commands.channel_success")
+    public static String COMMAND_CHANNEL_SUCCESS;
+
+    // Commands > Chat Log
+
+    @JsonPath("commands.chatlog_usage")
+    public static Component COMMAND_CHATLOG_USAGE;
+
+    @JsonPath("commands.chatlog_header")
+    public static String COMMAND_CHATLOG_HEADER;
+
+    @JsonPath("commands.chatlog_entry")
+    public static String COMMAND_CHATLOG_ENTRY;
+
+    @JsonPath("commands.chatlog_entry_deleted")
+    public static String COMMAND_CHATLOG_ENTRY_DELETED;
+
+    @JsonPath("commands.chatlog_failure_no_messages")
+    public static String COMMAND_CHATLOG_FAILURE_NO_MESSAGES;
+
+    @JsonPath("commands.chatlog_delete_success")
+    public static String COMMAND_CHATLOG_DELETE_SUCCESS;
+
     // Commands > Inventory
 
     @JsonPath("commands.inventory_usage")
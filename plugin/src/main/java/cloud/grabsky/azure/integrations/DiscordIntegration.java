@@ -16,13 +16,13 @@ package cloud.grabsky.azure.integrations;
 
 import cloud.grabsky.azure.Azure;
 import cloud.grabsky.azure.api.user.User;
-import cloud.grabsky.azure.chat.MessageInfo;
+import cloud.grabsky.azure.chat.channel.ChatChannel;
 import cloud.grabsky.azure.configuration.PluginConfig;
 import cloud.grabsky.azure.configuration.PluginLocale;
 import cloud.grabsky.azure.user.AzureUserCache;
 import cloud.grabsky.bedrock.components.Message;
 import club.minnced.discord.webhook.WebhookClient;
-import club.minnced.discord.webhook.external.JDAWebhookClient;
+import club.minnced.discord.webhook.WebhookClientBuilder;
 import club.minnced.discord.webhook.send.AllowedMentions;
 import club.minnced.discord.webhook.send.WebhookMessageBuilder;
 import com.google.common.cache.Cache;
@@ -63,6 +63,9 @@ import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
 import net.kyori.adventure.text.minimessage.tag.standard.StandardTags;
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import net.luckperms.api.node.types.PermissionNode;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Mob;
 import org.bukkit.entity.Player;
@@ -76,10 +79,16 @@ import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.server.ServerLoadEvent;
 import org.bukkit.scheduler.BukkitTask;
 
+import java.io.IOException;
 import java.security.SecureRandom;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.jetbrains.annotations.NotNull;
@@ -98,6 +107,15 @@ public final class DiscordIntegration implements Listener {
     @Getter(AccessLevel.PUBLIC)
     private final Map<String, WebhookClient> webhookClients = new HashMap<>();
 
+    @Getter(AccessLevel.PUBLIC)
+    private final Map<String, WebhookDispatcher> webhookDispatchers = new ConcurrentHashMap<>();
+
+    // HTTP client shared by all webhook clients. Rate-limit headers of each response are passed to dispatcher of the webhook it has been sent to.
+    private final OkHttpClient httpClient = new OkHttpClient.Builder().addInterceptor(this::interceptRateLimits).build();
+
+    // Single thread shared by all webhook dispatchers. Used only to schedule flushes, requests are sent by the webhook clients.
+    private final ScheduledExecutorService dispatcherExecutor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("Azure-WebhookDispatcher").daemon(true).factory());
+
     private @Nullable BukkitTask activityRefreshTask;
 
     @Getter(AccessLevel.PUBLIC)
@@ -130,24 +148,110 @@ public final class DiscordIntegration implements Listener {
                 .build();
         // Initializing webhook clients.
         if (PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_ENABLED)
-            this.webhookClients.put("CHAT", JDAWebhookClient.withUrl(PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_WEBHOOK_URL));
+            this.webhookClients.put("CHAT", this.createWebhookClient(PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_WEBHOOK_URL));
         if (PluginConfig.DISCORD_INTEGRATIONS_PUNISHMENTS_FORWARDING_ENABLED)
-            this.webhookClients.put("PUNISHMENTS", JDAWebhookClient.withUrl(PluginConfig.DISCORD_INTEGRATIONS_PUNISHMENTS_FORWARDING_WEBHOOK_URL));
+            this.webhookClients.put("PUNISHMENTS", this.createWebhookClient(PluginConfig.DISCORD_INTEGRATIONS_PUNISHMENTS_FORWARDING_WEBHOOK_URL));
         if (PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_ENABLED)
-            this.webhookClients.put("JOIN_QUIT", JDAWebhookClient.withUrl(PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_URL));
+            this.webhookClients.put("JOIN_QUIT", this.createWebhookClient(PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_URL));
         if (PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_ENABLED)
-            this.webhookClients.put("DEATHS", JDAWebhookClient.withUrl(PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_WEBHOOK_URL));
+            this.webhookClients.put("DEATHS", this.createWebhookClient(PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_WEBHOOK_URL));
         if (PluginConfig.DISCORD_INTEGRATIONS_AUCTION_LISTINGS_FORWARDING_ENABLED)
-            this.webhookClients.put("AUCTION_HOUSE", JDAWebhookClient.withUrl(PluginConfig.DISCORD_INTEGRATIONS_AUCTION_LISTINGS_FORWARDING_WEBHOOK_URL));
+            this.webhookClients.put("AUCTION_HOUSE", this.createWebhookClient(PluginConfig.DISCORD_INTEGRATIONS_AUCTION_LISTINGS_FORWARDING_WEBHOOK_URL));
         if (PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_ENABLED)
-            this.webhookClients.put("START_STOP", JDAWebhookClient.withUrl(PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_URL));
+            this.webhookClients.put("START_STOP", this.createWebhookClient(PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_URL));
+        // Initializing dispatchers of webhooks which forward frequent, line-based messages.
+        this.initializeDispatchers();
         // Registering Bukkit event listeners.
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
     }
 
+    /**
+     * Creates an instance which does not connect to Discord and does not register any listeners. Messages are forwarded through provided webhook clients only.
+     */
+    DiscordIntegration(final @NotNull Azure plugin, final @NotNull Map<String, WebhookClient> webhookClients) {
+        this.plugin = plugin;
+        this.client = null;
+        // Initializing webhook clients and dispatchers.
+        this.webhookClients.putAll(webhookClients);
+        this.initializeDispatchers();
+    }
+
+    private void initializeDispatchers() {
+        for (final String name : new String[] { "CHAT", "JOIN_QUIT", "DEATHS" })
+            if (this.webhookClients.containsKey(name) == true)
+                this.webhookDispatchers.put(name, new WebhookDispatcher(plugin, name, webhookClients.get(name), dispatcherExecutor, plugin.getDiscordOutbox()));
+    }
+
+    private @NotNull WebhookClient createWebhookClient(final @NotNull String url) {
+        return new WebhookClientBuilder(url).setHttpClient(httpClient).buildJDA();
+    }
+
+    // Passes headers of each webhook response to the dispatcher of that webhook, so it can wait for rate-limit bucket to reset instead of being rejected.
+    private @NotNull Response interceptRateLimits(final @NotNull Interceptor.Chain chain) throws IOException {
+        final Response response = chain.proceed(chain.request());
+        // Getting identifier of the webhook. Path is expected to be '/api/v<version>/webhooks/<id>/<token>/...'.
+        final List<String> segments = chain.request().url().pathSegments();
+        final int index = segments.indexOf("webhooks");
+        // Updating rate-limit state of the dispatcher, if webhook has one.
+        if (index != -1 && index + 1 < segments.size())
+            for (final WebhookDispatcher dispatcher : webhookDispatchers.values())
+                if (Long.toString(dispatcher.getWebhookId()).equals(segments.get(index + 1)) == true)
+                    dispatcher.updateRateLimit(response.headers());
+        // ...
+        return response;
+    }
+
+    /**
+     * Closes webhook dispatchers, moving messages that are still queued to the {@link DiscordOutbox}. Called by {@link #shutdown()}, but can be called
+     * earlier, so these messages are delivered by the outbox while webhook clients are still open.
+     */
+    public void closeDispatchers() {
+        this.webhookDispatchers.values().forEach(WebhookDispatcher::close);
+        this.webhookDispatchers.clear();
+    }
+
     public void shutdown() {
-        // Shutting down the JDA.
-        this.client.shutdownNow();
+        // Unregistering Bukkit event listeners first, so no message is forwarded after dispatchers are closed.
+        HandlerList.unregisterAll(this);
+        // Moving messages still queued in webhook dispatchers to the outbox, so they are not lost.
+        this.closeDispatchers();
+        this.dispatcherExecutor.shutdownNow();
+        // Shutting down the JDA, unless not connected.
+        if (this.client != null)
+            this.client.shutdownNow();
+    }
+
+    /**
+     * Forwards message through webhook of specified name. Message is stored in the {@link DiscordOutbox} and delivered in the background,
+     * or sent directly in case outbox is not available. Does nothing if webhook of specified name is not configured.
+     */
+    public void forward(final @NotNull String webhook, final @NotNull String content, final @Nullable String username, final @Nullable String avatarUrl) {
+        // Skipping in case webhook is not configured.
+        if (webhookClients.containsKey(webhook) == false)
+            return;
+        // Storing the message in the outbox.
+        if (plugin.getDiscordOutbox() != null) {
+            plugin.getDiscordOutbox().enqueue(webhook, content, username, avatarUrl);
+            return;
+        }
+        // Otherwise, sending the message directly.
+        final WebhookMessageBuilder builder = new WebhookMessageBuilder()
+                .setAllowedMentions(getAllowedMentions(webhook))
+                .setContent(content);
+        // Setting username and avatar, if specified.
+        if (username != null)
+            builder.setUsername(username);
+        if (avatarUrl != null)
+            builder.setAvatarUrl(avatarUrl);
+        // Sending the message.
+        webhookClients.get(webhook).send(builder.build());
+    }
+
+    /**
+     * Returns mentions allowed in messages sent through webhook of specified name. Mentions are suppressed only in forwarded chat messages, as their contents is provided by players.
+     */
+    static @NotNull AllowedMentions getAllowedMentions(final @NotNull String webhook) {
+        return (webhook.equals("CHAT") == true) ? AllowedMentions.none() : AllowedMentions.all();
     }
 
     @SubscribeEvent
@@ -221,29 +325,40 @@ public final class DiscordIntegration implements Listener {
                             ? message + " " + PluginLocale.CHAT_ATTACHMENT
                             : PluginLocale.CHAT_ATTACHMENT
                     : message;
-            // Appending '(Re: User)' in front of the message if it's a reply.
-            if (event.getMessage().getReferencedMessage() != null) {
-                final @Nullable User user = plugin.getUserCache().fromDiscord(event.getMessage().getReferencedMessage().getAuthor().getId());
-                message = (event.getMessage().getReferencedMessage() != null)
-                        ? "<#848484>(Re: <#A89468>" + (user != null ? user.getName() : event.getMessage().getReferencedMessage().getAuthor().getName()) + "</#A89468>)</#848484> " + message
-                        : message;
-            }
-            // Parsing the message using MiniMessage, with just the translatable and color tags enabled.
-            final Component finalMessage = STRICT_MINI_MESSAGE.deserialize(message);
-            // Getting the User from discord identifier. Can be null if no matching user is found.
-            final @Nullable User user = plugin.getUserCache().fromDiscord(event.getMessage().getAuthor().getId());
-            // Getting the message components.
-            final String effectiveName = (user != null) ? user.getName() : event.getMessage().getAuthor().getName();
-            // Sending message to the console.
-            Message.of(PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_CONSOLE_FORMAT)
-                    .placeholder("username", effectiveName)
-                    .placeholder("message", finalMessage)
-                    .send(Bukkit.getConsoleSender());
-            // Sending message to all players.
-            Message.of(PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_CHAT_FORMAT)
-                    .placeholder("username", effectiveName)
-                    .placeholder("message", finalMessage)
-                    .send(Bukkit.getServer().filterAudience(audience -> audience instanceof Player));
+            // Getting the referenced message, if this message is a reply.
+            final @Nullable net.dv8tion.jda.api.entities.Message referencedMessage = event.getMessage().getReferencedMessage();
+            // Loading users associated with Discord identifiers of the author and author of the referenced message. Users not held in memory are loaded in the background.
+            final AzureUserCache userCache = plugin.getUserCache().as(AzureUserCache.class);
+            final CompletableFuture<User> referencedUserFuture = (referencedMessage != null) ? userCache.loadFromDiscord(referencedMessage.getAuthor().getId()) : CompletableFuture.completedFuture(null);
+            final CompletableFuture<User> userFuture = userCache.loadFromDiscord(event.getMessage().getAuthor().getId());
+            // Continuing once both users are loaded.
+            final String content = message;
+            referencedUserFuture.thenCombine(userFuture, (referencedUser, user) -> {
+                // Appending '(Re: User)' in front of the message if it's a reply.
+                final String finalContent = (referencedMessage != null)
+                        ? "<#848484>(Re: <#A89468>" + (referencedUser != null ? referencedUser.getName() : referencedMessage.getAuthor().getName()) + "</#A89468>)</#848484> " + content
+                        : content;
+                // Parsing the message using MiniMessage, with just the translatable and color tags enabled.
+                final Component finalMessage = STRICT_MINI_MESSAGE.deserialize(finalContent);
+                // Getting the message components. User can be null if no matching user is found.
+                final String effectiveName = (user != null) ? user.getName() : event.getMessage().getAuthor().getName();
+                // Sending message to the console.
+                Message.of(PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_CONSOLE_FORMAT)
+                        .placeholder("username", effectiveName)
+                        .placeholder("message", finalMessage)
+                        .send(Bukkit.getConsoleSender());
+                // Sending message to all players.
+                Message.of(PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_CHAT_FORMAT)
+                        .placeholder("username", effectiveName)
+                        .placeholder("message", finalMessage)
+                        .send(Bukkit.getServer().filterAudience(audience -> audience instanceof Player));
+                // ...
+                return null;
+            }).exceptionally(e -> {
+                plugin.getLogger().severe("Could not forward message from Discord due to following error(s):");
+                plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+                return null;
+            });
         }
     }
 
@@ -287,37 +402,42 @@ public final class DiscordIntegration implements Listener {
             // Returning...
             return;
         }
-        // Getting User object from the UUID.
-        final @Nullable User user = plugin.getUserCache().getUser(uniqueId);
-        // Throwing IllegalStateException if User object for this UUID returned 'null'.
-        if (user == null)
-            throw new IllegalStateException("Verification failed. Missing User object for: " + uniqueId);
-        // Updating Discord ID associated with this user.
-        user.setDiscordId(event.getMember().getId());
-        // Saving...
-        plugin.getUserCache().as(AzureUserCache.class).saveUser(user);
-        // Adding permission to the player, if configured.
-        if ("".equals(PluginConfig.DISCORD_INTEGRATIONS_VERIFICATION_PERMISSION) == false)
-            // Loading LuckPerms' User and adding permission node to them.
-            plugin.getLuckPerms().getUserManager().modifyUser(uniqueId, (it) -> {
-                it.data().add(PermissionNode.builder(PluginConfig.DISCORD_INTEGRATIONS_VERIFICATION_PERMISSION).build());
-            });
-        // Adding role if specified.
-        if (PluginConfig.DISCORD_INTEGRATIONS_VERIFICATION_ROLE_ID.isEmpty() == false) {
-            // Getting verification role.
-            final @Nullable Role role = event.getGuild().getRoleById(PluginConfig.DISCORD_INTEGRATIONS_VERIFICATION_ROLE_ID);
-            // Adding role to a member if it still exists.
-            if (role != null)
-                event.getGuild().addRoleToMember(event.getMember(), role).queue();
-        }
-        // Sending success message to the Discord user.
-        event.getInteraction().replyEmbeds(
-                new EmbedBuilder().setDescription(PluginLocale.DISCORD_VERIFICATION_SUCCESS).setColor(SUCCESS_COLOR).build()
-        ).setEphemeral(true).queue();
-        // Sending success message to the Minecraft user.
-        Message.of(PluginLocale.COMMAND_VERIFY_SUCCESS).send(user);
-        // Invalidating...
-        codes.invalidate(uniqueId);
+        // Loading User object from the UUID. Users not held in memory are loaded in the background.
+        plugin.getUserCache().loadUser(uniqueId).thenAccept(user -> {
+            // Throwing IllegalStateException if User object for this UUID returned 'null'.
+            if (user == null)
+                throw new IllegalStateException("Verification failed. Missing User object for: " + uniqueId);
+            // Updating Discord ID associated with this user.
+            user.setDiscordId(event.getMember().getId());
+            // Saving...
+            plugin.getUserCache().as(AzureUserCache.class).saveUser(user);
+            // Adding permission to the player, if configured.
+            if ("".equals(PluginConfig.DISCORD_INTEGRATIONS_VERIFICATION_PERMISSION) == false)
+                // Loading LuckPerms' User and adding permission node to them.
+                plugin.getLuckPerms().getUserManager().modifyUser(uniqueId, (it) -> {
+                    it.data().add(PermissionNode.builder(PluginConfig.DISCORD_INTEGRATIONS_VERIFICATION_PERMISSION).build());
+                });
+            // Adding role if specified.
+            if (PluginConfig.DISCORD_INTEGRATIONS_VERIFICATION_ROLE_ID.isEmpty() == false) {
+                // Getting verification role.
+                final @Nullable Role role = event.getGuild().getRoleById(PluginConfig.DISCORD_INTEGRATIONS_VERIFICATION_ROLE_ID);
+                // Adding role to a member if it still exists.
+                if (role != null)
+                    event.getGuild().addRoleToMember(event.getMember(), role).queue();
+            }
+            // Sending success message to the Discord user.
+            event.getInteraction().replyEmbeds(
+                    new EmbedBuilder().setDescription(PluginLocale.DISCORD_VERIFICATION_SUCCESS).setColor(SUCCESS_COLOR).build()
+            ).setEphemeral(true).queue();
+            // Sending success message to the Minecraft user.
+            Message.of(PluginLocale.COMMAND_VERIFY_SUCCESS).send(user);
+            // Invalidating...
+            codes.invalidate(uniqueId);
+        }).exceptionally(e -> {
+            plugin.getLogger().severe("Could not verify user " + uniqueId + " due to following error(s):");
+            plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            return null;
+        });
     }
 
     /* BUKKIT STUFF */
@@ -328,115 +448,103 @@ public final class DiscordIntegration implements Listener {
         if (PluginConfig.DISCORD_INTEGRATIONS_ENABLED == true && PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_ENABLED == true && PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_URL.isEmpty() == false) {
             // Setting message placeholders.
             final String message = PlaceholderAPI.setPlaceholders(null, PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_START_MESSAGE_FORMAT);
-            // Creating new instance of WebhookMessageBuilder.
-            final WebhookMessageBuilder builder = new WebhookMessageBuilder().setContent(message);
-            // Setting username if specified.
-            if (PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_USERNAME.isEmpty() == false)
-                builder.setUsername(PlaceholderAPI.setPlaceholders(null, PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_USERNAME));
-            // Setting avatar if specified.
-            if (PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_AVATAR.isEmpty() == false)
-                builder.setAvatarUrl(PlaceholderAPI.setPlaceholders(null, PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_AVATAR));
-            // Sending the message. Expected to be a blocking call.
-            this.webhookClients.get("START_STOP").send(builder.build());
+            // Getting username and avatar, if specified.
+            final @Nullable String webhookUsername = (PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_USERNAME.isEmpty() == false) ? PlaceholderAPI.setPlaceholders(null, PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_USERNAME) : null;
+            final @Nullable String webhookAvatar = (PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_AVATAR.isEmpty() == false) ? PlaceholderAPI.setPlaceholders(null, PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_AVATAR) : null;
+            // Forwarding the message. It is delivered in the background.
+            this.forward("START_STOP", message, webhookUsername, webhookAvatar);
         }
     }
 
-    // NOTE: This is NOT a listener. This method is called inside 'Azure#onDisable' block and is responsible for sending shutdown message via webhook.
+    // NOTE: This is NOT a listener. This method is called inside 'Azure#onDisable' block and is responsible for queuing shutdown message. It is delivered after next start.
     public void onServerShutdown() {
         if (PluginConfig.DISCORD_INTEGRATIONS_ENABLED == true && PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_ENABLED == true && PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_URL.isEmpty() == false) {
             // Setting message placeholders.
             final String message = PlaceholderAPI.setPlaceholders(null, PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_STOP_MESSAGE_FORMAT);
-            // Creating new instance of WebhookMessageBuilder.
-            final WebhookMessageBuilder builder = new WebhookMessageBuilder().setContent(message);
-            // Setting username if specified.
-            if (PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_USERNAME.isEmpty() == false)
-                builder.setUsername(PlaceholderAPI.setPlaceholders(null, PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_USERNAME));
-            // Setting avatar if specified.
-            if (PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_AVATAR.isEmpty() == false)
-                builder.setAvatarUrl(PlaceholderAPI.setPlaceholders(null, PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_AVATAR));
-            // Sending the message. Expected to be a blocking call.
-            this.webhookClients.get("START_STOP").send(builder.build());
+            // Getting username and avatar, if specified.
+            final @Nullable String webhookUsername = (PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_USERNAME.isEmpty() == false) ? PlaceholderAPI.setPlaceholders(null, PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_USERNAME) : null;
+            final @Nullable String webhookAvatar = (PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_AVATAR.isEmpty() == false) ? PlaceholderAPI.setPlaceholders(null, PluginConfig.DISCORD_INTEGRATIONS_START_AND_STOP_FORWARDING_WEBHOOK_AVATAR) : null;
+            // Storing the message in the outbox. Nothing is sent on the calling thread, so it does not stall server shutdown.
+            this.forward("START_STOP", message, webhookUsername, webhookAvatar);
         }
     }
 
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-    private void onPlayerChat(final @NotNull AsyncChatEvent event) {
+    void onPlayerChat(final @NotNull AsyncChatEvent event) {
         // Skipping in case discord integrations are not enabled or misconfigured.
         if (PluginConfig.DISCORD_INTEGRATIONS_ENABLED == false || PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_ENABLED == false || PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_WEBHOOK_URL.isEmpty() == true)
             return;
+        // Skipping messages sent to local and staff channels.
+        if (plugin.getChatManager().getChannels().getChannel(event.getPlayer()) != ChatChannel.GLOBAL)
+            return;
+        // Skipping in case dispatcher is not available, eg. when integration is shutting down.
+        final @Nullable WebhookDispatcher dispatcher = this.webhookDispatchers.get("CHAT");
+        // ...
+        if (dispatcher == null)
+            return;
         // Forwarding message to webhook...
         if (event.viewers().isEmpty() == false) {
             // Serializing Component to plain String and sanitizing any Markdown formatting.
             final String plainMessage = MarkdownSanitizer.sanitize(PlainTextComponentSerializer.plainText().serialize(event.message()), MarkdownSanitizer.SanitizationStrategy.REMOVE);
-            // Creating new instance of WebhookMessageBuilder.
-            final club.minnced.discord.webhook.send.WebhookMessageBuilder builder = new WebhookMessageBuilder()
-                    .setAllowedMentions(AllowedMentions.none())
-                    .setContent(plainMessage.startsWith("xaero-waypoint:") == true ? "[Xaero's Waypoint]" : plainMessage);
-            // Setting username if specified.
-            if (PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_WEBHOOK_USERNAME.isEmpty() == false)
-                builder.setUsername(PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_WEBHOOK_USERNAME));
-            // Setting avatar if specified.
-            if (PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_WEBHOOK_AVATAR.isEmpty() == false)
-                builder.setAvatarUrl(PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_WEBHOOK_AVATAR));
+            // Getting username and avatar, if specified.
+            final @Nullable String webhookUsername = (PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_WEBHOOK_USERNAME.isEmpty() == false) ? PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_WEBHOOK_USERNAME) : null;
+            final @Nullable String webhookAvatar = (PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_WEBHOOK_AVATAR.isEmpty() == false) ? PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_CHAT_FORWARDING_WEBHOOK_AVATAR) : null;
             // Getting message signature. Can be null.
             final @Nullable SignedMessage.Signature signature = event.signedMessage().signature();
-            // Sending the message.
-            this.webhookClients.get("CHAT").send(builder.build()).thenAccept(response -> {
-                if (signature != null) {
-                    final @Nullable MessageInfo messageInfo = plugin.getChatManager().getSignatureCache().getIfPresent(UUID.nameUUIDFromBytes(signature.bytes()));
-                    if (messageInfo != null)
-                        messageInfo.setDiscordMessageId(response.getId());
-                }
+            // Queuing the message. Signature is used as the key, so this line can be deleted later, even when merged with other lines.
+            dispatcher.send(signature, plainMessage.startsWith("xaero-waypoint:") == true ? "[Xaero's Waypoint]" : plainMessage, webhookUsername, webhookAvatar).thenAccept(messageId -> {
+                if (signature != null)
+                    plugin.getChatManager().getHistory().setDiscordMessageId(signature, messageId);
             });
         }
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-    private void onPlayerJoinForward(final @NotNull PlayerJoinEvent event) {
+    void onPlayerJoinForward(final @NotNull PlayerJoinEvent event) {
         // Skipping in case discord integrations are not enabled or misconfigured.
         if (PluginConfig.DISCORD_INTEGRATIONS_ENABLED == false || PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_ENABLED == false || PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_URL.isEmpty() == true)
             return;
+        // Skipping in case dispatcher is not available, eg. when integration is shutting down.
+        final @Nullable WebhookDispatcher dispatcher = this.webhookDispatchers.get("JOIN_QUIT");
+        // ...
+        if (dispatcher == null)
+            return;
         // Forwarding message to webhook...
         if (plugin.getUserCache().getUser(event.getPlayer()).isVanished() == false) {
             // Getting the player's name and escaping underscores from it.
             final String username = event.getPlayer().getName().replace("_", "\\_");
             // Setting message placeholders. (Placeholder %player_name% is overridden as to make sure underscores are properly escaped)
             final String message = PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_JOIN_MESSAGE_FORMAT.replace("%player_name%", username));
-            // Creating new instance of WebhookMessageBuilder.
-            final WebhookMessageBuilder builder = new WebhookMessageBuilder().setContent(message);
-            // Setting username if specified.
-            if (PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_USERNAME.isEmpty() == false)
-                builder.setUsername(PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_USERNAME));
-            // Setting avatar if specified.
-            if (PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_AVATAR.isEmpty() == false)
-                builder.setAvatarUrl(PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_AVATAR));
-            // Sending the message.
-            this.webhookClients.get("JOIN_QUIT").send(builder.build());
+            // Getting username and avatar, if specified.
+            final @Nullable String webhookUsername = (PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_USERNAME.isEmpty() == false) ? PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_USERNAME) : null;
+            final @Nullable String webhookAvatar = (PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_AVATAR.isEmpty() == false) ? PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_AVATAR) : null;
+            // Queuing the message.
+            dispatcher.send(null, message, webhookUsername, webhookAvatar);
         }
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-    private void onPlayerQuitForward(final @NotNull PlayerQuitEvent event) {
+    void onPlayerQuitForward(final @NotNull PlayerQuitEvent event) {
         // Skipping in case discord integrations are not enabled or misconfigured.
         if (PluginConfig.DISCORD_INTEGRATIONS_ENABLED == false || PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_ENABLED == false || PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_URL.isEmpty() == true)
             return;
+        // Skipping in case dispatcher is not available, eg. when integration is shutting down.
+        final @Nullable WebhookDispatcher dispatcher = this.webhookDispatchers.get("JOIN_QUIT");
+        // ...
+        if (dispatcher == null)
+            return;
         // Forwarding message to webhook...
         if (plugin.getUserCache().getUser(event.getPlayer()).isVanished() == false) {
             // Getting the player's name and escaping underscores from it.
             final String username = event.getPlayer().getName().replace("_", "\\_");
             // Setting message placeholders. (Placeholder %player_name% is overridden as to make sure underscores are properly escaped)
             final String message = PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_QUIT_MESSAGE_FORMAT.replace("%player_name%", username));
-            // Creating new instance of WebhookMessageBuilder.
-            final WebhookMessageBuilder builder = new WebhookMessageBuilder().setContent(message);
-            // Setting username if specified.
-            if (PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_USERNAME.isEmpty() == false)
-                builder.setUsername(PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_USERNAME));
-            // Setting avatar if specified.
-            if (PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_AVATAR.isEmpty() == false)
-                builder.setAvatarUrl(PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_AVATAR));
-            // Sending the message.
-            this.webhookClients.get("JOIN_QUIT").send(builder.build());
+            // Getting username and avatar, if specified.
+            final @Nullable String webhookUsername = (PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_USERNAME.isEmpty() == false) ? PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_USERNAME) : null;
+            final @Nullable String webhookAvatar = (PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_AVATAR.isEmpty() == false) ? PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_JOIN_AND_QUIT_FORWARDING_WEBHOOK_AVATAR) : null;
+            // Queuing the message.
+            dispatcher.send(null, message, webhookUsername, webhookAvatar);
         }
     }
 
@@ -445,6 +553,11 @@ public final class DiscordIntegration implements Listener {
         // Discord integration... Must be handled here because we're cancelling the death message right after this event is called.
         if (PluginConfig.DISCORD_INTEGRATIONS_ENABLED == false || PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_ENABLED == false || PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_WEBHOOK_URL.isEmpty() == true)
             return;
+        // Skipping in case dispatcher is not available, eg. when integration is shutting down.
+        final @Nullable WebhookDispatcher dispatcher = this.webhookDispatchers.get("DEATHS");
+        // ...
+        if (dispatcher == null)
+            return;
         // Forwarding message to webhook...
         if (plugin.getUserCache().getUser(event.getPlayer()).isVanished() == false) {
             // Setting message placeholders.
@@ -457,16 +570,11 @@ public final class DiscordIntegration implements Listener {
                     .replace("<attacker>", "**" + (event.getDamageSource().getCausingEntity() != null ? event.getDamageSource().getCausingEntity().getName() : "") + "**")
                     .replace("<attacker_displayname>", "**" + (event.getDamageSource().getCausingEntity() != null ? event.getDamageSource().getCausingEntity().getName() : "") + "**")
                     .replace("<mob>", "**" + (event.getDamageSource().getCausingEntity() != null && event.getDamageSource().getCausingEntity() instanceof Mob mob ? PluginLocale.MOBS.getOrDefault(mob.getType().translationKey(), mob.getType().translationKey()) : "") + "**");
-            // Creating new instance of WebhookMessageBuilder.
-            final WebhookMessageBuilder builder = new WebhookMessageBuilder().setContent(webhookMessage);
-            // Setting username if specified.
-            if (PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_WEBHOOK_USERNAME.isEmpty() == false)
-                builder.setUsername(PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_WEBHOOK_USERNAME));
-            // Setting avatar if specified.
-            if (PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_WEBHOOK_AVATAR.isEmpty() == false)
-                builder.setAvatarUrl(PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_WEBHOOK_AVATAR));
-            // Sending the message.
-            this.webhookClients.get("DEATHS").send(builder.build());
+            // Getting username and avatar, if specified.
+            final @Nullable String webhookUsername = (PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_WEBHOOK_USERNAME.isEmpty() == false) ? PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_WEBHOOK_USERNAME) : null;
+            final @Nullable String webhookAvatar = (PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_WEBHOOK_AVATAR.isEmpty() == false) ? PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_DEATH_MESSAGE_FORWARDING_WEBHOOK_AVATAR) : null;
+            // Queuing the message.
+            dispatcher.send(null, webhookMessage, webhookUsername, webhookAvatar);
         }
     }
 
@@ -0,0 +1,494 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.integrations;
+
+import club.minnced.discord.webhook.WebhookClient;
+import club.minnced.discord.webhook.exception.HttpException;
+import club.minnced.discord.webhook.send.WebhookMessageBuilder;
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.configuration.PluginConfig;
+import cloud.grabsky.azure.metrics.MetricsRegistry;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Persistent outbox for messages forwarded to Discord. Messages are appended to a single file and delivered in order by a background thread,
+ * which keeps position of the first undelivered message in a separate cursor file. Delivery is retried with an exponential back-off,
+ * so messages survive Discord outages and server restarts. Delivered part of the file is discarded once it gets large enough.
+ * <p>
+ * Record layout: {@code [int length][int crc32][long timestamp][string webhook][string content][string username][string avatar]},
+ * where each string is stored as {@code [int length][utf-8 bytes]} and {@code null} is stored as length of {@code -1}.
+ */
+public final class DiscordOutbox {
+
+    private static final String LOG_FILE_NAME = "outbox.dat";
+    private static final String CURSOR_FILE_NAME = "outbox.cursor";
+
+    // Size of the record header. (length + checksum)
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    // Bounds of the back-off applied after delivery has failed.
+    private static final long MIN_BACKOFF = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_BACKOFF = TimeUnit.MINUTES.toMillis(5);
+
+    // Delay before delivery is attempted again, when Discord integration is not (yet) available.
+    private static final long UNAVAILABLE_DELAY = TimeUnit.SECONDS.toMillis(5);
+
+    // Maximum time to wait for a single message to be delivered.
+    private static final long DELIVERY_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    // Maximum time to wait for remaining messages to be delivered when outbox is being closed.
+    private static final long CLOSE_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    private final Azure plugin;
+    private final File directory;
+
+    // Append-only log of messages and the cursor pointing at the first undelivered message. Guarded by (this).
+    private FileChannel log;
+    private final FileChannel cursorChannel;
+    private long cursor;
+    private long size;
+
+    // Number of bytes discarded from the beginning of the log so far. Positions read before compaction are shifted by the difference.
+    private long discarded = 0L;
+
+    // Single thread responsible for delivery.
+    private final ScheduledExecutorService executor;
+    private boolean isScheduled = false;
+    private boolean isClosed = false;
+    private long backoff = 0L;
+
+    // Metrics. Exposed through the MetricsRegistry.
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public DiscordOutbox(final @NotNull Azure plugin, final @NotNull File directory) throws IOException {
+        this.plugin = plugin;
+        this.directory = directory;
+        // Creating the directory, if it does not exist yet.
+        Files.createDirectories(directory.toPath());
+        // Opening the files.
+        this.log = FileChannel.open(new File(directory, LOG_FILE_NAME).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.cursorChannel = FileChannel.open(new File(directory, CURSOR_FILE_NAME).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Reading the cursor. Missing cursor means nothing has been delivered yet.
+        this.cursor = 0L;
+        if (cursorChannel.size() >= Long.BYTES) {
+            final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            readFully(cursorChannel, buffer, 0);
+            cursor = buffer.flip().getLong();
+        }
+        // Discarding incomplete or corrupted records at the end of the log. These can only be left by a crash while writing. Invalid cursor is reset as well.
+        this.size = this.recover();
+        // Creating the delivery thread and scheduling delivery of messages left from previous run.
+        final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, Thread.ofPlatform().name("Azure-DiscordOutbox").daemon(true).factory());
+        // Discarding deliveries waiting for the back-off once outbox is closed. Deliveries that are already due are still performed.
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        // ...
+        this.executor = executor;
+        synchronized (this) {
+            if (cursor < size)
+                this.schedule(0L);
+        }
+        // Registering metrics.
+        final MetricsRegistry metrics = plugin.getMetricsRegistry();
+        metrics.register("discord.outbox.pending_bytes", this::getPendingBytes);
+        metrics.register("discord.outbox.enqueued", enqueued::sum);
+        metrics.register("discord.outbox.delivered", delivered::sum);
+        metrics.register("discord.outbox.dropped", dropped::sum);
+        metrics.register("discord.outbox.failures", failures::sum);
+        metrics.register("discord.outbox.backoff_ms", () -> backoff);
+    }
+
+    /**
+     * Appends message to the outbox, to be sent through webhook of specified name. Returns {@code false} if message has been dropped because outbox is full.
+     */
+    public boolean enqueue(final @NotNull String webhook, final @NotNull String content, final @Nullable String username, final @Nullable String avatarUrl) {
+        final ByteBuffer record = encode(webhook, content, username, avatarUrl);
+        // ...
+        synchronized (this) {
+            // Ignoring messages enqueued after outbox has been closed. These can only come from requests that were still in flight.
+            if (isClosed == true)
+                return false;
+            // ...
+            final long limit = PluginConfig.DISCORD_INTEGRATIONS_OUTBOX_MAX_SIZE * 1024L;
+            try {
+                // Discarding delivered part of the log in case message would not fit otherwise.
+                if (size + record.remaining() > limit && cursor > 0)
+                    this.compact();
+                // Dropping the message if outbox is still full.
+                if (size + record.remaining() > limit) {
+                    dropped.increment();
+                    return false;
+                }
+                // Appending the record.
+                writeFully(log, record, size);
+                size += record.capacity();
+            } catch (final IOException e) {
+                plugin.getLogger().severe("Could not append message to the Discord outbox.");
+                plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+                // ...
+                dropped.increment();
+                return false;
+            }
+            enqueued.increment();
+            // Scheduling delivery, unless already scheduled or waiting for the back-off to pass.
+            if (isScheduled == false)
+                this.schedule(0L);
+        }
+        return true;
+    }
+
+    /**
+     * Returns number of bytes occupied by undelivered messages.
+     */
+    public synchronized long getPendingBytes() {
+        return size - cursor;
+    }
+
+    /**
+     * Stops accepting messages, gives remaining ones a few seconds to be delivered and flushes the files to disk. Undelivered messages are delivered
+     * after next start. Called when plugin is being disabled, before Discord integration is shut down.
+     */
+    public void close() {
+        // Rejecting further messages and scheduling immediate delivery of remaining ones, including these waiting for the back-off to pass.
+        synchronized (this) {
+            isClosed = true;
+            // ...
+            if (cursor < size)
+                this.schedule(0L);
+        }
+        // Stopping the delivery thread once remaining messages are delivered.
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS) == false) {
+                plugin.getLogger().warning("Timed out while delivering remaining messages from the Discord outbox. They will be delivered after next start.");
+                // Interrupting message that is currently being delivered. It is attempted again after next start.
+                executor.shutdownNow();
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+        } catch (final InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        // Flushing and closing the files.
+        synchronized (this) {
+            try {
+                log.force(false);
+                log.close();
+                cursorChannel.force(false);
+                cursorChannel.close();
+            } catch (final IOException e) {
+                plugin.getLogger().severe("Could not close the Discord outbox.");
+                plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+        // Unregistering metrics.
+        plugin.getMetricsRegistry().unregister("discord.outbox.");
+    }
+
+    // Must be called while holding the lock.
+    private void schedule(final long delay) {
+        try {
+            executor.schedule(this::deliver, delay, TimeUnit.MILLISECONDS);
+            isScheduled = true;
+        } catch (final RejectedExecutionException _) {
+            // Outbox has been closed. Remaining messages are delivered after next start.
+        }
+    }
+
+    /**
+     * Delivers messages in order, until outbox is empty or delivery fails. Runs on the delivery thread.
+     */
+    private void deliver() {
+        while (true) {
+            final Record record;
+            final long discardedBefore;
+            // Reading the next record.
+            synchronized (this) {
+                // Stopping once there is nothing left to deliver.
+                if (cursor >= size) {
+                    isScheduled = false;
+                    return;
+                }
+                try {
+                    record = this.read(cursor);
+                    discardedBefore = discarded;
+                } catch (final IOException e) {
+                    plugin.getLogger().severe("Could not read message from the Discord outbox. Remaining messages are discarded.");
+                    plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+                    // Skipping everything that is left, as position of the next record cannot be determined.
+                    this.advance(size);
+                    isScheduled = false;
+                    return;
+                }
+            }
+            final @Nullable DiscordIntegration integration = plugin.getDiscordIntegration();
+            // Waiting for Discord integration to become available.
+            if (integration == null) {
+                synchronized (this) {
+                    this.schedule(UNAVAILABLE_DELAY);
+                }
+                return;
+            }
+            final @Nullable WebhookClient client = integration.getWebhookClients().get(record.webhook);
+            // Skipping messages of webhooks that are no longer configured, as these can never be delivered.
+            if (client == null) {
+                synchronized (this) {
+                    dropped.increment();
+                    this.advance(record.next - (discarded - discardedBefore));
+                }
+                continue;
+            }
+            // Sending the message and waiting for the response.
+            try {
+                final WebhookMessageBuilder builder = new WebhookMessageBuilder()
+                        .setAllowedMentions(DiscordIntegration.getAllowedMentions(record.webhook))
+                        .setContent(record.content);
+                // Setting username and avatar, if specified.
+                if (record.username != null)
+                    builder.setUsername(record.username);
+                if (record.avatarUrl != null)
+                    builder.setAvatarUrl(record.avatarUrl);
+                // ...
+                client.send(builder.build()).get(DELIVERY_TIMEOUT, TimeUnit.MILLISECONDS);
+                // Moving the cursor past delivered message.
+                synchronized (this) {
+                    delivered.increment();
+                    backoff = 0L;
+                    this.advance(record.next - (discarded - discardedBefore));
+                }
+            } catch (final InterruptedException e) {
+                // Outbox is being closed. Message is delivered after next start.
+                Thread.currentThread().interrupt();
+                return;
+            } catch (final ExecutionException | TimeoutException e) {
+                final Throwable cause = (e instanceof ExecutionException) ? e.getCause() : e;
+                // Skipping messages rejected by Discord, as sending them again would fail the same way. Rate-limited messages are retried.
+                if (cause instanceof HttpException http && http.getCode() >= 400 && http.getCode() < 500 && http.getCode() != 429) {
+                    plugin.getLogger().warning("Discord rejected message sent through '" + record.webhook + "' webhook. It will not be sent again.");
+                    plugin.getLogger().warning(" (1) " + cause.getClass().getSimpleName() + ": " + cause.getMessage());
+                    // ...
+                    synchronized (this) {
+                        dropped.increment();
+                        this.advance(record.next - (discarded - discardedBefore));
+                    }
+                    continue;
+                }
+                // Otherwise, trying again after the back-off.
+                synchronized (this) {
+                    failures.increment();
+                    backoff = Math.clamp(backoff * 2, MIN_BACKOFF, MAX_BACKOFF);
+                    this.schedule(backoff);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves the cursor to specified position and discards the log once everything has been delivered. Must be called while holding the lock.
+     */
+    private void advance(final long position) {
+        cursor = position;
+        try {
+            // Truncating the log when there is nothing left to deliver. This is the cheapest moment to do so.
+            if (cursor >= size) {
+                log.truncate(0L);
+                discarded += size;
+                cursor = size = 0L;
+            }
+            // Writing the cursor.
+            writeFully(cursorChannel, ByteBuffer.allocate(Long.BYTES).putLong(0, cursor), 0);
+        } catch (final IOException e) {
+            plugin.getLogger().severe("Could not update the Discord outbox cursor. Some messages may be delivered again after restart.");
+            plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites the log without already delivered records. Must be called while holding the lock.
+     */
+    private void compact() throws IOException {
+        final File temporary = new File(directory, LOG_FILE_NAME + ".tmp");
+        // Copying undelivered records to the temporary file.
+        try (final FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = cursor;
+            // ...
+            while (position < size)
+                position += log.transferTo(position, size - position, channel);
+            channel.force(false);
+        }
+        // Resetting the cursor before the log is replaced. In case of a crash in between, delivered messages are sent again instead of undelivered ones being skipped.
+        writeFully(cursorChannel, ByteBuffer.allocate(Long.BYTES).putLong(0, 0L), 0);
+        cursorChannel.force(false);
+        // Replacing the log with the temporary file.
+        log.close();
+        Files.move(temporary.toPath(), new File(directory, LOG_FILE_NAME).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log = FileChannel.open(new File(directory, LOG_FILE_NAME).toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Updating positions and the cursor.
+        discarded += cursor;
+        size -= cursor;
+        this.advance(0L);
+    }
+
+    /**
+     * Finds the end of the last complete record and truncates everything past it. Returns the resulting size of the log.
+     * Cursor is reset in case it does not point at the beginning of a record, or at the end of the log.
+     */
+    private long recover() throws IOException {
+        long position = 0L;
+        boolean isCursorValid = (cursor == 0L);
+        // Validating records, one by one.
+        while (position < log.size()) {
+            try {
+                position = this.read(position).next;
+            } catch (final IOException _) {
+                plugin.getLogger().warning("Discord outbox contains incomplete or corrupted record at position " + position + ". It will be discarded, along with everything past it.");
+                break;
+            }
+            // ...
+            if (position == cursor)
+                isCursorValid = true;
+        }
+        // Truncating the log.
+        log.truncate(position);
+        // Delivering all remaining messages again, as it cannot be determined which of them have been delivered already.
+        if (isCursorValid == false) {
+            plugin.getLogger().warning("Discord outbox cursor (" + cursor + ") does not point at any record. Messages left in the outbox will be delivered again.");
+            cursor = 0L;
+        }
+        return position;
+    }
+
+    /**
+     * Reads and validates record at specified position. Must be called while holding the lock.
+     */
+    private @NotNull Record read(final long position) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(log, header, position);
+        // Reading the header.
+        final int length = header.flip().getInt();
+        final int checksum = header.getInt();
+        // Validating the length.
+        if (length < Long.BYTES || position + HEADER_SIZE + length > log.size())
+            throw new IOException("Invalid record length " + length + " at position " + position + ".");
+        // Reading the payload.
+        final ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(log, payload, position + HEADER_SIZE);
+        // Validating the checksum.
+        final CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, length);
+        if ((int) crc.getValue() != checksum)
+            throw new IOException("Checksum mismatch at position " + position + ".");
+        // Decoding the payload.
+        try {
+            payload.flip().getLong(); // Timestamp. Currently unused.
+            final String webhook = readString(payload);
+            final String content = readString(payload);
+            // ...
+            if (webhook == null || content == null)
+                throw new IOException("Missing webhook or content at position " + position + ".");
+            // ...
+            return new Record(webhook, content, readString(payload), readString(payload), position + HEADER_SIZE + length);
+        } catch (final RuntimeException e) {
+            throw new IOException("Malformed record at position " + position + ".", e);
+        }
+    }
+
+    private static @NotNull ByteBuffer encode(final @NotNull String webhook, final @NotNull String content, final @Nullable String username, final @Nullable String avatarUrl) {
+        final byte[][] strings = { bytes(webhook), bytes(content), bytes(username), bytes(avatarUrl) };
+        // Computing length of the payload.
+        int length = Long.BYTES;
+        for (final byte[] string : strings)
+            length += Integer.BYTES + ((string != null) ? string.length : 0);
+        // Writing the payload.
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+        buffer.position(HEADER_SIZE);
+        buffer.putLong(System.currentTimeMillis());
+        for (final byte[] string : strings) {
+            buffer.putInt((string != null) ? string.length : -1);
+            if (string != null)
+                buffer.put(string);
+        }
+        // Writing the header.
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_SIZE, length);
+        buffer.putInt(0, length).putInt(Integer.BYTES, (int) crc.getValue());
+        // Returning the buffer, ready to be written.
+        return buffer.flip();
+    }
+
+    private static byte @Nullable [] bytes(final @Nullable String string) {
+        return (string != null) ? string.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static @Nullable String readString(final @NotNull ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        // Returning null for strings stored as null.
+        if (length < 0)
+            return null;
+        // Reading the string.
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        // ...
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(final @NotNull FileChannel channel, final @NotNull ByteBuffer buffer, final long position) throws IOException {
+        long current = position;
+        // Reading until buffer is full.
+        while (buffer.hasRemaining() == true) {
+            final int read = channel.read(buffer, current);
+            // Throwing exception in case end of file has been reached.
+            if (read < 0)
+                throw new IOException("Unexpected end of file at position " + current + ".");
+            // ...
+            current += read;
+        }
+    }
+
+    private static void writeFully(final @NotNull FileChannel channel, final @NotNull ByteBuffer buffer, final long position) throws IOException {
+        long current = position;
+        // Writing until buffer is empty.
+        while (buffer.hasRemaining() == true)
+            current += channel.write(buffer, current);
+    }
+
+    /**
+     * Represents a single message read from the outbox.
+     */
+    private record Record(@NotNull String webhook, @NotNull String content, @Nullable String username, @Nullable String avatarUrl, long next) { /* DATA */ }
+
+}
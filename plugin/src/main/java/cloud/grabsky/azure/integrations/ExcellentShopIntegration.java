@@ -16,7 +16,6 @@ package cloud.grabsky.azure.integrations;
 
 import cloud.grabsky.azure.Azure;
 import cloud.grabsky.azure.configuration.PluginConfig;
-import club.minnced.discord.webhook.send.WebhookMessageBuilder;
 import me.clip.placeholderapi.PlaceholderAPI;
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import org.bukkit.event.EventHandler;
@@ -25,6 +24,7 @@ import org.bukkit.event.Listener;
 import su.nightexpress.nexshop.api.shop.event.AuctionListingCreateEvent;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import lombok.SneakyThrows;
 
@@ -64,16 +64,11 @@ public enum ExcellentShopIntegration implements Listener {
                 .replace("<amount>", String.valueOf(event.getListing().getItemStack().getAmount())
                 .replace("<price>", event.getListing().getCurrency().format(event.getListing().getPrice())))
                 .replace("<item>", PlainTextComponentSerializer.plainText().serialize(event.getListing().getItemStack().effectiveName()));
-        // Creating new instance of WebhookMessageBuilder.
-        final WebhookMessageBuilder builder = new WebhookMessageBuilder().setContent(message);
-        // Setting username if specified.
-        if (PluginConfig.DISCORD_INTEGRATIONS_AUCTION_LISTINGS_FORWARDING_WEBHOOK_USERNAME.isEmpty() == false)
-            builder.setUsername(PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_AUCTION_LISTINGS_FORWARDING_WEBHOOK_USERNAME));
-        // Setting avatar if specified.
-        if (PluginConfig.DISCORD_INTEGRATIONS_AUCTION_LISTINGS_FORWARDING_WEBHOOK_AVATAR.isEmpty() == false)
-            builder.setAvatarUrl(PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_AUCTION_LISTINGS_FORWARDING_WEBHOOK_AVATAR));
-        // Sending the message.
-        Azure.getInstance().getDiscordIntegration().getWebhookClients().get("AUCTION_HOUSE").send(builder.build());
+        // Getting username and avatar, if specified.
+        final @Nullable String webhookUsername = (PluginConfig.DISCORD_INTEGRATIONS_AUCTION_LISTINGS_FORWARDING_WEBHOOK_USERNAME.isEmpty() == false) ? PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_AUCTION_LISTINGS_FORWARDING_WEBHOOK_USERNAME) : null;
+        final @Nullable String webhookAvatar = (PluginConfig.DISCORD_INTEGRATIONS_AUCTION_LISTINGS_FORWARDING_WEBHOOK_AVATAR.isEmpty() == false) ? PlaceholderAPI.setPlaceholders(event.getPlayer(), PluginConfig.DISCORD_INTEGRATIONS_AUCTION_LISTINGS_FORWARDING_WEBHOOK_AVATAR) : null;
+        // Forwarding the message.
+        Azure.getInstance().getDiscordIntegration().forward("AUCTION_HOUSE", message, webhookUsername, webhookAvatar);
     }
 
 }
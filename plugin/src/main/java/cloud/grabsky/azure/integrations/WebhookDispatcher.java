@@ -0,0 +1,465 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.integrations;
+
+import club.minnced.discord.webhook.WebhookClient;
+import club.minnced.discord.webhook.exception.HttpException;
+import club.minnced.discord.webhook.send.AllowedMentions;
+import club.minnced.discord.webhook.send.WebhookMessageBuilder;
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.configuration.PluginConfig;
+import cloud.grabsky.azure.metrics.MetricsRegistry;
+import okhttp3.Headers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Queues outbound messages of a single {@link WebhookClient} and merges consecutive lines into multi-line messages.
+ * <p>
+ * At most one request is in flight at a time. Lines queued while a request is in flight (or within the merge window) are sent
+ * together with the next request. Rate-limit headers of each response are passed to {@link #updateRateLimit(Headers)}; once the bucket
+ * is exhausted, next request is delayed until it resets, and lines queued in the meantime are merged into it.
+ * Requests rejected with HTTP 429 are put back to the queue and retried after time specified by the {@code Retry-After} header, or after
+ * an exponential back-off if none was specified. Lines that still could not be sent are moved to the {@link DiscordOutbox}, which keeps
+ * trying in the background.
+ */
+public final class WebhookDispatcher {
+
+    // Maximum length of message content accepted by Discord.
+    private static final int MAX_CONTENT_LENGTH = 2000;
+
+    // Maximum number of attempts made to send a single line.
+    private static final int MAX_ATTEMPTS = 3;
+
+    // Maximum time to wait for request that is in flight when dispatcher is being closed.
+    private static final long CLOSE_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+
+    // Bounds of the back-off applied after request has been rate-limited.
+    private static final long MIN_BACKOFF = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_BACKOFF = TimeUnit.SECONDS.toNanos(30);
+
+    private final Azure plugin;
+    private final String name;
+    private final WebhookClient client;
+    private final ScheduledExecutorService executor;
+    private final @Nullable DiscordOutbox outbox;
+    private final AllowedMentions allowedMentions;
+
+    private final long mergeWindow;
+    private final long minInterval;
+
+    // Lines waiting to be sent. Guarded by (this).
+    private final Deque<Line> queue = new ArrayDeque<>();
+    private boolean isScheduled = false;
+    private boolean isSending = false;
+    private boolean isClosed = false;
+    private @Nullable CompletableFuture<?> inFlight = null;
+    private long nextSendAt = 0L;
+    private long backoff = 0L;
+
+    // Time at which rate-limit bucket of the webhook resets. Set only when bucket has been exhausted. Guarded by (this).
+    private long bucketResetAt = System.nanoTime();
+
+    // Recently sent messages, by their identifier. Used to edit single lines of merged messages. Guarded by (this).
+    private final Map<Long, Batch> sent;
+
+    // Metrics. Exposed through the MetricsRegistry.
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public WebhookDispatcher(final @NotNull Azure plugin, final @NotNull String name, final @NotNull WebhookClient client, final @NotNull ScheduledExecutorService executor, final @Nullable DiscordOutbox outbox) {
+        this.plugin = plugin;
+        this.name = name;
+        this.client = client;
+        this.executor = executor;
+        this.outbox = outbox;
+        this.allowedMentions = DiscordIntegration.getAllowedMentions(name);
+        this.mergeWindow = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, PluginConfig.DISCORD_INTEGRATIONS_WEBHOOKS_MERGE_WINDOW));
+        this.minInterval = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, PluginConfig.DISCORD_INTEGRATIONS_WEBHOOKS_MIN_INTERVAL));
+        // Remembering as many messages as there are entries in the chat history, so all of them can be deleted.
+        final int capacity = Math.max(16, PluginConfig.CHAT_MODERATION_HISTORY_CAPACITY);
+        this.sent = new LinkedHashMap<>(capacity, 0.75F, false) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, Batch> eldest) {
+                return this.size() > capacity;
+            }
+        };
+        // Registering metrics.
+        final MetricsRegistry metrics = plugin.getMetricsRegistry();
+        final String prefix = "discord.webhooks." + name.toLowerCase() + ".";
+        metrics.register(prefix + "depth", this::getQueueSize);
+        metrics.register(prefix + "lines", lines::sum);
+        metrics.register(prefix + "requests", requests::sum);
+        metrics.register(prefix + "merge_ratio", () -> "%.2f".formatted(lines.sum() / (double) Math.max(1L, requests.sum())));
+        metrics.register(prefix + "rate_limited", rateLimited::sum);
+        metrics.register(prefix + "failures", failures::sum);
+    }
+
+    /**
+     * Queues a line to be sent. Lines with the same username and avatar may be merged with other lines into a single message.
+     * Returned {@link CompletableFuture} is completed with identifier of the message this line has been sent as.
+     *
+     * @param key Key identifying this line, used to edit it later. Can be {@code null} if line is never edited.
+     */
+    public @NotNull CompletableFuture<Long> send(final @Nullable Object key, final @NotNull String content, final @Nullable String username, final @Nullable String avatarUrl) {
+        final Line line = new Line(key, content.length() > MAX_CONTENT_LENGTH ? content.substring(0, MAX_CONTENT_LENGTH) : content, username, avatarUrl);
+        // Increasing number of queued lines.
+        lines.increment();
+        // Adding line to the queue and scheduling a flush, unless one is already scheduled or in flight.
+        synchronized (this) {
+            // Moving line straight to the outbox in case it was queued while dispatcher was being closed.
+            if (isClosed == true) {
+                this.moveToOutbox(List.of(line));
+                line.future.cancel(false);
+                return line.future;
+            }
+            queue.addLast(line);
+            // ...
+            if (isScheduled == false && isSending == false)
+                this.schedule(Math.max(mergeWindow, nextSendAt - System.nanoTime()));
+        }
+        return line.future;
+    }
+
+    /**
+     * Replaces lines identified by specified keys in message of specified identifier with replacement text.
+     * Other lines merged into the same message are preserved. Whole message is replaced if it's contents are no longer known.
+     */
+    public @NotNull CompletableFuture<?> delete(final long messageId, final @NotNull Collection<?> keys, final @NotNull String replacement) {
+        final String content;
+        // Building new contents of the message.
+        synchronized (this) {
+            final @Nullable Batch batch = sent.get(messageId);
+            // Replacing whole message in case it's no longer remembered.
+            if (batch == null)
+                return client.edit(messageId, replacement);
+            // Marking lines as deleted.
+            for (final Line line : batch.lines)
+                if (line.key != null && keys.contains(line.key) == true)
+                    line.isDeleted = true;
+            // ...
+            content = batch.render(replacement);
+        }
+        // Editing the message.
+        return client.edit(messageId, content);
+    }
+
+    /**
+     * Updates rate-limit state from headers of a response to request sent through the webhook of this dispatcher.
+     * In case bucket has been exhausted, next request is not sent until it resets.
+     */
+    public void updateRateLimit(final @NotNull Headers headers) {
+        final long delay = getRateLimitDelay(headers);
+        // Skipping in case bucket has not been exhausted.
+        if (delay < 0L)
+            return;
+        // ...
+        synchronized (this) {
+            bucketResetAt = Math.max(bucketResetAt, System.nanoTime() + delay);
+        }
+    }
+
+    /**
+     * Returns identifier of the webhook this dispatcher sends messages through.
+     */
+    public long getWebhookId() {
+        return client.getId();
+    }
+
+    /**
+     * Returns number of lines waiting to be sent.
+     */
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Waits a few seconds for request that is in flight, moves all queued lines to the {@link DiscordOutbox} (if any) and unregisters metrics.
+     * Called when Discord integration is being shut down.
+     */
+    public void close() {
+        final @Nullable CompletableFuture<?> request;
+        // Preventing further flushes from being scheduled.
+        synchronized (this) {
+            isClosed = true;
+            request = inFlight;
+        }
+        // Waiting for request that is currently in flight, so lines it fails to send are still moved to the outbox before it gets closed.
+        if (request != null) {
+            try {
+                request.get(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final ExecutionException | TimeoutException | CancellationException _) {
+                // Failures are handled by the request itself.
+            }
+        }
+        // Moving remaining lines to the outbox.
+        while (true) {
+            final @Nullable List<Line> batch;
+            synchronized (this) {
+                batch = this.poll();
+            }
+            // Stopping once the queue is empty.
+            if (batch == null)
+                break;
+            // Moving the batch to the outbox. Identifiers of these messages are never known, so they cannot be deleted later.
+            this.moveToOutbox(batch);
+            batch.forEach(line -> line.future.cancel(false));
+        }
+        // Unregistering metrics.
+        plugin.getMetricsRegistry().unregister("discord.webhooks." + name.toLowerCase() + ".");
+    }
+
+    // Must be called while holding the lock.
+    private void schedule(final long delay) {
+        // Skipping once dispatcher is closed. Remaining lines are moved to the outbox by the close() method.
+        if (isClosed == true)
+            return;
+        // ...
+        try {
+            executor.schedule(this::flush, Math.max(0L, delay), TimeUnit.NANOSECONDS);
+            isScheduled = true;
+        } catch (final RejectedExecutionException _) {
+            // Executor has been shut down. Remaining lines are sent by the close() method.
+        }
+    }
+
+    private void flush() {
+        final @Nullable List<Line> batch;
+        synchronized (this) {
+            isScheduled = false;
+            // Postponing in case rate-limit bucket has been exhausted in the meantime, for example by messages sent from the outbox.
+            final long delay = bucketResetAt - System.nanoTime();
+            // ...
+            if (delay > 0L) {
+                this.schedule(delay);
+                return;
+            }
+            // Taking the next batch of lines.
+            batch = this.poll();
+            // Nothing to send...
+            if (batch == null)
+                return;
+            // ...
+            isSending = true;
+        }
+        this.dispatch(batch);
+    }
+
+    /**
+     * Removes and returns consecutive lines that can be merged into a single message, or {@code null} if queue is empty. Must be called while holding the lock.
+     */
+    private @Nullable List<Line> poll() {
+        final @Nullable Line first = queue.pollFirst();
+        // Returning null if there is nothing to send.
+        if (first == null)
+            return null;
+        final List<Line> batch = new ArrayList<>();
+        batch.add(first);
+        // Merging following lines of the same author, for as long as they fit in a single message.
+        int length = first.content.length();
+        while (queue.isEmpty() == false) {
+            final Line next = queue.peekFirst();
+            // Stopping at first line that cannot be merged.
+            if (Objects.equals(first.username, next.username) == false || Objects.equals(first.avatarUrl, next.avatarUrl) == false || length + 1 + next.content.length() > MAX_CONTENT_LENGTH)
+                break;
+            // ...
+            length += 1 + next.content.length();
+            batch.add(queue.pollFirst());
+        }
+        return batch;
+    }
+
+    /**
+     * Stores specified lines in the {@link DiscordOutbox} as a single message. Lines are sent directly in case outbox is not available.
+     */
+    private void moveToOutbox(final @NotNull List<Line> lines) {
+        final String content = new Batch(lines).render("");
+        // ...
+        if (outbox != null)
+            outbox.enqueue(name, content, lines.getFirst().username, lines.getFirst().avatarUrl);
+        else this.dispatch(lines);
+    }
+
+    private void dispatch(final @NotNull List<Line> lines) {
+        final Batch batch = new Batch(lines);
+        // Creating the message. Mentions are allowed the same way as in messages sent without the dispatcher.
+        final WebhookMessageBuilder builder = new WebhookMessageBuilder()
+                .setAllowedMentions(allowedMentions)
+                .setContent(batch.render(""));
+        // Setting username and avatar, if specified.
+        if (lines.getFirst().username != null)
+            builder.setUsername(lines.getFirst().username);
+        if (lines.getFirst().avatarUrl != null)
+            builder.setAvatarUrl(lines.getFirst().avatarUrl);
+        // Increasing number of requests.
+        requests.increment();
+        // Sending the message. Request is remembered, so dispatcher can wait for it to complete when being closed.
+        final CompletableFuture<?> request = client.send(builder.build()).whenComplete((response, throwable) -> {
+            final @Nullable Throwable cause = (throwable instanceof CompletionException) ? throwable.getCause() : throwable;
+            synchronized (this) {
+                if (cause == null) {
+                    // Remembering contents of the message, so lines can be edited later.
+                    sent.put(response.getId(), batch);
+                    backoff = 0L;
+                    nextSendAt = Math.max(System.nanoTime() + minInterval, bucketResetAt);
+                } else if (cause instanceof HttpException e && e.getCode() == 429) {
+                    rateLimited.increment();
+                    // Waiting for as long as Discord asked to. Increasing the back-off in case it didn't.
+                    final long delay = getRateLimitDelay(e.getHeaders());
+                    // ...
+                    if (delay >= 0L) {
+                        bucketResetAt = Math.max(bucketResetAt, System.nanoTime() + delay);
+                        nextSendAt = bucketResetAt;
+                    } else {
+                        backoff = Math.clamp(backoff * 2, MIN_BACKOFF, MAX_BACKOFF);
+                        nextSendAt = Math.max(System.nanoTime() + backoff, bucketResetAt);
+                    }
+                    // Putting lines back to the front of the queue, unless they have been attempted too many times already.
+                    for (final Line line : lines.reversed())
+                        if (++line.attempts < MAX_ATTEMPTS)
+                            queue.addFirst(line);
+                } else {
+                    nextSendAt = Math.max(System.nanoTime() + minInterval, bucketResetAt);
+                }
+                // Scheduling next flush in case there are more lines waiting.
+                isSending = false;
+                // ...
+                if (queue.isEmpty() == false && isScheduled == false)
+                    this.schedule(nextSendAt - System.nanoTime());
+            }
+            // Completing futures of all lines that are not going to be retried.
+            final List<Line> abandoned = new ArrayList<>();
+            for (final Line line : lines) {
+                if (cause == null)
+                    line.future.complete(response.getId());
+                else if (cause instanceof HttpException e && e.getCode() == 429 && line.attempts < MAX_ATTEMPTS)
+                    continue;
+                else {
+                    abandoned.add(line);
+                    line.future.completeExceptionally(cause);
+                }
+            }
+            // Logging the error and moving lines that could not be sent to the outbox, which keeps trying in the background.
+            if (abandoned.isEmpty() == false) {
+                failures.increment();
+                plugin.getLogger().warning("Could not send " + abandoned.size() + " line(s) through '" + name + "' webhook due to following error(s):");
+                plugin.getLogger().warning(" (1) " + cause.getClass().getSimpleName() + ": " + cause.getMessage());
+                // ...
+                if (outbox != null)
+                    this.moveToOutbox(abandoned);
+            }
+        });
+        // ...
+        synchronized (this) {
+            inFlight = request;
+        }
+    }
+
+    /**
+     * Returns time (in nanoseconds) to wait before sending the next request, based on rate-limit headers of the response.
+     * Returns {@code -1} in case headers do not require waiting, or are missing.
+     */
+    private static long getRateLimitDelay(final @NotNull Headers headers) {
+        try {
+            // Retry-After header is sent along with HTTP 429 and specifies number of seconds to wait before retrying.
+            final @Nullable String retryAfter = headers.get("Retry-After");
+            // ...
+            if (retryAfter != null)
+                return toNanos(Double.parseDouble(retryAfter));
+            // Otherwise, waiting for the bucket to reset, but only in case it has been exhausted.
+            final @Nullable String remaining = headers.get("X-RateLimit-Remaining");
+            final @Nullable String resetAfter = headers.get("X-RateLimit-Reset-After");
+            // ...
+            if (remaining != null && resetAfter != null && Integer.parseInt(remaining) <= 0)
+                return toNanos(Double.parseDouble(resetAfter));
+        } catch (final NumberFormatException _) {
+            // Malformed headers are ignored.
+        }
+        return -1L;
+    }
+
+    // Converts number of seconds to nanoseconds. Negative values are treated as zero.
+    private static long toNanos(final double seconds) {
+        return (long) (Math.max(0.0D, seconds) * 1_000_000_000.0D);
+    }
+
+    /**
+     * Represents a single queued line.
+     */
+    private static final class Line {
+
+        private final @Nullable Object key;
+        private final @NotNull String content;
+        private final @Nullable String username;
+        private final @Nullable String avatarUrl;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        private int attempts = 0;
+        private boolean isDeleted = false;
+
+        private Line(final @Nullable Object key, final @NotNull String content, final @Nullable String username, final @Nullable String avatarUrl) {
+            this.key = key;
+            this.content = content;
+            this.username = username;
+            this.avatarUrl = avatarUrl;
+        }
+
+    }
+
+    /**
+     * Represents lines sent as a single message.
+     */
+    private record Batch(@NotNull List<Line> lines) {
+
+        // Joins lines of this batch. Deleted lines are replaced with specified text, and message consisting only of deleted lines is replaced entirely.
+        public @NotNull String render(final @NotNull String replacement) {
+            if (lines.stream().allMatch(line -> line.isDeleted == true) == true)
+                return replacement;
+            // ...
+            final StringBuilder builder = new StringBuilder();
+            for (final Line line : lines) {
+                if (builder.isEmpty() == false)
+                    builder.append('\n');
+                builder.append((line.isDeleted == true) ? replacement : line.content);
+            }
+            return builder.toString();
+        }
+
+    }
+
+}
@@ -17,11 +17,12 @@ package cloud.grabsky.azure.listener;
 import cloud.grabsky.azure.Azure;
 import cloud.grabsky.azure.configuration.PluginConfig;
 import cloud.grabsky.azure.configuration.PluginLocale;
+import cloud.grabsky.azure.template.MessageTemplate;
 import cloud.grabsky.azure.user.AzureUser;
 import cloud.grabsky.azure.user.AzureUserCache;
 import cloud.grabsky.bedrock.components.ComponentBuilder;
 import cloud.grabsky.bedrock.components.Message;
-import me.clip.placeholderapi.PlaceholderAPI;
+import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.TranslatableComponent;
 import net.luckperms.api.cacheddata.CachedMetaData;
 import org.bukkit.NamespacedKey;
@@ -86,13 +87,13 @@ public final class PlayerListener implements Listener {
             // Getting LuckPerms' cached meta-data. This should never be null despite the warning.
             final CachedMetaData metaData = plugin.getLuckPerms().getUserManager().getUser(player.getUniqueId()).getCachedData().getMetaData();
             // Sending join message to the audience.
-            Message.of(PlaceholderAPI.setPlaceholders(player, PluginConfig.CHAT_SERVER_JOIN_MESSAGE))
-                    .placeholder("player", player)
-                    .placeholder("group", requirePresent(metaData.getPrimaryGroup(), ""))
-                    .replace("<prefix>", requirePresent(metaData.getPrefix(), ""))
-                    .replace("<suffix>", requirePresent(metaData.getSuffix(), ""))
-                    .placeholder("displayname", player.displayName())
-                    .broadcast(audience -> audience.canSee(player) == true);
+            Message.of(MessageTemplate.of(PluginConfig.CHAT_SERVER_JOIN_MESSAGE).render(player,
+                    MessageTemplate.unparsed("player", player.getName()),
+                    MessageTemplate.unparsed("group", requirePresent(metaData.getPrimaryGroup(), "")),
+                    MessageTemplate.parsed("prefix", requirePresent(metaData.getPrefix(), "")),
+                    MessageTemplate.parsed("suffix", requirePresent(metaData.getSuffix(), "")),
+                    MessageTemplate.component("displayname", player.displayName())
+            )).broadcast(audience -> audience.canSee(player) == true);
         }
     }
 
@@ -106,13 +107,13 @@ public final class PlayerListener implements Listener {
             // Getting LuckPerms' cached meta-data. This should never be null despite the warning.
             final CachedMetaData metaData = plugin.getLuckPerms().getUserManager().getUser(player.getUniqueId()).getCachedData().getMetaData();
             // Sending quit message to the audience.
-            Message.of(PlaceholderAPI.setPlaceholders(player, PluginConfig.CHAT_SERVER_QUIT_MESSAGE))
-                    .placeholder("player", player)
-                    .placeholder("group", requirePresent(metaData.getPrimaryGroup(), ""))
-                    .replace("<prefix>", requirePresent(metaData.getPrefix(), ""))
-                    .replace("<suffix>", requirePresent(metaData.getSuffix(), ""))
-                    .placeholder("displayname", player.displayName())
-                    .broadcast(audience -> audience.canSee(player) == true);
+            Message.of(MessageTemplate.of(PluginConfig.CHAT_SERVER_QUIT_MESSAGE).render(player,
+                    MessageTemplate.unparsed("player", player.getName()),
+                    MessageTemplate.unparsed("group", requirePresent(metaData.getPrimaryGroup(), "")),
+                    MessageTemplate.parsed("prefix", requirePresent(metaData.getPrefix(), "")),
+                    MessageTemplate.parsed("suffix", requirePresent(metaData.getSuffix(), "")),
+                    MessageTemplate.component("displayname", player.displayName())
+            )).broadcast(audience -> audience.canSee(player) == true);
         }
     }
 
@@ -232,16 +233,17 @@ public final class PlayerListener implements Listener {
                 // Getting LuckPerms' cached meta-data. This should never be null despite the warning.
                 final CachedMetaData metaData = plugin.getLuckPerms().getUserManager().getUser(event.getPlayer().getUniqueId()).getCachedData().getMetaData();
                 // Preparing the message.
-                final Message.StringMessage message = Message.of(text)
-                        .replace("<prefix>", requirePresent(metaData.getPrefix(), ""))
-                        .replace("<suffix>", requirePresent(metaData.getSuffix(), ""))
-                        .placeholder("victim", event.getPlayer())
-                        .placeholder("victim_displayname", event.getPlayer().displayName())
-                        .placeholder("attacker", (event.getDamageSource().getCausingEntity() != null) ? event.getDamageSource().getCausingEntity().getName() : "N/A")
-                        .placeholder("attacker_displayname", (event.getDamageSource().getCausingEntity() != null && event.getDamageSource().getCausingEntity() instanceof Player attacker) ? attacker.displayName() : ComponentBuilder.EMPTY)
-                        .placeholder("mob", (event.getDamageSource().getCausingEntity() != null && event.getDamageSource().getCausingEntity() instanceof Mob mob) ? PluginLocale.MOBS.getOrDefault(mob.getType().translationKey(), mob.getType().translationKey()) : ComponentBuilder.EMPTY);
+                final Component message = MessageTemplate.of(text).render(null,
+                        MessageTemplate.parsed("prefix", requirePresent(metaData.getPrefix(), "")),
+                        MessageTemplate.parsed("suffix", requirePresent(metaData.getSuffix(), "")),
+                        MessageTemplate.unparsed("victim", event.getPlayer().getName()),
+                        MessageTemplate.component("victim_displayname", event.getPlayer().displayName()),
+                        MessageTemplate.unparsed("attacker", (event.getDamageSource().getCausingEntity() != null) ? event.getDamageSource().getCausingEntity().getName() : "N/A"),
+                        MessageTemplate.component("attacker_displayname", (event.getDamageSource().getCausingEntity() != null && event.getDamageSource().getCausingEntity() instanceof Player attacker) ? attacker.displayName() : ComponentBuilder.EMPTY),
+                        MessageTemplate.unparsed("mob", (event.getDamageSource().getCausingEntity() != null && event.getDamageSource().getCausingEntity() instanceof Mob mob) ? PluginLocale.MOBS.getOrDefault(mob.getType().translationKey(), mob.getType().translationKey()) : "")
+                );
                 // Broadcasting the message.
-                message.broadcast();
+                Message.of(message).broadcast();
                 // Preventing vanilla death message from appearing in chat.
                 event.setDeathMessage(null);
                 event.deathMessage(null);
@@ -264,14 +266,15 @@ public final class PlayerListener implements Listener {
             event.message(null);
             // ...
             final Player player = event.getPlayer();
-            final Message<String> message = Message.of(PluginConfig.CHAT_ADVANCEMENT_MESSAGE_FORMAT)
-                    .placeholder("player", player)
-                    .placeholder("displayname", player.displayName())
-                    .placeholder("advancement", event.getAdvancement().displayName());
+            final Component message = MessageTemplate.of(PluginConfig.CHAT_ADVANCEMENT_MESSAGE_FORMAT).render(null,
+                    MessageTemplate.unparsed("player", player.getName()),
+                    MessageTemplate.component("displayname", player.displayName()),
+                    MessageTemplate.component("advancement", event.getAdvancement().displayName())
+            );
             // ...
             if (PluginConfig.CHAT_ADVANCEMENT_MESSAGE_SEND_GLOBAL == true)
-                message.broadcast();
-            else message.send(player);
+                Message.of(message).broadcast();
+            else Message.of(message).send(player);
         }
     }
 
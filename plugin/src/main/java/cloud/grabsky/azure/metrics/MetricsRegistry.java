@@ -0,0 +1,60 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import static java.util.Collections.unmodifiableMap;
+
+/**
+ * {@link MetricsRegistry} holds named metrics exposed by various parts of the plugin. Values are computed lazily, each time a snapshot is taken.
+ */
+public final class MetricsRegistry {
+
+    // Registered metrics, sorted by their name.
+    private final Map<String, Supplier<?>> metrics = new ConcurrentSkipListMap<>();
+
+    /**
+     * Registers metric of specified name, replacing previous one if already registered.
+     */
+    public void register(final @NotNull String name, final @NotNull Supplier<?> supplier) {
+        metrics.put(name, supplier);
+    }
+
+    /**
+     * Unregisters all metrics which name starts with specified prefix.
+     */
+    public void unregister(final @NotNull String prefix) {
+        metrics.keySet().removeIf(name -> name.startsWith(prefix) == true);
+    }
+
+    /**
+     * Returns current values of all registered metrics, sorted by their name.
+     */
+    public @NotNull @Unmodifiable Map<String, String> snapshot() {
+        final Map<String, String> snapshot = new LinkedHashMap<>();
+        // Computing values of all registered metrics.
+        metrics.forEach((name, supplier) -> snapshot.put(name, String.valueOf(supplier.get())));
+        // Returning unmodifiable view of the snapshot.
+        return unmodifiableMap(snapshot);
+    }
+
+}
@@ -0,0 +1,320 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.template;
+
+import me.clip.placeholderapi.PlaceholderAPI;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.ComponentLike;
+import net.kyori.adventure.text.TranslatableComponent;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.minimessage.Context;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.ParsingException;
+import net.kyori.adventure.text.minimessage.tag.Modifying;
+import net.kyori.adventure.text.minimessage.tag.Tag;
+import net.kyori.adventure.text.minimessage.tag.resolver.ArgumentQueue;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link MessageTemplate} is a MiniMessage format parsed once into a reusable {@link Component} tree, with placeholders
+ * (tags that are not part of the standard MiniMessage tag set) compiled into typed slots. Rendering only fills these slots,
+ * instead of tokenizing and parsing the whole format again.
+ * <p>
+ * Values of {@link #parsed(String, String) parsed} slots are spliced into the format before it is compiled, the same way MiniMessage pre-process tags are.
+ * This way unclosed tags of prefixes and suffixes keep styling the rest of the line, and values used inside tag arguments are substituted.
+ * Each distinct combination of these values is compiled once. Other slots are filled in the compiled component tree.
+ * <p>
+ * Formats containing PlaceholderAPI placeholders cannot be compiled, because placeholders are substituted into the format
+ * itself and may appear in places slots cannot (eg. click event values). Such templates are parsed on every render, exactly like before.
+ * The same applies to formats containing modifying tags (eg. {@code <gradient>} or {@code <rainbow>}), which style each character of their contents while parsing.
+ */
+public final class MessageTemplate {
+
+    private static final MiniMessage MINI_MESSAGE = MiniMessage.miniMessage();
+
+    // Translation key prefix used to mark slots inside compiled component tree. Never sent to the client.
+    private static final String SLOT_KEY_PREFIX = "azure.template.slot:";
+
+    // Templates compiled so far, keyed by their source format.
+    private static final Map<String, MessageTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+    // Templates with values of 'parsed' slots spliced in, keyed by their spliced format. These are mostly prefixes and suffixes, so number of distinct combinations is small.
+    private static final Map<String, MessageTemplate> SPLICED_TEMPLATES = new ConcurrentHashMap<>();
+    private static final int SPLICED_TEMPLATES_LIMIT = 512;
+
+    // Number of renders served by compiled and by parsed (fallback) path, respectively.
+    private static final LongAdder COMPILED_RENDERS = new LongAdder();
+    private static final LongAdder PARSED_RENDERS = new LongAdder();
+
+    private final @NotNull String source;
+
+    // Compiled component tree. Null if format must be parsed on every render.
+    private final @Nullable Component compiled;
+
+    // Whether PlaceholderAPI placeholders should be resolved when format is parsed on every render. Spliced values are never resolved, just like before.
+    private final boolean isResolvingPlaceholders;
+
+    private MessageTemplate(final @NotNull String source, final @Nullable Component compiled, final boolean isResolvingPlaceholders) {
+        this.source = source;
+        this.compiled = compiled;
+        this.isResolvingPlaceholders = isResolvingPlaceholders;
+    }
+
+    /**
+     * Returns {@link MessageTemplate} of specified format. Templates are compiled on first request and cached until {@link #invalidateAll()} is called.
+     */
+    public static @NotNull MessageTemplate of(final @NotNull String source) {
+        return TEMPLATES.computeIfAbsent(source, MessageTemplate::compile);
+    }
+
+    /**
+     * Compiles and caches templates of all specified formats, so first render of each does not have to.
+     */
+    public static void precompile(final @NotNull Collection<String> sources) {
+        sources.forEach(MessageTemplate::of);
+    }
+
+    /**
+     * Removes all compiled templates, including ones with spliced values. Should be called when configuration is reloaded.
+     */
+    public static void invalidateAll() {
+        TEMPLATES.clear();
+        SPLICED_TEMPLATES.clear();
+    }
+
+    /**
+     * Returns number of currently cached templates.
+     */
+    public static int getTemplateCount() {
+        return TEMPLATES.size();
+    }
+
+    /**
+     * Returns number of renders served by compiled templates.
+     */
+    public static long getCompiledRenders() {
+        return COMPILED_RENDERS.sum();
+    }
+
+    /**
+     * Returns number of renders of templates that had to be parsed again.
+     */
+    public static long getParsedRenders() {
+        return PARSED_RENDERS.sum();
+    }
+
+    private static @NotNull MessageTemplate compile(final @NotNull String source) {
+        // Formats with PlaceholderAPI placeholders must be processed and parsed on every render.
+        if (PlaceholderAPI.containsPlaceholders(source) == true)
+            return new MessageTemplate(source, null, true);
+        // ...
+        return compileSpliced(source);
+    }
+
+    private static @NotNull MessageTemplate compileSpliced(final @NotNull String source) {
+        final SlotResolver resolver = new SlotResolver();
+        // Parsing the format, turning every non-standard tag into a slot marker.
+        try {
+            final Component compiled = MINI_MESSAGE.deserialize(source, resolver);
+            // Modifying tags must see slot values to style them, so such formats are parsed on every render.
+            return new MessageTemplate(source, (resolver.isModifying == false) ? compiled : null, false);
+        } catch (final ParsingException e) {
+            // Falling back to parsing on every render, which reports the same error as before.
+            return new MessageTemplate(source, null, false);
+        }
+    }
+
+    /**
+     * Returns {@code true} if this template was compiled, and {@code false} if it is parsed on every render.
+     */
+    public boolean isCompiled() {
+        return compiled != null;
+    }
+
+    /**
+     * Renders this template, filling slots with specified values. Slots without value are rendered as-is, like MiniMessage does with unknown tags.
+     *
+     * @param player Player PlaceholderAPI placeholders are resolved for. Ignored by compiled templates.
+     */
+    public @NotNull Component render(final @Nullable Player player, final @NotNull Slot... slots) {
+        // Splicing values of 'parsed' slots into the format and rendering the resulting template instead.
+        if (compiled != null) {
+            for (final Slot slot : slots)
+                if (slot.type() == Slot.Type.PARSED && source.contains("<" + slot.name() + ">") == true)
+                    return this.splice(slots).renderDirectly(player, slots);
+        }
+        // ...
+        return this.renderDirectly(player, slots);
+    }
+
+    private @NotNull Component renderDirectly(final @Nullable Player player, final @NotNull Slot[] slots) {
+        // Parsing the format again when it could not be compiled.
+        if (compiled == null) {
+            PARSED_RENDERS.increment();
+            // Converting slots to tag resolvers. Values of 'parsed' slots are pre-processed by MiniMessage.
+            final TagResolver[] resolvers = new TagResolver[slots.length];
+            for (int i = 0; i < slots.length; i++)
+                resolvers[i] = slots[i].toResolver();
+            // Parsing and returning the format.
+            return MINI_MESSAGE.deserialize((player != null && isResolvingPlaceholders == true) ? PlaceholderAPI.setPlaceholders(player, source) : source, resolvers);
+        }
+        COMPILED_RENDERS.increment();
+        // Filling the slots.
+        return fill(compiled, slots);
+    }
+
+    /**
+     * Returns template of this format with values of all 'parsed' slots substituted into it.
+     */
+    private @NotNull MessageTemplate splice(final @NotNull Slot[] slots) {
+        String spliced = source;
+        // Substituting values one after another, just like consecutive String#replace calls did before.
+        for (final Slot slot : slots)
+            if (slot.type() == Slot.Type.PARSED)
+                spliced = spliced.replace("<" + slot.name() + ">", (String) slot.value());
+        // Clearing the cache when it gets too large. Templates are cheap to compile again.
+        if (SPLICED_TEMPLATES.size() >= SPLICED_TEMPLATES_LIMIT)
+            SPLICED_TEMPLATES.clear();
+        // Returning compiled template of the spliced format.
+        return SPLICED_TEMPLATES.computeIfAbsent(spliced, MessageTemplate::compileSpliced);
+    }
+
+    private static @NotNull Component fill(final @NotNull Component component, final @NotNull Slot[] slots) {
+        // Replacing slot marker with it's value.
+        if (component instanceof TranslatableComponent translatable && translatable.key().startsWith(SLOT_KEY_PREFIX) == true) {
+            final String name = translatable.key().substring(SLOT_KEY_PREFIX.length());
+            // Looking up the value. Number of slots is small, so there is no point in hashing.
+            for (final Slot slot : slots)
+                if (slot.name().equals(name) == true)
+                    // Keeping style the marker was given by surrounding tags. Style of the value takes precedence.
+                    return slot.toComponent().applyFallbackStyle(translatable.style());
+            // Rendering unfilled slot as plain text.
+            return Component.text("<" + name + ">");
+        }
+        Component result = component;
+        // Filling slots inside hover text.
+        if (component.hoverEvent() != null && component.hoverEvent().value() instanceof Component hover) {
+            final Component filled = fill(hover, slots);
+            // Replacing the hover event only if it's contents have changed.
+            if (filled != hover)
+                result = result.hoverEvent(HoverEvent.showText(filled));
+        }
+        // Filling slots inside children. New list is created only when at least one of the children changes.
+        final List<Component> children = component.children();
+        List<Component> filledChildren = null;
+        for (int i = 0; i < children.size(); i++) {
+            final Component child = children.get(i);
+            final Component filled = fill(child, slots);
+            // Copying the list on first change.
+            if (filled != child && filledChildren == null)
+                filledChildren = new ArrayList<>(children);
+            // ...
+            if (filledChildren != null)
+                filledChildren.set(i, filled);
+        }
+        // Returning the result.
+        return (filledChildren != null) ? result.children(filledChildren) : result;
+    }
+
+    /**
+     * Returns {@link Slot} filled with specified {@link ComponentLike} value.
+     */
+    public static @NotNull Slot component(final @NotNull String name, final @NotNull ComponentLike value) {
+        return new Slot(name, Slot.Type.COMPONENT, value);
+    }
+
+    /**
+     * Returns {@link Slot} filled with specified {@link String} value, inserted as plain text.
+     */
+    public static @NotNull Slot unparsed(final @NotNull String name, final @NotNull String value) {
+        return new Slot(name, Slot.Type.UNPARSED, value);
+    }
+
+    /**
+     * Returns {@link Slot} filled with specified {@link String} value, spliced into the format before it's parsed as MiniMessage. Unclosed tags of the value affect the rest of the format.
+     */
+    public static @NotNull Slot parsed(final @NotNull String name, final @NotNull String value) {
+        return new Slot(name, Slot.Type.PARSED, value);
+    }
+
+    /**
+     * Named value of a template slot. Created using {@link #component(String, ComponentLike)}, {@link #unparsed(String, String)} and {@link #parsed(String, String)} methods.
+     */
+    public record Slot(@NotNull String name, @NotNull Type type, @NotNull Object value) {
+
+        private @NotNull Component toComponent() {
+            return switch (type) {
+                case COMPONENT -> ((ComponentLike) value).asComponent();
+                case UNPARSED -> Component.text((String) value);
+                // Reached only when value contains the tag it was supposed to replace. Rendered as plain text, as values are never substituted twice.
+                case PARSED -> Component.text((String) value);
+            };
+        }
+
+        private @NotNull TagResolver toResolver() {
+            return switch (type) {
+                case COMPONENT -> Placeholder.component(name, (ComponentLike) value);
+                case UNPARSED -> Placeholder.unparsed(name, (String) value);
+                case PARSED -> Placeholder.parsed(name, (String) value);
+            };
+        }
+
+        public enum Type {
+            COMPONENT, UNPARSED, PARSED
+        }
+
+    }
+
+    /**
+     * {@link TagResolver} resolving every tag outside the standard MiniMessage tag set to a slot marker. Keeps track of whether any modifying tag was resolved.
+     */
+    private static final class SlotResolver implements TagResolver {
+
+        private boolean isModifying = false;
+
+        @Override
+        public boolean has(final @NotNull String name) {
+            return true;
+        }
+
+        @Override
+        public @Nullable Tag resolve(final @NotNull String name, final @NotNull ArgumentQueue arguments, final @NotNull Context context) {
+            // Turning non-standard tags into slot markers.
+            if (TagResolver.standard().has(name) == false)
+                return Tag.selfClosingInserting(Component.translatable(SLOT_KEY_PREFIX + name));
+            // Resolving standard tags just like MiniMessage would.
+            final @Nullable Tag tag = TagResolver.standard().resolve(name, arguments, context);
+            // Remembering modifying tags, as these cannot be compiled.
+            if (tag instanceof Modifying)
+                isModifying = true;
+            // ...
+            return tag;
+        }
+
+    }
+
+}
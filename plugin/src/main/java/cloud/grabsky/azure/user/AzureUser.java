@@ -18,11 +18,11 @@ import cloud.grabsky.azure.Azure;
 import cloud.grabsky.azure.api.Punishment;
 import cloud.grabsky.azure.api.user.User;
 import cloud.grabsky.azure.configuration.PluginConfig;
+import cloud.grabsky.azure.visibility.VisibilityReconciler;
+import cloud.grabsky.azure.visibility.VisibilityService;
 import cloud.grabsky.bedrock.util.Interval;
 import cloud.grabsky.bedrock.util.Interval.Unit;
 import net.kyori.adventure.text.Component;
-import net.luckperms.api.LuckPerms;
-import net.luckperms.api.model.group.Group;
 import org.bukkit.Bukkit;
 import org.bukkit.GameMode;
 import org.bukkit.command.CommandSender;
@@ -49,38 +49,48 @@ public final class AzureUser implements User {
     @Getter(AccessLevel.PUBLIC)
     private final @NotNull UUID uniqueId;
 
+    // Mutable fields are volatile because users are read and modified from multiple threads.
     @Getter(AccessLevel.PUBLIC)
-    private @Nullable String displayName;
+    private volatile @Nullable String displayName;
 
-    @Getter(AccessLevel.PUBLIC) @Setter(value = AccessLevel.PUBLIC)
-    private @Nullable String discordId;
+    @Getter(AccessLevel.PUBLIC)
+    private volatile @Nullable String discordId;
 
     @Getter(AccessLevel.PUBLIC)
     private final @NotNull String textures;
 
     @Getter(AccessLevel.PUBLIC)
-    private @NotNull String lastAddress;
+    private volatile @NotNull String lastAddress;
 
     @Getter(AccessLevel.PUBLIC)
     @Setter(value = AccessLevel.PACKAGE, onMethod_ = @Internal)
-    private @NotNull String lastCountryCode;
+    private volatile @NotNull String lastCountryCode;
 
     @Getter(AccessLevel.PUBLIC)
     @Setter(value = AccessLevel.PUBLIC, onMethod_ = @Internal)
-    private int maxLevel;
+    private volatile int maxLevel;
 
     @Getter(AccessLevel.PUBLIC)
-    private boolean isVanished;
+    private volatile boolean isVanished;
 
     @Getter(AccessLevel.PUBLIC)
-    @Setter(value = AccessLevel.PUBLIC, onMethod_ = @Internal)
-    private boolean isSpying;
+    private volatile boolean isSpying;
 
     // Defined as implementation rather than interface because we want Moshi to know what adapter to use.
-    private @Nullable AzurePunishment mostRecentBan;
+    private volatile @Nullable AzurePunishment mostRecentBan;
 
     // Defined as implementation rather than interface because we want Moshi to know what adapter to use.
-    private @Nullable AzurePunishment mostRecentMute;
+    private volatile @Nullable AzurePunishment mostRecentMute;
+
+    @Internal
+    public void setSpying(final boolean state) {
+        final @Nullable Player thisPlayer = this.toPlayer();
+        // Setting the spy state.
+        this.isSpying = state;
+        // Updating audiences of an online player.
+        if (thisPlayer != null && thisPlayer.isOnline() == true)
+            Azure.getInstance().getAudienceRegistry().refresh(thisPlayer);
+    }
 
     @Override
     public @Nullable Punishment getMostRecentBan() {
@@ -92,18 +102,27 @@ public final class AzureUser implements User {
         return mostRecentMute;
     }
 
+    @Override
+    public void setDiscordId(final @Nullable String discordId) {
+        final @Nullable String previousDiscordId = this.discordId;
+        // Setting the Discord ID.
+        this.discordId = discordId;
+        // Updating Discord ID index of the cache.
+        Azure.getInstance().getUserCache().as(AzureUserCache.class).reindexDiscordId(this, previousDiscordId);
+    }
+
     @Override
     public void setDisplayName(final @Nullable String displayName, final @Nullable Component displayNameComponent) {
         final @Nullable Player thisPlayer = this.toPlayer();
         // Setting the display name.
         this.displayName = displayName;
-        // Saving User data to the filesystem.
-        Azure.getInstance().getUserCache().as(AzureUserCache.class).saveUser(this).thenAccept(isSuccess -> {
-            logSaveInformation(isSuccess);
-            // Updating display name of an online player.
-            if (thisPlayer != null && thisPlayer.isOnline() == true) Azure.getInstance().getBedrockScheduler().run(1L, (_) -> {
-                thisPlayer.displayName(displayNameComponent);
-            });
+        // Scheduling User data to be saved. Changes are written in the background and not waited for.
+        Azure.getInstance().getUserCache().as(AzureUserCache.class).saveUser(this).thenAccept(this::logSaveInformation);
+        // Updating display name of an online player.
+        if (thisPlayer != null && thisPlayer.isOnline() == true) Azure.getInstance().getBedrockScheduler().run(1L, (_) -> {
+            thisPlayer.displayName(displayNameComponent);
+            // Updating names player can be mentioned by.
+            Azure.getInstance().getChatManager().getMentionIndex().update(thisPlayer);
         });
     }
 
@@ -115,46 +134,47 @@ public final class AzureUser implements User {
             throw new UnsupportedOperationException("Player must be online to have his vanish state changed.");
         // Changing vanish state.
         this.isVanished = state;
-        // Saving User data to the filesystem.
-        Azure.getInstance().getUserCache().as(AzureUserCache.class).saveUser(this).thenAccept(isSuccess -> {
-            logSaveInformation(isSuccess);
-            // Scheduling more logic onto the main thread.
-            Azure.getInstance().getBedrockScheduler().run(1L, (task) -> {
-                // Executing post-actions for the "enabled" state.
-                if (state == true) {
-                    // Showing BossBar.
-                    thisPlayer.showBossBar(PluginConfig.VANISH_BOSS_BAR);
-                    // Switching game mode to spectator.
-                    thisPlayer.setGameMode(GameMode.SPECTATOR);
-                    // Hiding target from other players.
-                    final LuckPerms luckperms = Azure.getInstance().getLuckPerms();
-                    Bukkit.getOnlinePlayers().forEach(otherPlayer -> {
-                        if (thisPlayer != otherPlayer) {
-                            final @Nullable Group playerGroup = luckperms.getGroupManager().getGroup(luckperms.getPlayerAdapter(Player.class).getUser(thisPlayer).getPrimaryGroup());
-                            final @Nullable Group otherGroup = luckperms.getGroupManager().getGroup(luckperms.getPlayerAdapter(Player.class).getUser(otherPlayer).getPrimaryGroup());
-                            // Comparing group weights.
-                            if (playerGroup != null && otherGroup != null && playerGroup.getWeight().orElse(0) > otherGroup.getWeight().orElse(0))
-                                otherPlayer.hidePlayer(Azure.getInstance(), thisPlayer);
-                        }
-                    });
-                // Otherwise, executing post-actions for the "disabled" state.
-                } else {
-                    // Hiding BossBar.
-                    thisPlayer.hideBossBar(PluginConfig.VANISH_BOSS_BAR);
-                    // Switching game mode to previous game mode or default, or not doing anything if 'updateGamemodeWhenDisabling' is false.
-                    if (updateGamemodeWhenDisabling == true) {
-                        final GameMode nextGameMode = (thisPlayer.getPreviousGameMode() != null)
-                                ? (thisPlayer.hasPermission("azure.plugin.vanish_switch_previous_gamemode") == true) // ???
-                                        ? thisPlayer.getPreviousGameMode()
-                                        : Bukkit.getDefaultGameMode()
-                                : Bukkit.getDefaultGameMode();
-                        // Switching to previous, or default game mode.
-                        thisPlayer.setGameMode(nextGameMode);
+        // Scheduling User data to be saved. Changes are written in the background and not waited for.
+        Azure.getInstance().getUserCache().as(AzureUserCache.class).saveUser(this).thenAccept(this::logSaveInformation);
+        // Scheduling more logic onto the main thread.
+        Azure.getInstance().getBedrockScheduler().run(1L, (task) -> {
+            // Executing post-actions for the "enabled" state.
+            if (state == true) {
+                // Showing BossBar.
+                thisPlayer.showBossBar(PluginConfig.VANISH_BOSS_BAR);
+                // Switching game mode to spectator.
+                thisPlayer.setGameMode(GameMode.SPECTATOR);
+                // Hiding target from other players. Weight of the target is looked up once, weights of other players come from the snapshot.
+                final VisibilityService visibility = Azure.getInstance().getVisibilityService();
+                final int playerWeight = visibility.getWeight(thisPlayer);
+                Bukkit.getOnlinePlayers().forEach(otherPlayer -> {
+                    if (thisPlayer != otherPlayer) {
+                        // Comparing group weights.
+                        if (VisibilityService.outranks(playerWeight, visibility.getWeight(otherPlayer)) == true)
+                            visibility.getReconciler().hide(otherPlayer, thisPlayer);
                     }
-                    // Showing target to other players.
-                    Bukkit.getOnlinePlayers().forEach(otherPlayer -> otherPlayer.showPlayer(Azure.getInstance(), thisPlayer));
+                });
+            // Otherwise, executing post-actions for the "disabled" state.
+            } else {
+                // Hiding BossBar.
+                thisPlayer.hideBossBar(PluginConfig.VANISH_BOSS_BAR);
+                // Switching game mode to previous game mode or default, or not doing anything if 'updateGamemodeWhenDisabling' is false.
+                if (updateGamemodeWhenDisabling == true) {
+                    final GameMode nextGameMode = (thisPlayer.getPreviousGameMode() != null)
+                            ? (thisPlayer.hasPermission("azure.plugin.vanish_switch_previous_gamemode") == true) // ???
+                                    ? thisPlayer.getPreviousGameMode()
+                                    : Bukkit.getDefaultGameMode()
+                            : Bukkit.getDefaultGameMode();
+                    // Switching to previous, or default game mode.
+                    thisPlayer.setGameMode(nextGameMode);
                 }
-            });
+                // Showing target to other players. Players target has not been hidden from are skipped by the reconciler.
+                final VisibilityReconciler reconciler = Azure.getInstance().getVisibilityService().getReconciler();
+                Bukkit.getOnlinePlayers().forEach(otherPlayer -> {
+                    if (thisPlayer != otherPlayer)
+                        reconciler.show(otherPlayer, thisPlayer);
+                });
+            }
         });
     }
 
@@ -167,7 +187,9 @@ public final class AzureUser implements User {
                 Interval.now(),
                 (duration != null) ? duration : Interval.of(Long.MAX_VALUE, Unit.MILLISECONDS)
         );
-        // Saving User data to the filesystem.
+        // Updating punishment indexes of the cache.
+        Azure.getInstance().getUserCache().as(AzureUserCache.class).reindexPunishments(this);
+        // Scheduling User data to be saved.
         Azure.getInstance().getUserCache().as(AzureUserCache.class).saveUser(this).thenAccept(this::logSaveInformation);
         // Logging...
         Azure.getInstance().getPunishmentsFileLogger().log("Player " + this.getName() + " (" + this.getUniqueId() + ") has been BANNED (" + (mostRecentBan.isPermanent() == false ? mostRecentBan.getDuration() : "permanent") + ") by " + mostRecentBan.getIssuer() + " with a reason: " + mostRecentBan.getReason());
@@ -179,7 +201,9 @@ public final class AzureUser implements User {
     public void unban(final @NotNull CommandSender issuer) {
         // Overriding previous punishment with a null one.
         this.mostRecentBan = null;
-        // Saving User data to the filesystem.
+        // Updating punishment indexes of the cache.
+        Azure.getInstance().getUserCache().as(AzureUserCache.class).reindexPunishments(this);
+        // Scheduling User data to be saved.
         Azure.getInstance().getUserCache().as(AzureUserCache.class).saveUser(this).thenAccept(this::logSaveInformation);
         // Logging...
         Azure.getInstance().getPunishmentsFileLogger().log("Player " + this.getName() + " (" + this.getUniqueId() + ") has been UNBANNED by " + issuer.getName());
@@ -194,7 +218,9 @@ public final class AzureUser implements User {
                 Interval.now(),
                 (duration != null) ? duration : Interval.of(Long.MAX_VALUE, Unit.MILLISECONDS)
         );
-        // Saving User data to the filesystem.
+        // Updating punishment indexes of the cache.
+        Azure.getInstance().getUserCache().as(AzureUserCache.class).reindexPunishments(this);
+        // Scheduling User data to be saved.
         Azure.getInstance().getUserCache().as(AzureUserCache.class).saveUser(this).thenAccept(this::logSaveInformation);
         // Logging...
         Azure.getInstance().getPunishmentsFileLogger().log("Player " + this.getName() + " (" + this.getUniqueId() + ") has been MUTED (" + (mostRecentMute.isPermanent() == false ? mostRecentMute.getDuration() : "permanent") + ") by " + mostRecentMute.getIssuer() + " with a reason: " + mostRecentMute.getReason());
@@ -206,7 +232,9 @@ public final class AzureUser implements User {
     public void unmute(final @NotNull CommandSender issuer) {
         // Overriding previous punishment with a null one.
         this.mostRecentMute = null;
-        // Saving User data to the filesystem.
+        // Updating punishment indexes of the cache.
+        Azure.getInstance().getUserCache().as(AzureUserCache.class).reindexPunishments(this);
+        // Scheduling User data to be saved.
         Azure.getInstance().getUserCache().as(AzureUserCache.class).saveUser(this).thenAccept(this::logSaveInformation);
         // Logging...
         Azure.getInstance().getPunishmentsFileLogger().log("Player " + this.getName() + " (" + this.getUniqueId() + ") has been UNMUTED by " + issuer.getName());
@@ -21,6 +21,18 @@ import cloud.grabsky.azure.api.user.UserCache;
 import cloud.grabsky.azure.configuration.PluginConfig;
 import cloud.grabsky.azure.configuration.PluginLocale;
 import cloud.grabsky.azure.configuration.adapters.UUIDAdapter;
+import cloud.grabsky.azure.user.geoip.CachingCountryResolver;
+import cloud.grabsky.azure.user.geoip.CountryResolver;
+import cloud.grabsky.azure.user.geoip.LocalCountryResolver;
+import cloud.grabsky.azure.user.geoip.RemoteCountryResolver;
+import cloud.grabsky.azure.user.storage.FileUserStorage;
+import cloud.grabsky.azure.user.storage.JsonUserCodec;
+import cloud.grabsky.azure.user.storage.SegmentedUserStorage;
+import cloud.grabsky.azure.user.storage.UserCodec;
+import cloud.grabsky.azure.user.storage.UserSaveQueue;
+import cloud.grabsky.azure.user.storage.UserStorage;
+import cloud.grabsky.azure.user.storage.UserStorageMigrator;
+import cloud.grabsky.azure.visibility.VisibilityService;
 import cloud.grabsky.bedrock.components.Message;
 import cloud.grabsky.bedrock.util.Interval;
 import cloud.grabsky.bedrock.util.Interval.Unit;
@@ -32,54 +44,126 @@ import com.squareup.moshi.Moshi;
 import io.papermc.paper.connection.PlayerConfigurationConnection;
 import io.papermc.paper.event.connection.PlayerConnectionValidateLoginEvent;
 import net.kyori.adventure.text.Component;
-import net.luckperms.api.LuckPerms;
-import net.luckperms.api.model.group.Group;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URI;
-import java.net.URISyntaxException;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.jetbrains.annotations.Range;
 import org.jetbrains.annotations.Unmodifiable;
 
 import static net.kyori.adventure.text.minimessage.MiniMessage.miniMessage;
-import static okio.Okio.buffer;
-import static okio.Okio.sink;
-import static okio.Okio.source;
 
 public final class AzureUserCache implements UserCache, Listener {
 
     private final Azure plugin;
-    private final File cacheDirectory;
     private final Map<UUID, AzureUser> internalUserMap;
 
+    // Secondary indexes. Kept consistent with the internal map by the index(...) and reindex(...) methods.
+    private final Map<String, UUID> nameIndex = new ConcurrentHashMap<>();
+    private final Map<String, UUID> discordIdIndex = new ConcurrentHashMap<>();
+    private final Set<UUID> bannedUsers = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> mutedUsers = ConcurrentHashMap.newKeySet();
+
+    // Unique ids of all known users, including ones not held in memory.
+    private final Set<UUID> knownUsers = ConcurrentHashMap.newKeySet();
+
     private final JsonAdapter<AzureUser> adapter;
+    private final UserStorage storage;
+    private final UserSaveQueue saveQueue;
+
+    // Resolves country of players. Created once, cannot be changed without a restart.
+    private final CountryResolver countryResolver;
+
+    // Whether only online and recently active users are held in memory. Cannot be changed without a restart.
+    private final boolean isTiered;
+
+    // Time of the most recent access of users who are not online. Used to select users to evict.
+    private final Map<UUID, Long> lastAccess = new ConcurrentHashMap<>();
+
+    // Unique ids of online players. Updated on the main thread and read by the evictor, which cannot access the Bukkit API.
+    private final Set<UUID> onlineUsers = ConcurrentHashMap.newKeySet();
+
+    // Users which are currently being loaded. Ensures that each user is loaded at most once at a time.
+    private final Map<UUID, CompletableFuture<User>> loading = new ConcurrentHashMap<>();
+
+    // Threads responsible for loading users on demand and periodic eviction.
+    private final ExecutorService loader;
+    private final ScheduledExecutorService evictor;
+
+    // Metrics.
+    private final LongAdder lazyLoads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Interval (in seconds) between eviction runs.
+    private static final long EVICTION_INTERVAL = 60L;
 
     public AzureUserCache(final @NotNull Azure plugin) {
         this.plugin = plugin;
-        this.cacheDirectory = new File(plugin.getDataFolder(), "usercache");
-        this.internalUserMap = new HashMap<>();
+        this.isTiered = PluginConfig.USER_CACHE_TIERED_ENABLED;
+        // Accessed from the main thread, async chat threads, login threads, JDA threads and background workers. Reads are lock-free.
+        this.internalUserMap = new ConcurrentHashMap<>();
         // ...
-        this.adapter = new Moshi.Builder()
+        this.adapter = createAdapter();
+        // Creating storage of configured type.
+        this.storage = this.createStorage();
+        // Creating write-behind queue on top of the storage.
+        this.saveQueue = new UserSaveQueue(plugin, storage, PluginConfig.USER_CACHE_SAVE_QUEUE_COALESCE_WINDOW);
+        // Creating country resolver of configured type.
+        this.countryResolver = this.createCountryResolver();
+        // Collecting players which are already online. This is the case when plugin is being reloaded.
+        Bukkit.getOnlinePlayers().forEach(player -> onlineUsers.add(player.getUniqueId()));
+        // Caching users.
+        this.cacheUsers();
+        // Creating threads responsible for loading and evicting users.
+        this.loader = Executors.newFixedThreadPool(2, Thread.ofPlatform().name("Azure-UserLazyLoader-", 0).daemon(true).factory());
+        this.evictor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("Azure-UserEvictor").daemon(true).factory());
+        // Scheduling eviction of users in tiered mode.
+        if (isTiered == true)
+            evictor.scheduleWithFixedDelay(this::evictUsers, EVICTION_INTERVAL, EVICTION_INTERVAL, TimeUnit.SECONDS);
+        // Registering metrics.
+        plugin.getMetricsRegistry().register("user_cache.known_users", knownUsers::size);
+        plugin.getMetricsRegistry().register("user_cache.resident_users", internalUserMap::size);
+        plugin.getMetricsRegistry().register("user_cache.lazy_loads", lazyLoads::sum);
+        plugin.getMetricsRegistry().register("user_cache.evictions", evictions::sum);
+    }
+
+    /**
+     * Creates {@link JsonAdapter} used to convert {@link AzureUser} objects to JSON documents and back.
+     */
+    static @NotNull JsonAdapter<AzureUser> createAdapter() {
+        return new Moshi.Builder()
                 .add(UUID.class, UUIDAdapter.INSTANCE)
                 .add(Component.class, ComponentAdapter.INSTANCE)
                 .add(Interval.class, new JsonAdapter<Interval>() {
@@ -95,76 +179,138 @@ public final class AzureUserCache implements UserCache, Listener {
                     }
 
                 })
-                .build().adapter(AzureUser.class).nullSafe().indent("  ");
-        // Caching users.
-        this.cacheUsers();
+                .build().adapter(AzureUser.class).nullSafe();
     }
 
-    public void cacheUsers() throws IllegalStateException {
-        // Creating cache directory if does not exist.
-        ensureCacheDirectoryExists();
-        // Getting list of the files within the cache directory. Non-recursive.
-        final File[] files = cacheDirectory.listFiles();
-        // ...
-        int totalUsers = 0;
-        int loadedUsers = 0;
-        // Iterating over each file...
-        for (final File file : (files != null) ? files : new File[0]) {
-            // Skipping non-JSON files.
-            if (file.getName().endsWith(".json") == true) {
+    /**
+     * Creates {@link UserStorage} of configured type. Users are migrated from {@link FileUserStorage} if needed.
+     */
+    private @NotNull UserStorage createStorage() throws IllegalStateException {
+        final UserCodec binaryCodec = new BinaryUserCodec();
+        // Files are meant to be human-readable and edited by hand, hence the indentation.
+        final UserCodec fileJsonCodec = new JsonUserCodec(adapter.indent("  "));
+        final UserCodec segmentedJsonCodec = new JsonUserCodec(adapter);
+        // Users are stored inside 'usercache' directory by default.
+        final FileUserStorage fileStorage = new FileUserStorage(
+                plugin,
+                new File(plugin.getDataFolder(), "usercache"),
+                (PluginConfig.USER_CACHE_STORAGE_FILES_CODEC == UserCodec.Type.BINARY) ? binaryCodec : fileJsonCodec,
+                List.of(fileJsonCodec, binaryCodec)
+        );
+        // Returning the storage of configured type.
+        return switch (PluginConfig.USER_CACHE_STORAGE_TYPE) {
+            case FILES -> {
+                final File segmentedDirectory = new File(plugin.getDataFolder(), "userstore");
+                // Migrating users back from 'userstore' directory, in case storage type has been switched from SEGMENTED. Otherwise, these users would not be loaded at all.
+                if (UserStorageMigrator.isReverseRequired(segmentedDirectory) == true) {
+                    try {
+                        final SegmentedUserStorage segmentedStorage = new SegmentedUserStorage(
+                                plugin,
+                                segmentedDirectory,
+                                binaryCodec,
+                                List.of(segmentedJsonCodec, binaryCodec),
+                                PluginConfig.USER_CACHE_STORAGE_SEGMENT_SIZE * 1024L,
+                                PluginConfig.USER_CACHE_STORAGE_COMPACTION_THRESHOLD,
+                                0L // Compaction is not needed, storage is closed right after the migration.
+                        );
+                        // ...
+                        UserStorageMigrator.migrateBack(plugin.getLogger(), segmentedStorage, fileStorage);
+                    } catch (final IOException e) {
+                        throw new IllegalStateException("Could not migrate users from segmented user storage.", e);
+                    }
+                }
+                // ...
+                yield fileStorage;
+            }
+            case SEGMENTED -> {
                 try {
-                    // Increasing number of total users.
-                    totalUsers++;
-                    // Loading the user from the file.
-                    final AzureUser user = this.readUser(file);
-                    // Adding to the cache.
-                    internalUserMap.put(user.getUniqueId(), user);
-                    // Increasing number of loaded users.
-                    loadedUsers++;
-                } catch (final IOException | IllegalStateException e) {
-                    plugin.getLogger().warning("User cannot be loaded. (FILE = " + file.getPath() + ")");
-                    e.printStackTrace();
+                    final SegmentedUserStorage segmentedStorage = new SegmentedUserStorage(
+                            plugin,
+                            new File(plugin.getDataFolder(), "userstore"),
+                            (PluginConfig.USER_CACHE_STORAGE_SEGMENTED_CODEC == UserCodec.Type.JSON) ? segmentedJsonCodec : binaryCodec,
+                            List.of(segmentedJsonCodec, binaryCodec),
+                            PluginConfig.USER_CACHE_STORAGE_SEGMENT_SIZE * 1024L,
+                            PluginConfig.USER_CACHE_STORAGE_COMPACTION_THRESHOLD,
+                            PluginConfig.USER_CACHE_STORAGE_COMPACTION_INTERVAL
+                    );
+                    // Migrating users from 'usercache' directory. This happens only once, as marker file is created afterwards. Migration that failed partway is resumed.
+                    if (UserStorageMigrator.isRequired(fileStorage, segmentedStorage) == true)
+                        UserStorageMigrator.migrate(plugin.getLogger(), fileStorage, segmentedStorage);
+                    // ...
+                    yield segmentedStorage;
+                } catch (final IOException e) {
+                    throw new IllegalStateException("Could not open segmented user storage.", e);
                 }
             }
-        }
-        // Printing "summary" message to the console.
-        plugin.getLogger().info("Successfully loaded " + loadedUsers + " out of " + totalUsers + " user(s) total.");
-    }
-
-    public @NotNull AzureUser readUser(final @NotNull File file) throws IOException, IllegalStateException {
-        // Creating a JsonReader from provided file.
-        final JsonReader reader = JsonReader.of(buffer(source(file)));
-        // Reading the JSON file.
-        final AzureUser user = adapter.fromJson(reader);
-        // Closing the reader.
-        reader.close();
-        // Throwing exception in case User ended up being null. Unlikely to happen, but possible.
-        if (user == null)
-            throw new IllegalArgumentException("Deserialization of " + file.getPath() + " failed: " + null);
-        // Returning the value.
-        return user;
+        };
     }
 
-    public @NotNull CompletableFuture<Boolean> saveUser(final @NotNull User user) throws IllegalStateException {
-        // Creating directory in case it does not exist.
-        ensureCacheDirectoryExists();
-        // ...
-        final File file = new File(cacheDirectory, user.getUniqueId() + ".json");
-        // Returning CompletableFuture which saves the file asynchronously.
-        return CompletableFuture.supplyAsync(() -> {
-            try (final JsonWriter writer = JsonWriter.of(buffer(sink(file)))) {
-                // Writing data to the file.
-                adapter.toJson(writer, (AzureUser) user);
-                // Returning 'true' assuming data was written.
-                return true;
-            } catch (final IOException e) {
-                e.printStackTrace();
-                return false;
-            }
-        }).exceptionally(thr -> {
-            thr.printStackTrace();
-            return false;
+    /**
+     * Creates {@link CountryResolver} of configured type.
+     */
+    private @NotNull CountryResolver createCountryResolver() {
+        return switch (PluginConfig.USER_CACHE_GEOIP_PROVIDER) {
+            case LOCAL -> new LocalCountryResolver(
+                    plugin,
+                    new File(plugin.getDataFolder(), PluginConfig.USER_CACHE_GEOIP_DATABASE_FILE),
+                    (PluginConfig.USER_CACHE_GEOIP_REMOTE_FALLBACK == true) ? this.createRemoteCountryResolver() : null,
+                    PluginConfig.USER_CACHE_GEOIP_DATABASE_RELOAD_INTERVAL
+            );
+            case REMOTE -> this.createRemoteCountryResolver();
+            case NONE -> CountryResolver.NONE;
+        };
+    }
+
+    /**
+     * Creates {@link RemoteCountryResolver}, cached unless disabled in configuration. Local lookups are cheaper than the cache itself and are not cached.
+     */
+    private @NotNull CountryResolver createRemoteCountryResolver() {
+        final CountryResolver resolver = new RemoteCountryResolver(plugin, PluginConfig.USER_CACHE_GEOIP_REMOTE_URL, PluginConfig.USER_CACHE_GEOIP_REMOTE_TIMEOUT, PluginConfig.USER_CACHE_GEOIP_REMOTE_RETRIES);
+        // Returning resolver wrapped in a cache, if enabled.
+        return (PluginConfig.USER_CACHE_GEOIP_REMOTE_CACHE_TTL > 0)
+                ? new CachingCountryResolver(plugin, resolver, new File(new File(plugin.getDataFolder(), "geoip"), "remote_cache.txt"), PluginConfig.USER_CACHE_GEOIP_REMOTE_CACHE_TTL, PluginConfig.USER_CACHE_GEOIP_REMOTE_CACHE_MAX_ENTRIES)
+                : resolver;
+    }
+
+    public void cacheUsers() throws IllegalStateException {
+        storage.loadAll(user -> {
+            knownUsers.add(user.getUniqueId());
+            // Keeping user in memory unless tiered mode is enabled. Banned and muted users are always kept, as they are needed to handle logins and chat. Online players are kept, as they are never loaded again.
+            if (isTiered == false || user.isBanned() == true || user.isMuted() == true || onlineUsers.contains(user.getUniqueId()) == true)
+                this.index(internalUserMap.put(user.getUniqueId(), user), user);
+            // Otherwise, only updating secondary indexes. User will be loaded when requested.
+            else this.index(null, user);
         });
+        // Printing number of users held in memory, if tiered mode is enabled.
+        if (isTiered == true)
+            plugin.getLogger().info("Tiered mode is enabled. " + internalUserMap.size() + " out of " + knownUsers.size() + " user(s) are held in memory.");
+    }
+
+    /**
+     * Marks specified {@link User} as dirty. Data is written in the background, with repeated saves of the same user being coalesced.
+     */
+    public @NotNull CompletableFuture<Boolean> saveUser(final @NotNull User user) {
+        return saveQueue.enqueue((AzureUser) user);
+    }
+
+    /**
+     * Writes all pending changes and closes underlying {@link UserStorage}. Called when plugin is being disabled.
+     */
+    public void close() {
+        // Stopping eviction and loading threads.
+        evictor.shutdownNow();
+        loader.shutdown();
+        // Stopping the country resolver. Pending lookups are abandoned.
+        countryResolver.close();
+        // Writing all dirty users.
+        saveQueue.close();
+        // Closing the storage.
+        try {
+            storage.close();
+        } catch (final IOException e) {
+            plugin.getLogger().severe("An error occurred while closing user storage.");
+            plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
     }
 
     @Override
@@ -178,38 +324,277 @@ public final class AzureUserCache implements UserCache, Listener {
     }
 
     @Override
-    public @NotNull User getUser(final @NotNull Player player) {
-        final UUID uniqueId = player.getUniqueId();
-        // Returning existing user from cache or computing new one, if absent.
-        return internalUserMap.computeIfAbsent(uniqueId, (_) -> {
-            final @Nullable URL skin = player.getPlayerProfile().getTextures().getSkin();
+    public @NotNull @Unmodifiable Collection<UUID> getUserIds() {
+        return Collections.unmodifiableSet(knownUsers);
+    }
+
+    @Override
+    public @NotNull Stream<User> streamUsers() {
+        return knownUsers.stream().map(uniqueId -> {
+            final @Nullable AzureUser user = internalUserMap.get(uniqueId);
+            // Returning user held in memory, if present.
+            if (user != null)
+                return user;
+            // Otherwise, reading user directly from the storage, without putting it in memory.
+            try {
+                return storage.load(uniqueId);
+            } catch (final IOException e) {
+                plugin.getLogger().severe("User " + uniqueId + " could not be loaded.");
+                plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+                return null;
+            }
+        }).filter(Objects::nonNull).map(User.class::cast);
+    }
+
+    @Override
+    public boolean hasUser(final @NotNull UUID uniqueId) {
+        return knownUsers.contains(uniqueId) == true;
+    }
+
+    @Override
+    public @Nullable User getUser(final @NotNull UUID uniqueId) {
+        final @Nullable AzureUser user = internalUserMap.get(uniqueId);
+        // Updating time of the most recent access.
+        if (user != null && isTiered == true)
+            lastAccess.put(uniqueId, System.currentTimeMillis());
+        // Returning user held in memory. Users which are not held in memory must be loaded with loadUser(UUID) instead, as that involves blocking I/O.
+        return user;
+    }
+
+    @Override
+    public @NotNull CompletableFuture<User> loadUser(final @NotNull UUID uniqueId) {
+        final @Nullable AzureUser user = internalUserMap.get(uniqueId);
+        // Returning completed future in case user is held in memory or is not known at all.
+        if (user != null || knownUsers.contains(uniqueId) == false) {
+            // Updating time of the most recent access.
+            if (user != null && isTiered == true)
+                lastAccess.put(uniqueId, System.currentTimeMillis());
             // ...
-            final @Nullable String address = (player.getAddress() != null) ? player.getAddress().getHostString() : null;
-            // Creating instance of AzureUser containing player information.
-            final AzureUser user = new AzureUser(
-                    player.getName(),
-                    uniqueId,
-                    null,
-                    null,
-                    (skin != null) ? encodeTextures(skin) : "",
-                    (address != null) ? address : "N/A",
-                    "N/A", // Country code is fetched asynchronously in the next step.
-                    0, // maxLevel
-                    false,
-                    false,
-                    null,
-                    null
-            );
-            // Saving to the file.
-            CompletableFuture.runAsync(() -> {
-                final String countryCode = fetchCountry(address, 1);
-                // ...
-                if (countryCode != null)
-                    user.setLastCountryCode(countryCode);
-            }).thenCompose(_ -> this.saveUser(user));
-            // Returning the User instance.
-            return user;
+            return CompletableFuture.completedFuture(user);
+        }
+        // Returning existing future in case user is already being loaded.
+        final CompletableFuture<User> future = new CompletableFuture<>();
+        final @Nullable CompletableFuture<User> existing = loading.putIfAbsent(uniqueId, future);
+        // ...
+        if (existing != null)
+            return existing;
+        // Loading the user in the background.
+        loader.execute(() -> {
+            try {
+                final @Nullable AzureUser loadedUser = storage.load(uniqueId);
+                // Completing with null in case user is not stored. This should not happen for a known user.
+                if (loadedUser == null) {
+                    future.complete(null);
+                    return;
+                }
+                // Putting user in memory. In case other instance has been put in the meantime (eg. player has joined), that instance is used instead.
+                final @Nullable AzureUser racedUser = internalUserMap.putIfAbsent(uniqueId, loadedUser);
+                final AzureUser residentUser = (racedUser != null) ? racedUser : loadedUser;
+                // Counting only loads which actually put the user in memory.
+                if (racedUser == null)
+                    lazyLoads.increment();
+                // Updating time of the most recent access.
+                lastAccess.put(uniqueId, System.currentTimeMillis());
+                // Completing the future.
+                future.complete(residentUser);
+            } catch (final IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                loading.remove(uniqueId, future);
+            }
         });
+        // Returning the future.
+        return future;
+    }
+
+    /**
+     * Removes least recently accessed users from memory until number of users held in memory is within the configured limit.
+     * Online, banned and muted users, users accessed within the last eviction interval, as well as users with changes not yet written, are never evicted.
+     */
+    private void evictUsers() {
+        try {
+            final int excess = internalUserMap.size() - PluginConfig.USER_CACHE_TIERED_MAX_RESIDENT_USERS;
+            // Returning in case limit is not exceeded.
+            if (excess <= 0)
+                return;
+            // Selecting least recently accessed users which can be evicted. Recently accessed users are skipped, as they may be in the middle of logging in.
+            final long threshold = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(EVICTION_INTERVAL);
+            final List<AzureUser> candidates = internalUserMap.values().stream()
+                    .filter(user -> onlineUsers.contains(user.getUniqueId()) == false)
+                    .filter(user -> lastAccess.getOrDefault(user.getUniqueId(), 0L) < threshold)
+                    .filter(user -> user.isBanned() == false && user.isMuted() == false)
+                    .filter(user -> saveQueue.isPending(user.getUniqueId()) == false)
+                    .sorted(Comparator.comparingLong((AzureUser user) -> lastAccess.getOrDefault(user.getUniqueId(), 0L)))
+                    .limit(excess)
+                    .toList();
+            // Evicting selected users. Pending changes are checked again, as user could have been modified in the meantime.
+            for (final AzureUser user : candidates) {
+                if (saveQueue.isPending(user.getUniqueId()) == false && internalUserMap.remove(user.getUniqueId(), user) == true) {
+                    lastAccess.remove(user.getUniqueId());
+                    evictions.increment();
+                }
+            }
+        } catch (final RuntimeException e) {
+            plugin.getLogger().severe("An error occurred while evicting users from memory.");
+            plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public @Nullable User getUser(final @NotNull String name) {
+        final @Nullable UUID uniqueId = nameIndex.get(name.toLowerCase(Locale.ROOT));
+        // Returning user associated with specified name, or null if there is none.
+        return (uniqueId != null) ? this.getUser(uniqueId) : null;
+    }
+
+    /**
+     * Returns {@link CompletableFuture} completed with {@link User} associated with specified Discord ID, or {@code null} if there is none.
+     * Users not held in memory are loaded in the background.
+     */
+    public @NotNull CompletableFuture<User> loadFromDiscord(final @Nullable String discordId) {
+        final @Nullable UUID uniqueId = (discordId != null) ? discordIdIndex.get(discordId) : null;
+        // Returning completed future in case there is no user associated with specified Discord ID.
+        return (uniqueId != null) ? this.loadUser(uniqueId) : CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public boolean hasUser(final @NotNull String name) {
+        return nameIndex.containsKey(name.toLowerCase(Locale.ROOT)) == true;
+    }
+
+    @Override
+    public @Nullable User fromDiscord(final @Nullable String discordId) {
+        final @Nullable UUID uniqueId = (discordId != null) ? discordIdIndex.get(discordId) : null;
+        // Returning user associated with specified Discord ID, or null if there is none.
+        return (uniqueId != null) ? this.getUser(uniqueId) : null;
+    }
+
+    @Override
+    public @NotNull @Unmodifiable Collection<User> getBannedUsers() {
+        return this.collectPunished(bannedUsers, User::isBanned);
+    }
+
+    @Override
+    public @NotNull @Unmodifiable Collection<User> getMutedUsers() {
+        return this.collectPunished(mutedUsers, User::isMuted);
+    }
+
+    /**
+     * Returns users from specified {@link Set} which punishment is still active. Users which punishment has expired are removed from the set.
+     */
+    private @NotNull @Unmodifiable Collection<User> collectPunished(final @NotNull Set<UUID> punished, final @NotNull Predicate<User> isActive) {
+        final List<User> users = new ArrayList<>();
+        // Iterating over punished users. Set contains users with a punishment, but it may have already expired.
+        for (final UUID uniqueId : punished) {
+            final @Nullable AzureUser user = internalUserMap.get(uniqueId);
+            // Adding user to the list if punishment is still active, or removing it from the set otherwise.
+            if (user != null && isActive.test(user) == true)
+                users.add(user);
+            else punished.remove(uniqueId);
+        }
+        // Returning unmodifiable copy of the list.
+        return List.copyOf(users);
+    }
+
+    /**
+     * Updates secondary indexes after {@code user} has been put in the cache, replacing {@code previous} user of the same {@link UUID}, if any.
+     */
+    private void index(final @Nullable AzureUser previous, final @NotNull AzureUser user) {
+        final UUID uniqueId = user.getUniqueId();
+        // Removing name entry of the previous instance, if name has changed. Only entry which still points at this user is removed.
+        if (previous != null && previous.getName().equalsIgnoreCase(user.getName()) == false)
+            nameIndex.remove(previous.getName().toLowerCase(Locale.ROOT), uniqueId);
+        // Adding name entry of the current instance.
+        nameIndex.put(user.getName().toLowerCase(Locale.ROOT), uniqueId);
+        // Updating Discord ID index.
+        this.reindexDiscordId(user, (previous != null) ? previous.getDiscordId() : null);
+        // Updating punishment indexes.
+        this.reindexPunishments(user);
+    }
+
+    /**
+     * Updates Discord ID index after Discord ID of specified {@link AzureUser} has been changed.
+     */
+    void reindexDiscordId(final @NotNull AzureUser user, final @Nullable String previousDiscordId) {
+        // Removing previous entry, if Discord ID has changed. Only entry which still points at this user is removed.
+        if (previousDiscordId != null && previousDiscordId.equals(user.getDiscordId()) == false)
+            discordIdIndex.remove(previousDiscordId, user.getUniqueId());
+        // Adding current entry.
+        if (user.getDiscordId() != null)
+            discordIdIndex.put(user.getDiscordId(), user.getUniqueId());
+    }
+
+    /**
+     * Updates punishment indexes after punishments of specified {@link AzureUser} have been changed.
+     */
+    void reindexPunishments(final @NotNull AzureUser user) {
+        // Updating banned users index.
+        if (user.isBanned() == true)
+            bannedUsers.add(user.getUniqueId());
+        else bannedUsers.remove(user.getUniqueId());
+        // Updating muted users index.
+        if (user.isMuted() == true)
+            mutedUsers.add(user.getUniqueId());
+        else mutedUsers.remove(user.getUniqueId());
+    }
+
+    @Override
+    public @NotNull User getUser(final @NotNull Player player) {
+        final UUID uniqueId = player.getUniqueId();
+        // Returning existing user without locking. This is by far the most common path.
+        final @Nullable AzureUser existingUser = internalUserMap.get(uniqueId);
+        // ...
+        if (existingUser != null)
+            return existingUser;
+        // Otherwise, creating new one. Instance created by another thread in the meantime takes precedence.
+        final AzureUser user = this.createUser(player, null);
+        final @Nullable AzureUser racedUser = internalUserMap.putIfAbsent(uniqueId, user);
+        // ...
+        if (racedUser != null)
+            return racedUser;
+        // Updating indexes, resolving country code and saving the user.
+        this.register(player, null, user);
+        // Returning the User instance.
+        return user;
+    }
+
+    /**
+     * Creates {@link AzureUser} containing up-to-date information of specified {@link Player}. Other data is copied from existing instance, if specified.
+     */
+    private @NotNull AzureUser createUser(final @NotNull Player player, final @Nullable AzureUser existingUser) {
+        final @Nullable URL skin = player.getPlayerProfile().getTextures().getSkin();
+        // ...
+        final @Nullable String address = (player.getAddress() != null) ? player.getAddress().getHostString() : null;
+        // Creating instance of AzureUser containing player information.
+        return new AzureUser(
+                player.getName(),
+                player.getUniqueId(),
+                (existingUser != null) ? existingUser.getDisplayName() : null,
+                (existingUser != null) ? existingUser.getDiscordId() : null,
+                (skin != null) ? encodeTextures(skin) : "",
+                (address != null) ? address : "N/A",
+                "N/A", // Country code is fetched asynchronously by the register method.
+                (existingUser != null) ? existingUser.getMaxLevel() : 0,
+                (existingUser != null) ? existingUser.isVanished() : false,
+                (existingUser != null) ? existingUser.isSpying() : false,
+                (existingUser != null) ? (AzurePunishment) existingUser.getMostRecentBan() : null,
+                (existingUser != null) ? (AzurePunishment) existingUser.getMostRecentMute() : null
+        );
+    }
+
+    /**
+     * Updates indexes after specified {@link AzureUser} has been put into the cache, replacing previous instance (if any).
+     * Country code is then resolved and user is saved once, regardless of whether the lookup succeeded.
+     */
+    private void register(final @NotNull Player player, final @Nullable AzureUser previousUser, final @NotNull AzureUser user) {
+        // Updating secondary indexes. Name or Discord ID might have changed since the previous instance was created.
+        knownUsers.add(user.getUniqueId());
+        this.index(previousUser, user);
+        // Resolving country code and saving afterwards.
+        this.fetchCountry(player).thenAccept(countryCode -> {
+            if (countryCode != null)
+                user.setLastCountryCode(countryCode);
+        }).whenComplete((_, _) -> this.saveUser(user));
     }
 
     @SuppressWarnings("UnstableApiUsage")
@@ -220,9 +605,10 @@ public final class AzureUserCache implements UserCache, Listener {
         if (event.getConnection() instanceof PlayerConfigurationConnection connection) {
             final UUID uniqueId = connection.getProfile().getId();
             // ...
-            if (internalUserMap.containsKey(uniqueId) == true) {
-                final User user = internalUserMap.get(uniqueId);
-                // ...
+            // Getting the user with a single lookup. Checking and getting separately could race with user being replaced on join.
+            final @Nullable User user = internalUserMap.get(uniqueId);
+            // ...
+            if (user != null) {
                 if (user.getMostRecentBan() != null && user.getMostRecentBan().isActive() == true) {
                     final Punishment punishment = user.getMostRecentBan();
                     // Preparing the kick message.
@@ -244,39 +630,19 @@ public final class AzureUserCache implements UserCache, Listener {
     @EventHandler
     public void onUserJoin(final @NotNull PlayerJoinEvent event) {
         final Player thisPlayer = event.getPlayer();
-        // Updating cache with up-to-date data...
-        final User thisUser = internalUserMap.compute(thisPlayer.getUniqueId(), (uniqueId, existingUser) -> {
-            final @Nullable URL skin = thisPlayer.getPlayerProfile().getTextures().getSkin();
-            // ...
-            final @Nullable String address = (thisPlayer.getAddress() != null) ? thisPlayer.getAddress().getHostString() : null;
-            // Creating instance of AzureUser containing player information.
-            final AzureUser computeUser = new AzureUser(
-                    thisPlayer.getName(),
-                    uniqueId,
-                    (existingUser != null) ? existingUser.getDisplayName() : null,
-                    (existingUser != null) ? existingUser.getDiscordId() : null,
-                    (skin != null) ? encodeTextures(skin) : "",
-                    (thisPlayer.getAddress() != null) ? thisPlayer.getAddress().getHostString() : "N/A",
-                    "N/A", // Country code is fetched asynchronously in the next step.
-                    (existingUser != null) ? existingUser.getMaxLevel() : 0,
-                    (existingUser != null) ? existingUser.isVanished() : false,
-                    (existingUser != null) ? existingUser.isSpying() : false,
-                    (existingUser != null) ? (AzurePunishment) existingUser.getMostRecentBan() : null,
-                    (existingUser != null) ? (AzurePunishment) existingUser.getMostRecentMute() : null
-            );
-            // Completing...
-            CompletableFuture.runAsync(() -> {
-                final String countryCode = fetchCountry(address, 1);
-                // ...
-                if (countryCode != null)
-                    computeUser.setLastCountryCode(countryCode);
-            }).thenCompose(_ -> this.saveUser(computeUser));
-            // Saving if modified.
-            if (existingUser == null || computeUser.equals(existingUser) == false)
-                this.saveUser(computeUser);
-            // Returning "new" instance, replacing the previous one.
-            return computeUser;
-        });
+        // Marking player as online, so it's never evicted. User has been loaded during pre-login, or when plugin was enabled.
+        onlineUsers.add(thisPlayer.getUniqueId());
+        // Updating cache with up-to-date data. Replacing is retried until no other thread modifies the entry in the meantime, so previous instance is known for sure.
+        @Nullable AzureUser previousUser;
+        AzureUser computeUser;
+        do {
+            previousUser = internalUserMap.get(thisPlayer.getUniqueId());
+            computeUser = this.createUser(thisPlayer, previousUser);
+        } while ((previousUser != null) ? internalUserMap.replace(thisPlayer.getUniqueId(), previousUser, computeUser) == false : internalUserMap.putIfAbsent(thisPlayer.getUniqueId(), computeUser) != null);
+        // Updating indexes, resolving country code and saving the user.
+        this.register(thisPlayer, previousUser, computeUser);
+        // ...
+        final User thisUser = computeUser;
         // Hiding vanished players. This was previously handled inside PlayerListener, until we migrated state storage from PDC to User JSON data.
         // NOTE: Handling that inside PlayerJoinEvent event may result in vanished player being exposed until he is hidden.
         // NOTE: Here and everywhere else (I believe) - vanished players of the same group weight can see each-other.
@@ -284,26 +650,26 @@ public final class AzureUserCache implements UserCache, Listener {
             // Showing BossBar.
             thisPlayer.showBossBar(PluginConfig.VANISH_BOSS_BAR);
         }
-        // Getting instance of LuckPerms to compare group weights later on.
-        final LuckPerms luckperms = plugin.getLuckPerms();
-        // Iterating over list of online players to hide (this) player from them, and potentially (other) players from (this) player.
+        // Getting VisibilityService to compare group weights later on. Weight of (this) player is looked up once, weights of other players come from the snapshot.
+        final VisibilityService visibility = plugin.getVisibilityService();
+        final int playerWeight = visibility.getWeight(thisPlayer);
+        // Iterating over list of online players to hide (this) player from them, and potentially (other) players from (this) player. Hiding is applied immediately, before player info is sent to anyone.
         Bukkit.getOnlinePlayers().forEach(otherPlayer -> {
             if (thisPlayer != otherPlayer) {
-                final @Nullable Group playerGroup = luckperms.getGroupManager().getGroup(luckperms.getPlayerAdapter(Player.class).getUser(thisPlayer).getPrimaryGroup());
-                final @Nullable Group otherGroup = luckperms.getGroupManager().getGroup(luckperms.getPlayerAdapter(Player.class).getUser(otherPlayer).getPrimaryGroup());
+                final int otherWeight = visibility.getWeight(otherPlayer);
                 // Getting User object of the (other) player.
                 final User otherUser = this.getUser(otherPlayer);
                 // Hiding (other) player from (this) player, if feasible.
                 if (otherUser.isVanished() == true) {
                     // Comparing group weights.
-                    if (playerGroup != null && otherGroup != null && otherGroup.getWeight().orElse(0) > playerGroup.getWeight().orElse(0)) // Same check as below but inverted.
-                        thisPlayer.hidePlayer(plugin, otherPlayer);
+                    if (VisibilityService.outranks(otherWeight, playerWeight) == true) // Same check as below but inverted.
+                        visibility.getReconciler().hide(thisPlayer, otherPlayer);
                 }
                 // Hiding (this) player from (other) player, if feasible.
                 if (thisUser.isVanished() == true) {
                     // Comparing group weights.
-                    if (playerGroup != null && otherGroup != null && playerGroup.getWeight().orElse(0) > otherGroup.getWeight().orElse(0))
-                        otherPlayer.hidePlayer(plugin, thisPlayer);
+                    if (VisibilityService.outranks(playerWeight, otherWeight) == true)
+                        visibility.getReconciler().hide(otherPlayer, thisPlayer);
                 }
             }
         });
@@ -312,22 +678,32 @@ public final class AzureUserCache implements UserCache, Listener {
             thisPlayer.displayName(miniMessage().deserialize(thisUser.getDisplayName()));
     }
 
-    /**
-     * Ensures that cache directory exists. In case file is not a directory - it gets deleted and a directory is created in its place.
-     */
-    private void ensureCacheDirectoryExists() throws IllegalStateException {
-        // Creating directory in case it does not exist.
-        if (cacheDirectory.exists() == false)
-            cacheDirectory.mkdirs();
-        // Deleting and re-creating in case file is not a directory.
-        if (cacheDirectory.isDirectory() == false) {
-            if (cacheDirectory.delete() == false)
-                throw new IllegalStateException("File " + cacheDirectory.getPath() + " is not a directory and could not be deleted. Please delete or rename it manually.");
-            // Calling (self) after deleting non-directory file. This should not lead to infinite recursion.
-            ensureCacheDirectoryExists();
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onUserPreLogin(final @NotNull AsyncPlayerPreLoginEvent event) {
+        // Loading user in advance, on the login thread, so it's already held in memory when player joins. Blocking is fine here, as this event is called asynchronously.
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED && isTiered == true) {
+            try {
+                this.loadUser(event.getUniqueId()).join();
+            } catch (final CompletionException e) {
+                plugin.getLogger().severe("User " + event.getUniqueId() + " could not be loaded. Disallowing login, as their data would be overwritten otherwise.");
+                plugin.getLogger().severe(" (1) " + e.getCause().getClass().getSimpleName() + ": " + e.getCause().getMessage());
+                // Disallowing login.
+                event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER, PluginLocale.USER_LOAD_FAILURE_DISCONNECT);
+            }
         }
     }
 
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onUserQuit(final @NotNull PlayerQuitEvent event) {
+        // Writing pending changes of the player without waiting for the coalescing window to pass.
+        saveQueue.flush(event.getPlayer().getUniqueId());
+        // Marking player as offline. User becomes a candidate for eviction from now on.
+        onlineUsers.remove(event.getPlayer().getUniqueId());
+        // Updating time of the most recent access.
+        if (isTiered == true)
+            lastAccess.put(event.getPlayer().getUniqueId(), System.currentTimeMillis());
+    }
+
     /**
      * Returns Base64-encoded {@link String} representing textures from specified {@link URL}.
      */
@@ -345,37 +721,17 @@ public final class AzureUserCache implements UserCache, Listener {
         );
     }
 
-    private static final String API_URL = "https://get.geojs.io/v1/ip/country/";
-
-    private @Nullable String fetchCountry(final @Nullable String address, @Range(from = 0L, to = 5L) int maxRetries) {
-        if (address == null)
-            return null;
-        // Adding one as to
-        maxRetries = maxRetries + 1;
-        // ...
-        try {
-            final URL uri = new URI(API_URL + address).toURL();
-            // ...
-            while (maxRetries != 0) {
-                // Sending request to an API.
-                final BufferedReader reader = new BufferedReader(new InputStreamReader(uri.openStream()));
-                if (reader.ready()) {
-                    // Getting country name.
-                    final String country = reader.readLine();
-                    // Closing reader.
-                    reader.close();
-                    // Returning fetched country name or null.
-                    return country.equals("nil") == false ? country : null;
-                }
-                maxRetries--;
-            }
-        } catch (final URISyntaxException e) {
-            plugin.getLogger().severe("Malformed URI = " + API_URL + "[_REDACTED_ADDRESS_]");
-        } catch (final IOException e) {
-            plugin.getLogger().severe("An error occurred while trying to send request to '" + API_URL + "[_REDACTED_ADDRESS_]'... retrying...");
-        }
+    /**
+     * Returns {@link CompletableFuture} completed with country code of specified {@link Player}, or {@code null} if it cannot be resolved.
+     * Lookup is performed by the configured {@link CountryResolver} and never blocks the calling thread.
+     */
+    private @NotNull CompletableFuture<String> fetchCountry(final @NotNull Player player) {
+        final @Nullable InetSocketAddress address = player.getAddress();
+        // Returning null in case address is not known.
+        if (address == null || address.getAddress() == null)
+            return CompletableFuture.completedFuture(null);
         // ...
-        return null;
+        return countryResolver.resolve(address.getAddress());
     }
 
 }
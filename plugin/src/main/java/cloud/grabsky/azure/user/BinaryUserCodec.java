@@ -0,0 +1,339 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user;
+
+import cloud.grabsky.azure.api.Punishment;
+import cloud.grabsky.azure.user.storage.UserCodec;
+import cloud.grabsky.bedrock.util.Interval;
+import cloud.grabsky.bedrock.util.Interval.Unit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link UserCodec} implementation which encodes users in a compact, versioned binary format.
+ * <ul>
+ *     <li>Numbers, including timestamps and durations, are stored as unsigned variable-length integers.</li>
+ *     <li>Country codes are stored as an index in a fixed dictionary of ISO 3166-1 alpha-2 codes.</li>
+ *     <li>Textures are stored as a hash of the skin, instead of a Base64-encoded JSON document. Document is re-created when decoding.</li>
+ *     <li>Discord IDs are stored as numbers, unless they cannot be converted back to identical string.</li>
+ * </ul>
+ * <pre>
+ * USER:       [byte magic] [byte version] [long uuid_msb] [long uuid_lsb] [varint flags] [string name]
+ *             [string display_name]? [varlong discord_id | string discord_id]? [bytes texture_hash | string textures]?
+ *             [string last_address] [varint country_index] [string country_code]? [varint max_level]
+ *             [punishment ban]? [punishment mute]?
+ * PUNISHMENT: [string reason] [string issuer] [varlong start_date] [varlong duration + 1 | 0 when permanent]
+ * STRING:     [varint length] [byte[] utf8]
+ * </pre>
+ * Both the dictionary and the format can only be extended. Changes to existing parts of the format must come with a new {@link #VERSION}.
+ */
+public final class BinaryUserCodec implements UserCodec {
+
+    // First byte of each payload. Never a valid first byte of a JSON document, so both formats can be told apart.
+    private static final byte MAGIC = (byte) 0xAB;
+    private static final byte VERSION = 1;
+
+    private static final int FLAG_DISPLAY_NAME = 1;
+    private static final int FLAG_DISCORD_ID_NUMERIC = 1 << 1;
+    private static final int FLAG_DISCORD_ID_STRING = 1 << 2;
+    private static final int FLAG_TEXTURES_HASH = 1 << 3;
+    private static final int FLAG_TEXTURES_HTTPS = 1 << 4;
+    private static final int FLAG_TEXTURES_RAW = 1 << 5;
+    private static final int FLAG_VANISHED = 1 << 6;
+    private static final int FLAG_SPYING = 1 << 7;
+    private static final int FLAG_BAN = 1 << 8;
+    private static final int FLAG_MUTE = 1 << 9;
+
+    private static final String TEXTURES_HTTP_PREFIX = "http://textures.minecraft.net/texture/";
+    private static final String TEXTURES_HTTPS_PREFIX = "https://textures.minecraft.net/texture/";
+
+    // Dictionary of ISO 3166-1 alpha-2 country codes. Index 0 is reserved for codes stored as plain strings. New codes must be appended at the end.
+    private static final String[] COUNTRY_CODES = (
+            "- AD AE AF AG AI AL AM AO AQ AR AS AT AU AW AX AZ BA BB BD BE BF BG BH BI BJ BL BM BN BO BQ BR BS BT BV BW BY BZ " +
+            "CA CC CD CF CG CH CI CK CL CM CN CO CR CU CV CW CX CY CZ DE DJ DK DM DO DZ EC EE EG EH ER ES ET FI FJ FK FM FO FR " +
+            "GA GB GD GE GF GG GH GI GL GM GN GP GQ GR GS GT GU GW GY HK HM HN HR HT HU ID IE IL IM IN IO IQ IR IS IT JE JM JO " +
+            "JP KE KG KH KI KM KN KP KR KW KY KZ LA LB LC LI LK LR LS LT LU LV LY MA MC MD ME MF MG MH MK ML MM MN MO MP MQ MR " +
+            "MS MT MU MV MW MX MY MZ NA NC NE NF NG NI NL NO NP NR NU NZ OM PA PE PF PG PH PK PL PM PN PR PS PT PW PY QA RE RO " +
+            "RS RU RW SA SB SC SD SE SG SH SI SJ SK SL SM SN SO SR SS ST SV SX SY SZ TC TD TF TG TH TJ TK TL TM TN TO TR TT TV " +
+            "TW TZ UA UG UM US UY UZ VA VC VE VG VI VN VU WF WS YE YT ZA ZM ZW XK"
+    ).split(" ");
+
+    private static final Map<String, Integer> COUNTRY_CODE_INDEXES = new HashMap<>();
+
+    static {
+        for (int i = 1; i < COUNTRY_CODES.length; i++)
+            COUNTRY_CODE_INDEXES.put(COUNTRY_CODES[i], i);
+    }
+
+    @Override
+    public @NotNull String getFileExtension() {
+        return ".bin";
+    }
+
+    @Override
+    public boolean accepts(final byte @NotNull [] payload) {
+        return payload.length > 0 && payload[0] == MAGIC;
+    }
+
+    @Override
+    public byte @NotNull [] encode(final @NotNull AzureUser user) throws IOException {
+        final Output output = new Output();
+        // Writing the header.
+        output.write(MAGIC);
+        output.write(VERSION);
+        output.writeLong(user.getUniqueId().getMostSignificantBits());
+        output.writeLong(user.getUniqueId().getLeastSignificantBits());
+        // Taking a snapshot of mutable fields, so flags always match the values written.
+        final @Nullable String displayName = user.getDisplayName();
+        final @Nullable String discordId = user.getDiscordId();
+        final @Nullable Punishment ban = user.getMostRecentBan();
+        final @Nullable Punishment mute = user.getMostRecentMute();
+        // Reducing textures to the hash of the skin, if that can be done without losing any information.
+        final @Nullable String texturesUrl = extractTexturesUrl(user.getTextures());
+        final @Nullable String texturesPrefix = (texturesUrl == null) ? null : texturesUrl.startsWith(TEXTURES_HTTP_PREFIX) ? TEXTURES_HTTP_PREFIX : texturesUrl.startsWith(TEXTURES_HTTPS_PREFIX) ? TEXTURES_HTTPS_PREFIX : null;
+        final byte @Nullable [] texturesHash = (texturesPrefix != null) ? parseHash(texturesUrl.substring(texturesPrefix.length())) : null;
+        final boolean isTexturesHash = texturesHash != null && encodeTextures(texturesPrefix, texturesHash).equals(user.getTextures()) == true;
+        // Discord IDs are snowflakes and can usually be stored as numbers.
+        final long numericDiscordId = (discordId != null) ? parseSnowflake(discordId) : -1L;
+        // Computing flags.
+        int flags = 0;
+        if (displayName != null) flags |= FLAG_DISPLAY_NAME;
+        if (discordId != null) flags |= (numericDiscordId != -1L) ? FLAG_DISCORD_ID_NUMERIC : FLAG_DISCORD_ID_STRING;
+        if (isTexturesHash == true) flags |= (TEXTURES_HTTPS_PREFIX.equals(texturesPrefix) == true) ? FLAG_TEXTURES_HASH | FLAG_TEXTURES_HTTPS : FLAG_TEXTURES_HASH;
+        else if (user.getTextures().isEmpty() == false) flags |= FLAG_TEXTURES_RAW;
+        if (user.isVanished() == true) flags |= FLAG_VANISHED;
+        if (user.isSpying() == true) flags |= FLAG_SPYING;
+        if (ban != null) flags |= FLAG_BAN;
+        if (mute != null) flags |= FLAG_MUTE;
+        // Writing the body.
+        output.writeVarLong(flags);
+        output.writeString(user.getName());
+        if (displayName != null)
+            output.writeString(displayName);
+        if (discordId != null) {
+            if (numericDiscordId != -1L)
+                output.writeVarLong(numericDiscordId);
+            else output.writeString(discordId);
+        }
+        if (isTexturesHash == true)
+            output.writeByteArray(texturesHash);
+        else if (user.getTextures().isEmpty() == false)
+            output.writeString(user.getTextures());
+        output.writeString(user.getLastAddress());
+        // Writing country code. Codes outside of the dictionary are written as plain strings.
+        final int countryIndex = COUNTRY_CODE_INDEXES.getOrDefault(user.getLastCountryCode(), 0);
+        output.writeVarLong(countryIndex);
+        if (countryIndex == 0)
+            output.writeString(user.getLastCountryCode());
+        output.writeVarLong(Math.max(0, user.getMaxLevel()));
+        // Writing punishments.
+        if (ban != null)
+            writePunishment(output, ban);
+        if (mute != null)
+            writePunishment(output, mute);
+        // Returning the bytes.
+        return output.toByteArray();
+    }
+
+    @Override
+    public @NotNull AzureUser decode(final byte @NotNull [] payload) throws IOException {
+        final ByteBuffer input = ByteBuffer.wrap(payload);
+        // Reading and verifying the header.
+        try {
+            if (input.get() != MAGIC)
+                throw new IOException("Payload has not been encoded with " + BinaryUserCodec.class.getSimpleName() + ".");
+            // Only one version exists at the moment. Older versions should be handled here once format changes.
+            final byte version = input.get();
+            if (version != VERSION)
+                throw new IOException("Unsupported version: " + version);
+            // ...
+            final UUID uniqueId = new UUID(input.getLong(), input.getLong());
+            final int flags = (int) readVarLong(input);
+            final String name = readString(input);
+            final @Nullable String displayName = ((flags & FLAG_DISPLAY_NAME) != 0) ? readString(input) : null;
+            final @Nullable String discordId = ((flags & FLAG_DISCORD_ID_NUMERIC) != 0) ? Long.toString(readVarLong(input)) : ((flags & FLAG_DISCORD_ID_STRING) != 0) ? readString(input) : null;
+            final String textures = ((flags & FLAG_TEXTURES_HASH) != 0) ? encodeTextures(((flags & FLAG_TEXTURES_HTTPS) != 0) ? TEXTURES_HTTPS_PREFIX : TEXTURES_HTTP_PREFIX, readBytes(input)) : ((flags & FLAG_TEXTURES_RAW) != 0) ? readString(input) : "";
+            final String lastAddress = readString(input);
+            final int countryIndex = (int) readVarLong(input);
+            // Throwing exception in case index is outside of the dictionary. This means payload has been written by a newer version of the plugin.
+            if (countryIndex < 0 || countryIndex >= COUNTRY_CODES.length)
+                throw new IOException("Unknown country code index: " + countryIndex);
+            // ...
+            final String lastCountryCode = (countryIndex == 0) ? readString(input) : COUNTRY_CODES[countryIndex];
+            final int maxLevel = (int) readVarLong(input);
+            final @Nullable AzurePunishment ban = ((flags & FLAG_BAN) != 0) ? readPunishment(input) : null;
+            final @Nullable AzurePunishment mute = ((flags & FLAG_MUTE) != 0) ? readPunishment(input) : null;
+            // Creating and returning the user.
+            return new AzureUser(name, uniqueId, displayName, discordId, textures, lastAddress, lastCountryCode, maxLevel, (flags & FLAG_VANISHED) != 0, (flags & FLAG_SPYING) != 0, ban, mute);
+        } catch (final BufferUnderflowException e) {
+            throw new IOException("Payload is truncated.", e);
+        }
+    }
+
+    private static void writePunishment(final @NotNull Output output, final @NotNull Punishment punishment) {
+        output.writeString(punishment.getReason());
+        output.writeString(punishment.getIssuer());
+        output.writeVarLong((long) punishment.getStartDate().as(Unit.MILLISECONDS));
+        // Permanent punishments are written as zero. Everything else is shifted by one.
+        output.writeVarLong((punishment.isPermanent() == true) ? 0L : (long) punishment.getDuration().as(Unit.MILLISECONDS) + 1L);
+    }
+
+    private static @NotNull AzurePunishment readPunishment(final @NotNull ByteBuffer input) throws IOException {
+        final String reason = readString(input);
+        final String issuer = readString(input);
+        final long startDate = readVarLong(input);
+        final long duration = readVarLong(input);
+        // Creating and returning the punishment.
+        return new AzurePunishment(reason, issuer, Interval.of(startDate, Unit.MILLISECONDS), Interval.of((duration == 0L) ? Long.MAX_VALUE : duration - 1L, Unit.MILLISECONDS));
+    }
+
+    /**
+     * Returns skin URL contained within specified Base64-encoded textures, or {@code null} if it cannot be found.
+     */
+    private static @Nullable String extractTexturesUrl(final @NotNull String textures) {
+        if (textures.isEmpty() == true)
+            return null;
+        // Decoding the document.
+        try {
+            final String document = new String(Base64.getDecoder().decode(textures), StandardCharsets.UTF_8);
+            // Looking for the URL. Document is verified to be identical to the re-encoded one later, so simple search is enough here.
+            final int start = document.indexOf("\"url\": \"");
+            final int end = (start != -1) ? document.indexOf('"', start + 8) : -1;
+            // ...
+            return (end != -1) ? document.substring(start + 8, end) : null;
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns textures of the skin identified by specified hash, in the same form as {@link AzureUserCache#encodeTextures}.
+     */
+    private static @NotNull String encodeTextures(final @NotNull String prefix, final byte @NotNull [] hash) throws IOException {
+        try {
+            return AzureUserCache.encodeTextures(URI.create(prefix + HexFormat.of().formatHex(hash)).toURL());
+        } catch (final MalformedURLException | IllegalArgumentException e) {
+            throw new IOException("Could not re-create textures.", e);
+        }
+    }
+
+    /**
+     * Returns bytes of specified lowercase hexadecimal hash, or {@code null} if it cannot be converted back to identical string.
+     */
+    private static byte @Nullable [] parseHash(final @NotNull String hash) {
+        if (hash.isEmpty() == true || hash.length() % 2 != 0)
+            return null;
+        // Accepting lowercase characters only, otherwise case would be lost.
+        for (int i = 0; i < hash.length(); i++) {
+            final char ch = hash.charAt(i);
+            // ...
+            if ((ch >= '0' && ch <= '9') == false && (ch >= 'a' && ch <= 'f') == false)
+                return null;
+        }
+        // ...
+        return HexFormat.of().parseHex(hash);
+    }
+
+    /**
+     * Returns specified Discord ID as a number, or {@code -1} if it cannot be converted back to identical string.
+     */
+    private static long parseSnowflake(final @NotNull String id) {
+        try {
+            final long value = Long.parseLong(id);
+            // Rejecting negative values and values with leading zeroes or sign.
+            return (value >= 0L && Long.toString(value).equals(id) == true) ? value : -1L;
+        } catch (final NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private static long readVarLong(final @NotNull ByteBuffer input) throws IOException {
+        long value = 0L;
+        // Reading groups of 7 bits, least significant first.
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = input.get();
+            value |= (long) (b & 0x7F) << shift;
+            // ...
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Variable-length integer is too long.");
+    }
+
+    private static byte @NotNull [] readBytes(final @NotNull ByteBuffer input) throws IOException {
+        final long length = readVarLong(input);
+        // Throwing exception in case length exceeds the remaining payload.
+        if (length < 0 || length > input.remaining())
+            throw new IOException("Invalid length: " + length);
+        // ...
+        final byte[] bytes = new byte[(int) length];
+        input.get(bytes);
+        // ...
+        return bytes;
+    }
+
+    private static @NotNull String readString(final @NotNull ByteBuffer input) throws IOException {
+        return new String(readBytes(input), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * {@link ByteArrayOutputStream} with helper methods to write primitives in the format used by {@link BinaryUserCodec}.
+     */
+    private static final class Output extends ByteArrayOutputStream {
+
+        public Output() {
+            super(256);
+        }
+
+        public void writeLong(final long value) {
+            for (int shift = 56; shift >= 0; shift -= 8)
+                this.write((int) (value >>> shift));
+        }
+
+        public void writeVarLong(long value) {
+            // Writing groups of 7 bits, least significant first. Highest bit indicates whether more groups follow.
+            while ((value & ~0x7FL) != 0L) {
+                this.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            this.write((int) value);
+        }
+
+        public void writeByteArray(final byte @NotNull [] bytes) {
+            this.writeVarLong(bytes.length);
+            this.write(bytes, 0, bytes.length);
+        }
+
+        public void writeString(final @NotNull String value) {
+            this.writeByteArray(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user.geoip;
+
+import cloud.grabsky.azure.Azure;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link CountryResolver} which caches results of another {@link CountryResolver} for a limited amount of time.
+ * <p>
+ * Concurrent lookups of the same address are coalesced into a single lookup of the underlying resolver.
+ * Cache is bounded, with least recently used entries being removed first, and persisted to a file when resolver is closed.
+ * Addresses which could not be resolved are not cached, as that is usually caused by a temporary failure.
+ */
+public final class CachingCountryResolver implements CountryResolver {
+
+    private final Azure plugin;
+    private final CountryResolver resolver;
+    private final File file;
+    private final long ttl;
+    private final int maxEntries;
+
+    // Cached entries, in access order. Guarded by (cache).
+    private final LinkedHashMap<String, Entry> cache;
+
+    // Lookups which are currently in progress. Ensures that each address is looked up at most once at a time.
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public CachingCountryResolver(final @NotNull Azure plugin, final @NotNull CountryResolver resolver, final @NotNull File file, final long ttl, final int maxEntries) {
+        this.plugin = plugin;
+        this.resolver = resolver;
+        this.file = file;
+        this.ttl = ttl * 1000L;
+        this.maxEntries = Math.max(maxEntries, 1);
+        // Creating the cache. Eldest entries are removed once size exceeds the limit.
+        this.cache = new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(final @NotNull Map.Entry<String, Entry> eldest) {
+                return this.size() > CachingCountryResolver.this.maxEntries;
+            }
+        };
+        // Loading entries persisted during previous run.
+        this.load();
+        // Registering metrics.
+        plugin.getMetricsRegistry().register("geoip.cache.size", () -> { synchronized (cache) { return cache.size(); } });
+        plugin.getMetricsRegistry().register("geoip.cache.hits", hits::sum);
+        plugin.getMetricsRegistry().register("geoip.cache.misses", misses::sum);
+        plugin.getMetricsRegistry().register("geoip.cache.coalesced", coalesced::sum);
+        plugin.getMetricsRegistry().register("geoip.cache.hit_ratio", () -> {
+            final long hits = this.hits.sum() + this.coalesced.sum();
+            final long total = hits + this.misses.sum();
+            // ...
+            return (total != 0) ? String.format("%.2f", hits / (double) total) : "0.00";
+        });
+    }
+
+    @Override
+    public @NotNull CompletableFuture<String> resolve(final @NotNull InetAddress address) {
+        final String key = address.getHostAddress();
+        // Returning cached entry, if present and not expired.
+        synchronized (cache) {
+            final @Nullable Entry entry = cache.get(key);
+            // ...
+            if (entry != null) {
+                if (entry.expiresAt() > System.currentTimeMillis()) {
+                    hits.increment();
+                    return CompletableFuture.completedFuture(entry.country());
+                }
+                // Removing expired entry.
+                cache.remove(key);
+            }
+        }
+        // Joining lookup of the same address which is already in progress, or starting a new one.
+        final CompletableFuture<String> created = new CompletableFuture<>();
+        final @Nullable CompletableFuture<String> existing = inFlight.putIfAbsent(key, created);
+        // ...
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+        // Increasing number of misses.
+        misses.increment();
+        // Looking the address up using underlying resolver.
+        resolver.resolve(address).whenComplete((country, _) -> {
+            // Caching the result, unless address could not be resolved.
+            if (country != null) synchronized (cache) {
+                cache.put(key, new Entry(country, System.currentTimeMillis() + ttl));
+            }
+            // Removing the lookup before completing it, so callers arriving later hit the cache instead.
+            inFlight.remove(key);
+            created.complete(country);
+        });
+        // ...
+        return created;
+    }
+
+    /**
+     * Loads persisted entries from the file. Expired entries are skipped.
+     */
+    private void load() {
+        if (file.exists() == false)
+            return;
+        // ...
+        final long now = System.currentTimeMillis();
+        // Reading the file line by line. Each line contains address, country code and expiration time.
+        try (final BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            // ...
+            synchronized (cache) {
+                while ((line = reader.readLine()) != null) {
+                    final String[] columns = line.split(" ");
+                    // Skipping malformed and expired entries.
+                    if (columns.length != 3)
+                        continue;
+                    // ...
+                    try {
+                        final long expiresAt = Long.parseLong(columns[2]);
+                        // ...
+                        if (expiresAt > now)
+                            cache.put(columns[0], new Entry(columns[1], Math.min(expiresAt, now + ttl)));
+                    } catch (final NumberFormatException _) {
+                        // Skipping malformed entry.
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            plugin.getLogger().severe("An error occurred while loading cached GeoIP entries from " + file.getPath());
+            plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes non-expired entries to the file. File is replaced atomically.
+     */
+    private void save() {
+        final long now = System.currentTimeMillis();
+        // Taking a snapshot of the cache, from least to most recently used. Order is preserved when loading.
+        final List<String> lines = new ArrayList<>();
+        // ...
+        synchronized (cache) {
+            cache.forEach((address, entry) -> {
+                if (entry.expiresAt() > now)
+                    lines.add(address + " " + entry.country() + " " + entry.expiresAt());
+            });
+        }
+        // Writing to a temporary file and replacing the previous one.
+        try {
+            final File parent = file.getAbsoluteFile().getParentFile();
+            // Creating parent directory in case it does not exist.
+            if (parent.exists() == false && parent.mkdirs() == false)
+                throw new IOException("Could not create directory " + parent.getPath());
+            // ...
+            final File temporary = new File(parent, file.getName() + ".tmp");
+            // ...
+            try (final BufferedWriter writer = Files.newBufferedWriter(temporary.toPath(), StandardCharsets.UTF_8)) {
+                for (final String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            plugin.getLogger().severe("An error occurred while saving cached GeoIP entries to " + file.getPath());
+            plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        resolver.close();
+        // Persisting the cache, so it survives a restart.
+        this.save();
+        // Unregistering metrics.
+        plugin.getMetricsRegistry().unregister("geoip.cache.");
+    }
+
+    private record Entry(@NotNull String country, long expiresAt) { /* DATA */ }
+
+}
@@ -0,0 +1,283 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user.geoip;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Immutable, in-memory database of IP address ranges and countries they belong to.
+ * <p>
+ * Ranges are kept in sorted primitive arrays, one set for IPv4 and one for IPv6, and looked up with a binary search.
+ * Countries are stored as an index in a table of distinct country codes, which usually contains no more than 250 entries.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class CountryDatabase {
+
+    private static final BigInteger IPV4_MAX = BigInteger.valueOf(0xFFFFFFFFL);
+    private static final BigInteger IPV6_MAX = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.ONE);
+
+    // Distinct country codes. Referenced by their index.
+    private final String[] countries;
+
+    // IPv4 ranges, sorted by first address. Addresses are unsigned.
+    private final int[] ipv4Starts;
+    private final int[] ipv4Ends;
+    private final short[] ipv4Countries;
+
+    // IPv6 ranges, sorted by first address. Each address is split into two unsigned halves.
+    private final long[] ipv6StartsHigh;
+    private final long[] ipv6StartsLow;
+    private final long[] ipv6EndsHigh;
+    private final long[] ipv6EndsLow;
+    private final short[] ipv6Countries;
+
+    /**
+     * Returns number of IPv4 ranges in this {@link CountryDatabase}.
+     */
+    public int getIPv4Ranges() {
+        return ipv4Starts.length;
+    }
+
+    /**
+     * Returns number of IPv6 ranges in this {@link CountryDatabase}.
+     */
+    public int getIPv6Ranges() {
+        return ipv6StartsHigh.length;
+    }
+
+    /**
+     * Returns country code of specified {@link InetAddress}, or {@code null} if it is not within any of the ranges.
+     */
+    public @Nullable String lookup(final @NotNull InetAddress address) {
+        final ByteBuffer bytes = ByteBuffer.wrap(address.getAddress());
+        // Looking up IPv4 addresses. IPv4-mapped IPv6 addresses are already converted to Inet4Address by the JDK.
+        if (address instanceof Inet4Address) {
+            final int value = bytes.getInt();
+            // Finding the last range which starts before or at the address.
+            int low = 0, high = ipv4Starts.length - 1, found = -1;
+            while (low <= high) {
+                final int middle = (low + high) >>> 1;
+                // ...
+                if (Integer.compareUnsigned(ipv4Starts[middle], value) <= 0) {
+                    found = middle;
+                    low = middle + 1;
+                } else high = middle - 1;
+            }
+            // Returning country of the range, if address is within it.
+            return (found != -1 && Integer.compareUnsigned(value, ipv4Ends[found]) <= 0) ? countries[ipv4Countries[found]] : null;
+        }
+        // Looking up IPv6 addresses.
+        final long valueHigh = bytes.getLong();
+        final long valueLow = bytes.getLong();
+        // Finding the last range which starts before or at the address.
+        int low = 0, high = ipv6StartsHigh.length - 1, found = -1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            // ...
+            if (compare(ipv6StartsHigh[middle], ipv6StartsLow[middle], valueHigh, valueLow) <= 0) {
+                found = middle;
+                low = middle + 1;
+            } else high = middle - 1;
+        }
+        // Returning country of the range, if address is within it.
+        return (found != -1 && compare(valueHigh, valueLow, ipv6EndsHigh[found], ipv6EndsLow[found]) <= 0) ? countries[ipv6Countries[found]] : null;
+    }
+
+    /**
+     * Loads {@link CountryDatabase} from specified CSV {@link File}.
+     * <p>
+     * Each line is expected to contain first address of the range, last address of the range and the country code, separated by commas.
+     * Addresses can be specified either as literals or decimal numbers. Additional columns, quotes, empty lines and lines starting with {@code #} are ignored.
+     * This covers most of the freely available country databases, such as DB-IP Lite or IP2Location LITE.
+     */
+    public static @NotNull CountryDatabase load(final @NotNull File file) throws IOException {
+        final Map<String, Short> countryIndexes = new HashMap<>();
+        final Builder ipv4 = new Builder();
+        final Builder ipv6 = new Builder();
+        // Reading the file line by line.
+        try (final BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            // ...
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                // Skipping empty lines and comments.
+                if (line.isBlank() == true || line.startsWith("#") == true)
+                    continue;
+                // ...
+                final String[] columns = line.split(",", 4);
+                // Throwing exception in case line is malformed.
+                if (columns.length < 3)
+                    throw new IOException("Malformed line " + lineNumber + " of " + file.getPath());
+                // ...
+                final String country = unquote(columns[2]).toUpperCase();
+                // Skipping ranges which do not belong to any country.
+                if (country.length() != 2 || country.equals("ZZ") == true)
+                    continue;
+                // ...
+                try {
+                    final BigInteger start = parseAddress(unquote(columns[0]));
+                    final BigInteger end = parseAddress(unquote(columns[1]));
+                    // Skipping header line, if present. Otherwise failing on ranges which are reversed or out of bounds.
+                    if (start == null || end == null) {
+                        if (lineNumber == 1)
+                            continue;
+                        throw new IOException("Malformed line " + lineNumber + " of " + file.getPath());
+                    }
+                    if (start.compareTo(end) > 0 || end.compareTo(IPV6_MAX) > 0)
+                        throw new IOException("Invalid range on line " + lineNumber + " of " + file.getPath());
+                    // ...
+                    final short countryIndex = countryIndexes.computeIfAbsent(country, (_) -> (short) countryIndexes.size());
+                    // Adding IPv4 ranges, including the ones specified as IPv4-mapped IPv6 addresses.
+                    if (end.compareTo(IPV4_MAX) <= 0)
+                        ipv4.add(0L, start.longValue(), 0L, end.longValue(), countryIndex);
+                    else if (start.shiftRight(32).longValue() == 0xFFFFL && end.shiftRight(32).longValue() == 0xFFFFL)
+                        ipv4.add(0L, start.longValue() & 0xFFFFFFFFL, 0L, end.longValue() & 0xFFFFFFFFL, countryIndex);
+                    // Adding IPv6 ranges.
+                    else ipv6.add(start.shiftRight(64).longValue(), start.longValue(), end.shiftRight(64).longValue(), end.longValue(), countryIndex);
+                } catch (final IllegalArgumentException e) {
+                    throw new IOException("Malformed address on line " + lineNumber + " of " + file.getPath(), e);
+                }
+            }
+        }
+        // Creating table of country codes.
+        final String[] countries = new String[countryIndexes.size()];
+        countryIndexes.forEach((country, index) -> countries[index] = country);
+        // Sorting ranges by their first address.
+        final int[] ipv4Order = ipv4.order();
+        final int[] ipv6Order = ipv6.order();
+        // Creating and returning the database.
+        return new CountryDatabase(
+                countries,
+                IntStream.of(ipv4Order).map(i -> (int) ipv4.startsLow[i]).toArray(),
+                IntStream.of(ipv4Order).map(i -> (int) ipv4.endsLow[i]).toArray(),
+                ipv4.countriesInOrder(ipv4Order),
+                IntStream.of(ipv6Order).mapToLong(i -> ipv6.startsHigh[i]).toArray(),
+                IntStream.of(ipv6Order).mapToLong(i -> ipv6.startsLow[i]).toArray(),
+                IntStream.of(ipv6Order).mapToLong(i -> ipv6.endsHigh[i]).toArray(),
+                IntStream.of(ipv6Order).mapToLong(i -> ipv6.endsLow[i]).toArray(),
+                ipv6.countriesInOrder(ipv6Order)
+        );
+    }
+
+    /**
+     * Returns specified address as an unsigned number, or {@code null} if it does not look like an address.
+     */
+    private static @Nullable BigInteger parseAddress(final @NotNull String address) throws IllegalArgumentException {
+        if (address.isEmpty() == true)
+            return null;
+        // Parsing decimal addresses.
+        if (address.chars().allMatch(Character::isDigit) == true)
+            return new BigInteger(address);
+        // Parsing literal addresses. This never performs a DNS lookup.
+        if (address.indexOf('.') != -1 || address.indexOf(':') != -1)
+            return new BigInteger(1, InetAddress.ofLiteral(address).getAddress());
+        // ...
+        return null;
+    }
+
+    private static @NotNull String unquote(final @NotNull String value) {
+        final String trimmed = value.trim();
+        // ...
+        return (trimmed.length() >= 2 && trimmed.startsWith("\"") == true && trimmed.endsWith("\"") == true) ? trimmed.substring(1, trimmed.length() - 1).trim() : trimmed;
+    }
+
+    private static int compare(final long firstHigh, final long firstLow, final long secondHigh, final long secondLow) {
+        final int result = Long.compareUnsigned(firstHigh, secondHigh);
+        // ...
+        return (result != 0) ? result : Long.compareUnsigned(firstLow, secondLow);
+    }
+
+    /**
+     * Growable set of primitive arrays used while database is being loaded.
+     */
+    private static final class Builder {
+
+        private int size = 0;
+
+        private long[] startsHigh = new long[1024];
+        private long[] startsLow = new long[1024];
+        private long[] endsHigh = new long[1024];
+        private long[] endsLow = new long[1024];
+        private short[] countries = new short[1024];
+
+        // Whether ranges have been added in ascending order. Database files are usually sorted already, in which case sorting is skipped.
+        private boolean isSorted = true;
+
+        public void add(final long startHigh, final long startLow, final long endHigh, final long endLow, final short country) {
+            // Growing arrays if needed.
+            if (size == startsHigh.length) {
+                startsHigh = Arrays.copyOf(startsHigh, size * 2);
+                startsLow = Arrays.copyOf(startsLow, size * 2);
+                endsHigh = Arrays.copyOf(endsHigh, size * 2);
+                endsLow = Arrays.copyOf(endsLow, size * 2);
+                countries = Arrays.copyOf(countries, size * 2);
+            }
+            // Checking whether ranges are still sorted.
+            if (size > 0 && compare(startsHigh[size - 1], startsLow[size - 1], startHigh, startLow) > 0)
+                isSorted = false;
+            // ...
+            startsHigh[size] = startHigh;
+            startsLow[size] = startLow;
+            endsHigh[size] = endHigh;
+            endsLow[size] = endLow;
+            countries[size] = country;
+            size++;
+        }
+
+        /**
+         * Returns indexes of ranges, in order of their first address.
+         */
+        public int @NotNull [] order() {
+            if (isSorted == true)
+                return IntStream.range(0, size).toArray();
+            // ...
+            return IntStream.range(0, size).boxed()
+                    .sorted(Comparator.comparing((Integer i) -> startsHigh[i], Long::compareUnsigned).thenComparing(i -> startsLow[i], Long::compareUnsigned))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+
+        public short @NotNull [] countriesInOrder(final int @NotNull [] order) {
+            final short[] result = new short[order.length];
+            // ...
+            for (int i = 0; i < order.length; i++)
+                result[i] = countries[order[i]];
+            // ...
+            return result;
+        }
+
+    }
+
+}
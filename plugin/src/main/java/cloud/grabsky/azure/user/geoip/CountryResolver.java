@@ -0,0 +1,68 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user.geoip;
+
+import java.net.InetAddress;
+import java.util.concurrent.CompletableFuture;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link CountryResolver} is responsible for resolving country of an {@link InetAddress}.
+ */
+@FunctionalInterface
+public interface CountryResolver {
+
+    /**
+     * {@link CountryResolver} which never resolves anything.
+     */
+    CountryResolver NONE = (_) -> CompletableFuture.completedFuture(null);
+
+    /**
+     * Returns {@link CompletableFuture} completed with ISO 3166-1 alpha-2 code of the country specified {@link InetAddress} belongs to,
+     * or {@code null} if it cannot be resolved. Returned future is never completed exceptionally.
+     */
+    @NotNull CompletableFuture<String> resolve(final @NotNull InetAddress address);
+
+    /**
+     * Releases resources held by this {@link CountryResolver}.
+     */
+    default void close() {
+        // Nothing to release by default.
+    }
+
+    /**
+     * Represents available {@link CountryResolver} implementations.
+     */
+    enum Type {
+
+        /**
+         * Looks addresses up in a local database file. See {@link LocalCountryResolver}.
+         */
+        LOCAL,
+
+        /**
+         * Asks a remote API. See {@link RemoteCountryResolver}.
+         */
+        REMOTE,
+
+        /**
+         * Does not resolve anything.
+         */
+        NONE
+
+    }
+
+}
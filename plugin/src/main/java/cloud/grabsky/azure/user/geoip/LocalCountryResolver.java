@@ -0,0 +1,138 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user.geoip;
+
+import cloud.grabsky.azure.Azure;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link CountryResolver} implementation which looks addresses up in a local {@link CountryDatabase}.
+ * Database file is checked for changes periodically and reloaded in the background, without interrupting lookups.
+ */
+public final class LocalCountryResolver implements CountryResolver {
+
+    private final Azure plugin;
+    private final File file;
+
+    // Resolver used when address cannot be found in the database. Can be null.
+    private final @Nullable CountryResolver fallback;
+
+    // Currently loaded database. Replaced as a whole when file changes.
+    private volatile @Nullable CountryDatabase database;
+
+    // Modification time and size of the file database has been loaded from.
+    private long loadedModified = -1L;
+    private long loadedLength = -1L;
+
+    private final ScheduledExecutorService reloader;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public LocalCountryResolver(final @NotNull Azure plugin, final @NotNull File file, final @Nullable CountryResolver fallback, final long reloadInterval) {
+        this.plugin = plugin;
+        this.file = file;
+        this.fallback = fallback;
+        // Loading the database in the background, so startup is not delayed. Lookups are passed to the fallback resolver until it's done.
+        this.reloader = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("Azure-GeoIPReloader").daemon(true).factory());
+        // Checking for changes periodically. Interval lower or equal to zero disables reloading.
+        if (reloadInterval > 0)
+            reloader.scheduleWithFixedDelay(this::reloadIfModified, 0L, reloadInterval, TimeUnit.SECONDS);
+        else reloader.execute(this::reloadIfModified);
+        // Registering metrics.
+        plugin.getMetricsRegistry().register("geoip.local.ipv4_ranges", () -> (database != null) ? database.getIPv4Ranges() : 0);
+        plugin.getMetricsRegistry().register("geoip.local.ipv6_ranges", () -> (database != null) ? database.getIPv6Ranges() : 0);
+        plugin.getMetricsRegistry().register("geoip.local.lookups", lookups::sum);
+        plugin.getMetricsRegistry().register("geoip.local.misses", misses::sum);
+    }
+
+    @Override
+    public @NotNull CompletableFuture<String> resolve(final @NotNull InetAddress address) {
+        final @Nullable CountryDatabase database = this.database;
+        // Increasing number of lookups.
+        lookups.increment();
+        // Looking the address up. This takes no more than a few microseconds.
+        final @Nullable String country = (database != null) ? database.lookup(address) : null;
+        // ...
+        if (country != null)
+            return CompletableFuture.completedFuture(country);
+        // Increasing number of misses.
+        misses.increment();
+        // Passing the address to the fallback resolver, if specified.
+        return (fallback != null) ? fallback.resolve(address) : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Loads the database again if file has been modified since previous load. Called on the reloader thread.
+     */
+    private void reloadIfModified() {
+        // Unloading the database in case file has been removed.
+        if (file.exists() == false) {
+            // Logging the warning just once.
+            if (loadedModified != 0L) {
+                plugin.getLogger().warning("GeoIP database " + file.getPath() + " does not exist. " + ((fallback != null) ? "Addresses will be resolved remotely." : "Countries of players will not be resolved."));
+                // ...
+                this.database = null;
+                this.loadedModified = 0L;
+                this.loadedLength = -1L;
+            }
+            return;
+        }
+        // Skipping in case file has not been modified.
+        final long modified = file.lastModified();
+        final long length = file.length();
+        // ...
+        if (modified == loadedModified && length == loadedLength)
+            return;
+        // Loading the database. Previous database is kept in case of failure.
+        try {
+            final long startTime = System.nanoTime();
+            // ...
+            final CountryDatabase database = CountryDatabase.load(file);
+            // Replacing the database.
+            this.database = database;
+            // Printing "summary" message to the console.
+            plugin.getLogger().info("Loaded GeoIP database with " + database.getIPv4Ranges() + " IPv4 and " + database.getIPv6Ranges() + " IPv6 range(s) in " + (System.nanoTime() - startTime) / 1_000_000L + "ms.");
+        } catch (final IOException | RuntimeException e) {
+            plugin.getLogger().severe("An error occurred while loading GeoIP database " + file.getPath());
+            plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+        // Updating modification time and size, so broken file is not loaded again until it's modified.
+        this.loadedModified = modified;
+        this.loadedLength = length;
+    }
+
+    @Override
+    public void close() {
+        reloader.shutdownNow();
+        // Closing the fallback resolver.
+        if (fallback != null)
+            fallback.close();
+        // Unregistering metrics.
+        plugin.getMetricsRegistry().unregister("geoip.local.");
+    }
+
+}
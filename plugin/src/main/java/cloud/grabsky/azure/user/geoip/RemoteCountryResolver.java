@@ -0,0 +1,103 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user.geoip;
+
+import cloud.grabsky.azure.Azure;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link CountryResolver} implementation which asks a remote API, such as <a href="https://www.geojs.io/">GeoJS</a>.
+ * Address is appended to the configured URL and response body is expected to contain nothing but the country code.
+ */
+public final class RemoteCountryResolver implements CountryResolver {
+
+    private final Azure plugin;
+    private final String url;
+    private final Duration timeout;
+    private final int maxRetries;
+
+    private final HttpClient client;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public RemoteCountryResolver(final @NotNull Azure plugin, final @NotNull String url, final long timeout, final int maxRetries) {
+        this.plugin = plugin;
+        this.url = url;
+        this.timeout = Duration.ofMillis(Math.max(timeout, 100L));
+        this.maxRetries = Math.clamp(maxRetries, 0, 5);
+        // Creating the client. Requests are sent asynchronously and never block the calling thread.
+        this.client = HttpClient.newBuilder().connectTimeout(this.timeout).followRedirects(HttpClient.Redirect.NORMAL).build();
+        // Registering metrics.
+        plugin.getMetricsRegistry().register("geoip.remote.requests", requests::sum);
+        plugin.getMetricsRegistry().register("geoip.remote.failures", failures::sum);
+    }
+
+    @Override
+    public @NotNull CompletableFuture<String> resolve(final @NotNull InetAddress address) {
+        try {
+            final HttpRequest request = HttpRequest.newBuilder(URI.create(url + address.getHostAddress())).timeout(timeout).GET().build();
+            // Sending the request.
+            return this.send(request, maxRetries);
+        } catch (final IllegalArgumentException e) {
+            plugin.getLogger().severe("Malformed URI = " + url + "[_REDACTED_ADDRESS_]");
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private @NotNull CompletableFuture<String> send(final @NotNull HttpRequest request, final int retriesLeft) {
+        // Increasing number of requests.
+        requests.increment();
+        // ...
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            // Throwing exception in case of unexpected response. Request is going to be retried.
+            if (response.statusCode() != 200)
+                throw new IllegalStateException("Unexpected response code: " + response.statusCode());
+            // ...
+            final String country = response.body().trim();
+            // Returning fetched country code or null. API responds with 'nil' for unknown addresses.
+            return (country.length() == 2) ? country.toUpperCase() : null;
+        }).exceptionallyCompose(e -> {
+            // Increasing number of failures.
+            failures.increment();
+            // Retrying, if there are any retries left.
+            if (retriesLeft > 0)
+                return this.send(request, retriesLeft - 1);
+            // ...
+            plugin.getLogger().severe("An error occurred while trying to send request to '" + url + "[_REDACTED_ADDRESS_]'.");
+            plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            // ...
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    @Override
+    public void close() {
+        client.shutdownNow();
+        // Unregistering metrics.
+        plugin.getMetricsRegistry().unregister("geoip.remote.");
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user.storage;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.user.AzureUser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * {@link UserStorage} implementation which stores each user in a separate file. File extension depends on the {@link UserCodec} used to write it.
+ * Files written with any of the known codecs can be read, and are rewritten with the preferred codec next time the user is saved.
+ */
+public final class FileUserStorage implements UserStorage {
+
+    private final Azure plugin;
+
+    @Getter(AccessLevel.PUBLIC)
+    private final File directory;
+
+    // Codec used to write users.
+    private final UserCodec codec;
+
+    // Codecs used to read users. Contains the preferred codec.
+    private final List<UserCodec> codecs;
+
+    public FileUserStorage(final @NotNull Azure plugin, final @NotNull File directory, final @NotNull UserCodec codec, final @NotNull List<UserCodec> codecs) {
+        this.plugin = plugin;
+        this.directory = directory;
+        this.codec = codec;
+        this.codecs = codecs;
+    }
+
+    @Override
+    public void loadAll(final @NotNull Consumer<AzureUser> consumer) throws IllegalStateException {
+        // Creating cache directory if does not exist.
+        UserStorage.ensureDirectoryExists(directory);
+        // Getting list of user files within the cache directory. Non-recursive.
+        final File[] files = this.listFiles();
+        // Reading all files using a bounded pool of worker threads.
+        ParallelLoader.load(plugin.getLogger(), files.length, (index) -> this.read(files[index]), (index) -> "FILE = " + files[index].getPath(), consumer);
+    }
+
+    /**
+     * Returns sorted array of user files within the storage directory. Non-recursive.
+     * When user is stored in more than one format, which can happen if server stopped in the middle of a save, only the most recently modified file is returned.
+     */
+    public @NotNull File[] listFiles() {
+        final File[] listedFiles = directory.listFiles((_, name) -> this.getCodec(name) != null);
+        // Returning empty array in case directory does not exist.
+        if (listedFiles == null)
+            return new File[0];
+        // Keeping only the most recently modified file of each user.
+        final Map<String, File> files = new HashMap<>();
+        // ...
+        for (final File file : listedFiles)
+            files.merge(stripExtension(file.getName()), file, (first, second) -> (second.lastModified() > first.lastModified()) ? second : first);
+        // Sorting files by name, so the outcome does not depend on the filesystem or the order in which workers finish.
+        return files.values().stream().sorted(Comparator.comparing(File::getName)).toArray(File[]::new);
+    }
+
+    /**
+     * Reads and returns {@link AzureUser} from specified {@link File}.
+     */
+    public @NotNull AzureUser read(final @NotNull File file) throws IOException, IllegalStateException {
+        final @Nullable UserCodec codec = this.getCodec(file.getName());
+        // Throwing exception in case file has unknown extension.
+        if (codec == null)
+            throw new IllegalArgumentException("Deserialization of " + file.getPath() + " failed: Unknown file extension.");
+        // Reading and decoding contents of the file.
+        return codec.decode(Files.readAllBytes(file.toPath()));
+    }
+
+    @Override
+    public @Nullable AzureUser load(final @NotNull UUID uniqueId) throws IOException {
+        @Nullable File file = null;
+        // Looking for the most recently modified file of this user.
+        for (final UserCodec codec : codecs) {
+            final File candidate = new File(directory, uniqueId + codec.getFileExtension());
+            // ...
+            if (candidate.exists() == true && (file == null || candidate.lastModified() > file.lastModified()))
+                file = candidate;
+        }
+        // Returning null in case user is not stored.
+        if (file == null)
+            return null;
+        // Reading and returning the user.
+        return this.read(file);
+    }
+
+    @Override
+    public void save(final @NotNull AzureUser user) throws IOException {
+        // Creating directory in case it does not exist.
+        UserStorage.ensureDirectoryExists(directory);
+        // ...
+        final File file = new File(directory, user.getUniqueId() + codec.getFileExtension());
+        // Writing data to the file.
+        Files.write(file.toPath(), codec.encode(user));
+        // Removing files written in other formats, they are now outdated.
+        for (final UserCodec other : codecs)
+            if (other.getFileExtension().equals(codec.getFileExtension()) == false)
+                Files.deleteIfExists(new File(directory, user.getUniqueId() + other.getFileExtension()).toPath());
+    }
+
+    private @Nullable UserCodec getCodec(final @NotNull String fileName) {
+        for (final UserCodec codec : codecs)
+            if (fileName.endsWith(codec.getFileExtension()) == true)
+                return codec;
+        // ...
+        return null;
+    }
+
+    private static @NotNull String stripExtension(final @NotNull String fileName) {
+        final int index = fileName.lastIndexOf('.');
+        // ...
+        return (index != -1) ? fileName.substring(0, index) : fileName;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release here. Each write opens and closes it's own file.
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user.storage;
+
+import cloud.grabsky.azure.user.AzureUser;
+import com.squareup.moshi.JsonAdapter;
+import okio.Buffer;
+
+import java.io.IOException;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * {@link UserCodec} implementation which encodes users as JSON documents using provided {@link JsonAdapter}.
+ */
+@RequiredArgsConstructor(access = AccessLevel.PUBLIC)
+public final class JsonUserCodec implements UserCodec {
+
+    private final @NotNull JsonAdapter<AzureUser> adapter;
+
+    @Override
+    public @NotNull String getFileExtension() {
+        return ".json";
+    }
+
+    @Override
+    public boolean accepts(final byte @NotNull [] payload) {
+        // Skipping leading whitespace. Document is expected to start with an object.
+        for (final byte b : payload)
+            if (Character.isWhitespace(b) == false)
+                return b == '{';
+        // ...
+        return false;
+    }
+
+    @Override
+    public byte @NotNull [] encode(final @NotNull AzureUser user) throws IOException {
+        final Buffer buffer = new Buffer();
+        // Writing user to the buffer.
+        adapter.toJson(buffer, user);
+        // Returning contents of the buffer.
+        return buffer.readByteArray();
+    }
+
+    @Override
+    public @NotNull AzureUser decode(final byte @NotNull [] payload) throws IOException {
+        final @Nullable AzureUser user = adapter.fromJson(new Buffer().write(payload));
+        // Throwing exception in case User ended up being null. Unlikely to happen, but possible.
+        if (user == null)
+            throw new IOException("Deserialization failed: " + null);
+        // Returning the value.
+        return user;
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user.storage;
+
+import cloud.grabsky.azure.configuration.PluginConfig;
+import cloud.grabsky.azure.user.AzureUser;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.logging.Logger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class ParallelLoader {
+
+    // Interval (in seconds) between progress reports printed while users are being loaded.
+    private static final long PROGRESS_REPORT_INTERVAL = 5L;
+
+    /**
+     * Reads {@code totalUsers} users using a bounded pool of worker threads and passes them to the {@link Consumer} in index order, on the calling thread.
+     * Each user is passed as soon as it and all users before it have been read, so only entries read ahead of the slowest one are kept in memory.
+     * Returns number of users that could not be read.
+     */
+    public static int load(final @NotNull Logger logger, final int totalUsers, final @NotNull Reader reader, final @NotNull IntFunction<String> describe, final @NotNull Consumer<AzureUser> consumer) throws IllegalStateException {
+        // Results are stored under the same index as the entry they were read from. Each one is either an AzureUser or an Exception, and is cleared once handled.
+        final AtomicReferenceArray<Object> results = new AtomicReferenceArray<>(totalUsers);
+        // Index of the next entry to be picked up by any of the workers.
+        final AtomicInteger nextIndex = new AtomicInteger(0);
+        final AtomicInteger processedUsers = new AtomicInteger(0);
+        // Index of the next result to be passed to the consumer. Worker which stores this result wakes up the calling thread.
+        final AtomicInteger cursor = new AtomicInteger(0);
+        final Thread caller = Thread.currentThread();
+        // Degree of parallelism. Defaults to number of available processors when not specified.
+        final int parallelism = Math.clamp((PluginConfig.USER_CACHE_LOADING_PARALLELISM > 0) ? PluginConfig.USER_CACHE_LOADING_PARALLELISM : Runtime.getRuntime().availableProcessors(), 1, Math.max(1, totalUsers));
+        // ...
+        final long startTime = System.nanoTime();
+        int loadedUsers = 0;
+        // Creating a bounded pool of worker threads. It is closed (and awaited) at the end of the try-with-resources block.
+        try (final ExecutorService executor = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("Azure-UserLoader-", 0).daemon(true).factory())) {
+            for (int i = 0; i < parallelism; i++) {
+                executor.execute(() -> {
+                    int index;
+                    // Picking up entries until there are none left.
+                    while ((index = nextIndex.getAndIncrement()) < totalUsers) {
+                        Object result;
+                        try {
+                            result = reader.read(index);
+                        } catch (final IOException | RuntimeException e) {
+                            result = e;
+                        }
+                        results.set(index, result);
+                        // Increasing number of processed users.
+                        processedUsers.incrementAndGet();
+                        // Waking up the calling thread in case it is waiting for this result.
+                        if (index == cursor.get())
+                            LockSupport.unpark(caller);
+                    }
+                });
+            }
+            // No more tasks are going to be submitted.
+            executor.shutdown();
+            // Passing loaded users to the consumer and reporting failures, in the same order entries were provided in.
+            long nextReportAt = startTime + TimeUnit.SECONDS.toNanos(PROGRESS_REPORT_INTERVAL);
+            while (cursor.get() < totalUsers) {
+                final int index = cursor.get();
+                final @Nullable Object result = results.get(index);
+                // Waiting for the result, and reporting progress periodically.
+                if (result == null) {
+                    // Throwing exception in case calling thread has been interrupted. Workers are stopped when executor is closed.
+                    if (Thread.currentThread().isInterrupted() == true)
+                        throw new IllegalStateException("Loading of users has been interrupted.");
+                    // Skipping the entry in case workers have stopped without storing the result. This can only happen if one of them has thrown an Error.
+                    if (executor.isTerminated() == true && results.get(index) == null) {
+                        logger.warning("User cannot be loaded. (" + describe.apply(index) + ")");
+                        cursor.set(index + 1);
+                        continue;
+                    }
+                    // ...
+                    if (System.nanoTime() - nextReportAt >= 0L) {
+                        final int processed = processedUsers.get();
+                        final double elapsed = (System.nanoTime() - startTime) / 1_000_000_000D;
+                        logger.info("Loading users... " + processed + "/" + totalUsers + " (" + (processed * 100 / totalUsers) + "%, " + (int) (processed / elapsed) + " user(s)/s)");
+                        nextReportAt += TimeUnit.SECONDS.toNanos(PROGRESS_REPORT_INTERVAL);
+                    }
+                    LockSupport.parkNanos(Math.max(1L, nextReportAt - System.nanoTime()));
+                    continue;
+                }
+                // Releasing the result, as it is no longer needed after being handled.
+                results.set(index, null);
+                // ...
+                if (result instanceof AzureUser user) {
+                    consumer.accept(user);
+                    // Increasing number of loaded users.
+                    loadedUsers++;
+                } else if (result instanceof Exception e) {
+                    logger.warning("User cannot be loaded. (" + describe.apply(index) + ")");
+                    e.printStackTrace();
+                }
+                // Moving to the next entry.
+                cursor.set(index + 1);
+            }
+        }
+        // Calculating elapsed time, for "summary" message.
+        final long elapsedMillis = (System.nanoTime() - startTime) / 1_000_000L;
+        // Printing "summary" message to the console.
+        logger.info("Successfully loaded " + loadedUsers + " out of " + totalUsers + " user(s) total.");
+        logger.info("Loading took " + elapsedMillis + "ms using " + parallelism + " thread(s). (" + (int) (totalUsers / Math.max(elapsedMillis / 1000D, 0.001D)) + " user(s)/s)");
+        // ...
+        return totalUsers - loadedUsers;
+    }
+
+    @FunctionalInterface
+    public interface Reader {
+
+        /**
+         * Reads and returns {@link AzureUser} stored under specified index.
+         */
+        @NotNull AzureUser read(final int index) throws IOException;
+
+    }
+
+}
@@ -0,0 +1,548 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user.storage;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.user.AzureUser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * {@link UserStorage} implementation which appends user records to a log split into segment files.
+ * <p>
+ * Each save appends a new record to the active segment, superseding the previous one. Index of the most
+ * recent record of each user is kept in memory and persisted to a compact index file, so recovery only
+ * has to scan what has been appended since. Segments mostly made of superseded records are periodically
+ * compacted by copying their live records to the active segment and deleting them.
+ * <pre>
+ * RECORD: [int magic] [long uuid_msb] [long uuid_lsb] [int payload_length] [int payload_crc32] [byte[] payload]
+ * </pre>
+ * Payload is encoded with the preferred {@link UserCodec}. Records encoded with any other known codec can still be read.
+ */
+public final class SegmentedUserStorage implements UserStorage {
+
+    private static final int RECORD_MAGIC = 0x415A5552; // "AZUR"
+    private static final int RECORD_HEADER_SIZE = 4 + 8 + 8 + 4 + 4;
+
+    private static final int INDEX_MAGIC = 0x415A4958; // "AZIX"
+    private static final int INDEX_VERSION = 1;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_FILE_NAME = "index.dat";
+
+    private final Azure plugin;
+
+    @Getter(AccessLevel.PUBLIC)
+    private final File directory;
+
+    private final UserCodec codec;
+    private final List<UserCodec> codecs;
+    private final long maxSegmentSize;
+    private final double compactionThreshold;
+
+    // Location of the most recent record of each user. Guarded by (this).
+    private final Map<UUID, Location> index = new HashMap<>();
+
+    // Open segments, ordered by their identifier. Guarded by (this).
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+
+    // Segment new records are appended to. Always the one with highest identifier. Guarded by (this).
+    private Segment activeSegment;
+
+    private final ScheduledExecutorService compactor;
+
+    private boolean isClosed = false;
+
+    public SegmentedUserStorage(
+            final @NotNull Azure plugin,
+            final @NotNull File directory,
+            final @NotNull UserCodec codec,
+            final @NotNull List<UserCodec> codecs,
+            final long maxSegmentSize,
+            final double compactionThreshold,
+            final long compactionInterval
+    ) throws IOException, IllegalStateException {
+        this.plugin = plugin;
+        this.directory = directory;
+        this.codec = codec;
+        this.codecs = codecs;
+        this.maxSegmentSize = Math.max(maxSegmentSize, 64 * 1024);
+        this.compactionThreshold = Math.clamp(compactionThreshold, 0.0D, 1.0D);
+        // Opening segments and recovering the index.
+        this.open();
+        // Scheduling compaction task. Interval lower or equal to zero disables the compaction.
+        this.compactor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("Azure-UserCompactor").daemon(true).factory());
+        // ...
+        if (compactionInterval > 0)
+            compactor.scheduleWithFixedDelay(() -> {
+                try {
+                    this.compact();
+                } catch (final IOException | RuntimeException e) {
+                    plugin.getLogger().severe("An error occurred while compacting user storage.");
+                    plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+                }
+            }, compactionInterval, compactionInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns {@code true} if this {@link SegmentedUserStorage} contains no records.
+     */
+    public synchronized boolean isEmpty() {
+        return index.isEmpty() == true;
+    }
+
+    /**
+     * Returns number of users stored in this {@link SegmentedUserStorage}.
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    @Override
+    public void loadAll(final @NotNull Consumer<AzureUser> consumer) throws IllegalStateException {
+        final UUID[] uniqueIds;
+        final Location[] locations;
+        final Map<Integer, Segment> segments;
+        // Taking a snapshot of the index. Records are sorted by their location to keep reads as sequential as possible.
+        synchronized (this) {
+            final List<Map.Entry<UUID, Location>> entries = new ArrayList<>(index.entrySet());
+            entries.sort(Comparator.comparingInt((Map.Entry<UUID, Location> entry) -> entry.getValue().segment()).thenComparingLong(entry -> entry.getValue().offset()));
+            // ...
+            uniqueIds = entries.stream().map(Map.Entry::getKey).toArray(UUID[]::new);
+            locations = entries.stream().map(Map.Entry::getValue).toArray(Location[]::new);
+            segments = Map.copyOf(this.segments);
+        }
+        // Reading all records using a bounded pool of worker threads. Positional reads are safe to be performed concurrently.
+        ParallelLoader.load(plugin.getLogger(), locations.length, (index) -> this.read(segments.get(locations[index].segment()), uniqueIds[index], locations[index]), (index) -> "UUID = " + uniqueIds[index] + ", SEGMENT = " + locations[index].segment() + ", OFFSET = " + locations[index].offset(), consumer);
+    }
+
+    @Override
+    public synchronized @Nullable AzureUser load(final @NotNull UUID uniqueId) throws IOException {
+        final @Nullable Location location = index.get(uniqueId);
+        // Returning null in case user is not stored.
+        if (location == null)
+            return null;
+        // Reading and returning the user. Done while holding the lock, so the segment cannot be compacted in the meantime.
+        return this.read(segments.get(location.segment()), uniqueId, location);
+    }
+
+    @Override
+    public synchronized void save(final @NotNull AzureUser user) throws IOException {
+        if (isClosed == true)
+            throw new IOException("Storage has already been closed.");
+        // Serializing the user.
+        final byte[] payload = codec.encode(user);
+        // Calculating checksum of the payload.
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        // Preparing the record.
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length)
+                .putInt(RECORD_MAGIC)
+                .putLong(user.getUniqueId().getMostSignificantBits())
+                .putLong(user.getUniqueId().getLeastSignificantBits())
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+        // Appending the record and pointing the index at it.
+        this.put(user.getUniqueId(), record, payload.length);
+    }
+
+    /**
+     * Appends specified record to the active segment and updates the index. Must be called while holding the lock.
+     */
+    private void put(final @NotNull UUID uniqueId, final @NotNull ByteBuffer record, final int length) throws IOException {
+        final int size = record.remaining();
+        // Rolling to a new segment if the record does not fit in the active one.
+        if (activeSegment.size > 0 && activeSegment.size + size > maxSegmentSize)
+            this.roll();
+        // Appending the record to the end of the active segment.
+        final long offset = activeSegment.size;
+        writeFully(activeSegment.channel, record, offset);
+        // Updating size and the number of live bytes.
+        activeSegment.size += size;
+        activeSegment.liveBytes += size;
+        // Updating the index. Previous record of that user (if any) is now superseded.
+        final @Nullable Location previous = index.put(uniqueId, new Location(activeSegment.id, offset, length));
+        // ...
+        if (previous != null && segments.containsKey(previous.segment()) == true)
+            segments.get(previous.segment()).liveBytes -= RECORD_HEADER_SIZE + previous.length();
+    }
+
+    /**
+     * Flushes the active segment and persists the index. Can be called from any thread.
+     */
+    public synchronized void flush() throws IOException {
+        if (isClosed == true)
+            throw new IOException("Storage has already been closed.");
+        // Flushing the active segment before the index, so the index never points at records that are not on the disk.
+        activeSegment.channel.force(false);
+        this.writeIndex();
+    }
+
+    /**
+     * Compacts segments which ratio of live bytes is below configured threshold. Can be called from any thread.
+     */
+    public synchronized void compact() throws IOException {
+        if (isClosed == true)
+            return;
+        // Collecting segments to compact. Active segment is never compacted.
+        final List<Segment> candidates = segments.values().stream()
+                .filter(segment -> segment != activeSegment)
+                .filter(segment -> segment.size == 0 || (double) segment.liveBytes / segment.size < compactionThreshold)
+                .toList();
+        // Skipping when there is nothing to compact.
+        if (candidates.isEmpty() == true)
+            return;
+        // ...
+        final long startTime = System.nanoTime();
+        final Set<Integer> candidateIds = new HashSet<>();
+        // ...
+        long reclaimedBytes = 0;
+        for (final Segment segment : candidates) {
+            candidateIds.add(segment.id);
+            reclaimedBytes += segment.size - segment.liveBytes;
+        }
+        int movedRecords = 0;
+        // Copying live records of compacted segments to the end of the active segment. Records are copied as-is, without re-serialization.
+        for (final Map.Entry<UUID, Location> entry : new ArrayList<>(index.entrySet())) {
+            final Location location = entry.getValue();
+            // Skipping records which are not stored in any of compacted segments.
+            if (candidateIds.contains(location.segment()) == false)
+                continue;
+            // Reading the whole record.
+            final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + location.length());
+            readFully(segments.get(location.segment()).channel, record, location.offset());
+            // Appending the record to the active segment. This also decreases number of live bytes of the source segment.
+            this.put(entry.getKey(), record.flip(), location.length());
+            // Increasing number of moved records.
+            movedRecords++;
+        }
+        // Making sure copied records are on the disk before source segments are deleted.
+        activeSegment.channel.force(false);
+        // Persisting the index before source segments are deleted, so it never points at a missing segment.
+        this.writeIndex();
+        // Deleting compacted segments.
+        for (final Segment segment : candidates) {
+            segments.remove(segment.id);
+            segment.channel.close();
+            Files.deleteIfExists(segment.file.toPath());
+        }
+        // Calculating elapsed time, for "summary" message.
+        final long elapsedMillis = (System.nanoTime() - startTime) / 1_000_000L;
+        // Printing "summary" message to the console.
+        plugin.getLogger().info("Compacted " + candidates.size() + " user storage segment(s). Moved " + movedRecords + " record(s) and reclaimed " + (reclaimedBytes / 1024) + "KiB in " + elapsedMillis + "ms.");
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Stopping the compaction task. Compaction in progress (if any) is finished before the lock is acquired below.
+        compactor.shutdown();
+        // ...
+        synchronized (this) {
+            if (isClosed == true)
+                return;
+            // ...
+            isClosed = true;
+            // Flushing the active segment and persisting the index, so the next startup does not have to scan anything.
+            activeSegment.channel.force(false);
+            this.writeIndex();
+            // Closing all segments.
+            for (final Segment segment : segments.values())
+                segment.channel.close();
+        }
+    }
+
+    /**
+     * Opens all existing segments, recovers the index and selects (or creates) the active segment.
+     */
+    private synchronized void open() throws IOException, IllegalStateException {
+        // Creating storage directory if does not exist.
+        UserStorage.ensureDirectoryExists(directory);
+        // Getting list of segment files within the storage directory. Non-recursive.
+        final File[] files = directory.listFiles((_, name) -> name.startsWith(SEGMENT_PREFIX) == true && name.endsWith(SEGMENT_SUFFIX) == true);
+        // Opening all segments.
+        if (files != null)
+            for (final File file : files) {
+                try {
+                    final int id = Integer.parseInt(file.getName().substring(SEGMENT_PREFIX.length(), file.getName().length() - SEGMENT_SUFFIX.length()));
+                    // ...
+                    final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    segments.put(id, new Segment(id, file, channel, channel.size()));
+                } catch (final NumberFormatException e) {
+                    plugin.getLogger().warning("Skipping unrecognized user storage file: " + file.getPath());
+                }
+            }
+        // Reading the index file. Returned map contains size of each segment at the moment index has been written.
+        @Nullable Map<Integer, Long> indexedSizes = this.readIndex();
+        // Discarding the index in case any of the segments has been truncated since it was written.
+        if (indexedSizes != null && indexedSizes.entrySet().stream().anyMatch(entry -> segments.containsKey(entry.getKey()) == true && segments.get(entry.getKey()).size < entry.getValue()) == true) {
+            plugin.getLogger().warning("User storage index is out of date and will be rebuilt from segments.");
+            index.clear();
+            indexedSizes = null;
+        }
+        // Scanning records appended after the index has been written. Segments are scanned in order, so newer records override older ones.
+        for (final Segment segment : segments.values())
+            this.scan(segment, (indexedSizes != null) ? indexedSizes.getOrDefault(segment.id, 0L) : 0L);
+        // Removing entries which point at segments that no longer exist.
+        final int sizeBefore = index.size();
+        index.values().removeIf(location -> segments.containsKey(location.segment()) == false);
+        // ...
+        if (index.size() != sizeBefore)
+            plugin.getLogger().warning("Discarded " + (sizeBefore - index.size()) + " user record(s) pointing at missing storage segments.");
+        // Calculating number of live bytes of each segment.
+        for (final Location location : index.values())
+            segments.get(location.segment()).liveBytes += RECORD_HEADER_SIZE + location.length();
+        // Selecting the active segment. New one is created if there are none or the last one is already full.
+        if (segments.isEmpty() == true || segments.lastEntry().getValue().size >= maxSegmentSize)
+            this.roll();
+        else activeSegment = segments.lastEntry().getValue();
+    }
+
+    /**
+     * Creates new segment and makes it the active one. Must be called while holding the lock.
+     */
+    private void roll() throws IOException {
+        final int id = (segments.isEmpty() == false) ? segments.lastKey() + 1 : 1;
+        // ...
+        final File file = new File(directory, SEGMENT_PREFIX + "%08d".formatted(id) + SEGMENT_SUFFIX);
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Making sure records written to the previous segment are on the disk.
+        if (activeSegment != null)
+            activeSegment.channel.force(false);
+        // ...
+        activeSegment = new Segment(id, file, channel, channel.size());
+        segments.put(id, activeSegment);
+    }
+
+    /**
+     * Scans records of specified segment, starting at specified position, and puts them in the index. Incomplete or corrupted tail gets truncated.
+     */
+    private void scan(final @NotNull Segment segment, final long position) throws IOException {
+        long current = position;
+        // ...
+        final ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        // Reading records until the end of segment has been reached.
+        while (segment.size - current >= RECORD_HEADER_SIZE) {
+            readFully(segment.channel, header.clear(), current);
+            header.flip();
+            // ...
+            final int magic = header.getInt();
+            final UUID uniqueId = new UUID(header.getLong(), header.getLong());
+            final int length = header.getInt();
+            final int checksum = header.getInt();
+            // Stopping at the first record that is not valid.
+            if (magic != RECORD_MAGIC || length < 0 || length > segment.size - current - RECORD_HEADER_SIZE)
+                break;
+            // Reading and verifying the payload.
+            final ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(segment.channel, payload, current + RECORD_HEADER_SIZE);
+            // ...
+            final CRC32 crc = new CRC32();
+            crc.update(payload.flip());
+            // Stopping at the first record that is not valid.
+            if ((int) crc.getValue() != checksum)
+                break;
+            // Pointing the index at this record.
+            index.put(uniqueId, new Location(segment.id, current, length));
+            // Moving to the next record.
+            current += RECORD_HEADER_SIZE + length;
+        }
+        // Truncating everything past the last valid record. This is usually a record which was being written when server crashed.
+        if (current < segment.size) {
+            plugin.getLogger().warning("Truncating " + (segment.size - current) + " byte(s) of incomplete or corrupted data from " + segment.file.getPath());
+            segment.channel.truncate(current);
+            segment.size = current;
+        }
+    }
+
+    /**
+     * Reads and returns {@link AzureUser} stored at specified {@link Location}.
+     */
+    private @NotNull AzureUser read(final @NotNull Segment segment, final @NotNull UUID uniqueId, final @NotNull Location location) throws IOException {
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + location.length());
+        readFully(segment.channel, record, location.offset());
+        record.flip();
+        // Verifying the header. This should never fail unless segment has been modified externally.
+        if (record.getInt() != RECORD_MAGIC || uniqueId.equals(new UUID(record.getLong(), record.getLong())) == false || record.getInt() != location.length())
+            throw new IOException("Record header does not match the index.");
+        // ...
+        final int checksum = record.getInt();
+        final byte[] payload = new byte[location.length()];
+        record.get(payload);
+        // Verifying the payload.
+        final CRC32 crc = new CRC32();
+        crc.update(payload);
+        // ...
+        if ((int) crc.getValue() != checksum)
+            throw new IOException("Record checksum does not match.");
+        // Deserializing the user.
+        return UserCodec.decode(codecs, payload);
+    }
+
+    /**
+     * Reads the index file and puts it's entries in the index. Returns {@code null} if index does not exist or is not valid.
+     */
+    private @Nullable Map<Integer, Long> readIndex() {
+        final File file = new File(directory, INDEX_FILE_NAME);
+        // Returning null in case index file does not exist.
+        if (file.exists() == false)
+            return null;
+        // ...
+        try {
+            final byte[] bytes = Files.readAllBytes(file.toPath());
+            // Verifying the checksum, which is stored in the last four bytes.
+            final CRC32 crc = new CRC32();
+            crc.update(bytes, 0, Math.max(0, bytes.length - 4));
+            // ...
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            // ...
+            if (bytes.length < 16 || buffer.getInt(bytes.length - 4) != (int) crc.getValue() || buffer.getInt() != INDEX_MAGIC || buffer.getInt() != INDEX_VERSION) {
+                plugin.getLogger().warning("User storage index is not valid and will be rebuilt from segments.");
+                return null;
+            }
+            // Reading size of each segment at the moment index has been written.
+            final int segmentCount = buffer.getInt();
+            final Map<Integer, Long> indexedSizes = new HashMap<>(segmentCount);
+            // ...
+            for (int i = 0; i < segmentCount; i++)
+                indexedSizes.put(buffer.getInt(), buffer.getLong());
+            // Reading the entries.
+            final int entryCount = buffer.getInt();
+            // ...
+            for (int i = 0; i < entryCount; i++)
+                index.put(new UUID(buffer.getLong(), buffer.getLong()), new Location(buffer.getInt(), buffer.getLong(), buffer.getInt()));
+            // Returning sizes of indexed segments.
+            return indexedSizes;
+        } catch (final IOException | BufferUnderflowException e) {
+            plugin.getLogger().warning("User storage index could not be read and will be rebuilt from segments.");
+            plugin.getLogger().warning(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            // Clearing partially read index.
+            index.clear();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the index file. File is first written to a temporary location and then moved in place of the existing one. Must be called while holding the lock.
+     */
+    private void writeIndex() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 4 + (segments.size() * (4 + 8)) + 4 + (index.size() * (8 + 8 + 4 + 8 + 4)) + 4);
+        // Writing the header.
+        buffer.putInt(INDEX_MAGIC).putInt(INDEX_VERSION);
+        // Writing size of each segment.
+        buffer.putInt(segments.size());
+        // ...
+        for (final Segment segment : segments.values())
+            buffer.putInt(segment.id).putLong(segment.size);
+        // Writing the entries.
+        buffer.putInt(index.size());
+        // ...
+        for (final Map.Entry<UUID, Location> entry : index.entrySet())
+            buffer.putLong(entry.getKey().getMostSignificantBits()).putLong(entry.getKey().getLeastSignificantBits())
+                    .putInt(entry.getValue().segment()).putLong(entry.getValue().offset()).putInt(entry.getValue().length());
+        // Writing the checksum.
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        // Writing to the temporary file and moving it in place of the existing one.
+        final File temporary = new File(directory, INDEX_FILE_NAME + ".tmp");
+        // ...
+        try (final FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, buffer.flip(), 0);
+            channel.force(false);
+        }
+        // ...
+        Files.move(temporary.toPath(), new File(directory, INDEX_FILE_NAME).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void readFully(final @NotNull FileChannel channel, final @NotNull ByteBuffer buffer, final long position) throws IOException {
+        long current = position;
+        // Reading until buffer is full.
+        while (buffer.hasRemaining() == true) {
+            final int read = channel.read(buffer, current);
+            // Throwing exception in case end of file has been reached.
+            if (read < 0)
+                throw new IOException("Unexpected end of file at position " + current + ".");
+            // ...
+            current += read;
+        }
+    }
+
+    private static void writeFully(final @NotNull FileChannel channel, final @NotNull ByteBuffer buffer, final long position) throws IOException {
+        long current = position;
+        // Writing until buffer is empty.
+        while (buffer.hasRemaining() == true)
+            current += channel.write(buffer, current);
+    }
+
+    /**
+     * Represents location of the record within the storage.
+     */
+    private record Location(int segment, long offset, int length) { /* DATA */ }
+
+    /**
+     * Represents a single segment file.
+     */
+    private static final class Segment {
+
+        private final int id;
+        private final File file;
+        private final FileChannel channel;
+
+        // Size of the segment, in bytes.
+        private long size;
+
+        // Number of bytes occupied by records which are not superseded.
+        private long liveBytes;
+
+        private Segment(final int id, final @NotNull File file, final @NotNull FileChannel channel, final long size) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.size = size;
+        }
+
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user.storage;
+
+import cloud.grabsky.azure.user.AzureUser;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@link UserCodec} is responsible for converting {@link AzureUser} objects to bytes and back.
+ */
+public interface UserCodec {
+
+    /**
+     * Returns extension of files containing users encoded with this {@link UserCodec}. Includes the leading dot.
+     */
+    @NotNull String getFileExtension();
+
+    /**
+     * Returns {@code true} if specified payload looks like it has been encoded with this {@link UserCodec}.
+     */
+    boolean accepts(final byte @NotNull [] payload);
+
+    /**
+     * Encodes specified {@link AzureUser}.
+     */
+    byte @NotNull [] encode(final @NotNull AzureUser user) throws IOException;
+
+    /**
+     * Decodes {@link AzureUser} from specified payload.
+     */
+    @NotNull AzureUser decode(final byte @NotNull [] payload) throws IOException;
+
+    /**
+     * Decodes {@link AzureUser} from specified payload, using the first of specified codecs which accepts it.
+     */
+    static @NotNull AzureUser decode(final @NotNull List<UserCodec> codecs, final byte @NotNull [] payload) throws IOException {
+        for (final UserCodec codec : codecs)
+            if (codec.accepts(payload) == true)
+                return codec.decode(payload);
+        // Throwing exception in case none of the codecs accepts the payload.
+        throw new IOException("Payload has not been encoded with any of known codecs.");
+    }
+
+    /**
+     * Represents available {@link UserCodec} implementations.
+     */
+    enum Type {
+
+        /**
+         * Human-readable JSON document, produced by Moshi.
+         */
+        JSON,
+
+        /**
+         * Compact, versioned binary format.
+         */
+        BINARY
+
+    }
+
+}
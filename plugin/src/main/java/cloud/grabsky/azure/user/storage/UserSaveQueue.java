@@ -0,0 +1,264 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user.storage;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.metrics.MetricsRegistry;
+import cloud.grabsky.azure.user.AzureUser;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Write-behind layer on top of {@link UserStorage}. Users are marked dirty and written by a single I/O thread
+ * once they stay dirty for the configured window. Repeated saves of the same user within that window are coalesced into one write.
+ */
+public final class UserSaveQueue {
+
+    private final Azure plugin;
+    private final UserStorage storage;
+    private final long coalesceWindow;
+
+    // Users waiting to be written, by their unique id.
+    private final Map<UUID, Pending> dirty = new ConcurrentHashMap<>();
+
+    // Users which are currently being written. Together with the dirty map, tells whether stored state of an user may be out of date.
+    private final Set<UUID> writing = ConcurrentHashMap.newKeySet();
+
+    // Single I/O thread, which is the only one writing to the storage.
+    private final ScheduledExecutorService executor;
+
+    // Metrics. Exposed through the MetricsRegistry.
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final AtomicLong maxLatency = new AtomicLong(0L);
+    private volatile int lastBatchSize = 0;
+
+    // Guards the closed state. Read lock is held while users are added to the queue, so none can be added after the final flush.
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean isClosed = false;
+
+    public UserSaveQueue(final @NotNull Azure plugin, final @NotNull UserStorage storage, final long coalesceWindow) {
+        this.plugin = plugin;
+        this.storage = storage;
+        this.coalesceWindow = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, coalesceWindow));
+        // Creating the I/O thread and scheduling periodic flush of users which stayed dirty long enough.
+        this.executor = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("Azure-UserSaver").daemon(true).factory());
+        // Checking a few times per window, to keep the actual delay close to the configured one.
+        final long period = Math.clamp(coalesceWindow / 4, 10L, 250L);
+        // ...
+        executor.scheduleWithFixedDelay(() -> this.flushDirty(false), period, period, TimeUnit.MILLISECONDS);
+        // Registering metrics.
+        final MetricsRegistry metrics = plugin.getMetricsRegistry();
+        metrics.register("user_cache.save_queue.depth", dirty::size);
+        metrics.register("user_cache.save_queue.requests", requests::sum);
+        metrics.register("user_cache.save_queue.coalesce_ratio", () -> "%.2f".formatted(coalesced.sum() / (double) Math.max(1L, requests.sum())));
+        metrics.register("user_cache.save_queue.written", written::sum);
+        metrics.register("user_cache.save_queue.failures", failures::sum);
+        metrics.register("user_cache.save_queue.last_batch_size", () -> lastBatchSize);
+        metrics.register("user_cache.save_queue.flush_latency_avg_ms", () -> "%.2f".formatted(totalLatency.sum() / 1_000_000D / Math.max(1L, written.sum() + failures.sum())));
+        metrics.register("user_cache.save_queue.flush_latency_max_ms", () -> "%.2f".formatted(maxLatency.get() / 1_000_000D));
+    }
+
+    /**
+     * Marks specified {@link AzureUser} as dirty. Returned {@link CompletableFuture} is completed once user has been written.
+     * In case user is already waiting to be written, the same {@link CompletableFuture} is returned and no additional write is performed.
+     */
+    public @NotNull CompletableFuture<Boolean> enqueue(final @NotNull AzureUser user) {
+        requests.increment();
+        // ...
+        closeLock.readLock().lock();
+        try {
+            // Rejecting the write in case queue has already been closed. This can happen when data is modified while server is stopping, after the storage has been closed.
+            if (isClosed == true) {
+                plugin.getLogger().warning("Could not save data of " + user.getName() + " (" + user.getUniqueId() + ") because user storage has already been closed.");
+                // Increasing number of failures.
+                failures.increment();
+                return CompletableFuture.completedFuture(false);
+            }
+            // Adding user to the queue or updating existing entry with the most recent instance.
+            return dirty.compute(user.getUniqueId(), (uniqueId, existing) -> {
+                // Creating new entry in case user is not dirty yet.
+                if (existing == null)
+                    return new Pending(uniqueId, user, System.nanoTime());
+                // Otherwise, coalescing with the existing entry. Instance is updated because AzureUser may have been replaced in the cache.
+                existing.user = user;
+                coalesced.increment();
+                // ...
+                return existing;
+            }).future;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns {@code true} if specified user has changes which are not yet written to the storage.
+     */
+    public boolean isPending(final @NotNull UUID uniqueId) {
+        return dirty.containsKey(uniqueId) == true || writing.contains(uniqueId) == true;
+    }
+
+    /**
+     * Writes specified user as soon as possible, without waiting for the window to pass. Does nothing if user is not dirty.
+     */
+    public void flush(final @NotNull UUID uniqueId) {
+        try {
+            executor.execute(() -> {
+                // Marking user as being written before removing it from the dirty map, so it's never reported as not pending in between.
+                writing.add(uniqueId);
+                // ...
+                try {
+                    final @Nullable Pending pending = dirty.remove(uniqueId);
+                    // Writing in case user was dirty.
+                    if (pending != null)
+                        this.write(pending);
+                } finally {
+                    writing.remove(uniqueId);
+                }
+            });
+        } catch (final RejectedExecutionException _) {
+            // Queue has been closed. All remaining users are written by the close() method.
+        }
+    }
+
+    /**
+     * Stops the I/O thread and writes all remaining dirty users on the calling thread. Called when plugin is being disabled.
+     * Users saved afterwards are rejected, as the storage is closed right after.
+     */
+    public void close() {
+        // Marking queue as closed. Write lock waits for enqueue calls in progress, so no user can be added after this point.
+        closeLock.writeLock().lock();
+        try {
+            if (isClosed == true)
+                return;
+            // ...
+            isClosed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        // Stopping periodic flush. Already submitted tasks are still executed.
+        executor.shutdown();
+        // Waiting for the I/O thread to finish.
+        try {
+            if (executor.awaitTermination(30, TimeUnit.SECONDS) == false)
+                plugin.getLogger().warning("Timed out while waiting for user save queue to finish.");
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Writing all remaining users. No other thread is writing to the storage at this point.
+        this.flushDirty(true);
+        // Unregistering metrics.
+        plugin.getMetricsRegistry().unregister("user_cache.save_queue.");
+    }
+
+    /**
+     * Writes all users which stayed dirty for at least the configured window, or all of them when {@code force} is {@code true}.
+     */
+    private void flushDirty(final boolean force) {
+        final long now = System.nanoTime();
+        int batchSize = 0;
+        // Iterating over all dirty users. Entries added while iterating may or may not be included, which is fine.
+        for (final Pending pending : dirty.values()) {
+            // Skipping users which are not due yet.
+            if (force == false && now - pending.markedAt < coalesceWindow)
+                continue;
+            // Marking user as being written before removing it from the dirty map, so it's never reported as not pending in between.
+            writing.add(pending.uniqueId);
+            // ...
+            try {
+                // Removing the entry. After it has been removed, it's no longer updated and subsequent saves create a new entry.
+                if (dirty.remove(pending.uniqueId, pending) == false)
+                    continue;
+                // Writing the user.
+                this.write(pending);
+            } finally {
+                writing.remove(pending.uniqueId);
+            }
+            // Increasing size of the batch.
+            batchSize++;
+        }
+        // Updating batch size, if anything has been written.
+        if (batchSize > 0)
+            lastBatchSize = batchSize;
+    }
+
+    /**
+     * Writes user of specified {@link Pending} entry and completes it's {@link CompletableFuture}.
+     */
+    private boolean write(final @NotNull Pending pending) {
+        boolean isSuccess;
+        // Writing user to the storage.
+        try {
+            storage.save(pending.user);
+            // Increasing number of written users.
+            written.increment();
+            isSuccess = true;
+        } catch (final IOException | RuntimeException e) {
+            plugin.getLogger().severe("Could not save data of " + pending.user.getName() + " (" + pending.uniqueId + ").");
+            plugin.getLogger().severe(" (1) " + e.getClass().getSimpleName() + ": " + e.getMessage());
+            // Increasing number of failures.
+            failures.increment();
+            isSuccess = false;
+        }
+        // Updating latency, measured from the moment user has been marked dirty.
+        final long latency = System.nanoTime() - pending.markedAt;
+        totalLatency.add(latency);
+        maxLatency.accumulateAndGet(latency, Math::max);
+        // Completing the future.
+        pending.future.complete(isSuccess);
+        // ...
+        return isSuccess;
+    }
+
+    /**
+     * Represents a user waiting to be written.
+     */
+    private static final class Pending {
+
+        private final UUID uniqueId;
+        private final long markedAt;
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        // Most recent instance of the user. Updated when save requests are coalesced.
+        private volatile AzureUser user;
+
+        private Pending(final @NotNull UUID uniqueId, final @NotNull AzureUser user, final long markedAt) {
+            this.uniqueId = uniqueId;
+            this.user = user;
+            this.markedAt = markedAt;
+        }
+
+    }
+
+}
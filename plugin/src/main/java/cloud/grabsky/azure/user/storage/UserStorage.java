@@ -0,0 +1,85 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user.storage;
+
+import cloud.grabsky.azure.user.AzureUser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link UserStorage} is responsible for persisting {@link AzureUser} objects.
+ */
+public interface UserStorage {
+
+    /**
+     * Loads all stored users and passes them to the specified {@link Consumer}. Called once, during startup.
+     */
+    void loadAll(final @NotNull Consumer<AzureUser> consumer) throws IllegalStateException;
+
+    /**
+     * Loads and returns {@link AzureUser} of specified {@link UUID}, or {@code null} if it is not stored. Can be called from any thread.
+     */
+    @Nullable AzureUser load(final @NotNull UUID uniqueId) throws IOException;
+
+    /**
+     * Persists specified {@link AzureUser}, replacing previously stored state. Can be called from any thread.
+     */
+    void save(final @NotNull AzureUser user) throws IOException;
+
+    /**
+     * Flushes and releases all resources held by this {@link UserStorage}. Called when plugin is being disabled.
+     */
+    void close() throws IOException;
+
+    /**
+     * Ensures that specified directory exists. In case file is not a directory - it gets deleted and a directory is created in its place.
+     */
+    static void ensureDirectoryExists(final @NotNull File directory) throws IllegalStateException {
+        // Creating directory in case it does not exist.
+        if (directory.exists() == false)
+            directory.mkdirs();
+        // Deleting and re-creating in case file is not a directory.
+        if (directory.isDirectory() == false) {
+            if (directory.delete() == false)
+                throw new IllegalStateException("File " + directory.getPath() + " is not a directory and could not be deleted. Please delete or rename it manually.");
+            // Calling (self) after deleting non-directory file. This should not lead to infinite recursion.
+            ensureDirectoryExists(directory);
+        }
+    }
+
+    /**
+     * Represents available {@link UserStorage} implementations.
+     */
+    enum Type {
+
+        /**
+         * One JSON file per user, stored inside 'usercache' directory.
+         */
+        FILES,
+
+        /**
+         * Append-only log of user records split into segment files, stored inside 'userstore' directory.
+         */
+        SEGMENTED
+
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * One-shot migration of users from {@link FileUserStorage} to {@link SegmentedUserStorage}, and back.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class UserStorageMigrator {
+
+    /**
+     * Suffix appended to the name of source directory after migration is complete.
+     */
+    public static final String MIGRATED_SUFFIX = ".migrated";
+
+    /**
+     * Name of the file created inside target directory after all users have been migrated.
+     */
+    public static final String MARKER_FILE_NAME = "migration.done";
+
+    /**
+     * Returns {@code true} if users should be migrated from {@code source} to {@code target}. That is when migration has not been completed yet and source contains at least one file.
+     * Migration that failed partway is resumed, as marker file is created only after all users have been copied.
+     */
+    public static boolean isRequired(final @NotNull FileUserStorage source, final @NotNull SegmentedUserStorage target) {
+        return new File(target.getDirectory(), MARKER_FILE_NAME).exists() == false && source.getDirectory().isDirectory() == true && source.listFiles().length > 0;
+    }
+
+    /**
+     * Copies all users from {@code source} to {@code target}, creates the marker file and renames source directory, so migration is not performed again.
+     * Migration is aborted without creating the marker file when any of the source files cannot be read, so no user is silently lost.
+     * Source files are left untouched and can be restored manually by removing the {@link #MIGRATED_SUFFIX} from directory name.
+     */
+    public static void migrate(final @NotNull Logger logger, final @NotNull FileUserStorage source, final @NotNull SegmentedUserStorage target) throws IOException, IllegalStateException {
+        logger.info("Migrating users from " + source.getDirectory().getPath() + " to " + target.getDirectory().getPath() + "...");
+        // ...
+        final AtomicInteger migratedUsers = new AtomicInteger(0);
+        // Getting list of user files within the source directory.
+        final File[] files = source.listFiles();
+        // Loading all users from source storage and appending them to the target storage. Users copied by previous (failed) attempt are overwritten.
+        final int failedUsers;
+        try {
+            failedUsers = ParallelLoader.load(logger, files.length, (index) -> source.read(files[index]), (index) -> "FILE = " + files[index].getPath(), user -> {
+                try {
+                    target.save(user);
+                    // Increasing number of migrated users.
+                    migratedUsers.incrementAndGet();
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+        // Aborting in case any of the files could not be read. Migration is resumed on the next startup.
+        if (failedUsers > 0)
+            throw new IllegalStateException("Migration has been aborted because " + failedUsers + " user file(s) inside " + source.getDirectory().getPath() + " could not be read. Please fix or remove them and restart the server to resume the migration.");
+        // Making sure migrated users are on the disk before migration is marked as complete.
+        target.flush();
+        // Creating the marker file. From now on, migration is considered done, even if renaming the directory fails.
+        final File marker = new File(target.getDirectory(), MARKER_FILE_NAME);
+        // ...
+        Files.writeString(marker.toPath(), "Migrated " + migratedUsers.get() + " user(s) from " + source.getDirectory().getPath() + " at " + Instant.now() + System.lineSeparator());
+        // Renaming source directory, so it's clear the files are no longer used.
+        final File destination = new File(source.getDirectory().getParentFile(), source.getDirectory().getName() + MIGRATED_SUFFIX);
+        // ...
+        if (destination.exists() == true || source.getDirectory().renameTo(destination) == false) {
+            logger.warning("Users have been migrated but directory " + source.getDirectory().getPath() + " could not be renamed to " + destination.getPath() + ". Please rename or remove it manually.");
+            return;
+        }
+        // Printing "summary" message to the console.
+        logger.info("Successfully migrated " + migratedUsers.get() + " user(s). Previous files have been moved to " + destination.getPath());
+    }
+
+    /**
+     * Returns {@code true} if users should be migrated back from {@link SegmentedUserStorage} stored inside specified directory.
+     * That is when storage type has been switched back to {@link UserStorage.Type#FILES}, but segmented storage is still there.
+     */
+    public static boolean isReverseRequired(final @NotNull File segmentedDirectory) {
+        final @Nullable String[] files = segmentedDirectory.list();
+        // ...
+        return segmentedDirectory.isDirectory() == true && files != null && files.length > 0;
+    }
+
+    /**
+     * Copies all users from {@code source} to {@code target}, closes the source and renames it's directory, so migration is not performed again.
+     * Migration is aborted without renaming the directory when any of the records cannot be read, so no user is silently lost.
+     * Source files are left untouched and can be restored manually by removing the {@link #MIGRATED_SUFFIX} from directory name.
+     */
+    public static void migrateBack(final @NotNull Logger logger, final @NotNull SegmentedUserStorage source, final @NotNull FileUserStorage target) throws IOException, IllegalStateException {
+        logger.info("Storage type has been changed to FILES. Migrating users from " + source.getDirectory().getPath() + " back to " + target.getDirectory().getPath() + "...");
+        // ...
+        final AtomicInteger migratedUsers = new AtomicInteger(0);
+        final int storedUsers = source.size();
+        // Loading all users from source storage and writing them to the target storage. Files of users copied by previous (failed) attempt are overwritten.
+        try {
+            source.loadAll(user -> {
+                try {
+                    target.save(user);
+                    // Increasing number of migrated users.
+                    migratedUsers.incrementAndGet();
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            source.close();
+        }
+        // Aborting in case any of the records could not be read. Migration is resumed on the next startup.
+        if (migratedUsers.get() < storedUsers)
+            throw new IllegalStateException("Migration has been aborted because " + (storedUsers - migratedUsers.get()) + " user record(s) inside " + source.getDirectory().getPath() + " could not be read. Please fix or remove them, or switch storage type back to SEGMENTED, and restart the server.");
+        // Renaming source directory, so it's clear the segments are no longer used. Directory left by previous migration (if any) is not overwritten.
+        final File parent = source.getDirectory().getParentFile();
+        final File destination = (new File(parent, source.getDirectory().getName() + MIGRATED_SUFFIX).exists() == false)
+                ? new File(parent, source.getDirectory().getName() + MIGRATED_SUFFIX)
+                : new File(parent, source.getDirectory().getName() + MIGRATED_SUFFIX + "-" + System.currentTimeMillis());
+        // Refusing to continue in case directory cannot be renamed. Otherwise, users saved from now on would be overwritten by stale records on the next startup.
+        if (source.getDirectory().renameTo(destination) == false)
+            throw new IllegalStateException("Users have been migrated but directory " + source.getDirectory().getPath() + " could not be renamed to " + destination.getPath() + ". Please rename or remove it manually and restart the server.");
+        // Printing "summary" message to the console.
+        logger.info("Successfully migrated " + migratedUsers.get() + " user(s). Previous segments have been moved to " + destination.getPath());
+    }
+
+}
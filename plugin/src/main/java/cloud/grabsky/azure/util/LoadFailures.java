@@ -0,0 +1,52 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.util;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.configuration.PluginLocale;
+import cloud.grabsky.bedrock.components.Message;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.NotNull;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class LoadFailures {
+
+    /**
+     * Returns handler of user load failures, which logs the cause and informs specified {@link CommandSender} that user could not be loaded.
+     * Meant to be passed to {@link CompletableFuture#exceptionally}, so the future completes with {@code null} afterwards.
+     */
+    public static <T> @NotNull Function<Throwable, T> report(final @NotNull Azure plugin, final @NotNull CommandSender sender, final @NotNull OfflinePlayer target) {
+        return (e) -> {
+            // Unwrapping the exception, so the actual cause is logged instead of the CompletionException.
+            final Throwable cause = (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+            // Logging the error.
+            plugin.getLogger().severe("User " + target.getUniqueId() + " could not be loaded due to following error(s):");
+            plugin.getLogger().severe(" (1) " + cause.getClass().getSimpleName() + ": " + cause.getMessage());
+            // Sending error message to the sender.
+            Message.of(PluginLocale.USER_LOAD_FAILURE).placeholder("player", (target.getName() != null) ? target.getName() : target.getUniqueId().toString()).send(sender);
+            return null;
+        };
+    }
+
+}
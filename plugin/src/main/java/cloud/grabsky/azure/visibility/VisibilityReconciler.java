@@ -0,0 +1,140 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.visibility;
+
+import cloud.grabsky.azure.Azure;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link VisibilityReconciler} hides players immediately and collects requests to show them, which are applied once per tick.
+ * <p>
+ * Hiding is never delayed: {@link org.bukkit.event.player.PlayerJoinEvent} is called before player info and the entity are sent
+ * to other players, and both of these check {@link Player#canSee}. Delaying the hide would expose vanished players for a tick.
+ * Only the most recent show request for each pair of players is kept, and a hide cancels it. Requests are compared against visibility
+ * state previously applied by this reconciler, and {@link Player#hidePlayer} or {@link Player#showPlayer} is called only when that state actually changes.
+ * <p>
+ * All methods must be called from the main thread.
+ */
+public final class VisibilityReconciler {
+
+    private final Azure plugin;
+
+    // Pairs of players, for which target should be shown to the viewer during the next tick.
+    private final Set<Pair> pending = new LinkedHashSet<>();
+
+    // Players hidden from each viewer by this reconciler.
+    private final Map<UUID, Set<UUID>> hidden = new HashMap<>();
+
+    // Metrics.
+    private int lastTickPackets = 0;
+    private long totalPackets = 0L;
+    private long skippedRequests = 0L;
+
+    public VisibilityReconciler(final @NotNull Azure plugin) {
+        this.plugin = plugin;
+        // Scheduling the task which applies pending requests every tick.
+        plugin.getBedrockScheduler().repeat(1L, 1L, Long.MAX_VALUE, (_) -> {
+            this.apply();
+            // ...
+            return true;
+        });
+        // Registering metrics.
+        plugin.getMetricsRegistry().register("visibility.reconciler.pending", pending::size);
+        plugin.getMetricsRegistry().register("visibility.reconciler.last_tick_packets", () -> lastTickPackets);
+        plugin.getMetricsRegistry().register("visibility.reconciler.packets", () -> totalPackets);
+        plugin.getMetricsRegistry().register("visibility.reconciler.skipped_requests", () -> skippedRequests);
+    }
+
+    /**
+     * Hides {@code target} from {@code viewer}. Applied immediately, cancelling any pending request to show {@code target} to {@code viewer}.
+     */
+    public void hide(final @NotNull Player viewer, final @NotNull Player target) {
+        pending.remove(new Pair(viewer.getUniqueId(), target.getUniqueId()));
+        // Updating the state. Skipping in case it did not change.
+        if (hidden.computeIfAbsent(viewer.getUniqueId(), (_) -> new HashSet<>()).add(target.getUniqueId()) == false) {
+            skippedRequests++;
+            return;
+        }
+        // Applying the change.
+        viewer.hidePlayer(plugin, target);
+        // Increasing number of sent packets.
+        totalPackets++;
+    }
+
+    /**
+     * Requests {@code target} to be shown to {@code viewer}. Applied during the next tick.
+     */
+    public void show(final @NotNull Player viewer, final @NotNull Player target) {
+        pending.add(new Pair(viewer.getUniqueId(), target.getUniqueId()));
+    }
+
+    /**
+     * Forgets visibility state of specified player. Called when player leaves the server, as visibility is not preserved between sessions.
+     */
+    public void forget(final @NotNull UUID uniqueId) {
+        hidden.remove(uniqueId);
+        // Removing player from the hidden players of other viewers.
+        hidden.values().forEach(targets -> targets.remove(uniqueId));
+        // Removing pending requests involving the player.
+        pending.removeIf(pair -> pair.viewer().equals(uniqueId) == true || pair.target().equals(uniqueId) == true);
+    }
+
+    /**
+     * Applies all pending show requests.
+     */
+    private void apply() {
+        int packets = 0;
+        // ...
+        for (final Pair pair : pending) {
+            final @Nullable Player viewer = Bukkit.getPlayer(pair.viewer());
+            final @Nullable Player target = Bukkit.getPlayer(pair.target());
+            // Skipping in case any of the players is no longer online.
+            if (viewer == null || target == null) {
+                skippedRequests++;
+                continue;
+            }
+            // Updating the state. Skipping in case it did not change.
+            final @Nullable Set<UUID> targets = hidden.get(viewer.getUniqueId());
+            // ...
+            if (targets == null || targets.remove(target.getUniqueId()) == false) {
+                skippedRequests++;
+                continue;
+            }
+            // Applying the change.
+            viewer.showPlayer(plugin, target);
+            // Increasing number of sent packets.
+            packets++;
+        }
+        // Clearing pending requests.
+        pending.clear();
+        // Updating metrics.
+        this.lastTickPackets = packets;
+        this.totalPackets += packets;
+    }
+
+    private record Pair(@NotNull UUID viewer, @NotNull UUID target) { /* DATA */ }
+
+}
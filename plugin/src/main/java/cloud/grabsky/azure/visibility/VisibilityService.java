@@ -0,0 +1,152 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.visibility;
+
+import cloud.grabsky.azure.Azure;
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.event.group.GroupDataRecalculateEvent;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import net.luckperms.api.model.group.Group;
+import net.luckperms.api.model.user.User;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * {@link VisibilityService} keeps a snapshot of primary group weight of each online player and answers
+ * visibility and rank comparisons using that snapshot, instead of querying LuckPerms for each pair of players.
+ * <p>
+ * Snapshot of a player is invalidated when LuckPerms recalculates data of that player. All snapshots are
+ * invalidated when data of any group is recalculated, as that may change weight of any number of players.
+ */
+public final class VisibilityService implements Listener {
+
+    /**
+     * Weight of players without a (loaded) primary group. Comparisons involving such players always fail.
+     */
+    public static final int UNKNOWN_WEIGHT = Integer.MIN_VALUE;
+
+    private final Azure plugin;
+    private final LuckPerms luckperms;
+
+    /**
+     * {@link VisibilityReconciler} which should be used to hide and show players.
+     */
+    @Getter(AccessLevel.PUBLIC)
+    private final VisibilityReconciler reconciler;
+
+    // Primary group weight of online players. Computed on first access.
+    private final Map<UUID, Integer> weights = new ConcurrentHashMap<>();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public VisibilityService(final @NotNull Azure plugin, final @NotNull LuckPerms luckperms) {
+        this.plugin = plugin;
+        this.luckperms = luckperms;
+        this.reconciler = new VisibilityReconciler(plugin);
+        // Invalidating snapshots when LuckPerms recalculates user or group data. Events are called asynchronously.
+        luckperms.getEventBus().subscribe(plugin, UserDataRecalculateEvent.class, (event) -> {
+            invalidations.increment();
+            weights.remove(event.getUser().getUniqueId());
+        });
+        luckperms.getEventBus().subscribe(plugin, GroupDataRecalculateEvent.class, (_) -> {
+            invalidations.increment();
+            weights.clear();
+        });
+        // Registering metrics.
+        plugin.getMetricsRegistry().register("visibility.cached_weights", weights::size);
+        plugin.getMetricsRegistry().register("visibility.weight_lookups", lookups::sum);
+        plugin.getMetricsRegistry().register("visibility.invalidations", invalidations::sum);
+    }
+
+    /**
+     * Returns primary group weight of specified online {@link Player}, or {@link #UNKNOWN_WEIGHT} if it cannot be determined.
+     */
+    public int getWeight(final @NotNull Player player) {
+        final @Nullable Integer weight = weights.get(player.getUniqueId());
+        // Returning cached weight. This is by far the most common path.
+        if (weight != null)
+            return weight;
+        // Not caching weight of players who already left, it would never be invalidated.
+        if (player.isOnline() == false)
+            return this.computeWeight(luckperms.getPlayerAdapter(Player.class).getUser(player));
+        // Otherwise, computing and caching the weight.
+        return weights.computeIfAbsent(player.getUniqueId(), (_) -> this.computeWeight(luckperms.getPlayerAdapter(Player.class).getUser(player)));
+    }
+
+    /**
+     * Returns {@link CompletableFuture} completed with primary group weight of player with specified {@link UUID}, or {@link #UNKNOWN_WEIGHT} if it cannot be determined.
+     * Weight of online players is returned immediately. Offline players are loaded from LuckPerms storage in the background.
+     */
+    public @NotNull CompletableFuture<Integer> getWeight(final @NotNull UUID uniqueId) {
+        final @Nullable Player player = Bukkit.getPlayer(uniqueId);
+        // Returning weight of online players from the snapshot.
+        if (player != null)
+            return CompletableFuture.completedFuture(this.getWeight(player));
+        // Loading offline players.
+        return luckperms.getUserManager().loadUser(uniqueId).thenApply(this::computeWeight).exceptionally(_ -> UNKNOWN_WEIGHT);
+    }
+
+    /**
+     * Returns {@code true} if {@code viewer} should not see {@code target}, assuming {@code target} is vanished.
+     * That is when {@code target} has higher weight than {@code viewer}. Players of the same weight can see each other.
+     */
+    public boolean shouldHide(final @NotNull Player viewer, final @NotNull Player target) {
+        return outranks(this.getWeight(target), this.getWeight(viewer));
+    }
+
+    /**
+     * Returns {@code true} if specified {@code weight} is higher than {@code otherWeight}. Returns {@code false} when any of the weights is unknown.
+     */
+    public static boolean outranks(final int weight, final int otherWeight) {
+        return weight != UNKNOWN_WEIGHT && otherWeight != UNKNOWN_WEIGHT && weight > otherWeight;
+    }
+
+    private int computeWeight(final @Nullable User user) {
+        // Increasing number of lookups.
+        lookups.increment();
+        // ...
+        if (user == null)
+            return UNKNOWN_WEIGHT;
+        // ...
+        final @Nullable Group group = luckperms.getGroupManager().getGroup(user.getPrimaryGroup());
+        // Returning weight of the primary group, or unknown if group is not loaded.
+        return (group != null) ? group.getWeight().orElse(0) : UNKNOWN_WEIGHT;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(final @NotNull PlayerQuitEvent event) {
+        weights.remove(event.getPlayer().getUniqueId());
+        // Forgetting visibility state of the player.
+        reconciler.forget(event.getPlayer().getUniqueId());
+    }
+
+}
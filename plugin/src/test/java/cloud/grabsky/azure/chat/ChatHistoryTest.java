@@ -0,0 +1,147 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import cloud.grabsky.azure.chat.ChatHistory.Entry;
+import net.kyori.adventure.chat.SignedMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.jetbrains.annotations.NotNull;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that {@link ChatHistory} keeps only the most recent messages, and that messages of each sender stay linked as older ones are overwritten.
+ */
+public final class ChatHistoryTest {
+
+    private static final UUID STEVE = UUID.nameUUIDFromBytes("Steve".getBytes());
+    private static final UUID ALEX = UUID.nameUUIDFromBytes("Alex".getBytes());
+
+    @Test
+    public void test_AddAndGet() {
+        final ChatHistory history = new ChatHistory(8);
+        final UUID id = history.add(STEVE, "Steve", "Hello!", null);
+        // ...
+        final Entry entry = history.get(id);
+        assertNotNull(entry);
+        assertEquals(id, entry.id());
+        assertEquals(STEVE, entry.sender());
+        assertEquals("Steve", entry.senderName());
+        assertEquals("Hello!", entry.text());
+        assertNull(entry.discordMessageId());
+        assertFalse(entry.deleted());
+        assertEquals(1, history.size());
+    }
+
+    @Test
+    public void test_Capacity() {
+        // Capacity is at least one.
+        assertEquals(1, new ChatHistory(0).getCapacity());
+        // Oldest messages are overwritten once history is full.
+        final ChatHistory history = new ChatHistory(3);
+        final List<UUID> ids = List.of(
+                history.add(STEVE, "Steve", "1", null),
+                history.add(STEVE, "Steve", "2", null),
+                history.add(STEVE, "Steve", "3", null),
+                history.add(STEVE, "Steve", "4", null),
+                history.add(STEVE, "Steve", "5", null)
+        );
+        // ...
+        assertEquals(3, history.size());
+        assertNull(history.get(ids.get(0)));
+        assertNull(history.get(ids.get(1)));
+        assertEquals("3", history.get(ids.get(2)).text());
+        assertEquals("5", history.get(ids.get(4)).text());
+    }
+
+    @Test
+    public void test_MessagesOfSender() {
+        final ChatHistory history = new ChatHistory(4);
+        history.add(STEVE, "Steve", "s1", null);
+        history.add(ALEX, "Alex", "a1", null);
+        history.add(STEVE, "Steve", "s2", null);
+        history.add(ALEX, "Alex", "a2", null);
+        // Messages are listed from the newest one, skipping messages of other senders.
+        assertEquals(List.of("s2", "s1"), texts(history.getMessages(STEVE, 10)));
+        assertEquals(List.of("a2"), texts(history.getMessages(ALEX, 1)));
+        // Overwritten messages are no longer listed.
+        history.add(ALEX, "Alex", "a3", null);
+        assertEquals(List.of("s2"), texts(history.getMessages(STEVE, 10)));
+        assertEquals(List.of("a3", "a2", "a1"), texts(history.getMessages(ALEX, 10)));
+        // Sender is forgotten once their most recent message is overwritten.
+        history.add(ALEX, "Alex", "a4", null);
+        history.add(ALEX, "Alex", "a5", null);
+        assertTrue(history.getMessages(STEVE, 10).isEmpty());
+        assertEquals(List.of("a5", "a4", "a3", "a2"), texts(history.getMessages(ALEX, 10)));
+    }
+
+    @Test
+    public void test_Delete() {
+        final ChatHistory history = new ChatHistory(8);
+        final UUID first = history.add(STEVE, "Steve", "1", null);
+        history.add(STEVE, "Steve", "2", null);
+        history.add(STEVE, "Steve", "3", null);
+        // Deleting single message. Already deleted messages cannot be deleted again.
+        assertEquals("1", history.delete(first).text());
+        assertNull(history.delete(first));
+        assertTrue(history.get(first).deleted());
+        // Deleting recent messages of the sender, skipping already deleted ones.
+        assertEquals(List.of("3", "2"), texts(history.delete(STEVE, 10)));
+        assertTrue(history.delete(STEVE, 10).isEmpty());
+        // Deleted messages are still listed, marked as such.
+        assertTrue(history.getMessages(STEVE, 10).stream().allMatch(Entry::deleted));
+    }
+
+    @Test
+    public void test_ForeignIdentifiers() {
+        final ChatHistory history = new ChatHistory(8);
+        final ChatHistory other = new ChatHistory(8);
+        // Identifiers are bound to the instance which created them.
+        final UUID id = other.add(STEVE, "Steve", "Hello!", null);
+        history.add(STEVE, "Steve", "Hello!", null);
+        // ...
+        assertNull(history.get(id));
+        assertNull(history.delete(id));
+        assertNull(history.get(new UUID(0L, -1L)));
+    }
+
+    @Test
+    public void test_DiscordMessageId() {
+        final ChatHistory history = new ChatHistory(8);
+        final SignedMessage.Signature signature = SignedMessage.signature(new byte[] { 1, 2, 3 });
+        final UUID older = history.add(STEVE, "Steve", "1", signature);
+        final UUID newer = history.add(STEVE, "Steve", "2", signature);
+        final UUID other = history.add(ALEX, "Alex", "3", SignedMessage.signature(new byte[] { 4, 5, 6 }));
+        // Identifier is associated with the most recent message of the signature.
+        history.setDiscordMessageId(signature, 42L);
+        // ...
+        assertEquals(42L, history.get(newer).discordMessageId());
+        assertNull(history.get(older).discordMessageId());
+        assertNull(history.get(other).discordMessageId());
+    }
+
+    private static @NotNull List<String> texts(final @NotNull List<Entry> entries) {
+        return entries.stream().map(Entry::text).toList();
+    }
+
+}
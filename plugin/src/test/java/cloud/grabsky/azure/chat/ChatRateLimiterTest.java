@@ -0,0 +1,190 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.chat.ChatRateLimiter.Bucket;
+import cloud.grabsky.azure.configuration.PluginConfig;
+import cloud.grabsky.azure.configuration.PluginConfig.RateLimitHolder;
+import cloud.grabsky.azure.metrics.MetricsRegistry;
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.event.EventBus;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.PluginManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.NotNull;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Verifies token buckets of {@link ChatRateLimiter} against a simulated clock, and how limits are resolved for players.
+ * Players are given limits with refill time long enough for the real clock not to matter.
+ */
+public final class ChatRateLimiterTest {
+
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private ChatRateLimiter limiter;
+
+    @BeforeEach
+    public void setup() {
+        final Azure plugin = mock(Azure.class, withSettings().stubOnly());
+        final Server server = mock(Server.class, withSettings().stubOnly());
+        final LuckPerms luckPerms = mock(LuckPerms.class, withSettings().stubOnly());
+        // Providing only parts accessed by the limiter.
+        when(plugin.getServer()).thenReturn(server);
+        when(server.getPluginManager()).thenReturn(mock(PluginManager.class, withSettings().stubOnly()));
+        when(plugin.getLuckPerms()).thenReturn(luckPerms);
+        when(luckPerms.getEventBus()).thenReturn(mock(EventBus.class, withSettings().stubOnly()));
+        when(plugin.getMetricsRegistry()).thenReturn(new MetricsRegistry());
+        // Configuring default limits.
+        PluginConfig.CHAT_RATE_LIMIT_BURST = 3;
+        PluginConfig.CHAT_RATE_LIMIT_REFILL = 60_000L;
+        PluginConfig.CHAT_RATE_LIMIT_TIERS = List.of();
+        // ...
+        this.limiter = new ChatRateLimiter(plugin);
+    }
+
+    @Test
+    public void test_Burst() {
+        final Bucket bucket = Bucket.of(3, 1000L);
+        final long now = 1_000_000_000L;
+        // Full bucket allows a burst of messages.
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now + 999 * MILLISECOND));
+    }
+
+    @Test
+    public void test_Refill() {
+        final Bucket bucket = Bucket.of(2, 1000L);
+        final long now = 1_000_000_000L;
+        // Emptying the bucket.
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+        // One token is regained after each refill interval.
+        assertTrue(bucket.tryAcquire(now + 1000 * MILLISECOND));
+        assertFalse(bucket.tryAcquire(now + 1000 * MILLISECOND));
+        // Bucket is never filled above it's burst, no matter how long it's left unused.
+        final long later = now + 3_600_000 * MILLISECOND;
+        assertTrue(bucket.tryAcquire(later));
+        assertTrue(bucket.tryAcquire(later));
+        assertFalse(bucket.tryAcquire(later));
+    }
+
+    @Test
+    public void test_Unlimited() {
+        // Non-positive burst or refill means there is no limit.
+        for (final Bucket bucket : List.of(Bucket.of(0, 1000L), Bucket.of(3, 0L)))
+            for (int i = 0; i < 1000; i++)
+                assertTrue(bucket.tryAcquire(1_000_000_000L));
+    }
+
+    @Test
+    public void test_DefaultLimits() {
+        final Player player = createPlayer("Steve");
+        // ...
+        assertTrue(limiter.tryAcquire(player));
+        assertTrue(limiter.tryAcquire(player));
+        assertTrue(limiter.tryAcquire(player));
+        assertFalse(limiter.tryAcquire(player));
+    }
+
+    @Test
+    public void test_BypassPermission() {
+        final Player player = createPlayer("Steve");
+        when(player.hasPermission("azure.plugin.chat.can_bypass_cooldown")).thenReturn(true);
+        // ...
+        for (int i = 0; i < 100; i++)
+            assertTrue(limiter.tryAcquire(player));
+    }
+
+    @Test
+    public void test_Tiers() {
+        PluginConfig.CHAT_RATE_LIMIT_TIERS = List.of(createTier("tier.first", 5), createTier("tier.second", 1));
+        final Player player = createPlayer("Steve");
+        when(player.hasPermission("tier.first")).thenReturn(true);
+        when(player.hasPermission("tier.second")).thenReturn(true);
+        // Tier defined last takes precedence.
+        assertTrue(limiter.tryAcquire(player));
+        assertFalse(limiter.tryAcquire(player));
+        // Limits are resolved again once buckets are invalidated.
+        when(player.hasPermission("tier.second")).thenReturn(false);
+        limiter.invalidateAll();
+        for (int i = 0; i < 5; i++)
+            assertTrue(limiter.tryAcquire(player));
+        assertFalse(limiter.tryAcquire(player));
+    }
+
+    @Test
+    public void test_Quit() {
+        final Player player = createPlayer("Steve");
+        // Emptying the bucket.
+        for (int i = 0; i < 3; i++)
+            limiter.tryAcquire(player);
+        assertFalse(limiter.tryAcquire(player));
+        // Bucket is removed when player leaves, so player starts with a full one when they join again.
+        final PlayerQuitEvent event = mock(PlayerQuitEvent.class, withSettings().stubOnly());
+        when(event.getPlayer()).thenReturn(player);
+        // ...
+        limiter.onPlayerQuit(event);
+        assertTrue(limiter.tryAcquire(player));
+    }
+
+    @Test
+    public void test_OfflinePlayers() {
+        final Player player = createPlayer("Steve");
+        when(player.isOnline()).thenReturn(false);
+        // Buckets of offline players are not kept, as they would never be removed.
+        for (int i = 0; i < 10; i++)
+            assertTrue(limiter.tryAcquire(player));
+    }
+
+    private static @NotNull Player createPlayer(final @NotNull String name) {
+        final Player player = mock(Player.class);
+        // ...
+        when(player.getName()).thenReturn(name);
+        when(player.getUniqueId()).thenReturn(UUID.nameUUIDFromBytes(name.getBytes()));
+        when(player.isOnline()).thenReturn(true);
+        // ...
+        return player;
+    }
+
+    private static @NotNull RateLimitHolder createTier(final @NotNull String permission, final int burst) {
+        final RateLimitHolder tier = mock(RateLimitHolder.class, withSettings().stubOnly());
+        // ...
+        when(tier.getPermission()).thenReturn(permission);
+        when(tier.getBurst()).thenReturn(burst);
+        when(tier.getRefill()).thenReturn(60_000L);
+        // ...
+        return tier;
+    }
+
+}
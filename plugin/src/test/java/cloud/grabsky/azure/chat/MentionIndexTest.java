@@ -0,0 +1,176 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.chat.MentionIndex.Mentions;
+import cloud.grabsky.azure.metrics.MetricsRegistry;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+
+import org.jetbrains.annotations.NotNull;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Verifies that {@link MentionIndex} finds names and display names of indexed players only as whole words, and that
+ * patterns returned by {@link MentionIndex#getPattern(Mentions)} match the same text.
+ */
+public final class MentionIndexTest {
+
+    private MentionIndex index;
+
+    @BeforeAll
+    public static void setupServer() {
+        final Server server = mock(Server.class, withSettings().stubOnly());
+        // Server is asked for online players when index is created. Players are indexed by this test manually.
+        doReturn(List.of()).when(server).getOnlinePlayers();
+        when(server.getLogger()).thenReturn(Logger.getLogger("Server"));
+        // Server can be set only once per JVM.
+        if (Bukkit.getServer() == null)
+            Bukkit.setServer(server);
+    }
+
+    @BeforeEach
+    public void setup() {
+        final Azure plugin = mock(Azure.class, withSettings().stubOnly());
+        final Server server = mock(Server.class, withSettings().stubOnly());
+        // Providing only parts accessed by the index.
+        when(plugin.getServer()).thenReturn(server);
+        when(server.getPluginManager()).thenReturn(mock(PluginManager.class, withSettings().stubOnly()));
+        when(plugin.getMetricsRegistry()).thenReturn(new MetricsRegistry());
+        // ...
+        this.index = new MentionIndex(plugin);
+    }
+
+    @Test
+    public void test_WholeWords() {
+        final Player steve = createPlayer("Steve", "Steve");
+        index.update(steve);
+        // Names are matched case-insensitively, only as whole words.
+        assertEquals(Set.of(steve.getUniqueId()), index.find("hey steve!").players());
+        assertEquals(Set.of(steve.getUniqueId()), index.find("STEVE").players());
+        assertEquals(Set.of(steve.getUniqueId()), index.find("@Steve, come here").players());
+        assertTrue(index.find("stevens").isEmpty());
+        assertTrue(index.find("xsteve").isEmpty());
+        assertTrue(index.find("steve_").isEmpty());
+        assertTrue(index.find("").isEmpty());
+        // Exact text player was mentioned by is returned as well.
+        assertEquals(Set.of("STEVE"), index.find("hi STEVE").matches());
+    }
+
+    @Test
+    public void test_DisplayNames() {
+        final Player player = createPlayer("Notch", "The Creator");
+        index.update(player);
+        // Both name and display name are indexed.
+        assertEquals(Set.of(player.getUniqueId()), index.find("notch").players());
+        assertEquals(Set.of(player.getUniqueId()), index.find("thanks, the creator").players());
+        // Display name is changed, so previous one is no longer indexed.
+        when(player.displayName()).thenReturn(Component.text("Markus"));
+        index.update(player);
+        assertTrue(index.find("the creator").isEmpty());
+        assertEquals(Set.of(player.getUniqueId()), index.find("markus?").players());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void test_SharedPrefixes() {
+        final Player steve = createPlayer("Steve", "Steve");
+        final Player steven = createPlayer("Steven", "Steven");
+        index.update(steve);
+        index.update(steven);
+        // Names sharing a prefix are told apart by the word boundary.
+        assertEquals(Set.of(steve.getUniqueId()), index.find("steve").players());
+        assertEquals(Set.of(steven.getUniqueId()), index.find("steven").players());
+        assertEquals(Set.of(steve.getUniqueId(), steven.getUniqueId()), index.find("steve and steven").players());
+        // Removing one of them does not affect the other.
+        index.remove(steve.getUniqueId());
+        assertTrue(index.find("steve").isEmpty());
+        assertEquals(Set.of(steven.getUniqueId()), index.find("steven").players());
+    }
+
+    @Test
+    public void test_SameNames() {
+        // Display name of one player is the same as name of the other.
+        final Player first = createPlayer("Alex", "Alex");
+        final Player second = createPlayer("Alexander", "Alex");
+        index.update(first);
+        index.update(second);
+        // ...
+        assertEquals(Set.of(first.getUniqueId(), second.getUniqueId()), index.find("alex").players());
+        // Removing one of them keeps the name indexed for the other.
+        index.remove(first.getUniqueId());
+        assertEquals(Set.of(second.getUniqueId()), index.find("alex").players());
+    }
+
+    @Test
+    public void test_ShortNames() {
+        // Names shorter than 3 characters would match too many regular words.
+        index.update(createPlayer("Jo", "Jo"));
+        // ...
+        assertTrue(index.find("jo jo").isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void test_Pattern() {
+        index.update(createPlayer("Steve", "Steve"));
+        index.update(createPlayer("Steven", "Steven"));
+        // ...
+        final String message = "Steve, steven and STEVE, but not stevens or xsteve.";
+        final Mentions mentions = index.find(message);
+        final Matcher matcher = index.getPattern(mentions).matcher(message);
+        // Pattern must match exactly the text mentions were found by, in the same places.
+        final StringBuilder matched = new StringBuilder();
+        while (matcher.find() == true)
+            matched.append(matcher.group()).append(' ');
+        // ...
+        assertEquals("Steve steven STEVE ", matched.toString());
+        // Patterns are cached by the matched text.
+        assertSame(index.getPattern(mentions), index.getPattern(index.find(message)));
+        assertFalse(index.getPattern(mentions).matcher("stevens").find());
+    }
+
+    private static @NotNull Player createPlayer(final @NotNull String name, final @NotNull String displayName) {
+        final Player player = mock(Player.class);
+        // ...
+        when(player.getName()).thenReturn(name);
+        when(player.getUniqueId()).thenReturn(UUID.nameUUIDFromBytes(name.getBytes()));
+        when(player.displayName()).thenReturn(Component.text(displayName));
+        // ...
+        return player;
+    }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import cloud.grabsky.azure.configuration.PluginConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that {@link SpamDetector} tells (nearly) repeated messages apart from different ones, and counts matches
+ * of the sender and of other players separately.
+ */
+public final class SpamDetectorTest {
+
+    private static final WordNormalizer NORMALIZER = new WordNormalizer(true, true, true, true, true);
+
+    private static final String MESSAGE = "Join my server at play.example.com, best survival experience ever!";
+
+    private static final UUID STEVE = UUID.nameUUIDFromBytes("Steve".getBytes());
+    private static final UUID ALEX = UUID.nameUUIDFromBytes("Alex".getBytes());
+    private static final UUID NOTCH = UUID.nameUUIDFromBytes("Notch".getBytes());
+    private static final UUID HEROBRINE = UUID.nameUUIDFromBytes("Herobrine".getBytes());
+
+    private SpamDetector detector;
+
+    @BeforeEach
+    public void setup() {
+        // Configuring the detector. Similarity threshold of 0.85 allows fingerprints to differ by up to 9 bits.
+        PluginConfig.CHAT_FILTERING_SPAM_ENABLED = true;
+        PluginConfig.CHAT_FILTERING_SPAM_MIN_LENGTH = 12;
+        PluginConfig.CHAT_FILTERING_SPAM_SIMILARITY_THRESHOLD = 0.85;
+        PluginConfig.CHAT_FILTERING_SPAM_WINDOW_DURATION = 60L;
+        PluginConfig.CHAT_FILTERING_SPAM_PLAYER_WINDOW = 8;
+        PluginConfig.CHAT_FILTERING_SPAM_PLAYER_MATCHES = 2;
+        PluginConfig.CHAT_FILTERING_SPAM_GLOBAL_WINDOW = 64;
+        PluginConfig.CHAT_FILTERING_SPAM_GLOBAL_MATCHES = 3;
+        // ...
+        this.detector = new SpamDetector();
+    }
+
+    @Test
+    public void test_Fingerprint() {
+        final long fingerprint = fingerprint(MESSAGE);
+        // Case, punctuation and look-alike characters do not affect the fingerprint.
+        assertEquals(fingerprint, fingerprint("JOIN MY SERVER AT PLAY.EXAMPLE.COM - BEST SURVIVAL EXPERIENCE EVER"));
+        assertEquals(fingerprint, fingerprint("J0in my s3rv3r at play.exampl3.com, best survival experience ever!!!"));
+        // Slightly different messages have fingerprints that differ by only a few bits.
+        assertTrue(Long.bitCount(fingerprint ^ fingerprint("Join my server at play.example.com, the best survival experience ever!")) <= 9);
+        assertTrue(Long.bitCount(fingerprint ^ fingerprint("Join my server at play.example.net, best survival experience ever!")) <= 9);
+        // Different messages have fingerprints that differ by many bits.
+        assertTrue(Long.bitCount(fingerprint ^ fingerprint("Does anyone know where I can find diamonds in this world?")) > 20);
+        assertTrue(Long.bitCount(fingerprint ^ fingerprint("I am going to build a castle next to the river tomorrow.")) > 20);
+    }
+
+    @Test
+    public void test_RepeatedBySender() {
+        // Sender can repeat the message as many times as configured.
+        assertFalse(detector.isSpam(STEVE, MESSAGE));
+        assertFalse(detector.isSpam(STEVE, "Join my server at play.example.net, best survival experience ever!"));
+        // Next similar messages are blocked.
+        assertTrue(detector.isSpam(STEVE, "JOIN MY SERVER AT PLAY.EXAMPLE.COM - best survival experience ever"));
+        assertTrue(detector.isSpam(STEVE, MESSAGE));
+        // Different messages are still allowed.
+        assertFalse(detector.isSpam(STEVE, "Does anyone know where I can find diamonds in this world?"));
+    }
+
+    @Test
+    public void test_RepeatedByOthers() {
+        // Other players can send the same message as many times as configured.
+        assertFalse(detector.isSpam(STEVE, MESSAGE));
+        assertFalse(detector.isSpam(ALEX, MESSAGE));
+        assertFalse(detector.isSpam(NOTCH, MESSAGE));
+        // Next player sending the same message is blocked.
+        assertTrue(detector.isSpam(HEROBRINE, MESSAGE));
+        // Messages of the sender are not counted as messages of other players.
+        assertFalse(detector.isSpam(STEVE, "Does anyone know where I can find diamonds in this world?"));
+    }
+
+    @Test
+    public void test_BlockedMessagesAreNotRemembered() {
+        PluginConfig.CHAT_FILTERING_SPAM_PLAYER_MATCHES = 1;
+        // ...
+        assertFalse(detector.isSpam(STEVE, MESSAGE));
+        assertTrue(detector.isSpam(STEVE, MESSAGE));
+        assertTrue(detector.isSpam(STEVE, MESSAGE));
+        // Blocked messages are not counted as messages of other players.
+        assertFalse(detector.isSpam(ALEX, MESSAGE));
+        assertFalse(detector.isSpam(NOTCH, MESSAGE));
+    }
+
+    @Test
+    public void test_ShortMessages() {
+        // Short messages are never checked, as those tend to be similar to each other anyway.
+        for (int i = 0; i < 10; i++)
+            assertFalse(detector.isSpam(STEVE, "hello there!"));
+    }
+
+    @Test
+    public void test_Disabled() {
+        PluginConfig.CHAT_FILTERING_SPAM_ENABLED = false;
+        // ...
+        for (int i = 0; i < 10; i++)
+            assertFalse(detector.isSpam(STEVE, MESSAGE));
+    }
+
+    @Test
+    public void test_Expiration() {
+        // Messages expire immediately, so they are never counted.
+        PluginConfig.CHAT_FILTERING_SPAM_WINDOW_DURATION = 0L;
+        // ...
+        for (int i = 0; i < 10; i++)
+            assertFalse(detector.isSpam(STEVE, MESSAGE));
+    }
+
+    @Test
+    public void test_WindowSize() {
+        // Only the most recent message of the sender is remembered.
+        PluginConfig.CHAT_FILTERING_SPAM_PLAYER_WINDOW = 1;
+        PluginConfig.CHAT_FILTERING_SPAM_PLAYER_MATCHES = 1;
+        PluginConfig.CHAT_FILTERING_SPAM_GLOBAL_WINDOW = 0;
+        detector.invalidateAll();
+        // Message is forgotten once another one is sent.
+        assertFalse(detector.isSpam(STEVE, MESSAGE));
+        assertFalse(detector.isSpam(STEVE, "Does anyone know where I can find diamonds in this world?"));
+        assertFalse(detector.isSpam(STEVE, MESSAGE));
+        assertTrue(detector.isSpam(STEVE, MESSAGE));
+    }
+
+    @Test
+    public void test_Invalidation() {
+        PluginConfig.CHAT_FILTERING_SPAM_PLAYER_MATCHES = 1;
+        // ...
+        assertFalse(detector.isSpam(STEVE, MESSAGE));
+        assertTrue(detector.isSpam(STEVE, MESSAGE));
+        // Remembered messages are forgotten.
+        detector.invalidateAll();
+        assertFalse(detector.isSpam(STEVE, MESSAGE));
+    }
+
+    private static long fingerprint(final String message) {
+        return SpamDetector.fingerprint(NORMALIZER.normalize(message));
+    }
+
+}
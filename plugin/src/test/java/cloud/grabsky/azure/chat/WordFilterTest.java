@@ -0,0 +1,163 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies matching rules of {@link WordFilter}, and compares the automaton with a naive search over random entries and messages.
+ */
+public final class WordFilterTest {
+
+    private static final WordNormalizer NORMALIZER = new WordNormalizer(true, true, true, true, true);
+
+    @Test
+    public void test_WholeWord() {
+        final WordFilter filter = WordFilter.compile(NORMALIZER, List.of("word"));
+        // Matching whole words only.
+        assertEquals("word", filter.find("word"));
+        assertEquals("word", filter.find("this word here"));
+        assertEquals("word", filter.find("word, again."));
+        assertNull(filter.find("badword"));
+        assertNull(filter.find("wordy"));
+        assertNull(filter.find("swordfish"));
+    }
+
+    @Test
+    public void test_Wildcards() {
+        final WordFilter leading = WordFilter.compile(NORMALIZER, List.of("*word"));
+        final WordFilter trailing = WordFilter.compile(NORMALIZER, List.of("word*"));
+        final WordFilter both = WordFilter.compile(NORMALIZER, List.of("*word*"));
+        // Leading wildcard allows word to be a suffix of a longer word.
+        assertEquals("*word", leading.find("badword"));
+        assertEquals("*word", leading.find("word"));
+        assertNull(leading.find("wordy"));
+        // Trailing wildcard allows word to be a prefix of a longer word.
+        assertEquals("word*", trailing.find("wordy"));
+        assertEquals("word*", trailing.find("word"));
+        assertNull(trailing.find("badword"));
+        // Wildcards on both sides allow word to be anywhere.
+        assertEquals("*word*", both.find("swordfish"));
+        assertEquals("*word*", both.find("word"));
+    }
+
+    @Test
+    public void test_Normalization() {
+        final WordFilter filter = WordFilter.compile(NORMALIZER, List.of("Słówko"));
+        // Both entries and messages are normalized.
+        assertEquals("Słówko", filter.find("SLOWKO"));
+        assertEquals("Słówko", filter.find("5łooowk0"));
+        assertEquals("Słówko", filter.find("ѕłówkо"));
+        assertNull(filter.find("slowka"));
+    }
+
+    @Test
+    public void test_EmptyEntries() {
+        // Entries which are empty after stripping wildcards would match everything, so these are skipped.
+        final WordFilter filter = WordFilter.compile(NORMALIZER, List.of("", "**", "*  *"));
+        // ...
+        assertEquals(0, filter.getEntryCount());
+        assertNull(filter.find("anything at all"));
+        // Filter with no entries never matches.
+        assertNull(WordFilter.compile(NORMALIZER, List.of()).find("anything"));
+    }
+
+    @Test
+    public void test_OverlappingEntries() {
+        // Entries sharing prefixes and suffixes exercise failure and output links of the automaton.
+        final WordFilter filter = WordFilter.compile(NORMALIZER, List.of("he", "*she", "his", "hers", "*her*"));
+        // ...
+        assertEquals("*she", filter.find("ushe"));
+        assertEquals("he", filter.find("he said"));
+        assertEquals("*her*", filter.find("ushers"));
+        assertEquals("his", filter.find("is his"));
+        assertNull(filter.find("hi sh e"));
+    }
+
+    @Test
+    public void test_RandomAgainstNaiveSearch() {
+        final SplittableRandom random = new SplittableRandom(42);
+        // Small alphabet, so entries overlap and share prefixes as often as possible.
+        final String alphabet = "abc ";
+        // ...
+        for (int round = 0; round < 200; round++) {
+            final List<String> entries = new ArrayList<>();
+            final int count = 1 + random.nextInt(8);
+            // ...
+            for (int i = 0; i < count; i++) {
+                final String word = randomString(random, "abc", 1 + random.nextInt(4));
+                entries.add((random.nextBoolean() ? "*" : "") + word + (random.nextBoolean() ? "*" : ""));
+            }
+            // Normalization is disabled, so patterns can be compared with the message directly.
+            final WordNormalizer normalizer = new WordNormalizer(false, false, false, false, false);
+            final WordFilter filter = WordFilter.compile(normalizer, entries);
+            // ...
+            for (int i = 0; i < 50; i++) {
+                final String message = randomString(random, alphabet, random.nextInt(20));
+                final @Nullable String found = filter.find(message);
+                // Result must be present exactly when naive search finds any entry.
+                assertEquals(naiveFind(entries, message).isEmpty() == false, found != null, "Entries " + entries + " in '" + message + "'");
+                // Returned entry must be one of the entries found by naive search.
+                if (found != null)
+                    assertTrue(naiveFind(entries, message).contains(found), "Entry " + found + " is not in '" + message + "'");
+            }
+        }
+    }
+
+    private static @NotNull List<String> naiveFind(final @NotNull List<String> entries, final @NotNull String message) {
+        final List<String> found = new ArrayList<>();
+        // Checking every entry at every position of the message.
+        for (final String entry : entries) {
+            final boolean wordStart = entry.startsWith("*") == false;
+            final boolean wordEnd = entry.endsWith("*") == false;
+            final String pattern = entry.substring(wordStart ? 0 : 1, wordEnd ? entry.length() : entry.length() - 1);
+            // ...
+            for (int start = 0; start + pattern.length() <= message.length(); start++) {
+                final int end = start + pattern.length();
+                if (message.startsWith(pattern, start) == false)
+                    continue;
+                if (wordStart == true && start > 0 && Character.isLetterOrDigit(message.charAt(start - 1)) == true)
+                    continue;
+                if (wordEnd == true && end < message.length() && Character.isLetterOrDigit(message.charAt(end)) == true)
+                    continue;
+                // ...
+                found.add(entry);
+                break;
+            }
+        }
+        return found;
+    }
+
+    private static @NotNull String randomString(final @NotNull SplittableRandom random, final @NotNull String alphabet, final int length) {
+        final StringBuilder builder = new StringBuilder(length);
+        // ...
+        for (int i = 0; i < length; i++)
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        // ...
+        return builder.toString();
+    }
+
+}
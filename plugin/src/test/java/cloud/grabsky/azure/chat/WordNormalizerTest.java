@@ -0,0 +1,95 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Verifies each normalization step of {@link WordNormalizer}, separately and combined.
+ */
+public final class WordNormalizerTest {
+
+    private static final WordNormalizer NONE = new WordNormalizer(false, false, false, false, false);
+    private static final WordNormalizer ALL = new WordNormalizer(true, true, true, true, true);
+
+    @Test
+    public void test_NoSteps() {
+        assertEquals("ŻółĆ 1337 ааа", NONE.normalize("ŻółĆ 1337 ааа"));
+    }
+
+    @Test
+    public void test_CaseFolding() {
+        final WordNormalizer normalizer = new WordNormalizer(true, false, false, false, false);
+        // ...
+        assertEquals("hello world", normalizer.normalize("HeLLo WORLD"));
+        assertEquals("żółć", normalizer.normalize("ŻÓŁĆ"));
+    }
+
+    @Test
+    public void test_StripDiacritics() {
+        final WordNormalizer normalizer = new WordNormalizer(false, true, false, false, false);
+        // Characters decomposed by NFD normalization.
+        assertEquals("zoLC eaUn", normalizer.normalize("żóŁĆ éàÜñ"));
+        // Characters that are not decomposed, and are mapped using the lookup table.
+        assertEquals("lLdDoOhHis", normalizer.normalize("łŁđĐøØħĦıß"));
+    }
+
+    @Test
+    public void test_MapHomoglyphs() {
+        final WordNormalizer normalizer = new WordNormalizer(false, false, true, false, false);
+        // Cyrillic and Greek look-alikes.
+        assertEquals("paypal", normalizer.normalize("раураl"));
+        assertEquals("kot", normalizer.normalize("κοτ"));
+        // Upper-case variants are mapped only when case is folded first.
+        assertEquals("А", normalizer.normalize("А"));
+        assertEquals("a", new WordNormalizer(true, false, true, false, false).normalize("А"));
+    }
+
+    @Test
+    public void test_MapLeetSpeak() {
+        final WordNormalizer normalizer = new WordNormalizer(false, false, false, true, false);
+        // ...
+        assertEquals("oieastbas", normalizer.normalize("0134578@$"));
+        assertEquals("hello", normalizer.normalize("h3ll0"));
+        // Punctuation is left as-is.
+        assertEquals("hi!", normalizer.normalize("hi!"));
+    }
+
+    @Test
+    public void test_SquashRepeated() {
+        final WordNormalizer normalizer = new WordNormalizer(false, false, false, false, true);
+        // ...
+        assertEquals("helo", normalizer.normalize("hellllooo"));
+        assertEquals("a b", normalizer.normalize("aaa   bb"));
+        // Characters of different case are not the same character, unless case is folded first.
+        assertEquals("aA", normalizer.normalize("aaAA"));
+    }
+
+    @Test
+    public void test_AllSteps() {
+        // Repeated characters are squashed after they are mapped, so different spellings of the same letter are squashed too.
+        assertEquals("helo", ALL.normalize("HЕĹŁŁОOo"));
+        assertEquals("slowko", ALL.normalize("ŚŁÓWКO"));
+        assertEquals("basta", ALL.normalize("B@$7A"));
+    }
+
+    @Test
+    public void test_Empty() {
+        assertEquals("", ALL.normalize(""));
+    }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.chat.channel;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.metrics.MetricsRegistry;
+import cloud.grabsky.bedrock.BedrockScheduler;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.Vehicle;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.vehicle.VehicleMoveEvent;
+import org.bukkit.plugin.PluginManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import org.jetbrains.annotations.NotNull;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Verifies that {@link PlayerGrid} keeps positions of players up to date and that {@link PlayerGrid#getNearby} returns exactly these
+ * players, which are within specified radius. Players are moved by calling event handlers directly.
+ */
+public final class PlayerGridTest {
+
+    private MetricsRegistry metrics;
+
+    private PlayerGrid grid;
+
+    private World overworld;
+    private World nether;
+
+    @BeforeAll
+    public static void setupServer() {
+        final Server server = mock(Server.class, withSettings().stubOnly());
+        // Server is asked for online players when grid is created. Players are indexed by this test manually.
+        doReturn(List.of()).when(server).getOnlinePlayers();
+        when(server.getLogger()).thenReturn(Logger.getLogger("Server"));
+        // Server can be set only once per JVM.
+        if (Bukkit.getServer() == null)
+            Bukkit.setServer(server);
+    }
+
+    @BeforeEach
+    public void setup() {
+        final Azure plugin = mock(Azure.class, withSettings().stubOnly());
+        final Server server = mock(Server.class, withSettings().stubOnly());
+        // Providing only parts accessed by the grid.
+        when(plugin.getServer()).thenReturn(server);
+        when(server.getPluginManager()).thenReturn(mock(PluginManager.class, withSettings().stubOnly()));
+        when(plugin.getBedrockScheduler()).thenReturn(mock(BedrockScheduler.class, withSettings().stubOnly()));
+        // ...
+        this.metrics = new MetricsRegistry();
+        when(plugin.getMetricsRegistry()).thenReturn(metrics);
+        // ...
+        this.grid = new PlayerGrid(plugin);
+        this.overworld = createWorld();
+        this.nether = createWorld();
+    }
+
+    @Test
+    public void test_Radius() {
+        final Player steve = join("Steve", new Location(overworld, 0.0, 64.0, 0.0));
+        final Player alex = join("Alex", new Location(overworld, 30.0, 64.0, 0.0));
+        final Player notch = join("Notch", new Location(overworld, 25.0, 200.0, 25.0));
+        // Exact distance is checked, so players in the corners of the square around the circle are not returned.
+        assertEquals(Set.of(steve.getUniqueId(), alex.getUniqueId()), nearby(overworld, 0.0, 0.0, 30.0));
+        assertEquals(Set.of(steve.getUniqueId()), nearby(overworld, 0.0, 0.0, 29.9));
+        // Height is not taken into account.
+        assertEquals(Set.of(notch.getUniqueId()), nearby(overworld, 25.0, 25.0, 1.0));
+        // Players in other worlds are never returned.
+        assertTrue(nearby(nether, 0.0, 0.0, 1000.0).isEmpty());
+    }
+
+    @Test
+    public void test_ChunkBorders() {
+        final Player steve = join("Steve", new Location(overworld, -0.5, 64.0, -0.5));
+        final Player alex = join("Alex", new Location(overworld, 16.5, 64.0, 15.5));
+        final Player notch = join("Notch", new Location(overworld, -16.5, 64.0, 16.5));
+        // Players in neighbouring chunks, including these with negative coordinates, are found.
+        assertEquals(Set.of(steve.getUniqueId()), nearby(overworld, 0.5, 0.5, 2.0));
+        assertEquals(Set.of(alex.getUniqueId()), nearby(overworld, 15.5, 15.5, 1.5));
+        assertEquals(Set.of(notch.getUniqueId()), nearby(overworld, -15.5, 15.5, 1.5));
+        assertEquals(Set.of(steve.getUniqueId(), alex.getUniqueId(), notch.getUniqueId()), nearby(overworld, 0.0, 0.0, 24.0));
+    }
+
+    @Test
+    public void test_Movement() {
+        final Player steve = join("Steve", new Location(overworld, 0.0, 64.0, 0.0));
+        // Moving within the same chunk.
+        move(steve, new Location(overworld, 8.0, 64.0, 8.0));
+        assertEquals(8.0, grid.getPosition(steve.getUniqueId()).getX());
+        assertEquals(Set.of(steve.getUniqueId()), nearby(overworld, 8.0, 8.0, 0.5));
+        assertTrue(nearby(overworld, 0.0, 0.0, 0.5).isEmpty());
+        // Moving to a different chunk. Previous cell is removed once it becomes empty.
+        move(steve, new Location(overworld, 100.0, 64.0, -100.0));
+        assertEquals(Set.of(steve.getUniqueId()), nearby(overworld, 100.0, -100.0, 0.5));
+        assertTrue(nearby(overworld, 8.0, 8.0, 16.0).isEmpty());
+        assertEquals("1", metrics.snapshot().get("chat.grid.cells"));
+    }
+
+    @Test
+    public void test_HeadRotation() {
+        final Player steve = join("Steve", new Location(overworld, 0.0, 64.0, 0.0));
+        final PlayerMoveEvent event = mock(PlayerMoveEvent.class, withSettings().stubOnly());
+        when(event.getPlayer()).thenReturn(steve);
+        when(event.getTo()).thenReturn(new Location(overworld, 50.0, 64.0, 50.0));
+        when(event.hasChangedPosition()).thenReturn(false);
+        // Event is skipped, as player has only rotated their head.
+        grid.onPlayerMove(event);
+        assertEquals(0.0, grid.getPosition(steve.getUniqueId()).getX());
+    }
+
+    @Test
+    public void test_WorldChange() {
+        final Player steve = join("Steve", new Location(overworld, 0.0, 64.0, 0.0));
+        final PlayerTeleportEvent event = mock(PlayerTeleportEvent.class, withSettings().stubOnly());
+        when(event.getPlayer()).thenReturn(steve);
+        when(event.getTo()).thenReturn(new Location(nether, 0.0, 64.0, 0.0));
+        // Teleporting to the same coordinates of a different world.
+        grid.onPlayerTeleport(event);
+        assertTrue(nearby(overworld, 0.0, 0.0, 10.0).isEmpty());
+        assertEquals(Set.of(steve.getUniqueId()), nearby(nether, 0.0, 0.0, 10.0));
+        assertEquals(nether.getUID(), grid.getPosition(steve.getUniqueId()).getWorld());
+    }
+
+    @Test
+    public void test_Passengers() {
+        final Player steve = join("Steve", new Location(overworld, 0.0, 64.0, 0.0));
+        final Player alex = join("Alex", new Location(overworld, 0.0, 64.0, 0.0));
+        final Entity horse = mock(Entity.class, withSettings().stubOnly());
+        final Vehicle boat = mock(Vehicle.class, withSettings().stubOnly());
+        // Steve is riding a boat, and Alex is riding a horse which is riding the same boat.
+        doReturn(List.of(steve, horse)).when(boat).getPassengers();
+        doReturn(List.of(alex)).when(horse).getPassengers();
+        doReturn(List.of()).when(steve).getPassengers();
+        doReturn(List.of()).when(alex).getPassengers();
+        // Moving the boat along with it's passengers.
+        when(steve.getLocation()).thenReturn(new Location(overworld, 200.0, 64.0, 0.0));
+        when(alex.getLocation()).thenReturn(new Location(overworld, 201.0, 64.0, 0.0));
+        final VehicleMoveEvent event = mock(VehicleMoveEvent.class, withSettings().stubOnly());
+        when(event.getVehicle()).thenReturn(boat);
+        grid.onVehicleMove(event);
+        // Both passengers are updated.
+        assertEquals(Set.of(steve.getUniqueId(), alex.getUniqueId()), nearby(overworld, 200.0, 0.0, 2.0));
+        assertTrue(nearby(overworld, 0.0, 0.0, 10.0).isEmpty());
+    }
+
+    @Test
+    public void test_Quit() {
+        final Player steve = join("Steve", new Location(overworld, 0.0, 64.0, 0.0));
+        final PlayerQuitEvent event = mock(PlayerQuitEvent.class, withSettings().stubOnly());
+        when(event.getPlayer()).thenReturn(steve);
+        // Player and their cell are removed.
+        grid.onPlayerQuit(event);
+        assertNull(grid.getPosition(steve.getUniqueId()));
+        assertTrue(nearby(overworld, 0.0, 0.0, 10.0).isEmpty());
+        assertEquals("0", metrics.snapshot().get("chat.grid.players"));
+        assertEquals("0", metrics.snapshot().get("chat.grid.cells"));
+        // Removing player which is not indexed does nothing.
+        grid.onPlayerQuit(event);
+    }
+
+    @Test
+    public void test_RandomAgainstNaive() {
+        final Random random = new Random(20);
+        final List<Player> players = new ArrayList<>();
+        // Scattering players across both worlds, some of them moved afterwards.
+        for (int i = 0; i < 200; i++) {
+            final World world = (random.nextInt(4) == 0) ? nether : overworld;
+            final Player player = join("Player" + i, new Location(world, random.nextDouble(-500, 500), 64.0, random.nextDouble(-500, 500)));
+            if (random.nextBoolean() == true)
+                move(player, new Location(world, random.nextDouble(-500, 500), 64.0, random.nextDouble(-500, 500)));
+            players.add(player);
+        }
+        // Comparing results with the naive search, including radii large enough to iterate over occupied chunks instead.
+        for (int i = 0; i < 500; i++) {
+            final World world = (random.nextInt(4) == 0) ? nether : overworld;
+            final double x = random.nextDouble(-600, 600);
+            final double z = random.nextDouble(-600, 600);
+            final double radius = (i % 10 == 0) ? random.nextDouble(500, 2000) : random.nextDouble(0, 100);
+            // ...
+            final Set<UUID> expected = new HashSet<>();
+            for (final Player player : players) {
+                final Location location = player.getLocation();
+                final double dx = location.getX() - x;
+                final double dz = location.getZ() - z;
+                if (location.getWorld() == world && dx * dx + dz * dz <= radius * radius)
+                    expected.add(player.getUniqueId());
+            }
+            final List<UUID> result = grid.getNearby(world.getUID(), x, z, radius);
+            // Each player is returned at most once.
+            assertEquals(result.size(), new HashSet<>(result).size());
+            assertEquals(expected, new HashSet<>(result));
+        }
+    }
+
+    private @NotNull Set<UUID> nearby(final @NotNull World world, final double x, final double z, final double radius) {
+        return new HashSet<>(grid.getNearby(world.getUID(), x, z, radius));
+    }
+
+    private @NotNull Player join(final @NotNull String name, final @NotNull Location location) {
+        final Player player = mock(Player.class, withSettings().stubOnly());
+        when(player.getName()).thenReturn(name);
+        when(player.getUniqueId()).thenReturn(UUID.nameUUIDFromBytes(name.getBytes()));
+        when(player.getLocation()).thenReturn(location);
+        // ...
+        final PlayerJoinEvent event = mock(PlayerJoinEvent.class, withSettings().stubOnly());
+        when(event.getPlayer()).thenReturn(player);
+        grid.onPlayerJoin(event);
+        // ...
+        assertNotNull(grid.getPosition(player.getUniqueId()));
+        return player;
+    }
+
+    private void move(final @NotNull Player player, final @NotNull Location to) {
+        final PlayerMoveEvent event = mock(PlayerMoveEvent.class, withSettings().stubOnly());
+        when(event.getPlayer()).thenReturn(player);
+        when(event.getTo()).thenReturn(to);
+        when(event.hasChangedPosition()).thenReturn(true);
+        // Player location is updated as well, as it would be after the event.
+        when(player.getLocation()).thenReturn(to);
+        grid.onPlayerMove(event);
+    }
+
+    private static @NotNull World createWorld() {
+        final World world = mock(World.class, withSettings().stubOnly());
+        when(world.getUID()).thenReturn(UUID.randomUUID());
+        return world;
+    }
+
+}
@@ -0,0 +1,340 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.integrations;
+
+import club.minnced.discord.webhook.WebhookClient;
+import club.minnced.discord.webhook.send.WebhookMessage;
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.configuration.PluginConfig;
+import cloud.grabsky.azure.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Verifies that {@link DiscordOutbox} recovers from incomplete or corrupted files, left by a crash or modified by hand, without skipping
+ * messages that have not been delivered yet. Messages are "delivered" to a mocked webhook client, which records their contents.
+ */
+public final class DiscordOutboxTest {
+
+    // Maximum time to wait for messages to be delivered.
+    private static final long DELIVERY_TIMEOUT = 10_000L;
+
+    @TempDir
+    Path directory;
+
+    private Azure plugin;
+    private MetricsRegistry metrics;
+
+    // Contents of delivered messages, in order they have been delivered.
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+
+    // Currently opened outbox. Closed after each test.
+    private @Nullable DiscordOutbox outbox;
+
+    @BeforeEach
+    public void setup() {
+        this.plugin = mock(Azure.class, withSettings().stubOnly());
+        this.metrics = new MetricsRegistry();
+        // Providing only parts accessed by the outbox. Discord integration is not available until messages are meant to be delivered.
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("Azure"));
+        when(plugin.getMetricsRegistry()).thenReturn(metrics);
+        when(plugin.getDiscordIntegration()).thenReturn(null);
+        // ...
+        PluginConfig.DISCORD_INTEGRATIONS_OUTBOX_MAX_SIZE = 64;
+    }
+
+    @AfterEach
+    public void teardown() {
+        this.close();
+    }
+
+    @Test
+    public void test_Restart() throws IOException {
+        this.open(false);
+        enqueue("first", "second", "third");
+        this.reopen(true);
+        // Messages left from previous run are delivered in order.
+        awaitDelivery();
+        assertEquals(List.of("first", "second", "third"), delivered);
+        assertEquals(0L, Files.size(directory.resolve("outbox.dat")));
+        // Cursor is not moved back after restart.
+        this.reopen(true);
+        enqueue("fourth");
+        awaitDelivery();
+        assertEquals(List.of("first", "second", "third", "fourth"), delivered);
+    }
+
+    @Test
+    public void test_TruncatedTail() throws IOException {
+        this.open(false);
+        final long[] ends = enqueue("first", "second", "third");
+        this.close();
+        // Cutting the last record in half, as if server crashed while it was being written.
+        truncate(directory.resolve("outbox.dat"), ends[1] + (ends[2] - ends[1]) / 2);
+        this.open(false);
+        // Incomplete record is discarded and new messages are appended right after the last complete one.
+        assertEquals(ends[1], Files.size(directory.resolve("outbox.dat")));
+        this.reopen(true);
+        enqueue("fourth");
+        awaitDelivery();
+        assertEquals(List.of("first", "second", "fourth"), delivered);
+    }
+
+    @Test
+    public void test_TruncatedHeader() throws IOException {
+        this.open(false);
+        final long[] ends = enqueue("first", "second");
+        this.close();
+        // Leaving only part of the header of the second record.
+        truncate(directory.resolve("outbox.dat"), ends[0] + 5);
+        this.reopen(true);
+        // ...
+        awaitDelivery();
+        assertEquals(List.of("first"), delivered);
+    }
+
+    @Test
+    public void test_ChecksumMismatch() throws IOException {
+        this.open(false);
+        final long[] ends = enqueue("first", "second", "third");
+        this.close();
+        // Flipping a single bit of the payload of the second record.
+        final Path log = directory.resolve("outbox.dat");
+        final byte[] bytes = Files.readAllBytes(log);
+        bytes[(int) ends[1] - 3] ^= 0x01;
+        Files.write(log, bytes);
+        this.open(false);
+        // Corrupted record is discarded along with everything past it, as position of the next record cannot be trusted.
+        assertEquals(ends[0], Files.size(log));
+        this.reopen(true);
+        awaitDelivery();
+        assertEquals(List.of("first"), delivered);
+    }
+
+    @Test
+    public void test_CursorPastEnd() throws IOException {
+        this.open(false);
+        final long[] ends = enqueue("first", "second");
+        this.close();
+        // Cursor pointing past the end of the log. Left by a crash during compaction of previous versions, which did not reset the cursor beforehand.
+        writeCursor(ends[1] + 100);
+        this.reopen(true);
+        // Messages are delivered again instead of being skipped.
+        awaitDelivery();
+        assertEquals(List.of("first", "second"), delivered);
+    }
+
+    @Test
+    public void test_CursorInsideRecord() throws IOException {
+        this.open(false);
+        final long[] ends = enqueue("first", "second", "third");
+        this.close();
+        // Cursor pointing at the middle of the second record.
+        writeCursor(ends[0] + 4);
+        this.reopen(true);
+        // ...
+        awaitDelivery();
+        assertEquals(List.of("first", "second", "third"), delivered);
+    }
+
+    @Test
+    public void test_CursorBehind() throws IOException {
+        this.open(false);
+        final long[] ends = enqueue("first", "second", "third");
+        this.close();
+        // Cursor pointing at the second record, as if first message has been delivered just before the crash.
+        writeCursor(ends[0]);
+        this.reopen(true);
+        // Delivery continues from the cursor.
+        awaitDelivery();
+        assertEquals(List.of("second", "third"), delivered);
+    }
+
+    @Test
+    public void test_Compaction() throws IOException {
+        PluginConfig.DISCORD_INTEGRATIONS_OUTBOX_MAX_SIZE = 1;
+        // Opening the outbox with a client that fails to deliver messages starting with "stuck", so messages after them stay in the outbox.
+        this.open(true, true);
+        final long[] ends = enqueue("first" + "-".repeat(300), "second" + "-".repeat(300), "stuck");
+        awaitCondition(() -> delivered.size() == 2 && outbox.getPendingBytes() == ends[2] - ends[1]);
+        // Message would not fit without discarding delivered part of the log.
+        assertTrue(outbox.enqueue("CHAT", "third" + "-".repeat(300), null, null));
+        // Log now contains only undelivered messages and cursor points at the beginning of it.
+        final Path log = directory.resolve("outbox.dat");
+        assertEquals(outbox.getPendingBytes(), Files.size(log));
+        assertEquals(0L, readCursor());
+        // Pending messages are delivered after restart, without messages delivered before compaction.
+        delivered.clear();
+        this.reopen(true, false);
+        awaitDelivery();
+        assertEquals(List.of("stuck", "third" + "-".repeat(300)), delivered);
+    }
+
+    @Test
+    public void test_CursorBeforeCompaction() throws IOException {
+        this.open(false);
+        final long[] ends = enqueue("first", "second", "third");
+        this.close();
+        // Compacted log along with the cursor written before compaction, as left by a crash while log was being replaced.
+        final Path log = directory.resolve("outbox.dat");
+        final byte[] bytes = Files.readAllBytes(log);
+        Files.write(log, Arrays.copyOfRange(bytes, (int) ends[1], bytes.length));
+        writeCursor(0L);
+        this.reopen(true);
+        // Remaining message is delivered.
+        awaitDelivery();
+        assertEquals(List.of("third"), delivered);
+    }
+
+    @Test
+    public void test_MaxSize() throws IOException {
+        PluginConfig.DISCORD_INTEGRATIONS_OUTBOX_MAX_SIZE = 1;
+        this.open(false);
+        // Filling the outbox with nothing delivered yet, so nothing can be discarded.
+        int accepted = 0;
+        while (outbox.enqueue("CHAT", "message-" + accepted + "-".repeat(100), null, null) == true)
+            accepted++;
+        // Outbox is full, so further messages are dropped and the log never grows past the limit.
+        assertTrue(accepted > 0);
+        assertFalse(outbox.enqueue("CHAT", "message-" + accepted + "-".repeat(100), null, null));
+        assertTrue(Files.size(directory.resolve("outbox.dat")) <= 1024L);
+        assertEquals("2", metrics.snapshot().get("discord.outbox.dropped"));
+        // Accepted messages are kept.
+        this.reopen(true);
+        awaitDelivery();
+        assertEquals(accepted, delivered.size());
+        assertEquals("message-" + (accepted - 1) + "-".repeat(100), delivered.getLast());
+    }
+
+    /* HELPERS */
+
+    private void open(final boolean isAvailable) throws IOException {
+        this.open(isAvailable, false);
+    }
+
+    private void open(final boolean isAvailable, final boolean isStuck) throws IOException {
+        if (isAvailable == true) {
+            final WebhookClient client = mock(WebhookClient.class, withSettings().stubOnly());
+            final DiscordIntegration integration = mock(DiscordIntegration.class, withSettings().stubOnly());
+            // Recording contents of delivered messages. Messages starting with "stuck" fail to be delivered, unless specified otherwise.
+            when(client.send(any(WebhookMessage.class))).thenAnswer(invocation -> {
+                final String content = invocation.<WebhookMessage>getArgument(0).getContent();
+                // ...
+                if (isStuck == true && content != null && content.startsWith("stuck") == true)
+                    return CompletableFuture.failedFuture(new IOException("Connection reset."));
+                // ...
+                delivered.add(content);
+                return CompletableFuture.completedFuture(null);
+            });
+            when(integration.getWebhookClients()).thenReturn(Map.of("CHAT", client));
+            when(plugin.getDiscordIntegration()).thenReturn(integration);
+        } else {
+            when(plugin.getDiscordIntegration()).thenReturn(null);
+        }
+        this.outbox = new DiscordOutbox(plugin, directory.toFile());
+    }
+
+    private void reopen(final boolean isAvailable) throws IOException {
+        this.reopen(isAvailable, false);
+    }
+
+    private void reopen(final boolean isAvailable, final boolean isStuck) throws IOException {
+        this.close();
+        this.open(isAvailable, isStuck);
+    }
+
+    private void close() {
+        if (outbox != null)
+            outbox.close();
+        // ...
+        this.outbox = null;
+    }
+
+    /**
+     * Enqueues messages with specified contents and returns position of the end of each record.
+     */
+    private long @NotNull [] enqueue(final @NotNull String... contents) throws IOException {
+        final long[] ends = new long[contents.length];
+        // ...
+        for (int i = 0; i < contents.length; i++) {
+            assertTrue(outbox.enqueue("CHAT", contents[i], null, null));
+            ends[i] = Files.size(directory.resolve("outbox.dat"));
+        }
+        return ends;
+    }
+
+    private void awaitDelivery() {
+        awaitCondition(() -> outbox.getPendingBytes() == 0L);
+    }
+
+    private static void awaitCondition(final @NotNull BooleanSupplier condition) {
+        final long deadline = System.currentTimeMillis() + DELIVERY_TIMEOUT;
+        // Polling until condition is met or the timeout is reached.
+        while (condition.getAsBoolean() == false) {
+            if (System.currentTimeMillis() > deadline)
+                fail("Timed out while waiting for messages to be delivered.");
+            // ...
+            try {
+                Thread.sleep(10L);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+
+    private void writeCursor(final long cursor) throws IOException {
+        Files.write(directory.resolve("outbox.cursor"), ByteBuffer.allocate(Long.BYTES).putLong(cursor).array());
+    }
+
+    private long readCursor() throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(directory.resolve("outbox.cursor"))).getLong();
+    }
+
+    private static void truncate(final @NotNull Path file, final long size) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+}
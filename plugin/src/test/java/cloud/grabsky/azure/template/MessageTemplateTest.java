@@ -0,0 +1,165 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.template;
+
+import cloud.grabsky.azure.template.MessageTemplate.Slot;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.Style;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.jetbrains.annotations.NotNull;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that {@link MessageTemplate} renders the same text, styled the same way, as parsing the format with {@link MiniMessage} does.
+ * Component trees are compared after flattening, because compiled templates are allowed to nest components differently.
+ */
+public final class MessageTemplateTest {
+
+    @AfterEach
+    public void cleanup() {
+        MessageTemplate.invalidateAll();
+    }
+
+    /**
+     * Formats shipped in default {@code config.json}.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "<player>: <message>",
+            "[<signature_uuid>] [<group>] <player>: <message>",
+            "[AdminChat] <player>: <message>",
+            "<gold>(Donator)<white> <player>: <message>",
+            "<red>(Admin)<white> <player>: <message>",
+            "<dark_gray>› <gray><prefix><player><reset><gray> dołączył do gry.",
+            "<dark_gray>› <green>Gratulacje! <gray>Odblokowałeś osiągnięcie <advancement><gray>...",
+            "<yellow><mention></yellow>"
+    })
+    public void test_DefaultFormats(final @NotNull String format) {
+        assertTrue(MessageTemplate.of(format).isCompiled());
+        // Comparing output of the compiled template with output of MiniMessage.
+        assertRendersLikeMiniMessage(format);
+    }
+
+    /**
+     * Formats styling slot values with surrounding tags.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "<bold><player></bold>: <message>",
+            "<red><displayname><gray>: <message>",
+            "<hover:show_text:'<player>'><displayname></hover>: <message>",
+            "<prefix><italic><displayname></italic>: <message>"
+    })
+    public void test_StyledSlots(final @NotNull String format) {
+        assertTrue(MessageTemplate.of(format).isCompiled());
+        // Comparing output of the compiled template with output of MiniMessage.
+        assertRendersLikeMiniMessage(format);
+    }
+
+    /**
+     * Formats with modifying tags around slots, which are parsed on every render.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "<gradient:red:blue><player></gradient>: <message>",
+            "<rainbow><displayname></rainbow>: <message>",
+            "<transition:red:blue:0.5><player></transition>: <message>",
+            "<gradient:gold:yellow><prefix><player></gradient>: <message>"
+    })
+    public void test_ModifyingTags(final @NotNull String format) {
+        assertFalse(MessageTemplate.of(format).isCompiled());
+        // Comparing output of the template with output of MiniMessage.
+        assertRendersLikeMiniMessage(format);
+    }
+
+    private static void assertRendersLikeMiniMessage(final @NotNull String format) {
+        final Component displayName = Component.text("Steve", NamedTextColor.AQUA);
+        final Component message = Component.text("Hello, ").append(Component.text("world", NamedTextColor.GREEN)).append(Component.text("!"));
+        final String signature = UUID.nameUUIDFromBytes(new byte[] { 1 }).toString();
+        // Rendering the format using a template.
+        final Component rendered = MessageTemplate.of(format).render(null,
+                MessageTemplate.unparsed("signature_uuid", signature),
+                MessageTemplate.unparsed("player", "Steve"),
+                MessageTemplate.unparsed("group", "default"),
+                MessageTemplate.parsed("prefix", "<dark_red>[Owner] "),
+                MessageTemplate.component("displayname", displayName),
+                MessageTemplate.component("advancement", Component.text("[Stone Age]", NamedTextColor.GREEN)),
+                MessageTemplate.unparsed("mention", "@Steve"),
+                MessageTemplate.component("message", message)
+        );
+        // Parsing the format using MiniMessage.
+        final Component expected = MiniMessage.miniMessage().deserialize(format, TagResolver.resolver(
+                Placeholder.unparsed("signature_uuid", signature),
+                Placeholder.unparsed("player", "Steve"),
+                Placeholder.unparsed("group", "default"),
+                Placeholder.parsed("prefix", "<dark_red>[Owner] "),
+                Placeholder.component("displayname", displayName),
+                Placeholder.component("advancement", Component.text("[Stone Age]", NamedTextColor.GREEN)),
+                Placeholder.unparsed("mention", "@Steve"),
+                Placeholder.component("message", message)
+        ));
+        // Comparing flattened components.
+        assertEquals(flatten(expected), flatten(rendered));
+    }
+
+    /**
+     * Returns list of text segments of specified component, each with it's effective style. Adjacent segments of the same style are joined.
+     */
+    private static @NotNull List<Segment> flatten(final @NotNull Component component) {
+        final List<Segment> segments = new ArrayList<>();
+        flatten(component, Style.empty(), segments);
+        return segments;
+    }
+
+    private static void flatten(final @NotNull Component component, final @NotNull Style parent, final @NotNull List<Segment> segments) {
+        final Style style = parent.merge(component.style());
+        // Adding text of the component, if not empty.
+        if (component instanceof TextComponent text && text.content().isEmpty() == false) {
+            final String flattened = flatten(style);
+            // Joining with previous segment if styled the same way.
+            if (segments.isEmpty() == false && segments.getLast().style().equals(flattened) == true)
+                segments.set(segments.size() - 1, new Segment(segments.getLast().text() + text.content(), flattened));
+            else segments.add(new Segment(text.content(), flattened));
+        }
+        // Adding text of children.
+        for (final Component child : component.children())
+            flatten(child, style, segments);
+    }
+
+    private static @NotNull String flatten(final @NotNull Style style) {
+        // Hover text is flattened as well, so it's structure does not matter either.
+        return (style.hoverEvent() != null && style.hoverEvent().value() instanceof Component hover)
+                ? style.hoverEvent(null) + " hover=" + flatten(hover)
+                : style.toString();
+    }
+
+    private record Segment(@NotNull String text, @NotNull String style) { /* DATA */ }
+
+}
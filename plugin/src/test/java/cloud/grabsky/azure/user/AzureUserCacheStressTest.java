@@ -0,0 +1,306 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user;
+
+import cloud.grabsky.azure.Azure;
+import cloud.grabsky.azure.api.user.User;
+import cloud.grabsky.azure.configuration.PluginConfig;
+import cloud.grabsky.azure.metrics.MetricsRegistry;
+import cloud.grabsky.azure.user.geoip.CountryResolver;
+import cloud.grabsky.azure.user.storage.FileUserStorage;
+import cloud.grabsky.azure.user.storage.UserCodec;
+import cloud.grabsky.azure.user.storage.UserStorage;
+import cloud.grabsky.azure.visibility.VisibilityService;
+import com.destroystokyo.paper.profile.PlayerProfile;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.profile.PlayerTextures;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Hammers {@link AzureUserCache} with joins, chat lookups and Discord lookups performed at the same time, from different threads.
+ * Joins of the same player are performed by a single thread, just like on the server. Everything else is unordered.
+ */
+public final class AzureUserCacheStressTest {
+
+    // Users stored before the cache is created. Each one of them is linked with a Discord account.
+    private static final int SEEDED_USERS = 200;
+
+    // Users which are not stored before the cache is created, and are created on their first join.
+    private static final int NEW_USERS = 100;
+
+    private static final int JOIN_THREADS = 2;
+    private static final int CHAT_THREADS = 4;
+    private static final int DISCORD_THREADS = 2;
+
+    // Number of operations performed by each thread.
+    private static final int JOIN_ROUNDS = 20;
+    private static final int LOOKUPS = 50_000;
+
+    @TempDir
+    private File dataFolder;
+
+    private Azure plugin;
+    private List<Player> players;
+
+    // Events of each player, created upfront. Mocks are not meant to be stubbed from multiple threads.
+    private List<AsyncPlayerPreLoginEvent> preLoginEvents;
+    private List<PlayerJoinEvent> joinEvents;
+    private List<PlayerQuitEvent> quitEvents;
+    private @Nullable AzureUserCache cache;
+
+    @BeforeAll
+    public static void setupServer() {
+        final Server server = mock(Server.class, withSettings().stubOnly());
+        // Server is asked for online players when cache is created and when player joins. Players "joined" by this test are not reported.
+        doReturn(List.of()).when(server).getOnlinePlayers();
+        when(server.getLogger()).thenReturn(Logger.getLogger("Server"));
+        // Server can be set only once per JVM.
+        if (Bukkit.getServer() == null)
+            Bukkit.setServer(server);
+    }
+
+    @BeforeEach
+    public void setup() throws Exception {
+        // Creating plugin. Only parts accessed by the cache are provided.
+        this.plugin = mock(Azure.class, withSettings().stubOnly());
+        final MetricsRegistry metrics = new MetricsRegistry();
+        final VisibilityService visibility = mock(VisibilityService.class, withSettings().stubOnly());
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("Azure"));
+        when(plugin.getDataFolder()).thenReturn(dataFolder);
+        when(plugin.getMetricsRegistry()).thenReturn(metrics);
+        when(plugin.getVisibilityService()).thenReturn(visibility);
+        // Configuring the cache.
+        PluginConfig.USER_CACHE_LOADING_PARALLELISM = 4;
+        PluginConfig.USER_CACHE_STORAGE_TYPE = UserStorage.Type.FILES;
+        PluginConfig.USER_CACHE_STORAGE_FILES_CODEC = UserCodec.Type.BINARY;
+        PluginConfig.USER_CACHE_SAVE_QUEUE_COALESCE_WINDOW = 50L;
+        PluginConfig.USER_CACHE_TIERED_MAX_RESIDENT_USERS = 16;
+        PluginConfig.USER_CACHE_GEOIP_PROVIDER = CountryResolver.Type.NONE;
+        // Creating players and storing users of the seeded ones.
+        final FileUserStorage storage = new FileUserStorage(plugin, new File(dataFolder, "usercache"), new BinaryUserCodec(), List.of(new BinaryUserCodec()));
+        this.players = new ArrayList<>();
+        this.preLoginEvents = new ArrayList<>();
+        this.joinEvents = new ArrayList<>();
+        this.quitEvents = new ArrayList<>();
+        for (int i = 0; i < SEEDED_USERS + NEW_USERS; i++) {
+            final Player player = createPlayer(nameOf(i), UUID.nameUUIDFromBytes(nameOf(i).getBytes()));
+            // Storing seeded users.
+            if (i < SEEDED_USERS)
+                storage.save(new AzureUser(player.getName(), player.getUniqueId(), null, discordIdOf(i), "", "127.0.0.1", "PL", 0, false, false, null, null));
+            // ...
+            players.add(player);
+            preLoginEvents.add(createPreLoginEvent(player));
+            joinEvents.add(createJoinEvent(player));
+            quitEvents.add(createQuitEvent(player));
+        }
+    }
+
+    @AfterEach
+    public void teardown() {
+        if (cache != null)
+            cache.close();
+    }
+
+    @ParameterizedTest(name = "tiered = {0}")
+    @ValueSource(booleans = { false, true })
+    public void testConcurrentJoinChatAndDiscordLookups(final boolean isTiered) throws Exception {
+        PluginConfig.USER_CACHE_TIERED_ENABLED = isTiered;
+        // Creating the cache.
+        this.cache = new AzureUserCache(plugin);
+        final AzureUserCache cache = this.cache;
+        // Players which are currently "online". Chat lookups are performed only for these, as only online players can chat.
+        final Set<UUID> online = ConcurrentHashMap.newKeySet();
+        // Preparing tasks.
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        // Each join thread handles it's own share of players, so joins and quits of a player are never performed in parallel.
+        for (int thread = 0; thread < JOIN_THREADS; thread++) {
+            final int offset = thread;
+            tasks.add(() -> {
+                start.await();
+                for (int round = 0; round < JOIN_ROUNDS; round++) {
+                    for (int i = offset; i < players.size(); i += JOIN_THREADS) {
+                        final Player player = players.get(i);
+                        // Joining.
+                        cache.onUserPreLogin(preLoginEvents.get(i));
+                        cache.onUserJoin(joinEvents.get(i));
+                        online.add(player.getUniqueId());
+                        // Quitting, except in the last round. Players stay online for the verification.
+                        if (round != JOIN_ROUNDS - 1) {
+                            online.remove(player.getUniqueId());
+                            cache.onUserQuit(quitEvents.get(i));
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        // Chat threads look up users of online players, as chat renderer and filters do.
+        for (int thread = 0; thread < CHAT_THREADS; thread++) {
+            final long seed = thread;
+            tasks.add(() -> {
+                final SplittableRandom random = new SplittableRandom(seed);
+                start.await();
+                for (int i = 0; i < LOOKUPS; i++) {
+                    final Player player = players.get(random.nextInt(players.size()));
+                    // Skipping players which are not online.
+                    if (online.contains(player.getUniqueId()) == false)
+                        continue;
+                    // Looking up the user. Online players are always held in memory.
+                    final User user = cache.getUser(player);
+                    assertEquals(player.getUniqueId(), user.getUniqueId());
+                    assertEquals(player.getName(), user.getName());
+                }
+                return null;
+            });
+        }
+        // Discord threads look up seeded users by their Discord ID, as Discord integration does.
+        for (int thread = 0; thread < DISCORD_THREADS; thread++) {
+            final long seed = CHAT_THREADS + thread;
+            tasks.add(() -> {
+                final SplittableRandom random = new SplittableRandom(seed);
+                start.await();
+                for (int i = 0; i < LOOKUPS / 10; i++) {
+                    final int index = random.nextInt(SEEDED_USERS);
+                    // Looking up the user. Users not held in memory are loaded in the background.
+                    final @Nullable User user = cache.loadFromDiscord(discordIdOf(index)).get(5, TimeUnit.SECONDS);
+                    assertNotNull(user, "Discord ID " + discordIdOf(index) + " is not associated with any user.");
+                    assertEquals(players.get(index).getUniqueId(), user.getUniqueId());
+                    assertEquals(discordIdOf(index), user.getDiscordId());
+                }
+                return null;
+            });
+        }
+        // Starting all threads at once and waiting for them to finish. Failures are re-thrown by Future#get.
+        final ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            final List<Future<Void>> futures = tasks.stream().map(executor::submit).toList();
+            start.countDown();
+            // ...
+            for (final Future<Void> future : futures)
+                future.get(2, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdownNow();
+        }
+        // Verifying state of the cache. Each player is online, so must be held in memory exactly once and reachable through every index.
+        assertEquals(SEEDED_USERS + NEW_USERS, cache.getUserIds().size());
+        for (int i = 0; i < players.size(); i++) {
+            final Player player = players.get(i);
+            final @Nullable User user = cache.getUsersMap().get(player.getUniqueId());
+            // ...
+            assertNotNull(user, "User of " + player.getName() + " is not held in memory.");
+            assertSame(user, cache.getUser(player));
+            assertSame(user, cache.getUser(player.getName()));
+            // Discord ID must survive every join. Losing it means instance has been replaced without knowing about the previous one.
+            if (i < SEEDED_USERS) {
+                assertEquals(discordIdOf(i), user.getDiscordId());
+                assertSame(user, cache.fromDiscord(discordIdOf(i)));
+            }
+        }
+        // Closing the cache, which writes all pending changes.
+        cache.close();
+        this.cache = null;
+        // Verifying stored state by creating a new cache on top of the same directory.
+        PluginConfig.USER_CACHE_TIERED_ENABLED = false;
+        final AzureUserCache reopened = new AzureUserCache(plugin);
+        try {
+            assertEquals(SEEDED_USERS + NEW_USERS, reopened.getUsers().size());
+            for (int i = 0; i < SEEDED_USERS; i++)
+                assertTrue(reopened.getUser(players.get(i).getUniqueId()) instanceof AzureUser user && discordIdOf(i).equals(user.getDiscordId()) == true, "Discord ID of " + nameOf(i) + " has been lost.");
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static @NotNull String nameOf(final int index) {
+        return "Player_" + index;
+    }
+
+    private static @NotNull String discordIdOf(final int index) {
+        return String.valueOf(100_000_000_000_000_000L + index);
+    }
+
+    private static @NotNull Player createPlayer(final @NotNull String name, final @NotNull UUID uniqueId) {
+        final Player player = mock(Player.class, withSettings().stubOnly());
+        final PlayerProfile profile = mock(PlayerProfile.class, withSettings().stubOnly());
+        // Players have no skin and no address, so no country lookup is performed.
+        when(profile.getTextures()).thenReturn(mock(PlayerTextures.class, withSettings().stubOnly()));
+        when(player.getPlayerProfile()).thenReturn(profile);
+        when(player.getUniqueId()).thenReturn(uniqueId);
+        when(player.getName()).thenReturn(name);
+        // ...
+        return player;
+    }
+
+    private static @NotNull AsyncPlayerPreLoginEvent createPreLoginEvent(final @NotNull Player player) {
+        final AsyncPlayerPreLoginEvent event = mock(AsyncPlayerPreLoginEvent.class, withSettings().stubOnly());
+        when(event.getLoginResult()).thenReturn(AsyncPlayerPreLoginEvent.Result.ALLOWED);
+        when(event.getUniqueId()).thenReturn(player.getUniqueId());
+        // ...
+        return event;
+    }
+
+    private static @NotNull PlayerJoinEvent createJoinEvent(final @NotNull Player player) {
+        final PlayerJoinEvent event = mock(PlayerJoinEvent.class, withSettings().stubOnly());
+        when(event.getPlayer()).thenReturn(player);
+        // ...
+        return event;
+    }
+
+    private static @NotNull PlayerQuitEvent createQuitEvent(final @NotNull Player player) {
+        final PlayerQuitEvent event = mock(PlayerQuitEvent.class, withSettings().stubOnly());
+        when(event.getPlayer()).thenReturn(player);
+        // ...
+        return event;
+    }
+
+}
@@ -0,0 +1,289 @@
+/*
+ * Azure (https://github.com/Grabsky/Azure)
+ *
+ * Copyright (C) 2024  Grabsky <michal.czopek.foss@proton.me>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License v3 as published by
+ * the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License v3 for more details.
+ */
+package cloud.grabsky.azure.user;
+
+import cloud.grabsky.azure.user.storage.JsonUserCodec;
+import cloud.grabsky.azure.user.storage.UserCodec;
+import cloud.grabsky.bedrock.util.Interval;
+import cloud.grabsky.bedrock.util.Interval.Unit;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Verifies that {@link BinaryUserCodec} preserves everything {@link JsonUserCodec} does.
+ * Users are compared by their JSON representation, which covers every serialized field.
+ */
+public final class BinaryUserCodecTest {
+
+    private static final String HASH = "9b2a3e3c5f1d7f0c1ee4d2b2c9f5a4c8e1f6b7a9d3c2e1f0a9b8c7d6e5f4a3b2";
+
+    private static UserCodec json;
+    private static UserCodec binary;
+
+    @BeforeAll
+    public static void setup() {
+        json = new JsonUserCodec(AzureUserCache.createAdapter());
+        binary = new BinaryUserCodec();
+    }
+
+    /**
+     * Returns users covering every optional field and every fallback of the binary format.
+     */
+    private static @NotNull Stream<AzureUser> users() throws IOException {
+        return Stream.of(
+                // Newly created user, with no optional fields.
+                user("Steve", null, null, "", "N/A", "N/A", 0, false, false, null, null),
+                // User with every optional field set.
+                user("Alex", "<gradient:red:blue>Alex", "123456789012345678", textures("https://textures.minecraft.net/texture/" + HASH), "127.0.0.1", "PL", 1337, true, true, punishment("Griefing.", "Moderator", 1_700_000_000_000L, 86_400_000L), punishment("Spam.", "Console", 1_700_000_100_000L, Long.MAX_VALUE)),
+                // Textures using plain HTTP, which is what the server currently provides.
+                user("Notch", null, null, textures("http://textures.minecraft.net/texture/" + HASH), "10.0.0.1", "US", 30, false, false, null, null),
+                // Textures which cannot be reduced to a hash, and are stored as-is.
+                user("Upper", null, null, textures("http://textures.minecraft.net/texture/" + HASH.toUpperCase(Locale.ROOT)), "::1", "DE", 0, false, false, null, null),
+                user("Foreign", null, null, textures("https://example.com/skin.png"), "::1", "DE", 0, false, false, null, null),
+                user("Garbage", null, null, "not base64 at all", "::1", "DE", 0, false, false, null, null),
+                user("Reformatted", null, null, Base64.getEncoder().encodeToString(("{\"textures\":{\"SKIN\":{\"url\":\"http://textures.minecraft.net/texture/" + HASH + "\"}}}").getBytes(StandardCharsets.UTF_8)), "::1", "DE", 0, false, false, null, null),
+                // Discord IDs which cannot be stored as numbers without changing them.
+                user("Leading", null, "0123", "", "N/A", "N/A", 0, false, false, null, null),
+                user("Signed", null, "+123", "", "N/A", "N/A", 0, false, false, null, null),
+                user("Textual", null, "not-a-snowflake", "", "N/A", "N/A", 0, false, false, null, null),
+                user("Largest", null, String.valueOf(Long.MAX_VALUE), "", "N/A", "N/A", 0, false, false, null, null),
+                user("Overflow", null, "9223372036854775808", "", "N/A", "N/A", 0, false, false, null, null),
+                // Country codes outside of the dictionary.
+                user("Unknown", null, null, "", "N/A", "XX", 0, false, false, null, null),
+                user("Lowercase", null, null, "", "N/A", "pl", 0, false, false, null, null),
+                user("Empty", null, null, "", "", "", 0, false, false, null, null),
+                // Non-ASCII strings and extreme numbers.
+                user("Zażółć", "<red>Gęślą jaźń ✦ 日本", null, "", "N/A", "XK", Integer.MAX_VALUE, false, true, punishment("", "", 0L, 0L), punishment("Ü".repeat(1000), "Console", Long.MAX_VALUE / 2, 1L))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("users")
+    public void testRoundTrip(final @NotNull AzureUser user) throws IOException {
+        final byte[] original = json.encode(user);
+        // Converting JSON document to binary and back.
+        final AzureUser decoded = binary.decode(binary.encode(json.decode(original)));
+        // Comparing JSON documents. These are the source of truth and must stay identical.
+        assertEquals(new String(original, StandardCharsets.UTF_8), new String(json.encode(decoded), StandardCharsets.UTF_8));
+        // Encoding again must produce identical bytes.
+        assertTrue(Arrays.equals(binary.encode(user), binary.encode(decoded)));
+    }
+
+    @Test
+    public void testRandomRoundTrip() throws IOException {
+        final SplittableRandom random = new SplittableRandom(42L);
+        // Generating and verifying users with random values of every field.
+        for (int i = 0; i < 10_000; i++) {
+            final AzureUser user = randomUser(random);
+            // ...
+            final byte[] original = json.encode(user);
+            final AzureUser decoded = binary.decode(binary.encode(json.decode(original)));
+            // ...
+            assertEquals(new String(original, StandardCharsets.UTF_8), new String(json.encode(decoded), StandardCharsets.UTF_8), "Round-trip of user #" + i + " is not lossless.");
+        }
+    }
+
+    @Test
+    public void testFormatDetection() throws IOException {
+        final AzureUser user = users().toList().get(1);
+        // ...
+        final byte[] jsonPayload = json.encode(user);
+        final byte[] binaryPayload = binary.encode(user);
+        // Each codec must accept only it's own format.
+        assertTrue(json.accepts(jsonPayload));
+        assertFalse(json.accepts(binaryPayload));
+        assertTrue(binary.accepts(binaryPayload));
+        assertFalse(binary.accepts(jsonPayload));
+        // Looking up the codec must pick the right one, regardless of the order.
+        assertEquals(user.getUniqueId(), UserCodec.decode(List.of(json, binary), binaryPayload).getUniqueId());
+        assertEquals(user.getUniqueId(), UserCodec.decode(List.of(binary, json), jsonPayload).getUniqueId());
+    }
+
+    @Test
+    public void testMalformedPayload() throws IOException {
+        final byte[] payload = binary.encode(users().toList().get(1));
+        // Each truncated payload must be rejected with an IOException, never with a runtime exception or a partially decoded user.
+        for (int length = 0; length < payload.length; length++) {
+            final byte[] truncated = Arrays.copyOf(payload, length);
+            // ...
+            assertThrows(IOException.class, () -> binary.decode(truncated), "Payload truncated to " + length + " byte(s) has been accepted.");
+        }
+        // Payloads of unknown version must be rejected.
+        final byte[] newer = payload.clone();
+        newer[1] = (byte) (newer[1] + 1);
+        // ...
+        assertThrows(IOException.class, () -> binary.decode(newer));
+    }
+
+    @Test
+    public void testMeasurements(final @NotNull TestReporter reporter) throws IOException {
+        final SplittableRandom random = new SplittableRandom(7L);
+        final List<AzureUser> users = new ArrayList<>();
+        // Generating users which resemble the ones stored on a real server. Most of them have never been punished nor linked with Discord.
+        for (int i = 0; i < 10_000; i++)
+            users.add(user(
+                    "Player" + i, null,
+                    (random.nextInt(4) == 0) ? String.valueOf(100_000_000_000_000_000L + random.nextLong(900_000_000_000_000_000L)) : null,
+                    textures("http://textures.minecraft.net/texture/" + randomHash(random)),
+                    random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256),
+                    "PL", random.nextInt(100), false, false,
+                    (random.nextInt(50) == 0) ? punishment("Griefing.", "Moderator", 1_700_000_000_000L + random.nextLong(100_000_000_000L), 604_800_000L) : null,
+                    null
+            ));
+        // Measuring each codec. Indented JSON is what 'usercache' directory used to contain.
+        final UserCodec indentedJson = new JsonUserCodec(AzureUserCache.createAdapter().indent("  "));
+        // ...
+        for (final UserCodec codec : List.of(indentedJson, json, binary)) {
+            final String name = (codec == indentedJson) ? "json_indented" : (codec == json) ? "json" : "binary";
+            final byte[][] payloads = new byte[users.size()][];
+            // Warming up, so the measured iterations are not dominated by interpretation and compilation.
+            for (int i = 0; i < 5; i++)
+                for (final AzureUser user : users)
+                    codec.decode(codec.encode(user));
+            // Measuring encoding.
+            final long encodeStart = System.nanoTime();
+            for (int i = 0; i < users.size(); i++)
+                payloads[i] = codec.encode(users.get(i));
+            final long encodeNanos = System.nanoTime() - encodeStart;
+            // Measuring decoding.
+            final long decodeStart = System.nanoTime();
+            for (final byte[] payload : payloads)
+                codec.decode(payload);
+            final long decodeNanos = System.nanoTime() - decodeStart;
+            // Publishing the results.
+            final long totalBytes = Stream.of(payloads).mapToLong(payload -> payload.length).sum();
+            reporter.publishEntry(name + ".bytes_per_user", String.format(Locale.ROOT, "%.1f", totalBytes / (double) users.size()));
+            reporter.publishEntry(name + ".encode_ns_per_user", String.valueOf(encodeNanos / users.size()));
+            reporter.publishEntry(name + ".decode_ns_per_user", String.valueOf(decodeNanos / users.size()));
+        }
+        // Binary format is expected to be several times smaller than compact JSON. Timings are not asserted, as they depend on the machine.
+        final long jsonBytes = users.stream().mapToLong(user -> encodeQuietly(json, user).length).sum();
+        final long binaryBytes = users.stream().mapToLong(user -> encodeQuietly(binary, user).length).sum();
+        // ...
+        assertTrue(binaryBytes * 3 < jsonBytes, "Binary format is not significantly smaller than JSON: " + binaryBytes + "B vs " + jsonBytes + "B");
+    }
+
+    private static @NotNull AzureUser randomUser(final @NotNull SplittableRandom random) throws IOException {
+        return user(
+                randomString(random, 1 + random.nextInt(16)),
+                (random.nextBoolean() == true) ? randomString(random, random.nextInt(64)) : null,
+                switch (random.nextInt(4)) {
+                    case 0 -> null;
+                    case 1 -> String.valueOf(random.nextLong(Long.MAX_VALUE));
+                    case 2 -> "0" + random.nextInt(1000);
+                    default -> randomString(random, random.nextInt(24));
+                },
+                switch (random.nextInt(4)) {
+                    case 0 -> "";
+                    case 1 -> textures("http://textures.minecraft.net/texture/" + randomHash(random));
+                    case 2 -> textures("https://textures.minecraft.net/texture/" + randomHash(random));
+                    default -> randomString(random, random.nextInt(128));
+                },
+                randomString(random, random.nextInt(40)),
+                (random.nextBoolean() == true) ? (char) ('A' + random.nextInt(26)) + "" + (char) ('A' + random.nextInt(26)) : randomString(random, random.nextInt(4)),
+                random.nextInt(Integer.MAX_VALUE),
+                random.nextBoolean(),
+                random.nextBoolean(),
+                (random.nextBoolean() == true) ? punishment(randomString(random, random.nextInt(64)), randomString(random, random.nextInt(16)), random.nextLong(1L << 52), (random.nextInt(4) == 0) ? Long.MAX_VALUE : random.nextLong(1L << 52)) : null,
+                (random.nextBoolean() == true) ? punishment(randomString(random, random.nextInt(64)), randomString(random, random.nextInt(16)), random.nextLong(1L << 52), (random.nextInt(4) == 0) ? Long.MAX_VALUE : random.nextLong(1L << 52)) : null
+        );
+    }
+
+    /**
+     * Returns random string, which may contain characters outside of the Basic Multilingual Plane.
+     */
+    private static @NotNull String randomString(final @NotNull SplittableRandom random, final int length) {
+        final StringBuilder builder = new StringBuilder(length);
+        // ...
+        for (int i = 0; i < length; i++)
+            builder.appendCodePoint(switch (random.nextInt(8)) {
+                case 0 -> 0x80 + random.nextInt(0x780);
+                case 1 -> 0x1F300 + random.nextInt(0x300);
+                default -> 0x20 + random.nextInt(0x5F);
+            });
+        // ...
+        return builder.toString();
+    }
+
+    private static @NotNull String randomHash(final @NotNull SplittableRandom random) {
+        final byte[] bytes = new byte[32];
+        // ...
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) random.nextInt(256);
+        // Hashes provided by Mojang are not padded, so leading zero may be missing.
+        final String hash = HexFormat.of().formatHex(bytes);
+        // ...
+        return (hash.startsWith("0") == true) ? hash.substring(1) : hash;
+    }
+
+    private static @NotNull String textures(final @NotNull String url) throws IOException {
+        return AzureUserCache.encodeTextures(URI.create(url).toURL());
+    }
+
+    private static @NotNull AzurePunishment punishment(final @NotNull String reason, final @NotNull String issuer, final long startDate, final long duration) {
+        return new AzurePunishment(reason, issuer, Interval.of(startDate, Unit.MILLISECONDS), Interval.of(duration, Unit.MILLISECONDS));
+    }
+
+    private static @NotNull AzureUser user(
+            final @NotNull String name,
+            final @Nullable String displayName,
+            final @Nullable String discordId,
+            final @NotNull String textures,
+            final @NotNull String lastAddress,
+            final @NotNull String lastCountryCode,
+            final int maxLevel,
+            final boolean isVanished,
+            final boolean isSpying,
+            final @Nullable AzurePunishment ban,
+            final @Nullable AzurePunishment mute
+    ) {
+        final UUID uniqueId = UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8));
+        // ...
+        return new AzureUser(name, uniqueId, displayName, discordId, textures, lastAddress, lastCountryCode, maxLevel, isVanished, isSpying, ban, mute);
+    }
+
+    private static byte @NotNull [] encodeQuietly(final @NotNull UserCodec codec, final @NotNull AzureUser user) {
+        try {
+            return codec.encode(user);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}